@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.beust.jcommander.JCommander;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Runs perfAlyzer like {@link PerfAlyzer#main(String[])} does, but returns the phase timings
+ * instead of exiting the JVM. It is located in perfAlyzer's package because
+ * {@link PerfAlyzerFactory} is package-private.
+ *
+ * @author rnaegele
+ */
+public class PerfAlyzerRunner {
+
+	private PerfAlyzerRunner() {
+	}
+
+	/**
+	 * Runs perfAlyzer. The current directory must contain perfAlyzer's {@code config},
+	 * {@code strings} and {@code assets} directories.
+	 *
+	 * @param args
+	 * 		perfAlyzer's command line arguments
+	 * @return the durations of the phases in milliseconds, in order of execution; {@code setup}
+	 * comprises extracting archives, loading the config and processing the load profile
+	 */
+	public static Map<String, Long> run(final String... args) throws IOException {
+		PerfAlyzerArgs perfAlyzerArgs = new PerfAlyzerArgs();
+		new JCommander(perfAlyzerArgs).parse(args);
+
+		Map<String, Long> result = new LinkedHashMap<>();
+		Stopwatch stopwatch = Stopwatch.createStarted();
+		PerfAlyzerFactory perfAlyzerFactory = new PerfAlyzerFactory(perfAlyzerArgs);
+		PerfAlyzer perfAlyzer = perfAlyzerFactory.getPerfAlyzer();
+		result.put("setup", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		try {
+			perfAlyzer.runPerfAlyzer();
+			result.putAll(perfAlyzer.getPhaseTimings());
+		} finally {
+			perfAlyzerFactory.getExecutorService().shutdownNow();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with JMH's command line options and the GC profiler enabled, so throughput
+ * is always reported together with allocation rates.
+ *
+ * @author rnaegele
+ */
+public class BenchmarkRunner {
+
+	public static void main(final String[] args) throws RunnerException, CommandLineOptionException, IOException {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		if (cmdOptions.shouldHelp()) {
+			cmdOptions.showHelp();
+			return;
+		}
+		if (cmdOptions.shouldList()) {
+			new Runner(cmdOptions).list();
+			return;
+		}
+
+		Options options = new OptionsBuilder()
+				.parent(cmdOptions)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
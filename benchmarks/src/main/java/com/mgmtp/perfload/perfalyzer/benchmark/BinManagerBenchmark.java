@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mgmtp.perfload.perfalyzer.benchmark.SyntheticData.DiscardingChannel;
+import com.mgmtp.perfload.perfalyzer.binning.BinManager;
+import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
+import com.mgmtp.perfload.perfalyzer.util.AggregationType;
+
+/**
+ * Measures adding values to a {@link BinManager} and writing the bins as CSV. {@code addValues}
+ * adds {@code valueCount} values per operation, {@code toCsv} writes the bins holding these
+ * values aggregated with each {@link AggregationType}.
+ *
+ * @author rnaegele
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinManagerBenchmark {
+
+	@Param("100000")
+	private int valueCount;
+
+	@Param({ "MEAN", "MEDIAN", "COUNT" })
+	private AggregationType aggregationType;
+
+	private long[] timestamps;
+	private Double[] values;
+	private BinManager filledBinManager;
+	private NumberFormat numberFormat;
+
+	@Setup(Level.Trial)
+	public void createData() {
+		long durationMillis = TimeUnit.HOURS.toMillis(1L);
+		SyntheticData data = new SyntheticData(42L, 1, 1, 0d, durationMillis);
+		timestamps = new long[valueCount];
+		values = new Double[valueCount];
+		for (int i = 0; i < valueCount; ++i) {
+			timestamps[i] = durationMillis * i / valueCount;
+			values[i] = (double) data.responseTime();
+		}
+
+		filledBinManager = addValues();
+		numberFormat = NumberFormat.getIntegerInstance(Locale.US);
+	}
+
+	@Benchmark
+	public BinManager addValues() {
+		BinManager binManager = new BinManager(0L, PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS);
+		for (int i = 0; i < valueCount; ++i) {
+			binManager.addValue(timestamps[i], values[i]);
+		}
+		return binManager;
+	}
+
+	@Benchmark
+	public long toCsv() {
+		DiscardingChannel channel = new DiscardingChannel();
+		filledBinManager.toCsv(channel, "time", "value", numberFormat, aggregationType);
+		return channel.getBytesWritten();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.text.StrBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.converters.FileConverter;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerRunner;
+
+/**
+ * Runs perfAlyzer end to end on results created by {@link ResultsGenerator} and records the
+ * duration of each phase. Accepts the generator's arguments plus:
+ * <ul>
+ * <li>{@code -runs}: the number of perfAlyzer runs on the same data</li>
+ * <li>{@code -i}: an existing results directory to use instead of generating one</li>
+ * </ul>
+ * Must be started in perfAlyzer's distribution directory, because perfAlyzer loads its config,
+ * strings and assets from there. Timings of all runs are written to {@code timings.csv} in the
+ * output directory, a summary with minimum and median per phase is logged.
+ *
+ * @author rnaegele
+ */
+public class EndToEndBenchmark {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EndToEndBenchmark.class);
+
+	static class EndToEndArgs {
+		@Parameter(names = "-runs", description = "The number of perfAlyzer runs")
+		int runs = 3;
+
+		@Parameter(names = "-i", description = "An existing results directory to use instead of generating one", converter = FileConverter.class)
+		File inputDir;
+	}
+
+	public static void main(final String[] args) {
+		ResultsGeneratorArgs generatorArgs = new ResultsGeneratorArgs();
+		EndToEndArgs endToEndArgs = new EndToEndArgs();
+		JCommander jCmd = new JCommander(generatorArgs);
+		jCmd.addObject(endToEndArgs);
+		try {
+			jCmd.parse(args);
+			checkState(new File("config").isDirectory(), "Must be started in perfAlyzer's distribution directory");
+
+			File inputDir = endToEndArgs.inputDir != null
+					? endToEndArgs.inputDir
+					: new ResultsGenerator(generatorArgs).generate();
+			File outputDir = new File(generatorArgs.outputDir, "perfalyzer");
+
+			List<Map<String, Long>> timings = new ArrayList<>(endToEndArgs.runs);
+			for (int i = 1; i <= endToEndArgs.runs; ++i) {
+				LOG.info("Run {} of {}...", i, endToEndArgs.runs);
+				timings.add(PerfAlyzerRunner.run("-i", inputDir.getPath(), "-o", outputDir.getPath()));
+			}
+
+			writeTimings(new File(generatorArgs.outputDir, "timings.csv"), timings);
+			logSummary(timings);
+		} catch (ParameterException ex) {
+			LOG.error(ex.getMessage());
+			StringBuilder sb = new StringBuilder(200);
+			jCmd.usage(sb);
+			LOG.info(sb.toString());
+			System.exit(1);
+		} catch (Exception ex) {
+			LOG.error(ex.getMessage(), ex);
+			System.exit(1);
+		}
+	}
+
+	private static void writeTimings(final File file, final List<Map<String, Long>> timings) throws IOException {
+		StrBuilder sb = new StrBuilder();
+		sb.appendln("run" + DELIMITER + "phase" + DELIMITER + "millis");
+		for (int i = 0; i < timings.size(); ++i) {
+			for (Entry<String, Long> entry : timings.get(i).entrySet()) {
+				sb.appendln((i + 1) + String.valueOf(DELIMITER) + entry.getKey() + DELIMITER + entry.getValue());
+			}
+		}
+		Files.asCharSink(file, Charsets.UTF_8).write(sb);
+		LOG.info("Timings written to '{}'", file);
+	}
+
+	private static void logSummary(final List<Map<String, Long>> timings) {
+		Map<String, List<Long>> phaseTimings = new LinkedHashMap<>();
+		for (Map<String, Long> run : timings) {
+			run.forEach((phase, millis) -> phaseTimings.computeIfAbsent(phase, key -> new ArrayList<>()).add(millis));
+		}
+
+		LOG.info(String.format("%-20s %10s %10s", "phase", "min [ms]", "median [ms]"));
+		long totalMin = 0L;
+		long totalMedian = 0L;
+		for (Entry<String, List<Long>> entry : phaseTimings.entrySet()) {
+			List<Long> values = entry.getValue();
+			Collections.sort(values);
+			long min = values.get(0);
+			long median = values.get(values.size() / 2);
+			totalMin += min;
+			totalMedian += median;
+			LOG.info(String.format("%-20s %10d %10d", entry.getKey(), min, median));
+		}
+		LOG.info(String.format("%-20s %10d %10d", "total", totalMin, totalMedian));
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+import com.mgmtp.perfload.perfalyzer.benchmark.SyntheticData.DiscardingChannel;
+
+/**
+ * Measures {@code IoUtilities.writeLineToChannel} with normalized measuring lines, writing to a
+ * channel that discards data and to a file channel. Scores are lines per second.
+ *
+ * @author rnaegele
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IoUtilitiesBenchmark {
+
+	@Param("10000")
+	private int lineCount;
+
+	private List<String> lines;
+	private DiscardingChannel discardingChannel;
+	private File tempDir;
+	private FileChannel fileChannel;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void createData() {
+		lines = new SyntheticData(42L, 10, 20, 0.01d, TimeUnit.HOURS.toMillis(1L)).normalizedMeasuringLines(lineCount);
+		discardingChannel = new DiscardingChannel();
+		tempDir = createTempDir();
+	}
+
+	@Setup(Level.Iteration)
+	public void openFile() throws IOException {
+		fileChannel = FileChannel.open(new File(tempDir, "lines.csv").toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeFile() throws IOException {
+		fileChannel.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		deleteQuietly(tempDir);
+	}
+
+	@Benchmark
+	public void writeLineToDiscardingChannel() {
+		writeLineToChannel(discardingChannel, lines.get(nextIndex()), Charsets.UTF_8);
+	}
+
+	@Benchmark
+	public void writeLineToFileChannel() {
+		writeLineToChannel(fileChannel, lines.get(nextIndex()), Charsets.UTF_8);
+	}
+
+	private int nextIndex() {
+		int result = index;
+		index = result + 1 == lineCount ? 0 : result + 1;
+		return result;
+	}
+}
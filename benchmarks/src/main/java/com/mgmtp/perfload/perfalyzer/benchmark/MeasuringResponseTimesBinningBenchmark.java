@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.binning.Binner;
+import com.mgmtp.perfload.perfalyzer.binning.MeasuringResponseTimesBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * Measures binning of a normalized measuring file with {@link MeasuringResponseTimesBinningStrategy}
+ * end to end, i. e. including reading the file and writing quantiles, distributions and executions.
+ * Scores are files per second.
+ *
+ * @author rnaegele
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasuringResponseTimesBinningBenchmark {
+
+	@Param("100000")
+	private int lineCount;
+
+	@Param("20")
+	private int uriCount;
+
+	private File tempDir;
+	private File normalizedDir;
+	private File binnedDir;
+	private PerfAlyzerFile file;
+	private NumberFormat intNumberFormat;
+	private NumberFormat floatNumberFormat;
+
+	@Setup(Level.Trial)
+	public void createFile() throws IOException {
+		tempDir = createTempDir();
+		normalizedDir = new File(tempDir, "normalized");
+		binnedDir = new File(tempDir, "binned");
+
+		file = PerfAlyzerFile.create(new File("measuring", "[measuring][operation].csv"));
+		File normalizedFile = new File(normalizedDir, file.getFile().getPath());
+		Files.createParentDirs(normalizedFile);
+		SyntheticData data = new SyntheticData(42L, 1, uriCount, 0.01d, TimeUnit.HOURS.toMillis(1L));
+		Files.asCharSink(normalizedFile, Charsets.UTF_8).writeLines(data.normalizedMeasuringLines(lineCount));
+
+		intNumberFormat = NumberFormat.getIntegerInstance(Locale.US);
+		floatNumberFormat = NumberFormat.getNumberInstance(Locale.US);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		deleteQuietly(tempDir);
+	}
+
+	@Benchmark
+	public void binFile() throws IOException {
+		MeasuringResponseTimesBinningStrategy strategy = new MeasuringResponseTimesBinningStrategy(0L, intNumberFormat,
+				floatNumberFormat);
+		new Binner(normalizedDir, binnedDir, strategy).binFile(file);
+	}
+}
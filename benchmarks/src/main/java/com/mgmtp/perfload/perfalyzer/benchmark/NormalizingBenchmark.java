@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mgmtp.perfload.perfalyzer.normalization.MeasuringNormalizingStrategy;
+import com.mgmtp.perfload.perfalyzer.normalization.PerfMonNormalizingStrategy;
+import com.mgmtp.perfload.perfalyzer.util.TimestampNormalizer;
+
+/**
+ * Measures normalization of single log lines. Scores are lines per second.
+ *
+ * @author rnaegele
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizingBenchmark {
+
+	@Param("10000")
+	private int lineCount;
+
+	private List<String> measuringLines;
+	private List<String> perfMonLines;
+	private TimestampNormalizer timestampNormalizer;
+
+	private MeasuringNormalizingStrategy measuringStrategy;
+	private PerfMonNormalizingStrategy perfMonStrategy;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void createData() {
+		long durationMillis = TimeUnit.HOURS.toMillis(1L);
+		SyntheticData data = new SyntheticData(42L, 10, 20, 0.01d, durationMillis);
+		measuringLines = data.rawMeasuringLines(lineCount);
+		perfMonLines = data.rawPerfMonLines(lineCount);
+		timestampNormalizer = new TimestampNormalizer(SyntheticData.TEST_START,
+				SyntheticData.TEST_START.plusSeconds(lineCount).plusNanos(durationMillis * 1000000L), 0);
+	}
+
+	@Setup(Level.Iteration)
+	public void createStrategies() {
+		measuringStrategy = new MeasuringNormalizingStrategy(timestampNormalizer);
+		// stateful, remembers the first I/O values
+		perfMonStrategy = new PerfMonNormalizingStrategy(timestampNormalizer);
+		index = 0;
+	}
+
+	@Benchmark
+	public void measuringNormalizeLine(final Blackhole blackhole) {
+		blackhole.consume(measuringStrategy.normalizeLine(measuringLines.get(nextIndex())));
+	}
+
+	@Benchmark
+	public void perfMonNormalizeLine(final Blackhole blackhole) {
+		blackhole.consume(perfMonStrategy.normalizeLine(perfMonLines.get(nextIndex())));
+	}
+
+	private int nextIndex() {
+		int result = index;
+		index = result + 1 == lineCount ? 0 : result + 1;
+		return result;
+	}
+}
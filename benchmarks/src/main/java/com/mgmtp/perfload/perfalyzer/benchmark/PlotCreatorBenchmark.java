@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Random;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.DataRange;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.PlotOutput;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+
+/**
+ * Measures rendering of a time series plot to a PNG file. A new {@link PlotCreator} is used for
+ * each operation because it skips plots whose data has not changed. Scores are plots per second.
+ *
+ * @author rnaegele
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PlotCreatorBenchmark {
+
+	@Param("2000")
+	private int pointCount;
+
+	@Param({ "1", "5" })
+	private int seriesCount;
+
+	@Param({ "LINES", "SHAPES" })
+	private RendererType rendererType;
+
+	private File tempDir;
+	private File plotFile;
+	private NumberFormat numberFormat;
+	private ResourceBundle resourceBundle;
+	private DisplayData displayData;
+	private NumberDataSet dataSet;
+
+	@Setup(Level.Trial)
+	public void createData() {
+		tempDir = createTempDir();
+		plotFile = new File(tempDir, "plot.png");
+		numberFormat = NumberFormat.getIntegerInstance(Locale.US);
+		resourceBundle = new KeyResourceBundle();
+		displayData = new DisplayData(Pattern.compile(".*"), "x", ImmutableList.of("y"));
+
+		Random random = new Random(42L);
+		dataSet = new NumberDataSet();
+		for (int i = 0; i < seriesCount; ++i) {
+			String name = "series" + i;
+			for (int j = 0; j < pointCount; ++j) {
+				dataSet.addSeriesPoint(name, new SeriesPoint(j, 100d + random.nextGaussian() * 20d));
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		deleteQuietly(tempDir);
+	}
+
+	@Benchmark
+	public long writePlotFile() throws IOException {
+		PlotCreator plotCreator = new PlotCreator(numberFormat, resourceBundle, ImmutableList.of(displayData),
+				ImmutableList.of(), PlotOutput.PNG);
+		plotCreator.writePlotFile(plotFile, AxisType.LINEAR, AxisType.LINEAR, rendererType, displayData,
+				ChartDimensions.DEFAULT, new DataRange(0L, pointCount * 1000L), false, dataSet);
+		return plotFile.length();
+	}
+
+	/**
+	 * Returns keys as values, so no localized resources are needed.
+	 */
+	static class KeyResourceBundle extends ResourceBundle {
+
+		@Override
+		protected Object handleGetObject(final String key) {
+			return key;
+		}
+
+		@Override
+		public Enumeration<String> getKeys() {
+			return Collections.emptyEnumeration();
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.benchmark.SyntheticData.TEST_START;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Files;
+
+/**
+ * Writes a complete, synthetic perfLoad results directory, so perfAlyzer can be tested at volumes
+ * beyond those of real tests. The directory contains:
+ * <ul>
+ * <li>{@code console}: test metadata and a load profile with markers</li>
+ * <li>{@code driverN}: a measuring log per load driver</li>
+ * <li>{@code appserverNN}: a perfMon log with all perfMon types and a G1 GC log per target host</li>
+ * </ul>
+ * Each of these is written as zip archive, unless configured otherwise. Data only depends on the
+ * arguments, so results of different perfAlyzer versions can be compared.
+ *
+ * @author rnaegele
+ */
+public class ResultsGenerator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResultsGenerator.class);
+
+	private static final int REQUESTS_PER_EXECUTION = 5;
+	private static final int PROCESSES_PER_DRIVER = 5;
+	private static final int MAX_HEAP_MB = 4096;
+
+	private static final DateTimeFormatter INPUT_DIR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmm");
+	private static final DateTimeFormatter GC_LOG_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+	private final ResultsGeneratorArgs args;
+	private final long durationMillis;
+
+	public ResultsGenerator(final ResultsGeneratorArgs args) {
+		checkArgument(args.driverCount > 0 && args.hostCount > 0 && args.operationCount > 0 && args.uriCount > 0,
+				"Drivers, hosts, operations and URIs must be positive");
+		checkArgument(args.durationMinutes > 0 && args.requestsPerSecond > 0 && args.perfMonIntervalSeconds > 0,
+				"Duration, requests per second and perfMon interval must be positive");
+		this.args = args;
+		this.durationMillis = TimeUnit.MINUTES.toMillis(args.durationMinutes);
+	}
+
+	public static void main(final String[] args) {
+		ResultsGeneratorArgs generatorArgs = new ResultsGeneratorArgs();
+		JCommander jCmd = new JCommander(generatorArgs);
+		try {
+			jCmd.parse(args);
+			new ResultsGenerator(generatorArgs).generate();
+		} catch (ParameterException ex) {
+			LOG.error(ex.getMessage());
+			StringBuilder sb = new StringBuilder(200);
+			jCmd.usage(sb);
+			LOG.info(sb.toString());
+			System.exit(1);
+		} catch (Exception ex) {
+			LOG.error(ex.getMessage(), ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Generates the results directory. An existing directory with the same name is replaced.
+	 *
+	 * @return the results directory, named as expected by perfAlyzer's input directory pattern
+	 */
+	public File generate() throws IOException {
+		Stopwatch stopwatch = Stopwatch.createStarted();
+
+		File inputDir = new File(args.outputDir, INPUT_DIR_FORMAT.format(TEST_START) + '_' + args.testName);
+		if (inputDir.isDirectory()) {
+			LOG.info("Directory '{}' already exists. Deleting it...", inputDir);
+			deleteDirectory(inputDir);
+		}
+		checkState(inputDir.mkdirs(), "Could not create directory: %s", inputDir);
+
+		LOG.info("Generating results in '{}'...", inputDir);
+
+		Map<String, EntryWriter> consoleEntries = new LinkedHashMap<>();
+		consoleEntries.put("console-logs/perfload.meta.utf8.props", this::writeMetaProperties);
+		consoleEntries.put("console-logs/" + args.testName + ".perfload", this::writeLoadProfile);
+		writeArchive(inputDir, "console", consoleEntries);
+
+		for (int i = 1; i <= args.driverCount; ++i) {
+			int driver = i;
+			Map<String, EntryWriter> entries = new LinkedHashMap<>();
+			entries.put("measuring-logs/measuring-" + driver + ".log", writer -> writeMeasuringLog(writer, driver));
+			writeArchive(inputDir, "driver" + driver, entries);
+		}
+
+		for (int i = 1; i <= args.hostCount; ++i) {
+			int host = i;
+			Map<String, EntryWriter> entries = new LinkedHashMap<>();
+			entries.put("perfmon-logs/perfmon.out", writer -> writePerfMonLog(writer, host));
+			entries.put("gclogs/gclog.log", writer -> writeGcLog(writer, host));
+			writeArchive(inputDir, hostName(host), entries);
+		}
+
+		LOG.info("Generated results in {}", stopwatch);
+		return inputDir;
+	}
+
+	private void writeArchive(final File inputDir, final String name, final Map<String, EntryWriter> entries)
+			throws IOException {
+		LOG.info("Writing '{}'...", name);
+
+		if (args.zip) {
+			try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(new File(inputDir, name + ".zip")))) {
+				for (Entry<String, EntryWriter> entry : entries.entrySet()) {
+					zos.putNextEntry(new ZipEntry(entry.getKey()));
+					// the writer must not close the zip stream
+					try (Writer writer = newWriter(new CloseShieldOutputStream(zos))) {
+						entry.getValue().write(writer);
+					}
+					zos.closeEntry();
+				}
+			}
+		} else {
+			for (Entry<String, EntryWriter> entry : entries.entrySet()) {
+				File file = new File(new File(inputDir, name), entry.getKey());
+				Files.createParentDirs(file);
+				try (Writer writer = newWriter(new FileOutputStream(file))) {
+					entry.getValue().write(writer);
+				}
+			}
+		}
+	}
+
+	private static Writer newWriter(final OutputStream os) {
+		return new BufferedWriter(new OutputStreamWriter(os, Charsets.UTF_8), 65536);
+	}
+
+	private void writeMetaProperties(final Writer writer) throws IOException {
+		String[] operations = new String[args.operationCount];
+		for (int i = 0; i < operations.length; ++i) {
+			operations[i] = "operation" + i;
+		}
+		String[] targets = new String[args.hostCount];
+		for (int i = 0; i < targets.length; ++i) {
+			targets[i] = hostName(i + 1);
+		}
+
+		writeLine(writer, "perfload.implementation.version=synthetic");
+		writeLine(writer, "test.type=LOAD_PROFILE");
+		writeLine(writer, "test.file=" + args.testName + ".xml");
+		writeLine(writer, "test.start=" + TEST_START.toOffsetDateTime());
+		writeLine(writer, "test.finish=" + testFinish().toOffsetDateTime());
+		writeLine(writer, "targets=" + Joiner.on(',').join(targets));
+		writeLine(writer, "operations=" + Joiner.on(',').join(operations));
+		writeLine(writer, "test.comment=Synthetic results, " + args.requestsPerSecond + " requests/s, " + args.driverCount
+				+ " drivers, " + args.hostCount + " hosts");
+	}
+
+	private void writeLoadProfile(final Writer writer) throws IOException {
+		// markers split the test into equal parts
+		for (int i = 0; i < args.markerCount; ++i) {
+			String name = "Part " + (i + 1);
+			writeLine(writer, durationMillis * i / args.markerCount + ";[[marker]];" + name + ";left;");
+			writeLine(writer, durationMillis * (i + 1) / args.markerCount + ";[[marker]];" + name + ";right;");
+		}
+
+		Random random = new Random(args.seed);
+		long executionCount = totalRequestCount() / REQUESTS_PER_EXECUTION;
+		for (long i = 0; i < executionCount; ++i) {
+			long offsetMillis = durationMillis * i / executionCount;
+			int driver = 1 + random.nextInt(args.driverCount);
+			writeLine(writer, offsetMillis + ";operation" + random.nextInt(args.operationCount) + ';'
+					+ hostName(1 + random.nextInt(args.hostCount)) + ';' + driver + ';' + (1 + random.nextInt(PROCESSES_PER_DRIVER)));
+		}
+	}
+
+	private void writeMeasuringLog(final Writer writer, final int driver) throws IOException {
+		SyntheticData data = new SyntheticData(args.seed + driver, args.operationCount, args.uriCount, args.errorRate,
+				durationMillis, args.responseTimeMedianMillis, args.responseTimeSigma);
+		Random random = new Random(args.seed - driver);
+
+		long count = totalRequestCount() / args.driverCount;
+		long idBase = driver * 1000000000000000L;
+		for (long i = 0; i < count; ++i) {
+			// drivers are slightly out of phase, so their logs interleave
+			long offsetMillis = durationMillis * i / count + driver;
+			String target = hostName(1 + random.nextInt(args.hostCount));
+			writeLine(writer, data.rawMeasuringLine(offsetMillis, target, idBase + i / REQUESTS_PER_EXECUTION, idBase + i));
+		}
+	}
+
+	private void writePerfMonLog(final Writer writer, final int host) throws IOException {
+		SyntheticData data = new SyntheticData(args.seed * 31 + host, args.operationCount, args.uriCount, args.errorRate,
+				durationMillis);
+
+		String hostName = hostName(host);
+		writeLine(writer, TEST_START.toOffsetDateTime() + "\tmeta\tperfMon synthetic\t" + hostName + '\t' + hostName
+				+ "/127.0.0.1");
+		long intervalMillis = TimeUnit.SECONDS.toMillis(args.perfMonIntervalSeconds);
+		for (long offsetMillis = 1000L; offsetMillis < durationMillis; offsetMillis += intervalMillis) {
+			for (String type : SyntheticData.PERFMON_TYPES) {
+				writeLine(writer, data.rawPerfMonLine(offsetMillis, type));
+			}
+		}
+	}
+
+	/*
+	 * Writes a G1 log as written with -XX:+PrintGC -XX:+PrintGCDateStamps -XX:+PrintGCTimeStamps.
+	 * The heap fills up with the load, young collections promote part of it, and once the old
+	 * generation exceeds the initiating occupancy, a concurrent cycle and mixed collections follow.
+	 */
+	private void writeGcLog(final Writer writer, final int host) throws IOException {
+		Random random = new Random(args.seed * 17 + host);
+
+		writeLine(writer, "Java HotSpot(TM) 64-Bit Server VM (25.162-b12) for linux-amd64 JRE (1.8.0_162-b12)");
+		writeLine(writer, "Memory: 4k page, physical 24687792k(23324608k free), swap 4249596k(4249596k free)");
+		writeLine(writer, "CommandLine flags: -XX:InitialHeapSize=" + MAX_HEAP_MB * 1048576L + " -XX:MaxHeapSize="
+				+ MAX_HEAP_MB * 1048576L + " -XX:+PrintGC -XX:+PrintGCDateStamps -XX:+PrintGCTimeStamps -XX:+UseG1GC ");
+
+		// the JVM was started before the test
+		long jvmStartOffsetMillis = -30000L;
+		// allocation rate scales with the load on this host
+		double allocatedMbPerSecond = Math.max(1d, args.requestsPerSecond / (double) args.hostCount);
+		int youngMb = MAX_HEAP_MB / 10;
+		int oldMb = 50;
+		int mixedRemaining = 0;
+
+		long offsetMillis = 1000L;
+		while (offsetMillis < durationMillis) {
+			double uptimeSeconds = (offsetMillis - jvmStartOffsetMillis) / 1000d;
+			int beforeMb = oldMb + youngMb;
+			int promotedMb = 1 + random.nextInt(Math.max(1, youngMb / 20));
+			String type = mixedRemaining > 0 ? "mixed" : "young";
+			if (mixedRemaining > 0) {
+				oldMb = Math.max(50, oldMb - oldMb / 4);
+				--mixedRemaining;
+			}
+			oldMb += promotedMb;
+			double pauseSeconds = 0.01d + random.nextDouble() * 0.09d;
+			writeLine(writer, gcLogPrefix(offsetMillis, uptimeSeconds) + "[GC pause (G1 Evacuation Pause) (" + type + ") "
+					+ beforeMb + "M->" + oldMb + "M(" + MAX_HEAP_MB + "M), " + String.format(Locale.US, "%.7f", pauseSeconds)
+					+ " secs]");
+
+			long pauseMillis = Math.round(pauseSeconds * 1000d);
+			if (mixedRemaining == 0 && oldMb > MAX_HEAP_MB * 45 / 100) {
+				writeConcurrentCycle(writer, random, offsetMillis + pauseMillis, jvmStartOffsetMillis, oldMb);
+				mixedRemaining = 4;
+			}
+
+			// the next collection happens when the young generation is full again
+			offsetMillis += pauseMillis + Math.round(youngMb / allocatedMbPerSecond * (800d + random.nextInt(400)));
+		}
+	}
+
+	private void writeConcurrentCycle(final Writer writer, final Random random, final long offsetMillis,
+			final long jvmStartOffsetMillis, final int oldMb) throws IOException {
+		long time = offsetMillis;
+		for (String phase : new String[] { "root-region-scan", "mark" }) {
+			double uptimeSeconds = (time - jvmStartOffsetMillis) / 1000d;
+			writeLine(writer, gcLogPrefix(time, uptimeSeconds) + "[GC concurrent-" + phase + "-start]");
+			double phaseSeconds = 0.01d + random.nextDouble() * 0.2d;
+			time += Math.round(phaseSeconds * 1000d);
+			uptimeSeconds = (time - jvmStartOffsetMillis) / 1000d;
+			writeLine(writer, gcLogPrefix(time, uptimeSeconds) + "[GC concurrent-" + phase + "-end, "
+					+ String.format(Locale.US, "%.7f", phaseSeconds) + " secs]");
+		}
+		double remarkSeconds = 0.01d + random.nextDouble() * 0.02d;
+		writeLine(writer, gcLogPrefix(time, (time - jvmStartOffsetMillis) / 1000d) + "[GC remark, "
+				+ String.format(Locale.US, "%.7f", remarkSeconds) + " secs]");
+		time += Math.round(remarkSeconds * 1000d) + 1L;
+		writeLine(writer, gcLogPrefix(time, (time - jvmStartOffsetMillis) / 1000d) + "[GC cleanup " + oldMb + "M->"
+				+ (oldMb - oldMb / 20) + "M(" + MAX_HEAP_MB + "M), " + String.format(Locale.US, "%.7f", 0.005d) + " secs]");
+	}
+
+	private static String gcLogPrefix(final long offsetMillis, final double uptimeSeconds) {
+		return GC_LOG_DATE_FORMAT.format(TEST_START.plusNanos(offsetMillis * 1000000L)) + ": "
+				+ String.format(Locale.US, "%.3f", uptimeSeconds) + ": ";
+	}
+
+	private long totalRequestCount() {
+		return (long) args.requestsPerSecond * TimeUnit.MILLISECONDS.toSeconds(durationMillis);
+	}
+
+	private ZonedDateTime testFinish() {
+		return TEST_START.plusNanos(durationMillis * 1000000L);
+	}
+
+	private static String hostName(final int host) {
+		return String.format("appserver%02d", host);
+	}
+
+	private static void writeLine(final Writer writer, final String line) throws IOException {
+		writer.write(line);
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes the contents of an archive entry or file.
+	 */
+	interface EntryWriter {
+		void write(Writer writer) throws IOException;
+	}
+}
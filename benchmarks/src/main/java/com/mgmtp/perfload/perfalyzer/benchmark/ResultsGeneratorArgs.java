@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import java.io.File;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.converters.FileConverter;
+
+/**
+ * @author rnaegele
+ */
+public class ResultsGeneratorArgs {
+
+	@Parameter(names = "-o", description = "The directory the results directory is created in", converter = FileConverter.class)
+	File outputDir = new File("generated");
+
+	@Parameter(names = "-name", description = "The test name")
+	String testName = "synthetic";
+
+	@Parameter(names = "-drivers", description = "The number of load drivers, each writing a measuring log")
+	int driverCount = 4;
+
+	@Parameter(names = "-hosts", description = "The number of target hosts, each writing a perfMon log and a GC log")
+	int hostCount = 2;
+
+	@Parameter(names = "-operations", description = "The number of distinct operations")
+	int operationCount = 10;
+
+	@Parameter(names = "-uris", description = "The number of distinct URIs per operation")
+	int uriCount = 20;
+
+	@Parameter(names = "-duration", description = "The test duration in minutes")
+	int durationMinutes = 60;
+
+	@Parameter(names = "-rps", description = "The number of requests per second over all drivers")
+	int requestsPerSecond = 50;
+
+	@Parameter(names = "-errorRate", description = "The fraction of erroneous requests")
+	double errorRate = 0.01d;
+
+	@Parameter(names = "-median", description = "The median response time in milliseconds")
+	double responseTimeMedianMillis = 150d;
+
+	@Parameter(names = "-sigma", description = "The shape of the log-normal response time distribution, larger values mean longer tails")
+	double responseTimeSigma = 0.8d;
+
+	@Parameter(names = "-markers", description = "The number of markers, splitting the test into equal parts")
+	int markerCount = 2;
+
+	@Parameter(names = "-perfMonInterval", description = "The perfMon sampling interval in seconds")
+	int perfMonIntervalSeconds = 5;
+
+	@Parameter(names = "-zip", arity = 1, description = "Write zip archives instead of plain directories")
+	boolean zip = true;
+
+	@Parameter(names = "-seed", description = "The random seed, so the same arguments produce the same data")
+	long seed = 42L;
+}
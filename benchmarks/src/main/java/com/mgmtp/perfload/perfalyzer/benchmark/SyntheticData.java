@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.benchmark;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.commons.lang3.text.StrBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Creates reproducible synthetic log data for benchmarks. Response times are log-normally
+ * distributed.
+ *
+ * @author rnaegele
+ */
+public class SyntheticData {
+
+	public static final ZonedDateTime TEST_START = ZonedDateTime.of(2015, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+	/**
+	 * One perfMon type for each {@link com.mgmtp.perfload.perfalyzer.util.PerfMonTypeConfig}.
+	 */
+	public static final List<String> PERFMON_TYPES = ImmutableList.of("cpu_X", "mem", "swap", "io_0", "java_0",
+			"docker_cpu_X|app", "docker_mem|app", "tcp", "net");
+
+	private static final String[] ERROR_MESSAGES = { "Internal Server Error", "Read timed out",
+			"Connection refused", "Service Unavailable" };
+
+	private final Random random;
+	private final int operationCount;
+	private final int uriCount;
+	private final double errorRate;
+	private final long durationMillis;
+	private final double responseTimeMu;
+	private final double responseTimeSigma;
+
+	// perfMon reports some values as totals since system start
+	private long ioReadSectors;
+	private long ioWrittenSectors;
+	private long tcpInSegments;
+	private long tcpOutSegments;
+	private long tcpRetransmittedSegments;
+
+	/**
+	 * Creates an instance with a median response time of 150 ms.
+	 *
+	 * @param seed
+	 * 		the random seed, so data is the same for each benchmark run
+	 * @param operationCount
+	 * 		the number of distinct operations
+	 * @param uriCount
+	 * 		the number of distinct URIs per operation
+	 * @param errorRate
+	 * 		the fraction of erroneous requests
+	 * @param durationMillis
+	 * 		the test duration, i. e. the range of timestamps
+	 */
+	public SyntheticData(final long seed, final int operationCount, final int uriCount, final double errorRate,
+			final long durationMillis) {
+		this(seed, operationCount, uriCount, errorRate, durationMillis, 150d, 0.8d);
+	}
+
+	/**
+	 * @param seed
+	 * 		the random seed, so data is the same for each benchmark run
+	 * @param operationCount
+	 * 		the number of distinct operations
+	 * @param uriCount
+	 * 		the number of distinct URIs per operation
+	 * @param errorRate
+	 * 		the fraction of erroneous requests
+	 * @param durationMillis
+	 * 		the test duration, i. e. the range of timestamps
+	 * @param responseTimeMedianMillis
+	 * 		the median of the log-normally distributed response times
+	 * @param responseTimeSigma
+	 * 		the shape parameter of the log-normal distribution, larger values mean longer tails
+	 */
+	public SyntheticData(final long seed, final int operationCount, final int uriCount, final double errorRate,
+			final long durationMillis, final double responseTimeMedianMillis, final double responseTimeSigma) {
+		this.random = new Random(seed);
+		this.operationCount = operationCount;
+		this.uriCount = uriCount;
+		this.errorRate = errorRate;
+		this.durationMillis = durationMillis;
+		this.responseTimeMu = Math.log(responseTimeMedianMillis);
+		this.responseTimeSigma = responseTimeSigma;
+	}
+
+	/**
+	 * Creates lines in the raw format of perfLoad's measuring logs.
+	 *
+	 * @param count
+	 * 		the number of lines
+	 * @return the lines, ordered by timestamp
+	 */
+	public List<String> rawMeasuringLines(final int count) {
+		List<String> lines = newArrayListWithCapacity(count);
+		for (int i = 0; i < count; ++i) {
+			long offsetMillis = durationMillis * i / count;
+			lines.add(rawMeasuringLine(offsetMillis, "appserver01", 2000000000000000000L + i / 5, 3000000000000000000L + i));
+		}
+		return lines;
+	}
+
+	/**
+	 * Creates a line in the raw format of perfLoad's measuring logs for a random operation and URI.
+	 *
+	 * @param offsetMillis
+	 * 		the request's offset from the test start
+	 * @param target
+	 * 		the target host
+	 * @param executionId
+	 * 		the id of the operation's execution
+	 * @param requestId
+	 * 		the id of the request
+	 * @return the line
+	 */
+	public String rawMeasuringLine(final long offsetMillis, final String target, final long executionId,
+			final long requestId) {
+		int operation = random.nextInt(operationCount);
+		int uri = random.nextInt(uriCount);
+		// operations differ in speed, so their response time distributions can be told apart
+		long responseTime = Math.round(responseTime() * (1d + operation % 4 * 0.5d));
+		boolean error = random.nextDouble() < errorRate;
+
+		StrBuilder sb = new StrBuilder(300);
+		appendEscapedAndQuoted(sb, DELIMITER, "1", "1", "1");
+		appendEscapedAndQuoted(sb, DELIMITER, TEST_START.plusNanos(offsetMillis * 1000000L).toOffsetDateTime().toString());
+		appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(responseTime / 2), String.valueOf(responseTime));
+		appendEscapedAndQuoted(sb, DELIMITER, "operation" + operation, target, error ? "ERROR" : "SUCCESS");
+		appendEscapedAndQuoted(sb, DELIMITER, error ? ERROR_MESSAGES[random.nextInt(ERROR_MESSAGES.length)] : "", "GET");
+		appendEscapedAndQuoted(sb, DELIMITER, "http://localhost:8080/app/operation" + operation + "/resource" + uri + "?id=" + requestId);
+		appendEscapedAndQuoted(sb, DELIMITER, "resource" + uri, "/192.168.0.1", "client");
+		appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(executionId), String.valueOf(requestId));
+		return sb.toString();
+	}
+
+	/**
+	 * Creates lines in the format of normalized measuring files.
+	 *
+	 * @param count
+	 * 		the number of lines
+	 * @return the lines, ordered by timestamp
+	 */
+	public List<String> normalizedMeasuringLines(final int count) {
+		List<String> lines = newArrayListWithCapacity(count);
+		for (int i = 0; i < count; ++i) {
+			long offsetMillis = durationMillis * i / count;
+			int operation = random.nextInt(operationCount);
+			int uri = random.nextInt(uriCount);
+			long responseTime = responseTime();
+			boolean error = random.nextDouble() < errorRate;
+
+			StrBuilder sb = new StrBuilder(200);
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(offsetMillis));
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(responseTime / 2), String.valueOf(responseTime));
+			appendEscapedAndQuoted(sb, DELIMITER, "operation" + operation, "GET");
+			appendEscapedAndQuoted(sb, DELIMITER, "/app/operation" + operation + "/resource" + uri, "resource" + uri);
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "ERROR" : "SUCCESS", error ? "Internal Server Error" : "");
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(2000000000000000000L + i / 5),
+					String.valueOf(3000000000000000000L + i));
+			lines.add(sb.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * Creates lines in the format of perfMon logs, cycling through {@link #PERFMON_TYPES}.
+	 *
+	 * @param count
+	 * 		the number of lines
+	 * @return the lines, ordered by timestamp
+	 */
+	public List<String> rawPerfMonLines(final int count) {
+		List<String> lines = newArrayListWithCapacity(count);
+		for (int i = 0; i < count; ++i) {
+			long offsetMillis = i / PERFMON_TYPES.size() * 1000L;
+			lines.add(rawPerfMonLine(offsetMillis, PERFMON_TYPES.get(i % PERFMON_TYPES.size())));
+		}
+		return lines;
+	}
+
+	/**
+	 * Creates a line in the format of perfMon logs.
+	 *
+	 * @param offsetMillis
+	 * 		the offset from the test start
+	 * @param type
+	 * 		the perfMon type, one of {@link #PERFMON_TYPES}
+	 * @return the line
+	 */
+	public String rawPerfMonLine(final long offsetMillis, final String type) {
+		String timestamp = TEST_START.plusNanos(offsetMillis * 1000000L).toOffsetDateTime().toString();
+		String values;
+		switch (type) {
+			case "cpu_X":
+			case "docker_cpu_X|app":
+				double user = random.nextDouble() * 80d;
+				values = String.format(Locale.US, "%.1f\t%.1f\t0.0\t0.0\t0.0\t%.1f", user, user / 4d, 100d - user * 1.25d);
+				break;
+			case "mem":
+			case "docker_mem|app":
+				values = memoryValues(5);
+				break;
+			case "swap":
+				values = memoryValues(3);
+				break;
+			case "io_0":
+				ioReadSectors += random.nextInt(4096);
+				ioWrittenSectors += random.nextInt(4096);
+				values = "0\t0\t" + ioReadSectors + '\t' + ioWrittenSectors + "\t/dev/sda1\t/";
+				break;
+			case "java_0":
+				values = random.nextInt(100) + "\tperfload\t12:00\t647M\t22M\t6.9M\tS\t0:0\t" + random.nextInt(100) + "%\tjava";
+				break;
+			case "tcp":
+				tcpInSegments += 1000 + random.nextInt(1000);
+				tcpOutSegments += 1000 + random.nextInt(1000);
+				tcpRetransmittedSegments += random.nextInt(10);
+				values = "1000\t2000\t10\t20\t" + random.nextInt(500) + '\t' + tcpInSegments + '\t' + tcpOutSegments + '\t'
+						+ tcpRetransmittedSegments;
+				break;
+			case "net":
+				values = random.nextInt(500) + "\t" + random.nextInt(500);
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported perfMon type: " + type);
+		}
+		return timestamp + '\t' + type + '\t' + values;
+	}
+
+	private String memoryValues(final int count) {
+		StringBuilder sb = new StringBuilder(60);
+		for (int i = 0; i < count; ++i) {
+			if (i > 0) {
+				sb.append('\t');
+			}
+			sb.append(1048576 + random.nextInt(1048576));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return a log-normally distributed response time in milliseconds
+	 */
+	public long responseTime() {
+		return Math.max(1L, Math.round(Math.exp(responseTimeMu + responseTimeSigma * random.nextGaussian())));
+	}
+
+	/**
+	 * A channel that discards all data, so benchmarks do not measure disk I/O.
+	 */
+	public static class DiscardingChannel implements WritableByteChannel {
+		private long bytesWritten;
+
+		@Override
+		public int write(final ByteBuffer src) {
+			int remaining = src.remaining();
+			src.position(src.limit());
+			bytesWritten += remaining;
+			return remaining;
+		}
+
+		public long getBytesWritten() {
+			return bytesWritten;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+}
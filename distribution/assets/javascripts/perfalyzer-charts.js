@@ -0,0 +1,528 @@
+// Renders the interactive charts embedded into the report as JSON (see ChartDataSerializer).
+// Drag horizontally to zoom into a range, double-click to reset the zoom.
+(function () {
+	"use strict";
+
+	// JFreeChart's default series colors, so interactive charts look like the rendered images
+	var COLORS = ["#ff5555", "#5555ff", "#55ff55", "#ffff55", "#ff55ff", "#55ffff", "#ffafaf", "#808080",
+		"#c00000", "#0000c0", "#00c000", "#c0c000", "#c000c0", "#00c0c0", "#404040", "#ff4040", "#4040ff",
+		"#40ff40", "#ffff40", "#ff40ff", "#40ffff"];
+	var FONT = "11px sans-serif";
+	var LABEL_FONT = "12px sans-serif";
+	var MARKER_FONT = "italic bold 12px sans-serif";
+	var MARGIN_LEFT = 72;
+	var MARGIN_RIGHT = 20;
+	var MARGIN_TOP = 10;
+	var X_AXIS_HEIGHT = 38;
+	var PLOT_GAP = 10;
+	var LEGEND_ROW_HEIGHT = 18;
+	var LEGEND_SYMBOL_WIDTH = 16;
+
+	function log10(value) {
+		return Math.log(value) / Math.LN10;
+	}
+
+	function decode(series, name) {
+		var values = series["d" + name];
+		if (!values) {
+			return series[name];
+		}
+		var result = new Array(values.length);
+		var sum = 0;
+		for (var i = 0; i < values.length; i++) {
+			sum += values[i];
+			result[i] = sum;
+		}
+		return result;
+	}
+
+	function isValid(value, log) {
+		return value !== null && (!log || value > 0);
+	}
+
+	function niceNumber(range, round) {
+		var exponent = Math.floor(log10(range));
+		var fraction = range / Math.pow(10, exponent);
+		var niceFraction;
+		if (round) {
+			niceFraction = fraction < 1.5 ? 1 : fraction < 3 ? 2 : fraction < 7 ? 5 : 10;
+		} else {
+			niceFraction = fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10;
+		}
+		return niceFraction * Math.pow(10, exponent);
+	}
+
+	function formatNumber(value) {
+		return parseFloat(value.toPrecision(6)).toLocaleString();
+	}
+
+	/**
+	 * Maps values to pixels. For y-axes, pixelMin is the bottom of the plot area.
+	 */
+	function Scale(min, max, log, pixelMin, pixelMax) {
+		this.log = log;
+		this.min = log ? log10(min) : min;
+		this.max = log ? log10(max) : max;
+		if (!(this.max > this.min)) {
+			this.max = this.min + 1;
+		}
+		this.pixelMin = pixelMin;
+		this.pixelMax = pixelMax;
+	}
+
+	Scale.prototype.toPixel = function (value) {
+		var v = this.log ? log10(value) : value;
+		return this.pixelMin + (v - this.min) / (this.max - this.min) * (this.pixelMax - this.pixelMin);
+	};
+
+	Scale.prototype.fromPixel = function (pixel) {
+		var v = this.min + (pixel - this.pixelMin) / (this.pixelMax - this.pixelMin) * (this.max - this.min);
+		return this.log ? Math.pow(10, v) : v;
+	};
+
+	Scale.prototype.ticks = function (maxTicks) {
+		var ticks = [];
+		var tick;
+		if (this.log) {
+			for (tick = Math.ceil(this.min); tick <= Math.floor(this.max); tick++) {
+				ticks.push(Math.pow(10, tick));
+			}
+			return ticks;
+		}
+		var step = niceNumber(niceNumber(this.max - this.min, false) / (maxTicks - 1), true);
+		for (tick = Math.ceil(this.min / step) * step; tick <= this.max + step * 1e-9; tick += step) {
+			ticks.push(Math.abs(tick) < step * 1e-9 ? 0 : tick);
+		}
+		return ticks;
+	};
+
+	function Chart(container, data) {
+		var self = this;
+		var ratio = window.devicePixelRatio || 1;
+
+		this.data = data;
+		this.width = data.width;
+		this.height = data.height;
+		this.plots = data.plots.map(function (plot) {
+			return {
+				label: plot.label,
+				series: plot.series.map(function (series) {
+					return {name: series.name, x: decode(series, "x"), y: decode(series, "y")};
+				})
+			};
+		});
+		this.fullRange = data.range || this.xExtent();
+		this.range = this.fullRange;
+
+		container.style.position = "relative";
+		container.style.display = "inline-block";
+		container.style.maxWidth = "100%";
+		this.canvas = this.createCanvas(container, ratio);
+		this.overlay = this.createCanvas(container, ratio);
+		this.overlay.style.position = "absolute";
+		this.overlay.style.left = "0";
+		this.overlay.style.top = "0";
+		this.overlay.style.cursor = "crosshair";
+		this.ctx = this.canvas.getContext("2d");
+		this.overlayCtx = this.overlay.getContext("2d");
+		this.ctx.scale(ratio, ratio);
+		this.overlayCtx.scale(ratio, ratio);
+
+		this.legend = this.layoutLegend();
+		this.area = {
+			left: MARGIN_LEFT,
+			right: this.width - MARGIN_RIGHT,
+			top: MARGIN_TOP,
+			bottom: this.height - X_AXIS_HEIGHT - this.legend.height
+		};
+
+		this.overlay.addEventListener("mousedown", function (event) {
+			var pos = self.position(event);
+			if (self.inArea(pos)) {
+				self.dragStart = pos.x;
+				event.preventDefault();
+			}
+		});
+		this.overlay.addEventListener("mousemove", function (event) {
+			self.drawOverlay(self.position(event));
+		});
+		this.overlay.addEventListener("mouseup", function (event) {
+			var start = self.dragStart;
+			var end = Math.max(self.area.left, Math.min(self.area.right, self.position(event).x));
+			self.dragStart = undefined;
+			if (start !== undefined && Math.abs(end - start) > 4) {
+				self.range = [self.xScale.fromPixel(Math.min(start, end)), self.xScale.fromPixel(Math.max(start, end))];
+				self.draw();
+			}
+			self.drawOverlay(self.position(event));
+		});
+		this.overlay.addEventListener("mouseleave", function () {
+			self.dragStart = undefined;
+			self.drawOverlay(null);
+		});
+		this.overlay.addEventListener("dblclick", function () {
+			self.range = self.fullRange;
+			self.draw();
+		});
+
+		this.draw();
+	}
+
+	Chart.prototype.createCanvas = function (container, ratio) {
+		var canvas = document.createElement("canvas");
+		canvas.width = this.width * ratio;
+		canvas.height = this.height * ratio;
+		canvas.style.width = this.width + "px";
+		canvas.style.maxWidth = "100%";
+		canvas.style.display = "block";
+		container.appendChild(canvas);
+		return canvas;
+	};
+
+	Chart.prototype.position = function (event) {
+		var rect = this.overlay.getBoundingClientRect();
+		var scale = this.width / rect.width;
+		return {x: (event.clientX - rect.left) * scale, y: (event.clientY - rect.top) * scale};
+	};
+
+	Chart.prototype.inArea = function (pos) {
+		return pos.x >= this.area.left && pos.x <= this.area.right && pos.y >= this.area.top && pos.y <= this.area.bottom;
+	};
+
+	Chart.prototype.xExtent = function () {
+		var min = Infinity;
+		var max = -Infinity;
+		var log = this.data.xLog;
+		this.plots.forEach(function (plot) {
+			plot.series.forEach(function (series) {
+				series.x.forEach(function (x) {
+					if (isValid(x, log)) {
+						min = Math.min(min, x);
+						max = Math.max(max, x);
+					}
+				});
+			});
+		});
+		return min <= max ? [min, max] : [log ? 1 : 0, log ? 10 : 1];
+	};
+
+	Chart.prototype.yExtent = function (plot) {
+		var min = Infinity;
+		var max = -Infinity;
+		var log = this.data.yLog;
+		var range = this.range;
+		plot.series.forEach(function (series) {
+			for (var i = 0; i < series.x.length; i++) {
+				var x = series.x[i];
+				var y = series.y[i];
+				if (x >= range[0] && x <= range[1] && isValid(y, log)) {
+					min = Math.min(min, y);
+					max = Math.max(max, y);
+				}
+			}
+		});
+		if (min > max) {
+			return log ? [1, 10] : [0, 1];
+		}
+		if (log) {
+			return [min / 1.5, max * 1.5];
+		}
+		// like JFreeChart, linear axes include zero
+		min = Math.min(0, min);
+		max = Math.max(0, max);
+		var margin = (max - min) * 0.05 || 1;
+		return [min < 0 ? min - margin : min, max > 0 ? max + margin : max];
+	};
+
+	Chart.prototype.layoutLegend = function () {
+		var ctx = this.ctx;
+		var maxWidth = this.width - MARGIN_LEFT - MARGIN_RIGHT;
+		var items = [];
+		var seen = {};
+		var rows = 1;
+		var x = 0;
+
+		ctx.font = FONT;
+		this.plots.forEach(function (plot) {
+			plot.series.forEach(function (series, index) {
+				var color = COLORS[index % COLORS.length];
+				var key = series.name + "\u0000" + color;
+				if (seen[key]) {
+					return;
+				}
+				seen[key] = true;
+
+				var width = LEGEND_SYMBOL_WIDTH + 4 + ctx.measureText(series.name).width + 12;
+				if (x > 0 && x + width > maxWidth) {
+					rows++;
+					x = 0;
+				}
+				items.push({name: series.name, color: color, x: x, row: rows - 1});
+				x += width;
+			});
+		});
+		return {items: items, height: items.length ? rows * LEGEND_ROW_HEIGHT + 6 : 0};
+	};
+
+	Chart.prototype.plotBounds = function (plotIndex) {
+		var count = this.plots.length;
+		var plotHeight = (this.area.bottom - this.area.top - PLOT_GAP * (count - 1)) / count;
+		var top = this.area.top + plotIndex * (plotHeight + PLOT_GAP);
+		return {top: top, bottom: top + plotHeight};
+	};
+
+	Chart.prototype.draw = function () {
+		var self = this;
+		var ctx = this.ctx;
+		var area = this.area;
+		var data = this.data;
+
+		ctx.clearRect(0, 0, this.width, this.height);
+		ctx.fillStyle = "#ffffff";
+		ctx.fillRect(0, 0, this.width, this.height);
+
+		var xScale = new Scale(this.range[0], this.range[1], data.xLog, area.left, area.right);
+		var xTicks = xScale.ticks(Math.max(2, Math.floor((area.right - area.left) / 80)));
+		this.xScale = xScale;
+		this.yScales = [];
+
+		this.plots.forEach(function (plot, plotIndex) {
+			var bounds = self.plotBounds(plotIndex);
+			var yExtent = self.yExtent(plot);
+			var yScale = new Scale(yExtent[0], yExtent[1], data.yLog, bounds.bottom, bounds.top);
+			var yTicks = yScale.ticks(Math.max(2, Math.floor((bounds.bottom - bounds.top) / 40)));
+			self.yScales.push(yScale);
+
+			ctx.save();
+			ctx.fillStyle = "#c8c8c8";
+			ctx.fillRect(area.left, bounds.top, area.right - area.left, bounds.bottom - bounds.top);
+			ctx.beginPath();
+			ctx.rect(area.left, bounds.top, area.right - area.left, bounds.bottom - bounds.top);
+			ctx.clip();
+
+			// markers
+			(data.markers || []).forEach(function (marker) {
+				var left = xScale.toPixel(marker.left);
+				var right = xScale.toPixel(marker.right);
+				ctx.fillStyle = "rgba(255, 255, 255, 0.35)";
+				ctx.fillRect(left, bounds.top, right - left, bounds.bottom - bounds.top);
+				ctx.strokeStyle = "rgba(0, 0, 0, 0.6)";
+				ctx.lineWidth = 1;
+				ctx.strokeRect(left, bounds.top, right - left, bounds.bottom - bounds.top);
+				if (plotIndex === 0) {
+					ctx.fillStyle = "#000000";
+					ctx.font = MARKER_FONT;
+					ctx.textAlign = "center";
+					ctx.textBaseline = "top";
+					ctx.fillText(marker.name, (left + right) / 2, bounds.top + 8);
+				}
+			});
+
+			// grid lines
+			ctx.strokeStyle = "#ffffff";
+			ctx.lineWidth = 0.5;
+			ctx.beginPath();
+			xTicks.forEach(function (tick) {
+				var x = Math.round(xScale.toPixel(tick)) + 0.5;
+				ctx.moveTo(x, bounds.top);
+				ctx.lineTo(x, bounds.bottom);
+			});
+			yTicks.forEach(function (tick) {
+				var y = Math.round(yScale.toPixel(tick)) + 0.5;
+				ctx.moveTo(area.left, y);
+				ctx.lineTo(area.right, y);
+			});
+			ctx.stroke();
+
+			plot.series.forEach(function (series, index) {
+				self.drawSeries(series, COLORS[index % COLORS.length], xScale, yScale);
+			});
+			ctx.restore();
+
+			ctx.strokeStyle = "#dddddd";
+			ctx.lineWidth = 1;
+			ctx.strokeRect(area.left + 0.5, bounds.top + 0.5, area.right - area.left - 1, bounds.bottom - bounds.top - 1);
+
+			// y-axis
+			ctx.fillStyle = "#444444";
+			ctx.font = FONT;
+			ctx.textAlign = "right";
+			ctx.textBaseline = "middle";
+			yTicks.forEach(function (tick) {
+				ctx.fillText(formatNumber(tick), area.left - 4, yScale.toPixel(tick));
+			});
+			ctx.save();
+			ctx.font = LABEL_FONT;
+			ctx.textAlign = "center";
+			ctx.textBaseline = "top";
+			ctx.translate(4, (bounds.top + bounds.bottom) / 2);
+			ctx.rotate(-Math.PI / 2);
+			ctx.fillText(plot.label, 0, 0);
+			ctx.restore();
+		});
+
+		// x-axis
+		ctx.fillStyle = "#444444";
+		ctx.font = FONT;
+		ctx.textAlign = "center";
+		ctx.textBaseline = "top";
+		xTicks.forEach(function (tick) {
+			ctx.fillText(formatNumber(tick), xScale.toPixel(tick), area.bottom + 4);
+		});
+		ctx.font = LABEL_FONT;
+		ctx.fillText(data.xLabel, (area.left + area.right) / 2, area.bottom + 20);
+
+		this.drawLegend();
+	};
+
+	Chart.prototype.drawSeries = function (series, color, xScale, yScale) {
+		var ctx = this.ctx;
+		var renderer = this.data.renderer;
+		var xLog = this.data.xLog;
+		var yLog = this.data.yLog;
+		var lines = renderer !== "SHAPES";
+		var shapes = renderer !== "LINES";
+		var drawing = false;
+		var i;
+
+		ctx.strokeStyle = color;
+		ctx.fillStyle = color;
+		ctx.lineWidth = 1.5;
+		ctx.lineJoin = "bevel";
+
+		if (lines) {
+			ctx.beginPath();
+			for (i = 0; i < series.x.length; i++) {
+				if (!isValid(series.x[i], xLog) || !isValid(series.y[i], yLog)) {
+					drawing = false;
+					continue;
+				}
+				var x = xScale.toPixel(series.x[i]);
+				var y = yScale.toPixel(series.y[i]);
+				if (drawing) {
+					ctx.lineTo(x, y);
+				} else {
+					ctx.moveTo(x, y);
+					drawing = true;
+				}
+			}
+			ctx.stroke();
+		}
+
+		if (shapes) {
+			for (i = 0; i < series.x.length; i++) {
+				if (isValid(series.x[i], xLog) && isValid(series.y[i], yLog)) {
+					ctx.fillRect(xScale.toPixel(series.x[i]) - 2, yScale.toPixel(series.y[i]) - 2, 4, 4);
+				}
+			}
+		}
+	};
+
+	Chart.prototype.drawLegend = function () {
+		var ctx = this.ctx;
+		var top = this.height - this.legend.height + 3;
+		var left = this.area.left;
+
+		ctx.font = FONT;
+		ctx.textAlign = "left";
+		ctx.textBaseline = "middle";
+		this.legend.items.forEach(function (item) {
+			var y = top + item.row * LEGEND_ROW_HEIGHT + LEGEND_ROW_HEIGHT / 2;
+			ctx.fillStyle = item.color;
+			ctx.fillRect(left + item.x, y - 2, LEGEND_SYMBOL_WIDTH, 4);
+			ctx.fillStyle = "#444444";
+			ctx.fillText(item.name, left + item.x + LEGEND_SYMBOL_WIDTH + 4, y);
+		});
+	};
+
+	Chart.prototype.drawOverlay = function (pos) {
+		var ctx = this.overlayCtx;
+		var area = this.area;
+
+		ctx.clearRect(0, 0, this.width, this.height);
+		if (!pos || !this.inArea(pos)) {
+			return;
+		}
+
+		if (this.dragStart !== undefined) {
+			ctx.fillStyle = "rgba(0, 0, 255, 0.15)";
+			ctx.fillRect(Math.min(this.dragStart, pos.x), area.top, Math.abs(pos.x - this.dragStart), area.bottom - area.top);
+			return;
+		}
+
+		ctx.strokeStyle = "rgba(0, 0, 0, 0.5)";
+		ctx.lineWidth = 1;
+		ctx.beginPath();
+		ctx.moveTo(Math.round(pos.x) + 0.5, area.top);
+		ctx.lineTo(Math.round(pos.x) + 0.5, area.bottom);
+		ctx.stroke();
+
+		for (var plotIndex = 0; plotIndex < this.plots.length; plotIndex++) {
+			var bounds = this.plotBounds(plotIndex);
+			if (pos.y >= bounds.top && pos.y <= bounds.bottom) {
+				this.drawValues(ctx, this.plots[plotIndex], this.yScales[plotIndex], pos);
+			}
+		}
+	};
+
+	Chart.prototype.drawValues = function (ctx, plot, yScale, pos) {
+		var x = this.xScale.fromPixel(pos.x);
+		var lines = [this.data.xLabel + ": " + formatNumber(x)];
+		var colors = ["#000000"];
+		var yLog = this.data.yLog;
+
+		plot.series.forEach(function (series, index) {
+			var nearest = -1;
+			var distance = Infinity;
+			for (var i = 0; i < series.x.length; i++) {
+				var d = Math.abs(series.x[i] - x);
+				if (d < distance && isValid(series.y[i], yLog)) {
+					distance = d;
+					nearest = i;
+				}
+			}
+			if (nearest >= 0) {
+				lines.push(series.name + ": " + formatNumber(series.y[nearest]));
+				colors.push(COLORS[index % COLORS.length]);
+				ctx.fillStyle = COLORS[index % COLORS.length];
+				ctx.beginPath();
+				ctx.arc(this.xScale.toPixel(series.x[nearest]), yScale.toPixel(series.y[nearest]), 3.5, 0, 2 * Math.PI);
+				ctx.fill();
+			}
+		}, this);
+
+		ctx.font = FONT;
+		var width = 0;
+		lines.forEach(function (line) {
+			width = Math.max(width, ctx.measureText(line).width);
+		});
+		var boxWidth = width + 24;
+		var boxHeight = lines.length * 15 + 6;
+		var left = pos.x + 12 + boxWidth > this.area.right ? pos.x - 12 - boxWidth : pos.x + 12;
+		var top = Math.max(this.area.top, Math.min(pos.y - boxHeight / 2, this.area.bottom - boxHeight));
+
+		ctx.fillStyle = "rgba(255, 255, 255, 0.9)";
+		ctx.fillRect(left, top, boxWidth, boxHeight);
+		ctx.strokeStyle = "#999999";
+		ctx.strokeRect(left + 0.5, top + 0.5, boxWidth, boxHeight);
+		ctx.textAlign = "left";
+		ctx.textBaseline = "middle";
+		lines.forEach(function (line, index) {
+			var y = top + 3 + index * 15 + 7.5;
+			if (index > 0) {
+				ctx.fillStyle = colors[index];
+				ctx.fillRect(left + 6, y - 4, 8, 8);
+			}
+			ctx.fillStyle = "#222222";
+			ctx.fillText(line, left + 18, y);
+		});
+	};
+
+	var containers = document.querySelectorAll("div.perf-chart");
+	for (var i = 0; i < containers.length; i++) {
+		var script = containers[i].querySelector("script[type='application/json']");
+		if (script) {
+			new Chart(containers[i], JSON.parse(script.textContent));
+		}
+	}
+})();
@@ -7,6 +7,42 @@ warmUpSeconds = 0
 reportsBaseUrl = null as String
 maxHistoryItems = 20
 
+/* If true, charts are embedded into the report as data and rendered in the browser, where they can be
+ * zoomed. No plot images are rendered in this case, which considerably speeds up report preparation. */
+interactiveCharts = false
+
+/* If true, the report gets an additional tab showing perfAlyzer's own performance per phase and for
+ * the slowest tasks. Metrics are always written to 'analysis-performance.json' in the report directory. */
+analysisPerformanceTab = false
+
+/* The heap in MiB that raw response times may occupy during binning. When it is exceeded, sorted runs of
+ * response times are spilled to temporary files and quantiles are computed from these. It is part of the
+ * task memory budget below and defaults to half of it, which is also the maximum. */
+//binningMemoryBudgetMb = 256
+
+/* The share of the maximum heap in percent that analysis tasks may use in total. The budget for raw response
+ * times is taken from it, the rest is used by concurrently running tasks according to their estimated memory
+ * needs. Memory-intensive tasks that do not fit are deferred while cheap tasks go on. */
+taskMemoryBudgetPercent = 60
+
+/* Compression of normalized files: 'none', 'gzip', or 'lz4'. LZ4 considerably reduces disk I/O at little CPU cost.
+ * Compressed files are detected and decompressed automatically when read, as are '.gz' and '.lz4' raw logs. */
+intermediateCompression = 'none'
+
+/* How files that are passed on unchanged, e.g. GC logs, plots and report assets, are staged: 'hard_link',
+ * 'symbolic_link', or 'copy'. Files are copied if they cannot be linked, e.g. across file systems. Symbolic links
+ * become invalid if the intermediate directories are deleted. */
+fileStaging = 'hard_link'
+
+/* Trend analysis over the complete test history. For each operation, median execution times and
+ * request rates are compared to the rolling median of the preceding 'windowSize' tests. Deviations
+ * of more than 'thresholdPercent' are flagged. */
+historyAnalysis {
+	enabled = true
+	windowSize = 10
+	thresholdPercent = 10
+}
+
 email {
 	enabled = false
 	from = null
@@ -61,6 +97,11 @@ formats {
 		unitX = 'axis.label.timeMillis'
 		unitY = ['axis.label.numCalls']
 	}
+	measuringPercentiles {
+		pattern = ~/\[measuring\]\[[^]]+\]\[percentiles(?:ByUri)?\].*/
+		unitX = 'axis.label.timeSeconds'
+		unitY = ['axis.label.timeMillis']
+	}
 	measuringExecutions {
 		pattern = ~/\[measuring\]\[executions\].*/
 		unitX = 'axis.label.timeSeconds'
@@ -86,6 +127,11 @@ formats {
 		unitX = 'axis.label.timeSeconds'
 		unitY = ['axis.label.requestsPerSecond']
 	}
+	measuringTrend {
+		pattern = ~/\[measuring\]\[[^]]+\]\[trend\].*/
+		unitX = 'axis.label.testRun'
+		unitY = ['axis.label.medianExecutionTimeSeconds', 'axis.label.medianRequestsPerMinute']
+	}
 	measuringErrors {
 		pattern = ~/\[measuring\]\[errors\].*/
 		unitX = 'axis.label.timeSeconds'
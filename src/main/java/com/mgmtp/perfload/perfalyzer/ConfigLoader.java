@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+import groovy.util.ConfigSlurper;
+
+/**
+ * Loads the perfAlyzer config file. Evaluating the Groovy config requires the Groovy runtime and
+ * accounts for a noticeable part of the startup time. Thus, the resolved config is written to a
+ * snapshot file next to the config file, which is keyed by the hash of the config file and loaded
+ * without Groovy as long as the config file remains unchanged. The resolved config consists of
+ * nested maps and lists of strings, numbers, booleans, and compiled patterns.
+ *
+ * @author rnaegele
+ */
+final class ConfigLoader {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ConfigLoader.class);
+
+	// must be incremented if the structure of the resolved config changes
+	private static final int SNAPSHOT_VERSION = 1;
+
+	private ConfigLoader() {
+		// don't allow instantiation
+	}
+
+	/**
+	 * Loads the specified config file, from its snapshot if the config file is unchanged.
+	 *
+	 * @param configFile
+	 * 		the Groovy config file
+	 * @return the resolved config; must not be modified, because it may be shared
+	 */
+	static Map<String, Object> load(final File configFile) throws IOException {
+		String key = SNAPSHOT_VERSION + ":" + Hashing.sha256().hashBytes(Files.readAllBytes(configFile.toPath()));
+		File snapshotFile = snapshotFile(configFile);
+
+		Map<String, Object> config = readSnapshot(snapshotFile, key);
+		if (config != null) {
+			LOG.info("Loaded config snapshot '{}'", snapshotFile);
+			return config;
+		}
+
+		LOG.info("Evaluating config file '{}'...", configFile);
+		config = GroovyConfigEvaluator.evaluate(configFile);
+		writeSnapshot(snapshotFile, key, config);
+		return config;
+	}
+
+	static File snapshotFile(final File configFile) {
+		return new File(configFile.getAbsoluteFile().getParentFile(), '.' + configFile.getName() + ".snapshot");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> readSnapshot(final File snapshotFile, final String key) {
+		if (!snapshotFile.isFile()) {
+			return null;
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile.toPath())))) {
+			if (!key.equals(ois.readUTF())) {
+				LOG.info("Config file has changed. Config snapshot '{}' is outdated.", snapshotFile);
+				return null;
+			}
+			return (Map<String, Object>) ois.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException ex) {
+			LOG.warn("Could not read config snapshot '" + snapshotFile + "'. Ignoring it.", ex);
+			return null;
+		}
+	}
+
+	private static void writeSnapshot(final File snapshotFile, final String key, final Map<String, Object> config) {
+		Path tmpFile = null;
+		try {
+			// concurrently started processes must not see incomplete snapshots
+			tmpFile = Files.createTempFile(snapshotFile.getParentFile().toPath(), snapshotFile.getName(), ".tmp");
+			try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+				oos.writeUTF(key);
+				oos.writeObject(config);
+			}
+			Files.move(tmpFile, snapshotFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+			LOG.info("Config snapshot written to '{}'", snapshotFile);
+		} catch (IOException ex) {
+			// e. g. if the config directory is read-only or the config contains values that cannot be serialized
+			LOG.warn("Could not write config snapshot '" + snapshotFile + "'.", ex);
+			if (tmpFile != null) {
+				tmpFile.toFile().delete();
+			}
+		}
+	}
+
+	/**
+	 * Flattens the specified config map to properties, the keys of nested maps being joined with
+	 * dots.
+	 *
+	 * @param config
+	 * 		the config map
+	 * @param prefix
+	 * 		the prefix for the keys, may be {@code null}
+	 * @return the properties
+	 */
+	static Properties toProperties(final Map<String, Object> config, final String prefix) {
+		Properties properties = new Properties();
+		addProperties(properties, config, prefix);
+		return properties;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void addProperties(final Properties properties, final Map<String, Object> config, final String prefix) {
+		for (Entry<String, Object> entry : config.entrySet()) {
+			String key = prefix != null ? prefix + '.' + entry.getKey() : entry.getKey();
+			Object value = entry.getValue();
+			if (value instanceof Map<?, ?>) {
+				addProperties(properties, (Map<String, Object>) value, key);
+			} else if (value != null) {
+				properties.setProperty(key, value.toString());
+			}
+		}
+	}
+
+	/**
+	 * Copies Groovy's config objects to plain collections, which can be serialized.
+	 */
+	static Object resolve(final Object value) {
+		if (value instanceof Map<?, ?>) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			Map<String, Object> result = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+			for (Entry<?, ?> entry : map.entrySet()) {
+				result.put(String.valueOf(entry.getKey()), resolve(entry.getValue()));
+			}
+			return result;
+		}
+		if (value instanceof Collection<?>) {
+			Collection<?> collection = (Collection<?>) value;
+			List<Object> result = new ArrayList<>(collection.size());
+			for (Object element : collection) {
+				result.add(resolve(element));
+			}
+			return result;
+		}
+		if (value instanceof CharSequence) {
+			// GStrings
+			return value.toString();
+		}
+		return value;
+	}
+
+	/**
+	 * Separate class, so the Groovy runtime is only loaded if the config file actually needs to be
+	 * evaluated.
+	 */
+	private static final class GroovyConfigEvaluator {
+
+		@SuppressWarnings("unchecked")
+		static Map<String, Object> evaluate(final File configFile) throws IOException {
+			return (Map<String, Object>) resolve(new ConfigSlurper().parse(configFile.toURI().toURL()));
+		}
+	}
+}
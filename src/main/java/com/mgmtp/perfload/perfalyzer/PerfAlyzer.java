@@ -16,14 +16,11 @@
 package com.mgmtp.perfload.perfalyzer;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listAllPerfAlyzerFiles;
 import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listPerfAlyzerFiles;
 import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.Files.newByteChannel;
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.WRITE;
-import static org.apache.commons.io.FileUtils.copyDirectoryToDirectory;
 import static org.apache.commons.io.FileUtils.deleteDirectory;
 
 import com.beust.jcommander.JCommander;
@@ -38,18 +35,34 @@ import com.mgmtp.perfload.perfalyzer.annotations.ReportDir;
 import com.mgmtp.perfload.perfalyzer.annotations.ReportPreparationDir;
 import com.mgmtp.perfload.perfalyzer.annotations.UnzippedDir;
 import com.mgmtp.perfload.perfalyzer.reporting.ReportCreator;
+import com.mgmtp.perfload.perfalyzer.reporting.ReportServer;
 import com.mgmtp.perfload.perfalyzer.reporting.email.EmailReporter;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.FileCatalog;
+import com.mgmtp.perfload.perfalyzer.util.FileStaging;
+import com.mgmtp.perfload.perfalyzer.util.LogTailer;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.util.PipelineMetrics;
+import com.mgmtp.perfload.perfalyzer.util.PipelineMetrics.PhaseMetrics;
 import com.mgmtp.perfload.perfalyzer.workflow.WorkflowExecutor;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.text.StrTokenizer;
@@ -71,6 +84,11 @@ public class PerfAlyzer {
 
 	private static final Logger LOG = LoggerFactory.getLogger(PerfAlyzer.class);
 
+	// limits the time a refresh takes when catching up with a large backlog
+	private static final int WATCH_MODE_MAX_BYTES_PER_REFRESH = 64 * 1024 * 1024;
+
+	private static final int ANALYSIS_PERFORMANCE_MAX_TASKS = 50;
+
 	private final boolean doReportPreparation;
 	private final boolean doNormalization;
 	private final boolean doBinning;
@@ -84,7 +102,15 @@ public class PerfAlyzer {
 	private final WorkflowExecutor workflowExecutor;
 	private final ReportCreator reportCreator;
 	private final EmailReporter emailReporter;
+	private final ReportServer reportServer;
 	private final List<Marker> markers;
+	private final PipelineMetrics pipelineMetrics;
+	private final boolean analysisPerformanceTab;
+	private final CompressionCodec intermediateCompression;
+	private final FileStaging fileStaging;
+	private final ShardCoordinator shardCoordinator;
+
+	private final Map<String, Long> phaseTimings = new LinkedHashMap<>();
 
 	public PerfAlyzer(@UnzippedDir final File unzippedDir,
 			@BinnedDir final File binningDir,
@@ -97,7 +123,13 @@ public class PerfAlyzer {
 			final WorkflowExecutor workflowExecutor,
 			final ReportCreator reportCreator,
 			@Nullable final EmailReporter emailReporter,
-			final List<Marker> markers) {
+			@Nullable final ReportServer reportServer,
+			final List<Marker> markers,
+			final PipelineMetrics pipelineMetrics,
+			final boolean analysisPerformanceTab,
+			final CompressionCodec intermediateCompression,
+			final FileStaging fileStaging,
+			@Nullable final ShardCoordinator shardCoordinator) {
 
 		this.unzippedDir = unzippedDir;
 		this.binnedDir = binningDir;
@@ -112,11 +144,26 @@ public class PerfAlyzer {
 		this.workflowExecutor = workflowExecutor;
 		this.reportCreator = reportCreator;
 		this.emailReporter = emailReporter;
+		this.reportServer = reportServer;
 
 		this.markers = markers;
+		this.pipelineMetrics = pipelineMetrics;
+		this.analysisPerformanceTab = analysisPerformanceTab;
+		this.intermediateCompression = intermediateCompression;
+		this.fileStaging = fileStaging;
+		this.shardCoordinator = shardCoordinator;
 	}
 
 	public static void main(final String[] args) {
+		if (args.length > 0 && "batch".equals(args[0])) {
+			PerfAlyzerBatch.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && "daemon".equals(args[0])) {
+			PerfAlyzerDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
 		JCommander jCmd = null;
 		try {
 			Stopwatch stopwatch = Stopwatch.createStarted();
@@ -133,7 +180,11 @@ public class PerfAlyzer {
 
 			PerfAlyzerFactory perfAlyzerFactory = new PerfAlyzerFactory(perfAlyzerArgs);
 			PerfAlyzer perfAlyzer = perfAlyzerFactory.getPerfAlyzer();
-			perfAlyzer.runPerfAlyzer();
+			if (perfAlyzerArgs.watchIntervalMinutes > 0) {
+				perfAlyzer.runWatchMode(perfAlyzerArgs.watchIntervalMinutes);
+			} else {
+				perfAlyzer.runPerfAlyzer();
+			}
 
 			ExecutorService executorService = perfAlyzerFactory.getExecutorService();
 			executorService.shutdownNow();
@@ -156,9 +207,94 @@ public class PerfAlyzer {
 	}
 
 	public void runPerfAlyzer() throws IOException {
+		phaseTimings.clear();
+		pipelineMetrics.reset();
+
+		try {
+			pipelineMetrics.startPhase("cleanup");
+			checkDirs();
+			endPhase();
+
+			executeWorkflows();
+
+			if (doReportPreparation && analysisPerformanceTab) {
+				// the report phase itself cannot be included
+				pipelineMetrics.writeReportFiles(reportPreparationDir, ANALYSIS_PERFORMANCE_MAX_TASKS);
+			}
+
+			pipelineMetrics.startPhase("report");
+			createReport();
+			endPhase();
+		} finally {
+			// catalogs would otherwise be stale when the test is analyzed again in the same JVM
+			for (File dir : new File[] { unzippedDir, normalizedDir, binnedDir, reportPreparationDir }) {
+				FileCatalog.invalidate(dir);
+			}
+		}
+
+		File metricsFile = new File(reportDir, "analysis-performance.json");
+		pipelineMetrics.writeJson(metricsFile);
+		LOG.info("Analysis performance metrics written to '{}'", metricsFile);
+	}
+
+	/**
+	 * @return the durations of the phases of the last run in milliseconds, in order of execution
+	 */
+	public Map<String, Long> getPhaseTimings() {
+		return Collections.unmodifiableMap(phaseTimings);
+	}
+
+	private void endPhase() {
+		PhaseMetrics phase = pipelineMetrics.endPhase();
+		phaseTimings.put(phase.getName(), phase.getWallMillis());
+		LOG.info("Phase '{}' finished in {} ms (GC: {} ms, peak heap: {} MiB)", phase.getName(), phase.getWallMillis(),
+				phase.getGcMillis(), phase.getPeakHeapBytes() / (1024L * 1024L));
+	}
+
+	/**
+	 * Processes logs while the test is running. Lines appended to measuring logs and perfMon logs
+	 * are normalized and binned incrementally, and the report is refreshed in the specified
+	 * interval. Plots whose data has not changed are not rendered again. Markers and GC logs are
+	 * not considered. Runs until the thread is interrupted.
+	 *
+	 * @param refreshIntervalMinutes
+	 * 		the refresh interval in minutes
+	 */
+	public void runWatchMode(final int refreshIntervalMinutes) throws IOException {
+		checkState(doNormalization && doBinning && doReportPreparation, "Watch mode requires all phases to be enabled");
 		checkDirs();
-		executeWorkflows();
-		createReport();
+
+		LogTailer tailer = new LogTailer(WATCH_MODE_MAX_BYTES_PER_REFRESH);
+		long intervalMillis = TimeUnit.MINUTES.toMillis(refreshIntervalMinutes);
+
+		LOG.info("Watching '{}', refreshing report every {} minute(s)...", unzippedDir, refreshIntervalMinutes);
+		while (!Thread.currentThread().isInterrupted()) {
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			// metrics of report preparation tasks would otherwise accumulate
+			pipelineMetrics.reset();
+
+			Set<File> changedFiles = workflowExecutor.executeIncrementalNormalizationTasks(unzippedDir, normalizedDir, tailer);
+			if (changedFiles.isEmpty()) {
+				LOG.info("No new data.");
+			} else {
+				workflowExecutor.executeIncrementalBinningTasks(normalizedDir, binnedDir, changedFiles);
+				workflowExecutor.executeReportPreparationTasks(binnedDir, reportPreparationDir);
+
+				LOG.info("Refreshing report...");
+				reportCreator.createReport(listAllPerfAlyzerFiles(reportPreparationDir));
+				fileStaging.stageDirectoryToDirectory(new File("assets"), reportDir);
+				LOG.info("Report refreshed in {} ({} changed files)", stopwatch, changedFiles.size());
+			}
+
+			long sleepMillis = intervalMillis - stopwatch.elapsed(TimeUnit.MILLISECONDS);
+			if (sleepMillis > 0L) {
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
 	}
 
 	private void checkDirs() throws IOException {
@@ -206,26 +342,41 @@ public class PerfAlyzer {
 		}
 	}
 
-	private void executeWorkflows() {
+	private void executeWorkflows() throws IOException {
 		LOG.info("Executing workflows...");
 
 		if (doNormalization) {
+			pipelineMetrics.startPhase("normalization");
 			workflowExecutor.executeNormalizationTasks(unzippedDir, normalizedDir);
+			endPhase();
+
+			pipelineMetrics.startPhase("markers");
 			extractFilesForMarkers();
+			endPhase();
 		}
 
 		if (doBinning) {
-			workflowExecutor.executeBinningTasks(normalizedDir, binnedDir);
+			pipelineMetrics.startPhase("binning");
+			if (shardCoordinator != null) {
+				shardCoordinator.executeBinningTasks(normalizedDir, binnedDir);
+			} else {
+				workflowExecutor.executeBinningTasks(normalizedDir, binnedDir);
+			}
+			endPhase();
 		}
 
 		if (doReportPreparation) {
+			pipelineMetrics.startPhase("reportPreparation");
 			workflowExecutor.executeReportPreparationTasks(binnedDir,
 					reportPreparationDir);
+			endPhase();
 		}
 	}
 
 	private void extractFilesForMarkers() {
 		if (!markers.isEmpty()) {
+			// marker files are added to the catalog, which is then used for binning
+			FileCatalog catalog = FileCatalog.open(normalizedDir);
 			listPerfAlyzerFiles(normalizedDir)
 					.stream()
 					.filter(perfAlyzerFile -> {
@@ -233,21 +384,26 @@ public class PerfAlyzer {
 						// markers later.
 						// Load profiles contains the markers themselves and thus need
 						// to be filtered out as well.
+						// PerfMon data of markers is sliced from the bins of the whole test.
 						String fileName = perfAlyzerFile.getFile().getName();
 						return !fileName.contains("gclog") &
-								!fileName.contains("[loadprofile]");
+								!fileName.contains("[loadprofile]") &
+								!fileName.startsWith("[perfmon]");
 					})
 					.forEach(perfAlyzerFile -> markers.forEach(marker -> {
 						PerfAlyzerFile markerFile = perfAlyzerFile.copy();
 						markerFile.setMarker(marker.getName());
 						Path destPath = normalizedDir.toPath().resolve(markerFile.getFile().toPath());
 
-						try (WritableByteChannel destChannel = newByteChannel(destPath, CREATE, WRITE)) {
+						try (WritableByteChannel destChannel = Channels.newChannel(
+								intermediateCompression.wrap(new FileOutputStream(destPath.toFile())))) {
 							Path srcPath = normalizedDir.toPath().resolve(
 									perfAlyzerFile.getFile().toPath());
 							StrTokenizer tokenizer = StrTokenizer.getCSVInstance();
 							tokenizer.setDelimiterChar(';');
-							try (Stream<String> lines = Files.lines(srcPath, UTF_8);) {
+							try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+									CompressionCodec.openInputStream(srcPath.toFile()), UTF_8));
+									Stream<String> lines = reader.lines()) {
 								lines
 										.filter(line -> {
 											try {
@@ -267,20 +423,30 @@ public class PerfAlyzer {
 						} catch (IOException e) {
 							throw new UncheckedIOException(e);
 						}
+						catalog.add(markerFile.getFile());
 					}));
 		}
 	}
 
 	private void createReport() throws IOException {
 		LOG.info("Writing report...");
-		reportCreator.createReport(listAllPerfAlyzerFiles(reportPreparationDir));
+		List<PerfAlyzerFile> files = newArrayList(listAllPerfAlyzerFiles(reportPreparationDir));
+		if (reportServer != null) {
+			// deferred plots do not exist yet
+			files.addAll(reportServer.getDeferredPlotFiles());
+		}
+		reportCreator.createReport(files);
 
-		// copy assets
-		copyDirectoryToDirectory(new File("assets"), reportDir);
+		// stage assets
+		fileStaging.stageDirectoryToDirectory(new File("assets"), reportDir);
 
 		if (emailReporter != null) {
 			LOG.info("Creating e-mail report...");
 			emailReporter.createAndSendReportMail();
 		}
+
+		if (reportServer != null) {
+			reportServer.start();
+		}
 	}
 }
@@ -57,4 +57,17 @@ public class PerfAlyzerArgs {
 
 	@Parameter(names = "-m", arity = 1, description = "A file with additional markers")
 	File markersFile;
+
+	@Parameter(names = "-w", description = "Watch mode: process the logs in the input directory while the test is running and refresh the report every n minutes")
+	int watchIntervalMinutes;
+
+	@Parameter(names = "-s", description = "Server mode: serve the report on the given local port, rendering plots on demand")
+	int serverPort;
+
+	@Parameter(names = "-workers", description = "Bin measuring and perfMon data in up to n separate worker processes")
+	int workers;
+
+	@Parameter(names = "-workerHeap", arity = 1, description = "The maximum heap size of a worker process, e.g. 1g")
+	String workerHeap;
+
 }
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.writeLines;
+import static org.apache.commons.lang3.StringUtils.containsAny;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.apache.commons.lang3.text.StrBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerFactory.SharedResources;
+
+/**
+ * Analyzes the results of many tests in one JVM. The config file is loaded once, and all tests
+ * share a thread pool and the memory budget for tasks, so the fixed startup cost is only paid
+ * once. Tests are analyzed concurrently, except for tests with the same name, which share
+ * comparison and history data and are thus analyzed one after another in chronological order.
+ * A failing test does not affect the others. The result of each test is written to
+ * {@code batch-results.csv} in the output directory, and the exit status is non-zero if any test
+ * failed.
+ *
+ * @author rnaegele
+ */
+public class PerfAlyzerBatch {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PerfAlyzerBatch.class);
+
+	static final String RESULTS_FILE_NAME = "batch-results.csv";
+
+	private final PerfAlyzerBatchArgs args;
+	private final TestAnalyzer testAnalyzer;
+
+	PerfAlyzerBatch(final PerfAlyzerBatchArgs args, final SharedResources sharedResources) {
+		this(args, inputDir -> runPerfAlyzer(args, sharedResources, inputDir));
+	}
+
+	PerfAlyzerBatch(final PerfAlyzerBatchArgs args, final TestAnalyzer testAnalyzer) {
+		checkArgument(args.parallelTests > 0, "Number of parallel tests must be positive: %s", args.parallelTests);
+		this.args = args;
+		this.testAnalyzer = testAnalyzer;
+	}
+
+	public static void main(final String[] args) {
+		JCommander jCmd = null;
+		int exitStatus;
+		try {
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			LOG.info("Starting perfAlyzer in batch mode...");
+
+			PerfAlyzerBatchArgs batchArgs = new PerfAlyzerBatchArgs();
+			jCmd = new JCommander(batchArgs);
+			jCmd.parse(args);
+
+			List<File> inputDirs = resolveInputDirs(batchArgs.inputs);
+			checkState(!inputDirs.isEmpty(), "No input directories found: %s", batchArgs.inputs);
+
+			SharedResources sharedResources = new SharedResources();
+			List<TestResult> results;
+			try {
+				results = new PerfAlyzerBatch(batchArgs, sharedResources).run(inputDirs);
+			} finally {
+				sharedResources.getExecutorService().shutdownNow();
+			}
+
+			long failed = results.stream().filter(result -> !result.isSuccessful()).count();
+			stopwatch.stop();
+			LOG.info("Done. {} of {} test(s) failed.", failed, results.size());
+			LOG.info("Total execution time: {}", stopwatch);
+			exitStatus = exitStatus(results);
+		} catch (ParameterException ex) {
+			LOG.error(ex.getMessage());
+			if (jCmd != null) {
+				StringBuilder sb = new StringBuilder(200);
+				jCmd.usage(sb);
+				LOG.info(sb.toString());
+			}
+			exitStatus = 1;
+		} catch (Exception ex) {
+			LOG.error(ex.getMessage(), ex);
+			exitStatus = 1;
+		}
+		System.exit(exitStatus);
+	}
+
+	/**
+	 * @return 0 if all tests were analyzed successfully, 1 otherwise
+	 */
+	static int exitStatus(final List<TestResult> results) {
+		return results.stream().allMatch(TestResult::isSuccessful) ? 0 : 1;
+	}
+
+	/**
+	 * Analyzes the specified tests and writes the results file.
+	 *
+	 * @param inputDirs
+	 * 		the input directories of the tests
+	 * @return the results in the order of the input directories
+	 */
+	public List<TestResult> run(final List<File> inputDirs) throws IOException {
+		Collection<List<File>> groups = groupByTestName(inputDirs);
+		ExecutorService testExecService = Executors.newFixedThreadPool(Math.min(args.parallelTests, groups.size()));
+		Map<File, TestResult> resultsByDir = new TreeMap<>();
+		try {
+			List<Future<List<TestResult>>> futures = groups.stream()
+					.map(group -> testExecService.submit(() -> group.stream().map(this::analyze).collect(toList())))
+					.collect(toList());
+			for (Future<List<TestResult>> future : futures) {
+				future.get().forEach(result -> resultsByDir.put(result.getInputDir(), result));
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new PerfAlyzerException("Batch execution interrupted.", ex);
+		} catch (ExecutionException ex) {
+			throw new PerfAlyzerException("Error executing batch.", ex.getCause());
+		} finally {
+			testExecService.shutdownNow();
+		}
+
+		List<TestResult> results = inputDirs.stream().map(resultsByDir::get).collect(toList());
+		writeResults(results);
+		return results;
+	}
+
+	/**
+	 * Analyzes a single test. Exceptions are logged and reported in the result.
+	 *
+	 * @param inputDir
+	 * 		the input directory of the test
+	 * @return the result
+	 */
+	TestResult analyze(final File inputDir) {
+		Thread currentThread = Thread.currentThread();
+		String threadName = currentThread.getName();
+		currentThread.setName(threadName + " " + inputDir.getName());
+
+		Stopwatch stopwatch = Stopwatch.createStarted();
+		try {
+			LOG.info("Analyzing '{}'...", inputDir);
+			testAnalyzer.analyze(inputDir);
+			LOG.info("Analysis of '{}' finished in {}", inputDir, stopwatch);
+			return new TestResult(inputDir, null, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		} catch (Exception ex) {
+			LOG.error("Analysis of '" + inputDir + "' failed.", ex);
+			String message = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName();
+			return new TestResult(inputDir, message, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		} finally {
+			currentThread.setName(threadName);
+		}
+	}
+
+	private static void runPerfAlyzer(final PerfAlyzerBatchArgs args, final SharedResources sharedResources,
+			final File inputDir) throws IOException {
+		PerfAlyzerArgs perfAlyzerArgs = new PerfAlyzerArgs();
+		perfAlyzerArgs.inputDir = inputDir;
+		perfAlyzerArgs.outputDir = args.outputDir;
+		perfAlyzerArgs.unzip = args.unzip;
+
+		PerfAlyzer perfAlyzer = new PerfAlyzerFactory(perfAlyzerArgs, sharedResources).getPerfAlyzer();
+		perfAlyzer.runPerfAlyzer();
+	}
+
+	private void writeResults(final List<TestResult> results) throws IOException {
+		List<String> lines = new ArrayList<>(results.size() + 1);
+
+		StrBuilder sb = new StrBuilder();
+		appendEscapedAndQuoted(sb, DELIMITER, "inputDir", "status", "durationMillis", "error");
+		lines.add(sb.toString());
+
+		for (TestResult result : results) {
+			sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, result.getInputDir().getPath(), result.isSuccessful() ? "OK" : "FAILED",
+					String.valueOf(result.getDurationMillis()), result.getError() != null ? result.getError() : "");
+			lines.add(sb.toString());
+		}
+
+		File resultsFile = new File(args.outputDir, RESULTS_FILE_NAME);
+		writeLines(resultsFile, Charsets.UTF_8.name(), lines);
+		LOG.info("Batch results written to '{}'", resultsFile);
+	}
+
+	/**
+	 * Resolves the specified inputs to directories. If the last path element of an input contains
+	 * glob characters, it is expanded to the matching directories, sorted by name.
+	 *
+	 * @param inputs
+	 * 		the inputs
+	 * @return the distinct input directories
+	 */
+	static List<File> resolveInputDirs(final List<String> inputs) throws IOException {
+		Set<File> result = new LinkedHashSet<>();
+		for (String input : inputs) {
+			File file = new File(input);
+			String name = file.getName();
+			if (!containsAny(name, "*?[{")) {
+				result.add(file);
+				continue;
+			}
+
+			File parent = file.getParentFile() != null ? file.getParentFile() : new File(".");
+			if (!parent.isDirectory()) {
+				continue;
+			}
+			Set<File> matches = new TreeSet<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent.toPath(), name)) {
+				for (Path path : stream) {
+					if (Files.isDirectory(path)) {
+						matches.add(new File(file.getParentFile(), path.getFileName().toString()));
+					}
+				}
+			}
+			result.addAll(matches);
+		}
+		return new ArrayList<>(result);
+	}
+
+	/**
+	 * Groups input directories by test name. Each group is sorted by the timestamp in the
+	 * directory names. Directories whose names do not match the expected pattern form groups of
+	 * their own.
+	 *
+	 * @param inputDirs
+	 * 		the input directories
+	 * @return the groups
+	 */
+	static Collection<List<File>> groupByTestName(final List<File> inputDirs) {
+		Map<String, List<File>> groups = new TreeMap<>();
+		for (File inputDir : inputDirs) {
+			groups.computeIfAbsent(testName(inputDir), k -> new ArrayList<>()).add(inputDir);
+		}
+		groups.values().forEach(group -> group.sort((dir1, dir2) -> dir1.getName().compareTo(dir2.getName())));
+		return groups.values();
+	}
+
+	/**
+	 * Extracts the test name from the name of an input directory. Tests with the same name share
+	 * comparison and history data and must not be analyzed concurrently.
+	 *
+	 * @param inputDir
+	 * 		the input directory
+	 * @return the test name, or the path of the directory if its name does not match the expected
+	 * pattern
+	 */
+	static String testName(final File inputDir) {
+		Matcher matcher = PerfAlyzerFactory.INPUT_DIR_PATTERN.matcher(inputDir.getName());
+		return matcher.matches() ? matcher.group(2) : inputDir.getPath();
+	}
+
+	/**
+	 * Analyzes a single test.
+	 */
+	interface TestAnalyzer {
+
+		/**
+		 * @param inputDir
+		 * 		the input directory of the test
+		 * @throws Exception
+		 * 		if the analysis fails
+		 */
+		void analyze(File inputDir) throws Exception;
+	}
+
+	/**
+	 * The result of the analysis of a single test.
+	 */
+	public static class TestResult {
+		private final File inputDir;
+		private final String error;
+		private final long durationMillis;
+
+		TestResult(final File inputDir, final String error, final long durationMillis) {
+			this.inputDir = inputDir;
+			this.error = error;
+			this.durationMillis = durationMillis;
+		}
+
+		public File getInputDir() {
+			return inputDir;
+		}
+
+		public boolean isSuccessful() {
+			return error == null;
+		}
+
+		/**
+		 * @return the error message, or {@code null} if the analysis was successful
+		 */
+		public String getError() {
+			return error;
+		}
+
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+	}
+}
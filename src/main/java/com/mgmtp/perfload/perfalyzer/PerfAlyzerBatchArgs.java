@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import java.io.File;
+import java.util.List;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.converters.FileConverter;
+
+/**
+ * @author rnaegele
+ */
+public class PerfAlyzerBatchArgs {
+
+	@Parameter(names = "-i", required = true, variableArity = true, description = "The input directories. The last path element may be a glob pattern, e.g. results/*_nightly")
+	List<String> inputs;
+
+	@Parameter(names = "-o", description = "The output base directory", converter = FileConverter.class)
+	File outputDir = new File("output");
+
+	@Parameter(names = "-u", arity = 1, description = "Unzip test archives")
+	boolean unzip = true;
+
+	@Parameter(names = "-parallel", description = "The maximum number of tests analyzed concurrently")
+	int parallelTests = 2;
+}
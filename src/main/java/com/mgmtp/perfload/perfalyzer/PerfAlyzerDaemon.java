@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.saveProperties;
+import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.setIfNonNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FilenameUtils.getBaseName;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerBatch.TestAnalyzer;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerBatch.TestResult;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerFactory.SharedResources;
+
+/**
+ * Long-running perfAlyzer process which analyzes tests on a warm JVM. A job is submitted by
+ * placing a file with the extension {@code .job} in the spool directory. Its first line that is
+ * neither blank nor a comment ({@code #}) is the path of the input directory of the test. Job
+ * files should be written under a different name and then renamed, so they are complete when they
+ * are picked up. Jobs are executed in the order of the modification times of their job files.
+ * <p>
+ * As in batch mode (see {@link PerfAlyzerBatch}), the config file, the thread pool, and the memory
+ * budget for tasks are shared, and so are compiled patterns and chart resources which are cached
+ * statically. At most the configured number of jobs are executed concurrently, jobs for tests with
+ * the same name one after another. A job for a test that is already being analyzed does not occupy
+ * a thread while waiting, but is handed on by the running job when it is finished.
+ * <p>
+ * The status of each job is written to {@code status/<job>.status} in the spool directory. After
+ * execution, the job file is moved to {@code done} or {@code failed}. The daemon shuts down
+ * gracefully on termination of the JVM (e. g. SIGTERM) or if a file named {@code stop} is created
+ * in the spool directory: running jobs are completed, queued ones remain in the spool directory
+ * and are executed after a restart.
+ *
+ * @author rnaegele
+ */
+public class PerfAlyzerDaemon {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PerfAlyzerDaemon.class);
+
+	static final String JOB_FILE_EXTENSION = "job";
+	static final String STATUS_FILE_EXTENSION = "status";
+	static final String STOP_FILE_NAME = "stop";
+
+	enum JobState {
+		QUEUED,
+		RUNNING,
+		SUCCEEDED,
+		FAILED
+	}
+
+	private final PerfAlyzerBatch batch;
+	private final File spoolDir;
+	private final File statusDir;
+	private final File doneDir;
+	private final File failedDir;
+	private final long pollIntervalSeconds;
+	private final ExecutorService jobExecService;
+
+	private final Set<String> activeJobs = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The names of the tests being analyzed, mapped to the jobs waiting for the same test.
+	 * Entries are removed when no job is waiting for the test anymore. Guarded by itself.
+	 */
+	private final Map<String, Queue<Runnable>> runningTests = new HashMap<>();
+
+	private final CountDownLatch stopLatch = new CountDownLatch(1);
+	private volatile boolean stopping;
+
+	PerfAlyzerDaemon(final PerfAlyzerDaemonArgs args, final SharedResources sharedResources) {
+		this(args, new PerfAlyzerBatch(createBatchArgs(args), sharedResources));
+	}
+
+	PerfAlyzerDaemon(final PerfAlyzerDaemonArgs args, final TestAnalyzer testAnalyzer) {
+		this(args, new PerfAlyzerBatch(createBatchArgs(args), testAnalyzer));
+	}
+
+	private PerfAlyzerDaemon(final PerfAlyzerDaemonArgs args, final PerfAlyzerBatch batch) {
+		checkArgument(args.pollIntervalSeconds > 0, "Poll interval must be positive: %s", args.pollIntervalSeconds);
+
+		this.batch = batch;
+		this.spoolDir = args.spoolDir;
+		this.statusDir = new File(spoolDir, "status");
+		this.doneDir = new File(spoolDir, "done");
+		this.failedDir = new File(spoolDir, "failed");
+		this.pollIntervalSeconds = args.pollIntervalSeconds;
+		this.jobExecService = Executors.newFixedThreadPool(args.parallelJobs);
+	}
+
+	private static PerfAlyzerBatchArgs createBatchArgs(final PerfAlyzerDaemonArgs args) {
+		checkArgument(args.parallelJobs > 0, "Number of parallel jobs must be positive: %s", args.parallelJobs);
+
+		PerfAlyzerBatchArgs batchArgs = new PerfAlyzerBatchArgs();
+		batchArgs.outputDir = args.outputDir;
+		batchArgs.unzip = args.unzip;
+		batchArgs.parallelTests = args.parallelJobs;
+		return batchArgs;
+	}
+
+	public static void main(final String[] args) {
+		JCommander jCmd = null;
+		int exitStatus;
+		try {
+			LOG.info("Starting perfAlyzer daemon...");
+
+			PerfAlyzerDaemonArgs daemonArgs = new PerfAlyzerDaemonArgs();
+			jCmd = new JCommander(daemonArgs);
+			jCmd.parse(args);
+
+			SharedResources sharedResources = new SharedResources();
+			PerfAlyzerDaemon daemon = new PerfAlyzerDaemon(daemonArgs, sharedResources);
+
+			CountDownLatch terminated = new CountDownLatch(1);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				daemon.stop();
+				try {
+					terminated.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}, "perfAlyzer-shutdown"));
+
+			try {
+				daemon.run();
+			} finally {
+				sharedResources.getExecutorService().shutdownNow();
+				terminated.countDown();
+			}
+
+			LOG.info("perfAlyzer daemon stopped.");
+			exitStatus = 0;
+		} catch (ParameterException ex) {
+			LOG.error(ex.getMessage());
+			if (jCmd != null) {
+				StringBuilder sb = new StringBuilder(200);
+				jCmd.usage(sb);
+				LOG.info(sb.toString());
+			}
+			exitStatus = 1;
+		} catch (Exception ex) {
+			LOG.error(ex.getMessage(), ex);
+			exitStatus = 1;
+		}
+		System.exit(exitStatus);
+	}
+
+	/**
+	 * Watches the spool directory for jobs until the daemon is stopped and then waits for running
+	 * jobs to complete.
+	 */
+	public void run() throws IOException {
+		for (File dir : Arrays.asList(statusDir, doneDir, failedDir)) {
+			Files.createDirectories(dir.toPath());
+		}
+		LOG.info("Watching spool directory '{}' for jobs...", spoolDir);
+
+		File stopFile = new File(spoolDir, STOP_FILE_NAME);
+		try {
+			while (!stopping) {
+				if (stopFile.exists()) {
+					LOG.info("Stop file found.");
+					Files.delete(stopFile.toPath());
+					stop();
+					break;
+				}
+				for (File jobFile : listJobFiles(spoolDir)) {
+					submit(jobFile);
+				}
+				stopLatch.await(pollIntervalSeconds, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			stop();
+		} finally {
+			awaitRunningJobs();
+		}
+	}
+
+	/**
+	 * Stops the daemon. Jobs which have not been started yet are not executed.
+	 */
+	public void stop() {
+		if (!stopping) {
+			LOG.info("Stopping perfAlyzer daemon...");
+			stopping = true;
+			stopLatch.countDown();
+		}
+	}
+
+	private void awaitRunningJobs() {
+		jobExecService.shutdown();
+		try {
+			while (!jobExecService.awaitTermination(1L, TimeUnit.MINUTES)) {
+				LOG.info("Waiting for running jobs to complete...");
+			}
+		} catch (InterruptedException ex) {
+			jobExecService.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void submit(final File jobFile) {
+		String jobName = getBaseName(jobFile.getName());
+		if (!activeJobs.add(jobName)) {
+			// already queued or running
+			return;
+		}
+
+		Properties status = new Properties();
+		status.setProperty("queued", now());
+		try {
+			writeStatus(jobName, status, JobState.QUEUED);
+			jobExecService.submit(() -> execute(jobFile, jobName, status, null));
+			LOG.info("Job '{}' queued.", jobName);
+		} catch (Exception ex) {
+			LOG.error("Error queueing job '" + jobName + "'.", ex);
+			activeJobs.remove(jobName);
+		}
+	}
+
+	/**
+	 * Executes a job unless another job for the same test is running, in which case the job is
+	 * queued for the test.
+	 *
+	 * @param acquiredTestName
+	 * 		the name of the test if the job has been handed on by the previous job for the test,
+	 * 		{@code null} otherwise
+	 */
+	private void execute(final File jobFile, final String jobName, final Properties status,
+			@Nullable final String acquiredTestName) {
+		String testName = acquiredTestName;
+		boolean waiting = false;
+		try {
+			if (stopping) {
+				LOG.info("Job '{}' not started due to shutdown.", jobName);
+				return;
+			}
+
+			File inputDir;
+			try {
+				inputDir = readJobFile(jobFile);
+			} catch (Exception ex) {
+				LOG.error("Invalid job file '" + jobFile + "'.", ex);
+				finish(jobFile, jobName, status, ex.getMessage());
+				return;
+			}
+
+			status.setProperty("inputDir", inputDir.getPath());
+			if (testName == null) {
+				String name = PerfAlyzerBatch.testName(inputDir);
+				waiting = !acquireTest(name, () -> execute(jobFile, jobName, status, name));
+				if (waiting) {
+					LOG.info("Job '{}' waiting for the running job for test '{}'.", jobName, name);
+					return;
+				}
+				testName = name;
+			}
+
+			status.setProperty("started", now());
+			writeStatus(jobName, status, JobState.RUNNING);
+
+			TestResult result = batch.analyze(inputDir);
+			status.setProperty("durationMillis", String.valueOf(result.getDurationMillis()));
+			finish(jobFile, jobName, status, result.getError());
+		} catch (Exception ex) {
+			LOG.error("Error executing job '" + jobName + "'.", ex);
+		} finally {
+			if (!waiting) {
+				activeJobs.remove(jobName);
+			}
+			if (testName != null) {
+				releaseTest(testName);
+			}
+		}
+	}
+
+	/**
+	 * Marks the specified test as running, or queues the specified job for it if it is already
+	 * running.
+	 *
+	 * @return {@code true} if the test has been marked as running, {@code false} if the job has
+	 * been queued
+	 */
+	private boolean acquireTest(final String testName, final Runnable waitingJob) {
+		synchronized (runningTests) {
+			Queue<Runnable> waitingJobs = runningTests.get(testName);
+			if (waitingJobs == null) {
+				runningTests.put(testName, new ArrayDeque<>());
+				return true;
+			}
+			waitingJobs.add(waitingJob);
+			return false;
+		}
+	}
+
+	/**
+	 * Hands the specified test on to the next job waiting for it, or marks it as no longer running
+	 * if there is none.
+	 */
+	private void releaseTest(final String testName) {
+		synchronized (runningTests) {
+			Runnable nextJob = runningTests.get(testName).poll();
+			if (nextJob == null) {
+				runningTests.remove(testName);
+				return;
+			}
+			try {
+				jobExecService.execute(nextJob);
+			} catch (RejectedExecutionException ex) {
+				// shutting down, waiting jobs remain in the spool directory
+				LOG.info("Jobs for test '{}' not started due to shutdown.", testName);
+				runningTests.remove(testName);
+			}
+		}
+	}
+
+	/**
+	 * @return the names of the tests currently being analyzed
+	 */
+	Set<String> getRunningTests() {
+		synchronized (runningTests) {
+			return ImmutableSet.copyOf(runningTests.keySet());
+		}
+	}
+
+	private void finish(final File jobFile, final String jobName, final Properties status, final String error)
+			throws IOException {
+		status.setProperty("finished", now());
+		setIfNonNull(status, "error", error);
+		writeStatus(jobName, status, error == null ? JobState.SUCCEEDED : JobState.FAILED);
+
+		File targetDir = error == null ? doneDir : failedDir;
+		Files.move(jobFile.toPath(), new File(targetDir, jobFile.getName()).toPath(), REPLACE_EXISTING);
+		LOG.info("Job '{}' {}.", jobName, error == null ? "succeeded" : "failed");
+	}
+
+	private void writeStatus(final String jobName, final Properties status, final JobState state) throws IOException {
+		status.setProperty("state", state.name());
+
+		// write to a temporary file first, so clients never see an incomplete status file
+		File statusFile = new File(statusDir, jobName + '.' + STATUS_FILE_EXTENSION);
+		File tmpFile = new File(statusDir, jobName + '.' + STATUS_FILE_EXTENSION + ".tmp");
+		saveProperties(tmpFile, status);
+		Files.move(tmpFile.toPath(), statusFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+	}
+
+	private static String now() {
+		return ZonedDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+	}
+
+	/**
+	 * Lists the job files in the specified spool directory in the order they are to be executed,
+	 * i. e. by modification time and name.
+	 *
+	 * @param spoolDir
+	 * 		the spool directory
+	 * @return the job files
+	 */
+	static List<File> listJobFiles(final File spoolDir) {
+		File[] files = spoolDir.listFiles((dir, name) -> name.endsWith('.' + JOB_FILE_EXTENSION));
+		if (files == null) {
+			return Collections.emptyList();
+		}
+		return Arrays.stream(files)
+				.filter(File::isFile)
+				.sorted(Comparator.comparingLong(File::lastModified).thenComparing(File::getName))
+				.collect(toList());
+	}
+
+	/**
+	 * Reads the input directory from a job file.
+	 *
+	 * @param jobFile
+	 * 		the job file
+	 * @return the input directory
+	 */
+	static File readJobFile(final File jobFile) throws IOException {
+		List<String> lines = Files.readAllLines(jobFile.toPath(), Charsets.UTF_8);
+		String path = lines.stream()
+				.map(String::trim)
+				.filter(line -> !line.isEmpty() && !line.startsWith("#"))
+				.findFirst()
+				.orElse(null);
+		checkState(path != null, "Job file '%s' does not contain an input directory.", jobFile);
+		return new File(path);
+	}
+}
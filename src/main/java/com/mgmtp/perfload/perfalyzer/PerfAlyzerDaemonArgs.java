@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import java.io.File;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.converters.FileConverter;
+
+/**
+ * @author rnaegele
+ */
+public class PerfAlyzerDaemonArgs {
+
+	@Parameter(names = "-spool", required = true, description = "The spool directory which is watched for job files", converter = FileConverter.class)
+	File spoolDir;
+
+	@Parameter(names = "-o", description = "The output base directory", converter = FileConverter.class)
+	File outputDir = new File("output");
+
+	@Parameter(names = "-u", arity = 1, description = "Unzip test archives")
+	boolean unzip = true;
+
+	@Parameter(names = "-parallel", description = "The maximum number of jobs executed concurrently")
+	int parallelJobs = 2;
+
+	@Parameter(names = "-poll", description = "The interval in seconds in which the spool directory is checked for new jobs")
+	int pollIntervalSeconds = 5;
+}
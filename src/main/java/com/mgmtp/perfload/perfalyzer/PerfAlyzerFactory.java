@@ -19,6 +19,8 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.mgmtp.perfload.perfalyzer.ConfigLoader.toProperties;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.makeRelative;
 import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.loadIntoProperties;
 import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.loadProperties;
 import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.saveProperties;
@@ -41,6 +43,7 @@ import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
 import javax.mail.Authenticator;
 import javax.mail.PasswordAuthentication;
 
@@ -48,14 +51,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Throwables;
+import com.mgmtp.perfload.perfalyzer.normalization.LoadProfile;
+import com.mgmtp.perfload.perfalyzer.normalization.LoadProfileProcessor;
 import com.mgmtp.perfload.perfalyzer.reporting.ReportCreator;
+import com.mgmtp.perfload.perfalyzer.reporting.ReportServer;
 import com.mgmtp.perfload.perfalyzer.reporting.email.EmailReporter;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.PlotOutput;
 import com.mgmtp.perfload.perfalyzer.util.ArchiveExtracter;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.FileStaging;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
-import com.mgmtp.perfload.perfalyzer.util.MarkersReader;
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
 import com.mgmtp.perfload.perfalyzer.util.ResourceBundleProvider;
+import com.mgmtp.perfload.perfalyzer.util.PipelineMetrics;
 import com.mgmtp.perfload.perfalyzer.util.ResourceBundleProvider.Utf8Control;
 import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
 import com.mgmtp.perfload.perfalyzer.util.TimestampNormalizer;
@@ -63,14 +73,12 @@ import com.mgmtp.perfload.perfalyzer.workflow.GcLogWorkflow;
 import com.mgmtp.perfload.perfalyzer.workflow.LoadProfileWorkflow;
 import com.mgmtp.perfload.perfalyzer.workflow.MeasuringWorkflow;
 import com.mgmtp.perfload.perfalyzer.workflow.PerfMonWorkflow;
+import com.mgmtp.perfload.perfalyzer.workflow.TaskAdmission;
 import com.mgmtp.perfload.perfalyzer.workflow.Workflow;
 import com.mgmtp.perfload.perfalyzer.workflow.WorkflowExecutor;
 import com.mgmtp.perfload.perfalyzer.util.NumberFormatProvider;
 import com.mgmtp.perfload.perfalyzer.util.MemoryFormatProvider;
 
-import groovy.util.ConfigObject;
-import groovy.util.ConfigSlurper;
-
 /**
  * Adaptation of PerfAlyzerModule but without the use of Guice.
  * 
@@ -81,6 +89,17 @@ class PerfAlyzerFactory {
 	private class LocalConfigObject {
 		Integer warmUpSeconds;
 		Integer maxEmailHistoryItems;
+		int historyWindowSize;
+		double regressionThresholdPercent;
+		boolean interactiveCharts;
+		boolean analysisPerformanceTab;
+		long binningMemoryBudgetBytes;
+		long taskMemoryBudgetBytes;
+		int threadCount;
+		Integer taskMemoryBudgetPercent;
+		Integer binningMemoryBudgetMb;
+		CompressionCodec intermediateCompression;
+		FileStaging fileStaging;
 		EmailReporter emailReporter;
 		ExecutorService executorService;
 		Map<String, List<Pattern>> reportContentsConfigMap;
@@ -90,21 +109,61 @@ class PerfAlyzerFactory {
 
 	public static final Pattern INPUT_DIR_PATTERN = Pattern.compile("(\\d{8}-\\d{4})_(.*)");
 
-	private final Logger log = LoggerFactory.getLogger(getClass());
+	private static final Logger LOG = LoggerFactory.getLogger(PerfAlyzerFactory.class);
+
+	// the locale file in the output directory is shared by concurrently analyzed tests
+	private static final Object LOCALE_FILE_LOCK = new Object();
 
 	private final PerfAlyzerArgs args;
+	private final SharedResources sharedResources;
 
 	private ExecutorService executorService = null;
 
 	public PerfAlyzerFactory(final PerfAlyzerArgs args) {
-		checkState(!args.unzip || args.inputDir.isDirectory(),
+		this(args, null);
+	}
+
+	/**
+	 * @param sharedResources
+	 * 		if non-null, the config file is not loaded again, and tasks are executed using the shared
+	 * 		thread pool and memory budget
+	 */
+	public PerfAlyzerFactory(final PerfAlyzerArgs args, @Nullable final SharedResources sharedResources) {
+		checkState(!args.unzip && args.watchIntervalMinutes <= 0 || args.inputDir.isDirectory(),
 				"'inputDir' does not exist or is not a directory: %s",
 				args.inputDir);
 		this.args = args;
+		this.sharedResources = sharedResources;
+	}
+
+	/**
+	 * Configuration and resources that are created once and shared by the factories of all tests
+	 * analyzed in one JVM, e. g. in batch mode: the parsed config file including its compiled
+	 * patterns, the thread pool, the memory budget for tasks, and the memory budget for raw
+	 * response times.
+	 */
+	static final class SharedResources {
+		private final Map<String, Object> config;
+		private final ExecutorService executorService;
+		private final TaskAdmission taskAdmission;
+		private final MemoryBudget binningMemoryBudget;
+
+		SharedResources() throws IOException {
+			config = loadConfig();
+			executorService = createExecutorService(config);
+			long binningMemoryBudgetBytes = getBinningMemoryBudgetBytes(config);
+			taskAdmission = new TaskAdmission(executorService, getTotalMemoryBudgetBytes(config) - binningMemoryBudgetBytes);
+			// each test spills to its own directory
+			binningMemoryBudget = new MemoryBudget(binningMemoryBudgetBytes, new File(System.getProperty("java.io.tmpdir")));
+		}
+
+		ExecutorService getExecutorService() {
+			return executorService;
+		}
 	}
 
 	@SuppressWarnings("unchecked")
-	private static <T> T get(final ConfigObject configObject, final String key) {
+	private static <T> T get(final Map<String, Object> configObject, final String key) {
 		return (T) configObject.get(key);
 	}
 
@@ -123,21 +182,29 @@ class PerfAlyzerFactory {
 		String testName = matcher.group(2);
 		File destDir = new File(new File(args.outputDir, testName), timestamp);
 
-		File unzippedDir = new File(destDir, "01_unzipped");
+		// in watch mode, logs are processed in place while they are still being written
+		boolean watchMode = args.watchIntervalMinutes > 0;
+		File unzippedDir = watchMode ? args.inputDir : new File(destDir, "01_unzipped");
 		File relativeDestDir = new File(testName, timestamp);
 		File normalizedDir = new File(destDir, "02_normalized");
 		File binnedDir = new File(destDir, "03_binned");
 		File reportPreparationDir = new File(destDir, "04_reportpreparation");
 		File reportDir = new File(destDir, "05_report");
 
-		if (args.unzip) {
+		// in server mode, plots are rendered when they are requested
+		boolean serverMode = args.serverPort > 0;
+		checkState(!(watchMode && serverMode), "Watch mode and server mode cannot be combined");
+
+		if (watchMode) {
+			LOG.info("Watch mode: using logs in '{}' without extracting archives", unzippedDir);
+		} else if (args.unzip) {
 			try {
 				if (unzippedDir.isDirectory()) {
-					log.info("Directory '{}' already exists. Deleting it...",
+					LOG.info("Directory '{}' already exists. Deleting it...",
 							unzippedDir);
 					deleteDirectory(unzippedDir);
 				}
-				log.info("Extracting result archives...");
+				LOG.info("Extracting result archives...");
 				ArchiveExtracter archiveExtracter = new ArchiveExtracter(args.inputDir, unzippedDir);
 				archiveExtracter.extract();
 			} catch (IOException ex) {
@@ -159,57 +226,91 @@ class PerfAlyzerFactory {
 		final NumberFormatProvider intProvider = new NumberFormatProvider(configObject.locale, true);
 		final ResourceBundleProvider resourceBundleProvider = new ResourceBundleProvider(configObject.locale,
 				new Utf8Control(new File("strings")));
-		List<Marker> markers = provideMarkers(unzippedDir, testMetadata);
+		LoadProfile loadProfile = provideLoadProfile(unzippedDir, testMetadata, new File(destDir, ".loadprofile"),
+				doNormalization);
+		List<Marker> markers = loadProfile.getMarkers();
+		PlotOutput plotOutput = configObject.interactiveCharts
+				? PlotOutput.JSON
+				: serverMode ? PlotOutput.DEFERRED_PNG : PlotOutput.PNG;
 		PlotCreator plotCreator = new PlotCreator(
-				intProvider.get(), resourceBundleProvider.get(), configObject.displayDataList, markers);
+				intProvider.get(), resourceBundleProvider.get(), configObject.displayDataList, markers, plotOutput, watchMode);
 
 		PerfMonWorkflow perfMonWorkflow = new PerfMonWorkflow(
 				timestampNormalizer, intProvider, intProvider, configObject.displayDataList,
-				resourceBundleProvider.get(), plotCreator, testMetadata);
+				resourceBundleProvider.get(), plotCreator, testMetadata, configObject.intermediateCompression, markers);
 
-		List<String> reportTabNames = provideReportTabNames(markers);
+		List<String> reportTabNames = provideReportTabNames(markers, configObject.analysisPerformanceTab);
 		ReportCreator reporter = new ReportCreator(
 				testMetadata, reportPreparationDir, reportDir, configObject.reportContentsConfigMap,
-				resourceBundleProvider.get(), configObject.locale, reportTabNames);
+				resourceBundleProvider.get(), configObject.locale, reportTabNames, !serverMode, configObject.fileStaging);
 
 		final NumberFormatProvider floatProvider = new NumberFormatProvider(configObject.locale, false);
 		final MemoryFormatProvider memoryFormatProvider = new MemoryFormatProvider(configObject.locale);
 
 		MeasuringWorkflow measuringWorkflow = new MeasuringWorkflow(
 				timestampNormalizer, intProvider, floatProvider, configObject.displayDataList,
-				resourceBundleProvider.get(), plotCreator, testMetadata, configObject.maxEmailHistoryItems);
+				resourceBundleProvider.get(), plotCreator, testMetadata, configObject.maxEmailHistoryItems,
+				configObject.historyWindowSize, configObject.regressionThresholdPercent,
+				createBinningMemoryBudget(configObject, new File(destDir, ".spill")),
+				configObject.intermediateCompression, configObject.fileStaging, markers);
 		GcLogWorkflow gcLogWorkflow = new GcLogWorkflow(timestampNormalizer, intProvider, floatProvider,
 				configObject.displayDataList, resourceBundleProvider.get(), plotCreator,
-				testMetadata, memoryFormatProvider);
+				testMetadata, memoryFormatProvider, configObject.fileStaging);
 		LoadProfileWorkflow loadProfileWorkflow = new LoadProfileWorkflow(intProvider, intProvider,
-				configObject.displayDataList, resourceBundleProvider.get(), plotCreator, testMetadata);
+				configObject.displayDataList, resourceBundleProvider.get(), plotCreator, testMetadata, loadProfile);
 
 		// Create sets out of workflows
 		Set<Workflow> workflows = new HashSet<Workflow>();
 		workflows.add(measuringWorkflow);
-		workflows.add(gcLogWorkflow);
 		workflows.add(perfMonWorkflow);
+		workflows.add(gcLogWorkflow);
 		workflows.add(loadProfileWorkflow);
 
-		final WorkflowExecutor workflowExecutor = new WorkflowExecutor(workflows, configObject.executorService,
-				markers);
+		PipelineMetrics pipelineMetrics = new PipelineMetrics();
+		final WorkflowExecutor workflowExecutor = sharedResources != null
+				? new WorkflowExecutor(workflows, sharedResources.taskAdmission, markers, pipelineMetrics)
+				: new WorkflowExecutor(workflows, configObject.executorService, markers, pipelineMetrics,
+						configObject.taskMemoryBudgetBytes);
+
+		ShardCoordinator shardCoordinator = null;
+		if (args.workers > 1) {
+			checkState(!watchMode, "Watch mode and worker processes cannot be combined");
+			Properties workerConfig = ShardWorker.createConfig(configObject.locale, configObject.intermediateCompression,
+					configObject.threadCount, configObject.taskMemoryBudgetPercent, configObject.binningMemoryBudgetMb, markers);
+			shardCoordinator = new ShardCoordinator(workflowExecutor, args.workers, args.workerHeap, workerConfig);
+		}
+
+		ReportServer reportServer = serverMode
+				? new ReportServer(reportDir, reportPreparationDir, plotCreator, args.serverPort)
+				: null;
 
 		PerfAlyzer perfAlyzer = new PerfAlyzer(unzippedDir, binnedDir, normalizedDir,
 				reportPreparationDir, reportDir, doNormalization,
 				doBinning, doReportPreparation, workflowExecutor, reporter, configObject.emailReporter,
-				markers);
+				reportServer, markers, pipelineMetrics, configObject.analysisPerformanceTab,
+				configObject.intermediateCompression, configObject.fileStaging, shardCoordinator);
 		return perfAlyzer;
 	}
 
+	/**
+	 * Tests analyzed in the same JVM reserve memory from the shared budget, so they do not each
+	 * claim the configured share of the heap.
+	 */
+	private MemoryBudget createBinningMemoryBudget(final LocalConfigObject configObject, final File spillDir) {
+		return sharedResources != null
+				? sharedResources.binningMemoryBudget.withSpillDir(spillDir)
+				: new MemoryBudget(configObject.binningMemoryBudgetBytes, spillDir);
+	}
+
 	private TestMetadata createTestMetadata(final File unzippedDir) {
 		File metaPropsFile = new File(unzippedDir, "console/console-logs/perfload.meta.utf8.props");
 		try {
 			Properties perfLoadMetaProps;
 			if (metaPropsFile.exists()) {
-				log.info("Loading test meta properties...");
+				LOG.info("Loading test meta properties...");
 				perfLoadMetaProps = loadProperties(metaPropsFile);
 			} else {
-				log.warn("Testplan properties file does not exist: {}", metaPropsFile);
+				LOG.warn("Testplan properties file does not exist: {}", metaPropsFile);
 				perfLoadMetaProps = new Properties();
 			}
 			setIfNonNull(perfLoadMetaProps, "test.start", args.testStartDate);
@@ -220,25 +321,58 @@ class PerfAlyzerFactory {
 			TestMetadata testMetadata = TestMetadata.create(args.inputDir.getName(), perfLoadMetaProps);
 			return testMetadata;
 		} catch (IOException ex) {
-			log.error("Error reading test meta properties: " + metaPropsFile, ex);
+			LOG.error("Error reading test meta properties: " + metaPropsFile, ex);
 			Throwables.propagate(ex);
 		}
 		return null;
 	}
 
-	private LocalConfigObject createObjectsFromConfigFile(final File destDir, final TestMetadata testMetadata,
-			File reportPreparationDir, File relativeDestDir) {
+	private static Map<String, Object> loadConfig() throws IOException {
 		File configFile = new File("config", "PerfAlyzerConfig.groovy");
 		if (!configFile.exists()) {
-			log.info("Config file '{}' does not exist. Using default config file.",
+			LOG.info("Config file '{}' does not exist. Using default config file.",
 					configFile);
 			configFile = new File("config", "PerfAlyzerConfig_Default.groovy");
 		}
+		LOG.info("Loading parfAlyzer config file...");
+		return ConfigLoader.load(configFile);
+	}
+
+	private static ExecutorService createExecutorService(final Map<String, Object> slurpConfigObject) {
+		Integer threadCount = get(slurpConfigObject, "threadCount");
+		return Executors.newFixedThreadPool(threadCount);
+	}
+
+	/**
+	 * @return the heap that analysis tasks may use in total; it is split into the budget for raw
+	 * response times (see {@link MemoryBudget}) and the budget tasks are admitted against
+	 */
+	static long getTotalMemoryBudgetBytes(final Map<String, Object> slurpConfigObject) {
+		Integer taskMemoryBudgetPercent = get(slurpConfigObject, "taskMemoryBudgetPercent");
+		return Runtime.getRuntime().maxMemory() / 100L * (taskMemoryBudgetPercent != null ? taskMemoryBudgetPercent : 60);
+	}
+
+	static long getBinningMemoryBudgetBytes(final Map<String, Object> slurpConfigObject) {
+		// at most half of the total, so memory-intensive tasks can still be admitted
+		long maxBytes = getTotalMemoryBudgetBytes(slurpConfigObject) / 2L;
+		Integer binningMemoryBudgetMb = get(slurpConfigObject, "binningMemoryBudgetMb");
+		if (binningMemoryBudgetMb == null) {
+			return maxBytes;
+		}
+		long bytes = binningMemoryBudgetMb * 1024L * 1024L;
+		if (bytes > maxBytes) {
+			LOG.warn("'binningMemoryBudgetMb' exceeds half of the task memory budget. Using {} MiB.", maxBytes / 1024L / 1024L);
+			return maxBytes;
+		}
+		return bytes;
+	}
+
+	private LocalConfigObject createObjectsFromConfigFile(final File destDir, final TestMetadata testMetadata,
+			File reportPreparationDir, File relativeDestDir) {
 		LocalConfigObject localConfigObject = new LocalConfigObject();
 		try {
-			log.info("Loading parfAlyzer config file...");
-			ConfigSlurper slurper = new ConfigSlurper();
-			ConfigObject slurpConfigObject = slurper.parse(configFile.toURI().toURL());
+			// must not be modified, because it may be shared by concurrently analyzed tests
+			Map<String, Object> slurpConfigObject = sharedResources != null ? sharedResources.config : loadConfig();
 
 			String url = get(slurpConfigObject, "reportsBaseUrl");
 
@@ -249,22 +383,60 @@ class PerfAlyzerFactory {
 			// Will be overritten later when needed, otherwiese it was not defined.
 			localConfigObject.maxEmailHistoryItems = maxHistoryItems;
 
+			/***** history analysis *****/
+			Map<String, Object> historyAnalysisConfig = get(slurpConfigObject, "historyAnalysis");
+			if (historyAnalysisConfig != null) {
+				Boolean enabled = get(historyAnalysisConfig, "enabled");
+				if (enabled != null && enabled) {
+					Integer windowSize = get(historyAnalysisConfig, "windowSize");
+					Number thresholdPercent = get(historyAnalysisConfig, "thresholdPercent");
+					localConfigObject.historyWindowSize = windowSize != null ? windowSize : 10;
+					localConfigObject.regressionThresholdPercent = thresholdPercent != null ? thresholdPercent.doubleValue() : 10d;
+				}
+			}
+
+			Boolean interactiveCharts = get(slurpConfigObject, "interactiveCharts");
+			localConfigObject.interactiveCharts = interactiveCharts != null && interactiveCharts;
+
+			Boolean analysisPerformanceTab = get(slurpConfigObject, "analysisPerformanceTab");
+			localConfigObject.analysisPerformanceTab = analysisPerformanceTab != null && analysisPerformanceTab;
+
+			localConfigObject.binningMemoryBudgetBytes = getBinningMemoryBudgetBytes(slurpConfigObject);
+			localConfigObject.taskMemoryBudgetBytes = getTotalMemoryBudgetBytes(slurpConfigObject)
+					- localConfigObject.binningMemoryBudgetBytes;
+			// passed on to shard workers, which apply them to their own heap
+			localConfigObject.threadCount = get(slurpConfigObject, "threadCount");
+			localConfigObject.taskMemoryBudgetPercent = get(slurpConfigObject, "taskMemoryBudgetPercent");
+			localConfigObject.binningMemoryBudgetMb = get(slurpConfigObject, "binningMemoryBudgetMb");
+
+			String intermediateCompression = get(slurpConfigObject, "intermediateCompression");
+			localConfigObject.intermediateCompression = intermediateCompression != null
+					? CompressionCodec.forName(intermediateCompression)
+					: CompressionCodec.NONE;
+
+			String fileStaging = get(slurpConfigObject, "fileStaging");
+			localConfigObject.fileStaging = fileStaging != null
+					? FileStaging.forName(fileStaging)
+					: FileStaging.HARD_LINK;
+
 			/***** locale *****/
 			String localeString = get(slurpConfigObject, "locale");
 			File localPropsFile = new File(destDir, ".config");
 			Properties localProps = new Properties();
-			if (localPropsFile.exists()) {
-				loadIntoProperties(localPropsFile, localProps);
-				String originalLocalString = localProps.getProperty("locale");
-				if (!originalLocalString.equals(localeString)) {
-					log.warn(
-							"Configured locale ({}) ahs changed but is ignored for compatibility reasons with comparison data. Locale used: {}",
-							localeString, originalLocalString);
+			synchronized (LOCALE_FILE_LOCK) {
+				if (localPropsFile.exists()) {
+					loadIntoProperties(localPropsFile, localProps);
+					String originalLocalString = localProps.getProperty("locale");
+					if (!originalLocalString.equals(localeString)) {
+						LOG.warn(
+								"Configured locale ({}) ahs changed but is ignored for compatibility reasons with comparison data. Locale used: {}",
+								localeString, originalLocalString);
+					}
+					localeString = originalLocalString;
+				} else {
+					localProps.setProperty("locale", localeString);
+					saveProperties(localPropsFile, localProps);
 				}
-				localeString = originalLocalString;
-			} else {
-				localProps.setProperty("locale", localeString);
-				saveProperties(localPropsFile, localProps);
 			}
 			final Locale locale = new Locale(localeString);
 			localConfigObject.locale = locale;
@@ -273,14 +445,14 @@ class PerfAlyzerFactory {
 			Map<String, List<Pattern>> reportContentsConfigMap = get(slurpConfigObject, "reportContents");
 
 			/***** email *****/
-			final ConfigObject emailConfig = get(slurpConfigObject, "email");
+			final Map<String, Object> emailConfig = get(slurpConfigObject, "email");
 			Boolean flag = get(emailConfig, "enabled");
 			if (flag) {
 				String emailFrom = (String) emailConfig.get("from");
 
 				List<String> toList = get(emailConfig, "to");
 
-				ConfigObject smtpConfig = get(emailConfig, "smtp");
+				Map<String, Object> smtpConfig = get(emailConfig, "smtp");
 
 				Boolean auth = (Boolean) smtpConfig.get("auth");
 				Authenticator passwordAuthentication = null;
@@ -294,7 +466,7 @@ class PerfAlyzerFactory {
 						}
 					};
 				}
-				Boolean ssl = (Boolean) smtpConfig.remove("ssl");
+				Boolean ssl = (Boolean) smtpConfig.get("ssl");
 				String prefix;
 				String protocol;
 				if (ssl != null && ssl) {
@@ -305,12 +477,13 @@ class PerfAlyzerFactory {
 					prefix = "mail.smtp";
 				}
 
-				Properties smtpProps = smtpConfig.toProperties(prefix);
+				Properties smtpProps = toProperties(smtpConfig, prefix);
+				smtpProps.remove(prefix + ".ssl");
 				smtpProps.setProperty("mail.transport.protocol", protocol);
 
-				ConfigObject subjectConfig = get(emailConfig, "subjects");
+				Map<String, Object> subjectConfig = get(emailConfig, "subjects");
 				Properties subjectProps = subjectConfig != null
-						? subjectConfig.toProperties()
+						? toProperties(subjectConfig, null)
 						: new Properties();
 
 				Integer maxEmailHistoryItems = get(emailConfig, "maxHistoryItems");
@@ -333,8 +506,9 @@ class PerfAlyzerFactory {
 			}
 
 			/***** thread count *****/
-			Integer threadCount = get(slurpConfigObject, "threadCount");
-			executorService = Executors.newFixedThreadPool(threadCount);
+			executorService = sharedResources != null
+					? sharedResources.executorService
+					: createExecutorService(slurpConfigObject);
 			localConfigObject.executorService = executorService;
 
 			/***** display data *****/
@@ -353,30 +527,41 @@ class PerfAlyzerFactory {
 			localConfigObject.reportContentsConfigMap = reportContentsConfigMap;
 			localConfigObject.displayDataList = displayDataList;
 		} catch (IOException io) {
-			log.error("Error creating objects for perfAlyzer object creation.", io);
+			LOG.error("Error creating objects for perfAlyzer object creation.", io);
 			Throwables.propagate(io);
 		}
 		return localConfigObject;
 	}
 
-	private List<Marker> provideMarkers(final File unzippedDir,
-			final TestMetadata testMetadata) {
-		log.info("Loading markers from load profile...");
+	private LoadProfile provideLoadProfile(final File unzippedDir,
+			final TestMetadata testMetadata, final File workDir, final boolean normalization) {
 		File loadProfileFile = getOnlyElement(listFiles(new File(unzippedDir, "console/console-logs"),
 				suffixFileFilter(".perfload"), null));
-		MarkersReader markerReader = new MarkersReader(loadProfileFile, testMetadata.getTestStart());
+		File relativeFile = makeRelative(unzippedDir, loadProfileFile);
+		LoadProfileProcessor processor = new LoadProfileProcessor(testMetadata.getTestStart(), workDir);
 		try {
-			return markerReader.readMarkers();
+			// the lines of the load profile are only needed for normalization
+			if (!normalization) {
+				LoadProfile loadProfile = processor.load(unzippedDir, relativeFile);
+				if (loadProfile != null) {
+					LOG.info("Using processed load profile from '{}'", workDir);
+					return loadProfile;
+				}
+			}
+			LOG.info("Processing load profile...");
+			return processor.process(unzippedDir, relativeFile);
 		} catch (IOException io) {
-			log.error("Error reading markers.", io);
-			Throwables.propagate(io);
+			LOG.error("Error processing load profile.", io);
+			throw Throwables.propagate(io);
 		}
-		return null;
 	}
 
-	private List<String> provideReportTabNames(final List<Marker> markers) {
+	private List<String> provideReportTabNames(final List<Marker> markers, final boolean analysisPerformanceTab) {
 		List<String> result = newArrayList("Overall");
 		result.addAll(markers.stream().map(Marker::getName).collect(toList()));
+		if (analysisPerformanceTab) {
+			result.add(ReportCreator.ANALYSIS_PERFORMANCE_TAB);
+		}
 		return result;
 	}
 
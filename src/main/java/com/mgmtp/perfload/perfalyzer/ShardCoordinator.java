@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listAllPerfAlyzerFiles;
+import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.saveProperties;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.workflow.MeasuringWorkflow;
+import com.mgmtp.perfload.perfalyzer.workflow.WorkflowExecutor;
+
+/**
+ * Distributes the binning of measuring and perfMon data across separate worker JVMs, each with
+ * its own heap. Normalized files are partitioned into shards by logical file, i. e. all parts of
+ * an operation's measurings or a host's perfMon data end up in the same shard, so that the
+ * binned files a worker writes are complete and can be moved to the binned directory as they
+ * are. Workers read and write their shard directories only. GC logs and the load profile are
+ * binned in this process. Workers get the configuration resolved by this process (see
+ * {@link ShardWorker}), so they neither load the config file nor process the load profile again.
+ *
+ * @author rnaegele
+ */
+public class ShardCoordinator {
+
+	static final String NORMALIZED_DIR = "normalized";
+	static final String BINNED_DIR = "binned";
+	static final String WORKER_CONFIG_FILE = "worker.properties";
+
+	private static final Logger LOG = LoggerFactory.getLogger(ShardCoordinator.class);
+
+	private final WorkflowExecutor workflowExecutor;
+	private final int workerCount;
+	@Nullable
+	private final String workerHeap;
+	private final Properties workerConfig;
+
+	/**
+	 * @param workflowExecutor
+	 *            the executor for binning files that are not sharded
+	 * @param workerCount
+	 *            the maximum number of worker processes
+	 * @param workerHeap
+	 *            the maximum heap size of a worker process in the format of the {@code -Xmx}
+	 *            option; if {@code null}, the JVM's default is used
+	 * @param workerConfig
+	 *            the configuration passed on to the workers (see
+	 *            {@link ShardWorker#createConfig})
+	 */
+	public ShardCoordinator(final WorkflowExecutor workflowExecutor, final int workerCount, @Nullable final String workerHeap,
+			final Properties workerConfig) {
+		this.workflowExecutor = workflowExecutor;
+		this.workerCount = workerCount;
+		this.workerHeap = workerHeap;
+		this.workerConfig = workerConfig;
+	}
+
+	/**
+	 * Bins the normalized files, launching a worker process per non-empty shard.
+	 *
+	 * @param normalizedDir
+	 *            the directory with the normalized files
+	 * @param binnedDir
+	 *            the directory for the binned files
+	 */
+	public void executeBinningTasks(final File normalizedDir, final File binnedDir) throws IOException {
+		File shardsDir = new File(binnedDir.getParentFile(), binnedDir.getName() + "_shards");
+		deleteDirectory(shardsDir);
+
+		List<PerfAlyzerFile> files = listAllPerfAlyzerFiles(normalizedDir);
+		List<List<PerfAlyzerFile>> shards = partition(normalizedDir, files.stream()
+				.filter(ShardCoordinator::isShardable)
+				.collect(toList()), workerCount);
+
+		File localDir = new File(shardsDir, "local");
+		linkFiles(normalizedDir, localDir, files.stream().filter(file -> !isShardable(file)).collect(toList()));
+
+		File workerConfigFile = new File(shardsDir, WORKER_CONFIG_FILE);
+		saveProperties(workerConfigFile, workerConfig);
+
+		List<Process> processes = new ArrayList<>(shards.size());
+		List<File> shardDirs = new ArrayList<>(shards.size());
+		try {
+			for (List<PerfAlyzerFile> shard : shards) {
+				File shardDir = new File(shardsDir, "shard_" + shardDirs.size());
+				linkFiles(normalizedDir, new File(shardDir, NORMALIZED_DIR), shard);
+				shardDirs.add(shardDir);
+
+				LOG.info("Starting binning worker for shard {} ({} files)...", shardDir, shard.size());
+				processes.add(new ProcessBuilder(createWorkerCommand(shardDir, workerConfigFile)).inheritIO().start());
+			}
+
+			// workers write to their shard directories, so the binned directory is not shared
+			workflowExecutor.executeBinningTasks(localDir, binnedDir);
+
+			for (int i = 0; i < processes.size(); ++i) {
+				int exitCode = processes.get(i).waitFor();
+				if (exitCode != 0) {
+					throw new PerfAlyzerException(
+							String.format("Binning worker for shard %s failed with exit code %d", shardDirs.get(i), exitCode));
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new PerfAlyzerException("Interrupted while waiting for binning workers", ex);
+		} finally {
+			processes.forEach(Process::destroy);
+		}
+
+		for (File shardDir : shardDirs) {
+			moveFiles(new File(shardDir, BINNED_DIR), binnedDir);
+		}
+		deleteDirectory(shardsDir);
+	}
+
+	static boolean isShardable(final PerfAlyzerFile file) {
+		String type = file.getFileNameParts().get(0);
+		return "measuring".equals(type) || "perfmon".equals(type);
+	}
+
+	/**
+	 * Partitions the specified files into at most {@code shardCount} shards of similar total
+	 * uncompressed size, keeping the parts of a logical file together. Largest groups are assigned first, each
+	 * to the shard that is currently smallest.
+	 */
+	static List<List<PerfAlyzerFile>> partition(final File baseDir, final List<PerfAlyzerFile> files, final int shardCount) {
+		Map<File, List<PerfAlyzerFile>> groups = files.stream()
+				.collect(groupingBy(MeasuringWorkflow::withoutPart, TreeMap::new, toList()));
+
+		List<List<PerfAlyzerFile>> groupList = newArrayList(groups.values());
+		groupList.sort(Comparator.comparingLong((List<PerfAlyzerFile> group) -> size(baseDir, group)).reversed());
+
+		List<List<PerfAlyzerFile>> shards = new ArrayList<>(shardCount);
+		long[] shardSizes = new long[shardCount];
+		for (int i = 0; i < shardCount; ++i) {
+			shards.add(new ArrayList<>());
+		}
+
+		for (List<PerfAlyzerFile> group : groupList) {
+			int smallest = 0;
+			for (int i = 1; i < shardCount; ++i) {
+				if (shardSizes[i] < shardSizes[smallest]
+						|| shardSizes[i] == shardSizes[smallest] && shards.get(i).size() < shards.get(smallest).size()) {
+					smallest = i;
+				}
+			}
+			shards.get(smallest).addAll(group);
+			shardSizes[smallest] += size(baseDir, group);
+		}
+
+		shards.removeIf(List::isEmpty);
+		return shards;
+	}
+
+	private static long size(final File baseDir, final List<PerfAlyzerFile> group) {
+		// binning effort depends on the content, not on how well a file compresses
+		return CompressionCodec.estimateUncompressedLength(baseDir, group);
+	}
+
+	private List<String> createWorkerCommand(final File shardDir, final File workerConfigFile) {
+		List<String> command = newArrayList();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		if (workerHeap != null) {
+			command.add("-Xmx" + workerHeap);
+		}
+		String logbackConfig = System.getProperty("logback.configurationFile");
+		if (logbackConfig != null) {
+			command.add("-Dlogback.configurationFile=" + logbackConfig);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ShardWorker.class.getName());
+		command.add(shardDir.getAbsolutePath());
+		command.add(workerConfigFile.getAbsolutePath());
+		return command;
+	}
+
+	/**
+	 * Hard-links the specified files into the destination directory, falling back to copying if
+	 * the file system does not support links.
+	 */
+	private static void linkFiles(final File sourceDir, final File destDir, final List<PerfAlyzerFile> files)
+			throws IOException {
+		Files.createDirectories(destDir.toPath());
+		for (PerfAlyzerFile file : files) {
+			Path source = sourceDir.toPath().resolve(file.getFile().toPath());
+			Path dest = destDir.toPath().resolve(file.getFile().toPath());
+			Files.createDirectories(dest.getParent());
+			try {
+				Files.createLink(dest, source);
+			} catch (UnsupportedOperationException | IOException ex) {
+				Files.copy(source, dest, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private static void moveFiles(final File sourceDir, final File destDir) throws IOException {
+		if (!sourceDir.isDirectory()) {
+			return;
+		}
+		Path sourcePath = sourceDir.toPath();
+		try (Stream<Path> stream = Files.walk(sourcePath)) {
+			for (Path source : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+				Path dest = destDir.toPath().resolve(sourcePath.relativize(source));
+				Files.createDirectories(dest.getParent());
+				Files.move(source, dest, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+}
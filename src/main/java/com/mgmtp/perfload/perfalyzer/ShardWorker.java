@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.loadProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
+import com.mgmtp.perfload.perfalyzer.util.NumberFormatProvider;
+import com.mgmtp.perfload.perfalyzer.util.PipelineMetrics;
+import com.mgmtp.perfload.perfalyzer.workflow.MeasuringWorkflow;
+import com.mgmtp.perfload.perfalyzer.workflow.PerfMonWorkflow;
+import com.mgmtp.perfload.perfalyzer.workflow.Workflow;
+import com.mgmtp.perfload.perfalyzer.workflow.WorkflowExecutor;
+
+/**
+ * Entry point of the worker processes launched by a {@link ShardCoordinator}. A worker bins the
+ * normalized files of its shard using the configuration resolved by the coordinator, so neither
+ * the config file nor the load profile is processed again. Memory budgets are derived from the
+ * worker's own heap.
+ * <p>
+ * Usage: {@code ShardWorker <shardDir> <configFile>}
+ *
+ * @author rnaegele
+ */
+public class ShardWorker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ShardWorker.class);
+
+	private static final String LOCALE = "locale";
+	private static final String INTERMEDIATE_COMPRESSION = "intermediateCompression";
+	private static final String THREAD_COUNT = "threadCount";
+	private static final String TASK_MEMORY_BUDGET_PERCENT = "taskMemoryBudgetPercent";
+	private static final String BINNING_MEMORY_BUDGET_MB = "binningMemoryBudgetMb";
+	private static final String MARKER_COUNT = "markers";
+	private static final String MARKER_PREFIX = "marker.";
+
+	private ShardWorker() {
+	}
+
+	public static void main(final String[] args) {
+		try {
+			checkArgument(args.length == 2, "Usage: ShardWorker <shardDir> <configFile>");
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			run(new File(args[0]), loadProperties(new File(args[1])));
+			LOG.info("Shard binned in {}", stopwatch);
+		} catch (Exception ex) {
+			LOG.error(ex.getMessage(), ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Creates the configuration passed on to the workers.
+	 *
+	 * @param locale
+	 * 		the locale for number formats
+	 * @param intermediateCompression
+	 * 		the codec normalized and binned files are compressed with
+	 * @param threadCount
+	 * 		the number of threads of a worker
+	 * @param taskMemoryBudgetPercent
+	 * 		the configured percentage of the heap tasks may use; if {@code null}, the default is used
+	 * @param binningMemoryBudgetMb
+	 * 		the configured budget for raw response times; if {@code null}, the default is used
+	 * @param markers
+	 * 		the markers of the test
+	 * @return the configuration
+	 */
+	static Properties createConfig(final Locale locale, final CompressionCodec intermediateCompression, final int threadCount,
+			@Nullable final Integer taskMemoryBudgetPercent, @Nullable final Integer binningMemoryBudgetMb,
+			final List<Marker> markers) {
+		Properties config = new Properties();
+		config.setProperty(LOCALE, locale.toString());
+		config.setProperty(INTERMEDIATE_COMPRESSION, intermediateCompression.name());
+		config.setProperty(THREAD_COUNT, String.valueOf(threadCount));
+		if (taskMemoryBudgetPercent != null) {
+			config.setProperty(TASK_MEMORY_BUDGET_PERCENT, String.valueOf(taskMemoryBudgetPercent));
+		}
+		if (binningMemoryBudgetMb != null) {
+			config.setProperty(BINNING_MEMORY_BUDGET_MB, String.valueOf(binningMemoryBudgetMb));
+		}
+		config.setProperty(MARKER_COUNT, String.valueOf(markers.size()));
+		for (int i = 0; i < markers.size(); ++i) {
+			Marker marker = markers.get(i);
+			config.setProperty(MARKER_PREFIX + i + ".name", marker.getName());
+			config.setProperty(MARKER_PREFIX + i + ".left", String.valueOf(marker.getLeftMillis()));
+			config.setProperty(MARKER_PREFIX + i + ".right", String.valueOf(marker.getRightMillis()));
+		}
+		return config;
+	}
+
+	/**
+	 * Bins the normalized files of the specified shard. Only the shard directory is written to.
+	 *
+	 * @param shardDir
+	 * 		the shard directory
+	 * @param config
+	 * 		the configuration created by {@link #createConfig}
+	 */
+	static void run(final File shardDir, final Properties config) throws IOException {
+		File normalizedDir = new File(shardDir, ShardCoordinator.NORMALIZED_DIR);
+		checkState(normalizedDir.isDirectory(), "Shard directory does not exist or is not a directory: %s", normalizedDir);
+
+		Locale locale = new Locale(config.getProperty(LOCALE));
+		CompressionCodec intermediateCompression = CompressionCodec.forName(config.getProperty(INTERMEDIATE_COMPRESSION));
+		List<Marker> markers = readMarkers(config);
+
+		// the same rules as for the analyzing process, applied to the worker's heap
+		Map<String, Object> memoryConfig = new HashMap<>();
+		putIfNonNull(memoryConfig, TASK_MEMORY_BUDGET_PERCENT, config.getProperty(TASK_MEMORY_BUDGET_PERCENT));
+		putIfNonNull(memoryConfig, BINNING_MEMORY_BUDGET_MB, config.getProperty(BINNING_MEMORY_BUDGET_MB));
+		long binningMemoryBudgetBytes = PerfAlyzerFactory.getBinningMemoryBudgetBytes(memoryConfig);
+		long taskMemoryBudgetBytes = PerfAlyzerFactory.getTotalMemoryBudgetBytes(memoryConfig) - binningMemoryBudgetBytes;
+
+		NumberFormatProvider intProvider = new NumberFormatProvider(locale, true);
+		NumberFormatProvider floatProvider = new NumberFormatProvider(locale, false);
+
+		// report preparation is not done by workers, so its dependencies are not needed
+		Workflow measuringWorkflow = new MeasuringWorkflow(null, intProvider, floatProvider, null, null, null, null, 0, 0, 0d,
+				new MemoryBudget(binningMemoryBudgetBytes, new File(shardDir, ".spill")), intermediateCompression, null, markers);
+		Workflow perfMonWorkflow = new PerfMonWorkflow(null, intProvider, intProvider, null, null, null, null,
+				intermediateCompression, markers);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Integer.parseInt(config.getProperty(THREAD_COUNT)));
+		try {
+			WorkflowExecutor workflowExecutor = new WorkflowExecutor(ImmutableSet.of(measuringWorkflow, perfMonWorkflow),
+					executorService, markers, new PipelineMetrics(), taskMemoryBudgetBytes);
+			workflowExecutor.executeBinningTasks(normalizedDir, new File(shardDir, ShardCoordinator.BINNED_DIR));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private static List<Marker> readMarkers(final Properties config) {
+		int count = Integer.parseInt(config.getProperty(MARKER_COUNT, "0"));
+		List<Marker> markers = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			Marker marker = new Marker(config.getProperty(MARKER_PREFIX + i + ".name"));
+			marker.setLeftMillis(Long.parseLong(config.getProperty(MARKER_PREFIX + i + ".left")));
+			marker.setRightMillis(Long.parseLong(config.getProperty(MARKER_PREFIX + i + ".right")));
+			markers.add(marker);
+		}
+		return markers;
+	}
+
+	private static void putIfNonNull(final Map<String, Object> map, final String key, @Nullable final String value) {
+		if (value != null) {
+			map.put(key, Integer.valueOf(value));
+		}
+	}
+}
@@ -24,13 +24,16 @@ import java.nio.channels.WritableByteChannel;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.DoubleStream;
 import java.util.stream.LongStream;
 import java.util.stream.LongStream.Builder;
 import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
 import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
@@ -48,6 +51,11 @@ public class BinManager {
 	private final List<Bin> bins = new ArrayList<>(50);
 	private final int binSize;
 	private final int indexOffset;
+	/**
+	 * The values of the bins cut by the borders of slice ranges, by bin index. Only these bins
+	 * need to be split when slicing (see {@link #slice(double, double)}).
+	 */
+	private final Map<Integer, List<Value>> borderBinValues = new HashMap<>(0);
 
 	/**
 	 * @param domainStart
@@ -106,6 +114,124 @@ public class BinManager {
 		if (rangeValue != null) {
 			bin.values.add(rangeValue);
 		}
+
+		List<Value> borderValues = borderBinValues.get(binIndexInRange);
+		if (borderValues != null) {
+			borderValues.add(new Value(domainValue, rangeValue));
+		}
+	}
+
+	/**
+	 * Registers a domain range, e. g. of a marker, that is to be sliced from the bins (see
+	 * {@link #slice(double, double)}). The values of the at most two bins cut by the borders of
+	 * the range are retained, so these bins can be split. Ranges must be registered before values
+	 * are added.
+	 *
+	 * @param rangeStart
+	 * 		the start of the range (inclusive)
+	 * @param rangeEnd
+	 * 		the end of the range (exclusive)
+	 */
+	public void addSliceRange(final double rangeStart, final double rangeEnd) {
+		checkState(bins.isEmpty(), "Slice ranges must be added before values.");
+		for (double border : new double[] { rangeStart, rangeEnd }) {
+			int borderBinIndex = borderBinIndex(border);
+			if (borderBinIndex >= 0) {
+				borderBinValues.computeIfAbsent(borderBinIndex, i -> new ArrayList<>());
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the bin cut by the specified border, or -1 if the border is aligned with
+	 * the bins or lies before the start of the domain
+	 */
+	private int borderBinIndex(final double border) {
+		double offset = border - domainStart;
+		return offset < 0d || offset % binSize == 0d ? -1 : (int) (offset / binSize);
+	}
+
+	/**
+	 * Merges the bins of the specified bin manager into this one, e. g. in order to combine the
+	 * results of binning several files independently. Counts are added up and range values are
+	 * appended. Domain start and bin size must be the same.
+	 *
+	 * @param other
+	 * 		the bin manager to merge
+	 */
+	public void merge(final BinManager other) {
+		checkState(domainStart == other.domainStart && binSize == other.binSize,
+				"Cannot merge bins with different domain start or bin size [%s/%s != %s/%s].", other.domainStart, other.binSize,
+				domainStart, binSize);
+
+		int existingBins = bins.size();
+		range(existingBins, other.bins.size()).forEach(i -> bins.add(new Bin(i + indexOffset)));
+
+		for (int i = 0; i < other.bins.size(); ++i) {
+			Bin bin = bins.get(i);
+			Bin otherBin = other.bins.get(i);
+			bin.counter += otherBin.counter;
+			bin.values.addAll(otherBin.values);
+		}
+
+		checkState(borderBinValues.keySet().equals(other.borderBinValues.keySet()),
+				"Cannot merge bins with different slice ranges.");
+		other.borderBinValues.forEach((binIndex, values) -> borderBinValues.get(binIndex).addAll(values));
+	}
+
+	/**
+	 * Creates a bin manager with the bins of the specified domain range, e. g. in order to derive
+	 * the bins of a marker from the bins of the whole test. Bins within the range are copied, bins
+	 * cut by the borders of the range are recomputed from the values within the range. Absolute
+	 * bin indices are retained. Empty bins at the end of the range are omitted.
+	 *
+	 * @param rangeStart
+	 * 		the start of the range (inclusive)
+	 * @param rangeEnd
+	 * 		the end of the range (exclusive)
+	 * @return the bin manager, which has no bins if there are no values within the range
+	 * @throws IllegalArgumentException
+	 * 		if a border of the range cuts a bin and the range has not been registered (see
+	 * 		{@link #addSliceRange(double, double)})
+	 */
+	public BinManager slice(final double rangeStart, final double rangeEnd) {
+		int fromIndex = Math.max(0, (int) Math.floor((rangeStart - domainStart) / binSize));
+		int toIndex = Math.min(bins.size(), (int) Math.ceil((rangeEnd - domainStart) / binSize));
+
+		BinManager result = new BinManager(domainStart + (double) fromIndex * binSize, binSize);
+		for (int i = fromIndex; i < toIndex; ++i) {
+			Bin bin = bins.get(i);
+			if (i != borderBinIndex(rangeStart) && i != borderBinIndex(rangeEnd)) {
+				result.bins.add(new Bin(bin));
+				continue;
+			}
+
+			List<Value> values = borderBinValues.get(i);
+			checkArgument(values != null, "Range [%s, %s) has not been registered for slicing.", rangeStart, rangeEnd);
+			Bin borderBin = new Bin(bin.absoluteBinIndex);
+			for (Value value : values) {
+				if (rangeStart <= value.domainValue && value.domainValue < rangeEnd) {
+					borderBin.counter++;
+					if (value.rangeValue != null) {
+						borderBin.values.add(value.rangeValue);
+					}
+				}
+			}
+			result.bins.add(borderBin);
+		}
+
+		// like binning the values of the range, the slice ends with the last bin with values
+		while (!result.bins.isEmpty() && result.bins.get(result.bins.size() - 1).counter == 0L) {
+			result.bins.remove(result.bins.size() - 1);
+		}
+		return result;
+	}
+
+	/**
+	 * @return {@code true} if no value has been added to any of the bins
+	 */
+	public boolean isEmpty() {
+		return bins.stream().allMatch(bin -> bin.counter == 0L);
 	}
 
 	/**
@@ -210,6 +336,16 @@ public class BinManager {
 		}
 	}
 
+	private static class Value {
+		private final double domainValue;
+		private final Double rangeValue;
+
+		private Value(final double domainValue, final Double rangeValue) {
+			this.domainValue = domainValue;
+			this.rangeValue = rangeValue;
+		}
+	}
+
 	/**
 	 * Represents a bin. Each bin has a counter and a list of values associated to the bin.
 	 */
@@ -222,6 +358,12 @@ public class BinManager {
 			this.absoluteBinIndex = absoluteBinIndex;
 		}
 
+		private Bin(final Bin bin) {
+			this.absoluteBinIndex = bin.absoluteBinIndex;
+			this.counter = bin.counter;
+			this.values.addAll(bin.values);
+		}
+
 		public int getAbsoluteBinIndex() {
 			return absoluteBinIndex;
 		}
@@ -15,18 +15,28 @@
  */
 package com.mgmtp.perfload.perfalyzer.binning;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
 import java.util.Scanner;
 
 import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.mgmtp.perfload.perfalyzer.util.ChannelManager;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.LineCountingInputStream;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.util.TaskMetrics;
 
 /**
  * Performs binning and aggregation tasks.
@@ -54,7 +64,8 @@ public class Binner {
 	}
 
 	/**
-	 * Performs the binning operation on the specified file.
+	 * Performs the binning operation on the specified file. Compressed files are decompressed
+	 * automatically.
 	 *
 	 * @param file
 	 *            the file to be binned and/or aggregated; must be relative to the source
@@ -62,10 +73,12 @@ public class Binner {
 	 */
 	public void binFile(final PerfAlyzerFile file) throws IOException {
 		FileOutputStream fos = null;
-		try (FileInputStream fis = new FileInputStream(new File(sourceDir, file.getFile().getPath()));
+		TaskMetrics.recordFile(file.getFile().getPath());
+		try (LineCountingInputStream is = new LineCountingInputStream(
+				CompressionCodec.openInputStream(new File(sourceDir, file.getFile().getPath())));
 				ChannelManager channelManager = new ChannelManager(destDir, channelKey -> file.copy().addFileNamePart(channelKey))) {
 
-			Scanner scanner = new Scanner(fis, Charsets.UTF_8.name());
+			Scanner scanner = new Scanner(is, Charsets.UTF_8.name());
 			if (binningStrategy.needsBinning()) {
 				File destFile = new File(destDir, binningStrategy.transformDefautBinnedFilePath(file));
 				Files.createParentDirs(destFile);
@@ -77,8 +90,133 @@ public class Binner {
 			}
 
 			binningStrategy.aggregateData(channelManager);
+			TaskMetrics.recordRead(is.getLineCount(), is.getByteCount());
 		} finally {
 			closeQuietly(fos);
+			closeStrategy();
+		}
+	}
+
+	/**
+	 * Adds the data of the specified file to the state of the binning strategy, which must be a
+	 * {@link MergeableBinningStrategy}. Nothing is written.
+	 *
+	 * @param file
+	 *            the file to accumulate; must be relative to the source directory
+	 */
+	public void accumulateFile(final PerfAlyzerFile file) throws IOException {
+		checkState(binningStrategy instanceof MergeableBinningStrategy, "Binning strategy is not mergeable: %s",
+				binningStrategy);
+		TaskMetrics.recordFile(file.getFile().getPath());
+		try (LineCountingInputStream is = new LineCountingInputStream(
+				CompressionCodec.openInputStream(new File(sourceDir, file.getFile().getPath())))) {
+			accumulate(is);
+		} catch (IOException | RuntimeException ex) {
+			// the state is discarded, so resources held by it must be released
+			closeStrategy();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Adds the data between the specified offsets of the specified file to the state of the
+	 * binning strategy, which must be a {@link MergeableBinningStrategy}. Nothing is written. This
+	 * way, data appended to a file can be accumulated without reading the file from the start
+	 * again. The start offset must be the end of a line or, for a compressed file, of a gzip member
+	 * or LZ4 frame.
+	 *
+	 * @param file
+	 *            the file to accumulate; must be relative to the source directory
+	 * @param startOffset
+	 *            the offset of the first byte to accumulate
+	 * @param endOffset
+	 *            the offset after the last byte to accumulate
+	 */
+	public void accumulateFile(final PerfAlyzerFile file, final long startOffset, final long endOffset) throws IOException {
+		checkState(binningStrategy instanceof MergeableBinningStrategy, "Binning strategy is not mergeable: %s",
+				binningStrategy);
+		checkArgument(startOffset <= endOffset, "Start offset must not be greater than end offset: %s > %s", startOffset,
+				endOffset);
+		TaskMetrics.recordFile(file.getFile().getPath());
+		try (FileInputStream fis = new FileInputStream(new File(sourceDir, file.getFile().getPath()))) {
+			fis.getChannel().position(startOffset);
+			try (LineCountingInputStream is = new LineCountingInputStream(
+					CompressionCodec.decompressing(ByteStreams.limit(fis, endOffset - startOffset)))) {
+				accumulate(is);
+			}
+		} catch (IOException | RuntimeException ex) {
+			closeStrategy();
+			throw ex;
+		}
+	}
+
+	private void accumulate(final LineCountingInputStream is) throws IOException {
+		Scanner scanner = new Scanner(is, Charsets.UTF_8.name());
+		((MergeableBinningStrategy<?>) binningStrategy).accumulate(scanner);
+		TaskMetrics.recordRead(is.getLineCount(), is.getByteCount());
+	}
+
+	/**
+	 * Writes binned and aggregated data from the state of the binning strategy, which must be a
+	 * {@link MergeableBinningStrategy} or a {@link SliceableBinningStrategy}, as if the specified
+	 * file had been binned.
+	 *
+	 * @param file
+	 *            the file output files are named after; must be relative to the source directory
+	 */
+	public void writeBinnedFiles(final PerfAlyzerFile file) throws IOException {
+		checkState(binningStrategy instanceof MergeableBinningStrategy || binningStrategy instanceof SliceableBinningStrategy,
+				"Binning strategy is neither mergeable nor sliceable: %s", binningStrategy);
+		try (ChannelManager channelManager = new ChannelManager(destDir, channelKey -> file.copy().addFileNamePart(channelKey))) {
+			if (binningStrategy.needsBinning()) {
+				File destFile = new File(destDir, binningStrategy.transformDefautBinnedFilePath(file));
+				Files.createParentDirs(destFile);
+				try (FileOutputStream fos = new FileOutputStream(destFile)) {
+					writeBinnedData(fos.getChannel());
+				}
+			}
+			binningStrategy.aggregateData(channelManager);
+		}
+	}
+
+	/**
+	 * Writes binned and aggregated data for the specified markers from slices of the state of the
+	 * binning strategy, which must be a {@link SliceableBinningStrategy}, as if the marker files of
+	 * the specified file had been binned. Nothing is written for markers without data.
+	 *
+	 * @param file
+	 *            the file output files are named after; must be relative to the source directory
+	 * @param markers
+	 *            the markers
+	 */
+	public void writeMarkerSlices(final PerfAlyzerFile file, final List<Marker> markers) throws IOException {
+		checkState(binningStrategy instanceof SliceableBinningStrategy, "Binning strategy is not sliceable: %s",
+				binningStrategy);
+		for (Marker marker : markers) {
+			BinningStrategy slice = ((SliceableBinningStrategy<?>) binningStrategy).slice(marker.getLeftMillis(),
+					marker.getRightMillis());
+			if (slice != null) {
+				PerfAlyzerFile markerFile = file.copy();
+				markerFile.setMarker(marker.getName());
+				new Binner(sourceDir, destDir, slice).writeBinnedFiles(markerFile);
+			}
+		}
+	}
+
+	/**
+	 * Releases resources of the binning strategy, e. g. reserved memory, if it holds any.
+	 */
+	private void closeStrategy() throws IOException {
+		if (binningStrategy instanceof Closeable) {
+			((Closeable) binningStrategy).close();
+		}
+	}
+
+	private void writeBinnedData(final WritableByteChannel destChannel) throws IOException {
+		if (binningStrategy instanceof MergeableBinningStrategy) {
+			((MergeableBinningStrategy<?>) binningStrategy).writeBinnedData(destChannel);
+		} else {
+			((SliceableBinningStrategy<?>) binningStrategy).writeBinnedData(destChannel);
 		}
 	}
 }
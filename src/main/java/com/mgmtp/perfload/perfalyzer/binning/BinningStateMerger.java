@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * Combines the states of {@link MergeableBinningStrategy}s that have accumulated the parts of a
+ * file independently, possibly in different threads. When the state of the last part has been
+ * added, the binned and aggregated data is written as if the complete file had been binned. If a
+ * part could not be accumulated, nothing is written, and adding the last part fails.
+ * Optionally, the data of markers is written as well, which requires a
+ * {@link SliceableBinningStrategy}.
+ *
+ * @param <T>
+ * 		the strategy type
+ * @author rnaegele
+ */
+public class BinningStateMerger<T extends MergeableBinningStrategy<T>> {
+
+	private final File sourceDir;
+	private final File destDir;
+	private final PerfAlyzerFile file;
+	private final List<Marker> markers;
+
+	private int remainingParts;
+	private int failedParts;
+	private T mergedStrategy;
+
+	/**
+	 * @param sourceDir
+	 *            the source directory where normalized files are located
+	 * @param destDir
+	 *            the destination directory
+	 * @param file
+	 *            the file output files are named after
+	 * @param partCount
+	 *            the number of parts
+	 */
+	public BinningStateMerger(final File sourceDir, final File destDir, final PerfAlyzerFile file, final int partCount) {
+		this(sourceDir, destDir, file, partCount, ImmutableList.of());
+	}
+
+	/**
+	 * @param sourceDir
+	 *            the source directory where normalized files are located
+	 * @param destDir
+	 *            the destination directory
+	 * @param file
+	 *            the file output files are named after
+	 * @param partCount
+	 *            the number of parts
+	 * @param markers
+	 *            the markers whose data is sliced from the merged state and written as well; if
+	 *            not empty, the strategy must be a {@link SliceableBinningStrategy}
+	 */
+	public BinningStateMerger(final File sourceDir, final File destDir, final PerfAlyzerFile file, final int partCount,
+			final List<Marker> markers) {
+		this.sourceDir = sourceDir;
+		this.destDir = destDir;
+		this.file = file;
+		this.remainingParts = partCount;
+		this.markers = markers;
+	}
+
+	/**
+	 * Adds the state of a strategy that has accumulated one part. Writes the result if this was
+	 * the last part.
+	 *
+	 * @param strategy
+	 *            the strategy; must not be used afterwards
+	 */
+	public synchronized void addPart(final T strategy) throws IOException {
+		checkState(remainingParts > 0, "All parts of '%s' have already been added", file);
+
+		if (failedParts == 0) {
+			if (mergedStrategy == null) {
+				mergedStrategy = strategy;
+			} else {
+				mergedStrategy.merge(strategy);
+			}
+		}
+
+		if (--remainingParts == 0) {
+			checkState(failedParts == 0, "%s part(s) of '%s' could not be binned, so no data was written", failedParts, file);
+
+			Binner binner = new Binner(sourceDir, destDir, mergedStrategy);
+			binner.writeBinnedFiles(file);
+			if (!markers.isEmpty()) {
+				binner.writeMarkerSlices(file, markers);
+			}
+			mergedStrategy = null;
+		}
+	}
+
+	/**
+	 * Records that a part could not be accumulated. The states of the other parts are discarded.
+	 * The failure of the part itself is to be reported by the caller.
+	 */
+	public synchronized void addFailedPart() {
+		checkState(remainingParts > 0, "All parts of '%s' have already been added", file);
+
+		failedParts++;
+		remainingParts--;
+		mergedStrategy = null;
+	}
+}
@@ -15,10 +15,11 @@
  */
 package com.mgmtp.perfload.perfalyzer.binning;
 
-import static com.google.common.collect.Maps.newHashMap;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_ERROR_MSG;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_RESULT;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.TOP_ERROR_TYPES;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.TOP_ERROR_TYPES_PER_BIN;
 import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
 import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
 
@@ -28,32 +29,43 @@ import java.text.NumberFormat;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
+import java.util.TreeMap;
 
-import javax.annotation.Nullable;
-
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.text.StrBuilder;
 
 import com.google.common.base.Charsets;
+import com.mgmtp.perfload.perfalyzer.binning.HeavyHitters.HeavyHitter;
 import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
 import com.mgmtp.perfload.perfalyzer.util.ChannelManager;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 
 /**
+ * Counts errors over time and by type. Error messages are reduced to templates (see
+ * {@link ErrorMessageTemplates}), and the most frequent templates are counted with a fixed number
+ * of counters overall and per 10-minute bin, so memory stays bounded even if error messages
+ * contain IDs or timestamps.
+ *
  * @author rnaegele
  */
-public class ErrorCountBinningStragegy extends AbstractBinningStrategy {
+public class ErrorCountBinningStragegy extends AbstractBinningStrategy
+		implements MergeableBinningStrategy<ErrorCountBinningStragegy> {
 
-	private final Map<String, MutableInt> errorsByType = newHashMap();
+	static final int ERROR_TYPES_CAPACITY = 1000;
+	static final int ERROR_TYPES_PER_BIN_CAPACITY = 100;
+
+	private final HeavyHitters errorsByType = new HeavyHitters(ERROR_TYPES_CAPACITY);
+	private final Map<Integer, HeavyHitters> errorsByTypePerBin = new TreeMap<>();
+	private final BinManager binManager;
+	private final int binIndexOffset;
 
 	public ErrorCountBinningStragegy(final long startOfFirstBin, final NumberFormat intNumberFormat, final NumberFormat floatNumberFormat) {
 		super(startOfFirstBin, intNumberFormat, floatNumberFormat);
+		this.binManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS);
+		this.binIndexOffset = (int) Math.ceil((double) startOfFirstBin / PerfAlyzerConstants.BIN_SIZE_MILLIS_10_MINUTES);
 	}
 
 	@Override
-	public void binData(final Scanner scanner, @Nullable final WritableByteChannel destChannel) throws IOException {
-		BinManager binManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS);
-
+	public void accumulate(final Scanner scanner) throws IOException {
 		while (scanner.hasNextLine()) {
 			tokenizer.reset(scanner.nextLine());
 			String[] tokens = tokenizer.getTokenArray();
@@ -62,18 +74,27 @@ public class ErrorCountBinningStragegy extends AbstractBinningStrategy {
 
 			boolean isError = "ERROR".equals(tokens[MEASURING_NORMALIZED_COL_RESULT]);
 			if (isError) {
-				String errorMsg = tokens[MEASURING_NORMALIZED_COL_ERROR_MSG];
-				MutableInt errorsByTypeCounter = errorsByType.get(errorMsg);
-				if (errorsByTypeCounter == null) {
-					errorsByTypeCounter = new MutableInt();
-					errorsByType.put(errorMsg, errorsByTypeCounter);
-				}
-				errorsByTypeCounter.increment();
+				String errorType = ErrorMessageTemplates.toTemplate(tokens[MEASURING_NORMALIZED_COL_ERROR_MSG]);
+				errorsByType.add(errorType);
+
+				int binIndex = (int) ((timestampMillis - startOfFirstBin) / PerfAlyzerConstants.BIN_SIZE_MILLIS_10_MINUTES) + binIndexOffset;
+				errorsByTypePerBin.computeIfAbsent(binIndex, index -> new HeavyHitters(ERROR_TYPES_PER_BIN_CAPACITY)).add(errorType);
 
 				binManager.addValue(timestampMillis);
 			}
 		}
+	}
+
+	@Override
+	public void merge(final ErrorCountBinningStragegy other) {
+		errorsByType.merge(other.errorsByType);
+		other.errorsByTypePerBin.forEach((binIndex, otherErrors) -> errorsByTypePerBin
+				.computeIfAbsent(binIndex, index -> new HeavyHitters(ERROR_TYPES_PER_BIN_CAPACITY)).merge(otherErrors));
+		binManager.merge(other.binManager);
+	}
 
+	@Override
+	public void writeBinnedData(final WritableByteChannel destChannel) throws IOException {
 		binManager.toCsv(destChannel, "seconds", "count", intNumberFormat);
 	}
 
@@ -90,12 +111,27 @@ public class ErrorCountBinningStragegy extends AbstractBinningStrategy {
 		appendEscapedAndQuoted(sb, DELIMITER, "error", "count");
 		writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
 
-		for (Entry<String, MutableInt> entry : errorsByType.entrySet()) {
+		for (HeavyHitter errorType : errorsByType.top(TOP_ERROR_TYPES)) {
 			sb = new StrBuilder(300);
-			appendEscapedAndQuoted(sb, DELIMITER, entry.getKey());
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(entry.getValue().getValue()));
+			appendEscapedAndQuoted(sb, DELIMITER, errorType.getKey());
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(errorType.getCount()));
 			writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
 		}
+
+		channel = channelManager.getChannel("errorsByTypeOverTime");
+
+		sb = new StrBuilder();
+		appendEscapedAndQuoted(sb, DELIMITER, "time", "error", "count");
+		writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
+
+		for (Entry<Integer, HeavyHitters> entry : errorsByTypePerBin.entrySet()) {
+			String time = intNumberFormat.format((long) entry.getKey() * PerfAlyzerConstants.BIN_SIZE_MILLIS_10_MINUTES / 1000);
+			for (HeavyHitter errorType : entry.getValue().top(TOP_ERROR_TYPES_PER_BIN)) {
+				sb = new StrBuilder(300);
+				appendEscapedAndQuoted(sb, DELIMITER, time, errorType.getKey(), intNumberFormat.format(errorType.getCount()));
+				writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
+			}
+		}
 	}
 
 	@Override
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collapses variable tokens of error messages, such as IDs, timestamps, or addresses, into
+ * placeholders, so that messages which only differ in such tokens are counted as the same type
+ * of error. Short numbers are retained, because they are often meaningful, e. g. HTTP status
+ * codes.
+ *
+ * @author rnaegele
+ */
+public final class ErrorMessageTemplates {
+
+	private static final String[][] RULES = {
+			{ "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}", "<uuid>" },
+			{ "\\d{4}-\\d{2}-\\d{2}(?:[T ]\\d{2}:\\d{2}(?::\\d{2}(?:[.,]\\d+)?)?(?:Z|[+-]\\d{2}:?\\d{2})?)?|\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d+)?",
+					"<timestamp>" },
+			{ "[\\w.+-]+@[\\w-]+(?:\\.[\\w-]+)+", "<email>" },
+			{ "\\b\\d{1,3}(?:\\.\\d{1,3}){3}(?::\\d+)?\\b", "<ip>" },
+			{ "\\b(?:0x)?(?=[0-9a-fA-F]*[a-fA-F])(?=[0-9a-fA-F]*\\d)[0-9a-fA-F]{8,}\\b", "<hex>" },
+			// long tokens with a run of hex digits, e. g. session IDs, but not class names such as Http11NioProcessor
+			{ "\\b(?=\\w{16,}\\b)\\w*?(?=[0-9a-fA-F]*\\d)[0-9a-fA-F]{8,}\\w*\\b", "<id>" },
+			{ "\\d+\\.\\d+|\\d{4,}", "<n>" }
+	};
+
+	private static final Pattern[] PATTERNS = new Pattern[RULES.length];
+
+	static {
+		for (int i = 0; i < RULES.length; ++i) {
+			PATTERNS[i] = Pattern.compile(RULES[i][0]);
+		}
+	}
+
+	private ErrorMessageTemplates() {
+		// don't allow instantiation
+	}
+
+	/**
+	 * Creates the template of the specified error message.
+	 *
+	 * @param errorMessage
+	 * 		the error message
+	 * @return the template
+	 */
+	public static String toTemplate(final String errorMessage) {
+		if (!containsDigit(errorMessage) && errorMessage.indexOf('@') < 0) {
+			return errorMessage;
+		}
+
+		String result = errorMessage;
+		for (int i = 0; i < PATTERNS.length; ++i) {
+			Matcher matcher = PATTERNS[i].matcher(result);
+			if (matcher.find()) {
+				result = matcher.replaceAll(RULES[i][1]);
+			}
+		}
+		return result;
+	}
+
+	private static boolean containsDigit(final String s) {
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				return true;
+			}
+		}
+		return false;
+	}
+}
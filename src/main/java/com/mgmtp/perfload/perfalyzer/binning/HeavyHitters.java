@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Counts the most frequent keys of a stream with a fixed number of counters using the
+ * Space-Saving algorithm (Metwally et al., 2005). If all counters are in use, the counter of the
+ * least frequent key is taken over by a new key, which inherits its count as possible
+ * overestimation. Thus, memory is bounded no matter how many distinct keys occur, and any key
+ * occurring more often than {@code totalCount / capacity} times is guaranteed to be counted.
+ *
+ * @author rnaegele
+ */
+public class HeavyHitters {
+
+	private static final Comparator<Counter> BY_COUNT = Comparator.<Counter>comparingLong(counter -> counter.count)
+			.thenComparingLong(counter -> counter.sequence);
+
+	private static final Comparator<HeavyHitter> BY_COUNT_DESCENDING = Comparator.comparingLong(HeavyHitter::getCount)
+			.reversed().thenComparing(HeavyHitter::getKey);
+
+	private final int capacity;
+	private final Map<String, Counter> counters;
+	private final TreeSet<Counter> countersByCount = new TreeSet<>(BY_COUNT);
+	private long sequence;
+	private long totalCount;
+
+	/**
+	 * @param capacity
+	 * 		the maximum number of counters
+	 */
+	public HeavyHitters(final int capacity) {
+		checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+		this.capacity = capacity;
+		this.counters = new HashMap<>(Math.min(capacity, 64));
+	}
+
+	public void add(final String key) {
+		add(key, 1L, 0L);
+		totalCount++;
+	}
+
+	private void add(final String key, final long count, final long error) {
+		Counter counter = counters.get(key);
+		if (counter != null) {
+			countersByCount.remove(counter);
+			counter.count += count;
+			counter.error += error;
+		} else if (counters.size() < capacity) {
+			counter = new Counter(key, count, error, sequence++);
+			counters.put(key, counter);
+		} else {
+			Counter evicted = countersByCount.pollFirst();
+			counters.remove(evicted.key);
+			counter = new Counter(key, evicted.count + count, evicted.count + error, sequence++);
+			counters.put(key, counter);
+		}
+		countersByCount.add(counter);
+	}
+
+	/**
+	 * Adds the counts of the specified instance to this one. Overestimations add up, so the result
+	 * has the same error bounds as if all keys had been added to this instance (cf. Agarwal et
+	 * al., Mergeable Summaries, 2012).
+	 *
+	 * @param other
+	 * 		the instance to merge
+	 */
+	public void merge(final HeavyHitters other) {
+		// in descending order, so the most frequent keys of the other instance survive
+		for (HeavyHitter hitter : other.top(other.capacity)) {
+			add(hitter.getKey(), hitter.getCount(), hitter.getError());
+		}
+		totalCount += other.totalCount;
+	}
+
+	/**
+	 * @param n
+	 * 		the maximum number of keys to return
+	 * @return the {@code n} most frequent keys in descending order of their counts
+	 */
+	public List<HeavyHitter> top(final int n) {
+		List<HeavyHitter> result = new ArrayList<>(counters.size());
+		for (Counter counter : counters.values()) {
+			result.add(new HeavyHitter(counter.key, counter.count, counter.error));
+		}
+		result.sort(BY_COUNT_DESCENDING);
+		return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+	}
+
+	/**
+	 * @return the number of all keys added, including those which are not counted anymore
+	 */
+	public long totalCount() {
+		return totalCount;
+	}
+
+	public boolean isEmpty() {
+		return counters.isEmpty();
+	}
+
+	private static final class Counter {
+		private final String key;
+		private final long sequence;
+		private long count;
+		private long error;
+
+		Counter(final String key, final long count, final long error, final long sequence) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * A key with its estimated count.
+	 */
+	public static final class HeavyHitter {
+		private final String key;
+		private final long count;
+		private final long error;
+
+		HeavyHitter(final String key, final long count, final long error) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the estimated count, which is never less than the actual count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the maximum overestimation of the count
+		 */
+		public long getError() {
+			return error;
+		}
+	}
+}
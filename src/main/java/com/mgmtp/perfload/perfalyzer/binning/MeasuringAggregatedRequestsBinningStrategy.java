@@ -27,8 +27,6 @@ import java.nio.channels.WritableByteChannel;
 import java.text.NumberFormat;
 import java.util.Scanner;
 
-import javax.annotation.Nullable;
-
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_REQUEST_TYPE;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_RESULT;
@@ -40,20 +38,23 @@ import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAn
  *
  * @author ctchinda $
  */
-public class MeasuringAggregatedRequestsBinningStrategy extends AbstractBinningStrategy {
+public class MeasuringAggregatedRequestsBinningStrategy extends AbstractBinningStrategy
+		implements MergeableBinningStrategy<MeasuringAggregatedRequestsBinningStrategy> {
+
+	private final BinManager binSecondManager;
+	private final BinManager binMinuteManager;
+
+	private int requestCounter;
+	private int errorCounter;
 
 	public MeasuringAggregatedRequestsBinningStrategy(final long startOfFirstBin, final NumberFormat intNumberFormat, final NumberFormat floatNumberFormat) {
 		super(startOfFirstBin, intNumberFormat, floatNumberFormat);
+		this.binSecondManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND);
+		this.binMinuteManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE);
 	}
 
 	@Override
-	public void binData(final Scanner scanner, @Nullable final WritableByteChannel destChannel) throws IOException {
-		BinManager binSecondManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND);
-		BinManager binMinuteManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE);
-
-		int requestCounter = 0;
-		int errorCounter = 0;
-
+	public void accumulate(final Scanner scanner) throws IOException {
 		while (scanner.hasNextLine()) {
 			tokenizer.reset(scanner.nextLine());
 			String[] tokens = tokenizer.getTokenArray();
@@ -69,7 +70,18 @@ public class MeasuringAggregatedRequestsBinningStrategy extends AbstractBinningS
 				errorCounter++;
 			}
 		}
+	}
 
+	@Override
+	public void merge(final MeasuringAggregatedRequestsBinningStrategy other) {
+		binSecondManager.merge(other.binSecondManager);
+		binMinuteManager.merge(other.binMinuteManager);
+		requestCounter += other.requestCounter;
+		errorCounter += other.errorCounter;
+	}
+
+	@Override
+	public void writeBinnedData(final WritableByteChannel destChannel) throws IOException {
 //		binSecondManager.completeLastBin();
 //		binMinuteManager.completeLastBin();
 
@@ -15,37 +15,56 @@
  */
 package com.mgmtp.perfload.perfalyzer.binning;
 
+import com.google.common.collect.ImmutableList;
 import com.mgmtp.perfload.perfalyzer.util.ChannelManager;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
 import java.text.NumberFormat;
+import java.util.List;
 import java.util.Scanner;
 
-import javax.annotation.Nullable;
-
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_REQUEST_TYPE;
 
 /**
- * Binning implementation for measuring logs.
+ * Binning implementation for measuring logs. The requests of markers are sliced from the bins
+ * of the whole test (see {@link BinManager#slice(double, double)}).
  *
  * @author ctchinda
  */
-public class MeasuringRequestsBinningStrategy extends AbstractBinningStrategy {
+public class MeasuringRequestsBinningStrategy extends AbstractBinningStrategy
+		implements MergeableBinningStrategy<MeasuringRequestsBinningStrategy>,
+		SliceableBinningStrategy<MeasuringRequestsBinningStrategy> {
 
 	private final int binSize;
+	private final BinManager binManager;
 
 	public MeasuringRequestsBinningStrategy(final long startOfFirstBin, final int binSize, final NumberFormat intNumberFormat,
 			final NumberFormat floatNumberFormat) {
+		this(startOfFirstBin, binSize, intNumberFormat, floatNumberFormat, ImmutableList.of());
+	}
+
+	/**
+	 * @param markers
+	 * 		the markers whose requests can be sliced from the strategy
+	 */
+	public MeasuringRequestsBinningStrategy(final long startOfFirstBin, final int binSize, final NumberFormat intNumberFormat,
+			final NumberFormat floatNumberFormat, final List<Marker> markers) {
+		this(startOfFirstBin, binSize, new BinManager(startOfFirstBin, binSize), intNumberFormat, floatNumberFormat);
+		markers.forEach(marker -> binManager.addSliceRange(marker.getLeftMillis(), marker.getRightMillis()));
+	}
+
+	private MeasuringRequestsBinningStrategy(final long startOfFirstBin, final int binSize, final BinManager binManager,
+			final NumberFormat intNumberFormat, final NumberFormat floatNumberFormat) {
 		super(startOfFirstBin, intNumberFormat, floatNumberFormat);
 		this.binSize = binSize;
+		this.binManager = binManager;
 	}
 
 	@Override
-	public void binData(final Scanner scanner, @Nullable final WritableByteChannel destChannel) throws IOException {
-		BinManager binManager = new BinManager(startOfFirstBin, binSize); // new ChannelBinManager(binSize, destChannel, "seconds", "count", intNumberFormat);
-
+	public void accumulate(final Scanner scanner) throws IOException {
 		while (scanner.hasNextLine()) {
 			tokenizer.reset(scanner.nextLine());
 			String[] tokens = tokenizer.getTokenArray();
@@ -55,7 +74,23 @@ public class MeasuringRequestsBinningStrategy extends AbstractBinningStrategy {
 			long timestampMillis = Long.parseLong(tokens[0]);
 			binManager.addValue(timestampMillis);
 		}
+	}
 
+	@Override
+	public void merge(final MeasuringRequestsBinningStrategy other) {
+		binManager.merge(other.binManager);
+	}
+
+	@Override
+	public MeasuringRequestsBinningStrategy slice(final long startMillis, final long endMillis) {
+		BinManager slice = binManager.slice(startMillis, endMillis);
+		return slice.isEmpty()
+				? null
+				: new MeasuringRequestsBinningStrategy(startMillis, binSize, slice, intNumberFormat, floatNumberFormat);
+	}
+
+	@Override
+	public void writeBinnedData(final WritableByteChannel destChannel) throws IOException {
 		binManager.toCsv(destChannel, "seconds", "count", intNumberFormat);
 	}
 
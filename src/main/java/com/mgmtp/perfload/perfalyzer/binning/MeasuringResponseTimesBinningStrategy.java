@@ -18,36 +18,36 @@ package com.mgmtp.perfload.perfalyzer.binning;
 import com.google.common.base.Charsets;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Longs;
+import com.mgmtp.perfload.perfalyzer.binning.SlowestRequests.SlowRequest;
 import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
 import com.mgmtp.perfload.perfalyzer.util.AggregationType;
 import com.mgmtp.perfload.perfalyzer.util.ChannelManager;
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.mutable.MutableLong;
 import org.apache.commons.lang3.text.StrBuilder;
 import org.apache.commons.math3.stat.StatUtils;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import javax.annotation.Nullable;
-
 import java.util.Scanner;
-import java.util.Set;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Maps.newTreeMap;
-import static com.google.common.collect.Sets.newHashSet;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_ERROR_MSG;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_EXECUTION_ID;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_REQUEST_ID;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_REQUEST_TYPE;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_RESULT;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.MEASURING_NORMALIZED_COL_URI_ALIAS;
@@ -56,24 +56,54 @@ import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAn
 import static org.apache.commons.lang3.StringUtils.leftPad;
 
 /**
- * Binning implementation for measuring logs.
+ * Binning implementation for measuring logs. Response times per URI are kept within the specified
+ * {@link MemoryBudget} and spilled to disk if necessary (see {@link SpillableLongValues}), so
+ * quantiles remain exact for tests of any size. Additionally, percentiles per 30-second bin are
+ * computed per URI and per operation from {@link QuantileSketch quantile sketches}, which need
+ * constant memory per bin. When data is accumulated and aggregated repeatedly, e. g. in watch mode,
+ * quantiles per URI may be estimated from sketches as well, so memory stays bounded.
  *
  * @author ctchinda
  * @author rnaegele
  */
-public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrategy {
+public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrategy
+		implements MergeableBinningStrategy<MeasuringResponseTimesBinningStrategy>, Closeable {
+
+	private static final double[] PERCENTILES = { 50d, 90d, 99d, 99.9d };
+
+	// the number of slowest requests listed per URI and per operation
+	static final int SLOWEST_REQUESTS = 10;
 
 	private final Map<String, UriMeasurings> measuringsMap = newTreeMap();
 	private final Map<String, ExecutionMeasurings> perExecutionResponseTimes = newHashMap();
-	private final Set<String> errorExecutions = newHashSet();
+	private final MemoryBudget memoryBudget;
+	private final boolean sketchQuantiles;
 
 	public MeasuringResponseTimesBinningStrategy(final long startOfFirstBin, final NumberFormat intNumberFormat,
 			final NumberFormat floatNumberFormat) {
+		this(startOfFirstBin, intNumberFormat, floatNumberFormat, MemoryBudget.unlimited());
+	}
+
+	public MeasuringResponseTimesBinningStrategy(final long startOfFirstBin, final NumberFormat intNumberFormat,
+			final NumberFormat floatNumberFormat, final MemoryBudget memoryBudget) {
+		this(startOfFirstBin, intNumberFormat, floatNumberFormat, memoryBudget, false);
+	}
+
+	/**
+	 * @param sketchQuantiles
+	 * 		if {@code true}, quantiles per URI are estimated from a {@link QuantileSketch} instead of
+	 * 		being computed from all response times, so more data can be accumulated and aggregated
+	 * 		again with bounded memory, e. g. in watch mode
+	 */
+	public MeasuringResponseTimesBinningStrategy(final long startOfFirstBin, final NumberFormat intNumberFormat,
+			final NumberFormat floatNumberFormat, final MemoryBudget memoryBudget, final boolean sketchQuantiles) {
 		super(startOfFirstBin, intNumberFormat, floatNumberFormat);
+		this.memoryBudget = memoryBudget;
+		this.sketchQuantiles = sketchQuantiles;
 	}
 
 	@Override
-	public void binData(final Scanner scanner, @Nullable final WritableByteChannel destChannel) throws IOException {
+	public void accumulate(final Scanner scanner) throws IOException {
 		while (scanner.hasNextLine()) {
 			tokenizer.reset(scanner.nextLine());
 			String[] tokens = tokenizer.getTokenArray();
@@ -88,7 +118,7 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 			String key = type + "||" + uriAlias;
 			UriMeasurings measurings = measuringsMap.get(key);
 			if (measurings == null) {
-				measurings = new UriMeasurings();
+				measurings = new UriMeasurings(startOfFirstBin, sketchQuantiles ? null : memoryBudget);
 				measurings.type = type;
 				measurings.uriAlias = uriAlias;
 				measuringsMap.put(key, measurings);
@@ -107,12 +137,17 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 			}
 
 			// collect all response times for a URI, so quantiles can be calculated later
-			measurings.responseTimes.add(responseTime.doubleValue());
+			measurings.addResponseTime(responseTime);
+			if (responseTime >= 0) {
+				measurings.percentileBins.addValue(timestampMillis, responseTime);
+
+				String requestId = tokens.length > MEASURING_NORMALIZED_COL_REQUEST_ID ? tokens[MEASURING_NORMALIZED_COL_REQUEST_ID] : "";
+				measurings.slowestRequests.add(timestampMillis, responseTime, requestId, executionId,
+						tokens[MEASURING_NORMALIZED_COL_ERROR_MSG]);
+			}
 
 			if ("ERROR".equals(result)) {
 				measurings.errorCount.increment();
-
-				errorExecutions.add(executionId);
 			}
 
 			if (!isNullOrEmpty(executionId)) {
@@ -120,14 +155,40 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 				if (execMeasurings == null) {
 					execMeasurings = new ExecutionMeasurings();
 					execMeasurings.sumResponseTimes = new MutableLong(responseTime);
+					execMeasurings.timestampMillis = timestampMillis;
 					perExecutionResponseTimes.put(executionId, execMeasurings);
 				} else {
 					perExecutionResponseTimes.get(executionId).sumResponseTimes.add(responseTime);
 				}
-				// always update timestamp so we eventually have the last timestamp of the execution
-				execMeasurings.timestampMillis = timestampMillis;
+				// lines need not be sorted, so keep the maximum in order to eventually have the last timestamp of the execution
+				execMeasurings.timestampMillis = Math.max(execMeasurings.timestampMillis, timestampMillis);
+			}
+		}
+	}
+
+	@Override
+	public void merge(final MeasuringResponseTimesBinningStrategy other) throws IOException {
+		for (Entry<String, UriMeasurings> entry : other.measuringsMap.entrySet()) {
+			UriMeasurings measurings = measuringsMap.get(entry.getKey());
+			if (measurings == null) {
+				measuringsMap.put(entry.getKey(), entry.getValue());
+			} else {
+				measurings.merge(entry.getValue());
 			}
 		}
+		other.perExecutionResponseTimes.forEach((executionId, otherExecMeasurings) -> {
+			ExecutionMeasurings execMeasurings = perExecutionResponseTimes.get(executionId);
+			if (execMeasurings == null) {
+				perExecutionResponseTimes.put(executionId, otherExecMeasurings);
+			} else {
+				execMeasurings.merge(otherExecMeasurings);
+			}
+		});
+	}
+
+	@Override
+	public void writeBinnedData(final WritableByteChannel destChannel) throws IOException {
+		// no-op, see needsBinning()
 	}
 
 	@Override
@@ -137,20 +198,66 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 
 	@Override
 	public void aggregateData(final ChannelManager channelManager) throws IOException {
+		try {
+			writeAggregatedData(channelManager);
+		} finally {
+			if (!sketchQuantiles) {
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Deletes spill files and releases the memory reserved for response times. Called by
+	 * {@link #aggregateData(ChannelManager)} unless quantiles are estimated from sketches, and by
+	 * the {@link Binner} if accumulating fails.
+	 */
+	@Override
+	public void close() {
+		measuringsMap.values().stream()
+				.filter(measurings -> measurings.responseTimes != null)
+				.forEach(measurings -> measurings.responseTimes.close());
+	}
+
+	private void writeAggregatedData(final ChannelManager channelManager) throws IOException {
 		WritableByteChannel quantilesChannel = channelManager.getChannel("quantiles");
 		writeQuantilesHeader(quantilesChannel);
 
+		PercentileBinManager operationPercentileBins = new PercentileBinManager(startOfFirstBin,
+				PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS);
+
+		WritableByteChannel slowestByUriChannel = channelManager.getChannel("slowestByUri");
+		writeSlowestRequestsHeader(slowestByUriChannel);
+		// the slowest requests of the operation are among the slowest ones of its URIs
+		List<SlowRequestWithKey> operationSlowestRequests = new ArrayList<>();
+
 		int i = 0;
 		for (Entry<String, UriMeasurings> entry : measuringsMap.entrySet()) {
 			UriMeasurings measurings = entry.getValue();
 			String uri = measurings.uriAlias;
-			if (measurings.responseTimes.isEmpty()) {
+			if (measurings.isEmpty()) {
 				continue;
 			}
 
-			Percentile percentile = new Percentile();
-			double[] responseTimes = Doubles.toArray(measurings.responseTimes);
-			percentile.setData(responseTimes);
+			long count;
+			long min;
+			long max;
+			double[] quantiles;
+			SpillableLongValues responseTimes = measurings.responseTimes;
+			if (responseTimes != null) {
+				count = responseTimes.size();
+				min = responseTimes.min();
+				max = responseTimes.max();
+				quantiles = responseTimes.percentiles(10d, 50d, 90d);
+				// the values are not needed anymore
+				responseTimes.close();
+			} else {
+				QuantileSketch sketch = measurings.responseTimeSketch;
+				count = sketch.count();
+				min = sketch.min() - 1L;
+				max = sketch.max() - 1L;
+				quantiles = new double[] { sketch.quantile(.1d) - 1d, sketch.quantile(.5d) - 1d, sketch.quantile(.9d) - 1d };
+			}
 
 			// each uri is mapped to a key which is simple a number that is left-padded for better sorting
 			String mappingKey = leftPad(String.valueOf(i++), 3, '0');
@@ -159,13 +266,13 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 			appendEscapedAndQuoted(sb, DELIMITER, mappingKey);
 			appendEscapedAndQuoted(sb, DELIMITER, measurings.type);
 			appendEscapedAndQuoted(sb, DELIMITER, uri);
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(responseTimes.length));
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(count));
 			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(measurings.errorCount));
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(Doubles.min(responseTimes)));
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(percentile.evaluate(10d)));
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(percentile.evaluate(50d)));
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(percentile.evaluate(90d)));
-			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(Doubles.max(responseTimes)));
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format((double) min));
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(quantiles[0]));
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(quantiles[1]));
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(quantiles[2]));
+			appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format((double) max));
 			writeLineToChannel(quantilesChannel, sb.toString(), Charsets.UTF_8);
 
 			// write response time distributions
@@ -178,6 +285,31 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 				appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(e.getValue()));
 				writeLineToChannel(distributionChannel, sb.toString(), Charsets.UTF_8);
 			}
+
+			// write slowest requests
+			for (SlowRequest request : measurings.slowestRequests.slowestFirst()) {
+				writeSlowRequest(slowestByUriChannel, mappingKey, request);
+				operationSlowestRequests.add(new SlowRequestWithKey(mappingKey, request));
+			}
+
+			// write percentiles over time
+			if (!measurings.percentileBins.isEmpty()) {
+				measurings.percentileBins.toCsv(channelManager.getChannel("percentiles_" + mappingKey), "time", intNumberFormat,
+						PERCENTILES);
+				operationPercentileBins.merge(measurings.percentileBins);
+			}
+		}
+
+		if (!operationPercentileBins.isEmpty()) {
+			operationPercentileBins.toCsv(channelManager.getChannel("percentiles"), "time", intNumberFormat, PERCENTILES);
+		}
+
+		WritableByteChannel slowestChannel = channelManager.getChannel("slowest");
+		writeSlowestRequestsHeader(slowestChannel);
+		operationSlowestRequests.sort((r1, r2) -> SlowestRequests.BY_RESPONSE_TIME.compare(r2.request, r1.request));
+		int slowestCount = Math.min(SLOWEST_REQUESTS, operationSlowestRequests.size());
+		for (SlowRequestWithKey slowRequest : operationSlowestRequests.subList(0, slowestCount)) {
+			writeSlowRequest(slowestChannel, slowRequest.mappingKey, slowRequest.request);
 		}
 
 		writeExecutionAggregatedResponseTimesHeader(channelManager.getChannel("aggregatedResponseTimes"));
@@ -224,6 +356,22 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 		writeLineToChannel(destChannel, sb.toString(), Charsets.UTF_8);
 	}
 
+	private void writeSlowestRequestsHeader(final WritableByteChannel destChannel) throws IOException {
+		StrBuilder sb = new StrBuilder();
+		appendEscapedAndQuoted(sb, DELIMITER, "key", "time", "responseTime", "requestId", "executionId", "error");
+		writeLineToChannel(destChannel, sb.toString(), Charsets.UTF_8);
+	}
+
+	private void writeSlowRequest(final WritableByteChannel destChannel, final String mappingKey, final SlowRequest request)
+			throws IOException {
+		StrBuilder sb = new StrBuilder(150);
+		appendEscapedAndQuoted(sb, DELIMITER, mappingKey);
+		appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(request.getTimestampMillis() / 1000L));
+		appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(request.getResponseTime()));
+		appendEscapedAndQuoted(sb, DELIMITER, request.getRequestId(), request.getExecutionId(), request.getErrorMsg());
+		writeLineToChannel(destChannel, sb.toString(), Charsets.UTF_8);
+	}
+
 	private void writeDistributionHeader(final WritableByteChannel destChannel) throws IOException {
 		StrBuilder sb = new StrBuilder();
 		appendEscapedAndQuoted(sb, DELIMITER, "time");
@@ -245,20 +393,76 @@ public class MeasuringResponseTimesBinningStrategy extends AbstractBinningStrate
 	}
 
 	/**
-	 * Container for measurings for a specified URI
+	 * Container for measurings for a specified URI. Response times are either collected completely
+	 * or counted in a sketch.
 	 */
 	static class UriMeasurings {
 		String type;
 		public String uriAlias;
 		Map<Long, MutableInt> responseDistributions = newTreeMap(); // tree map for sorting
-		List<Double> responseTimes = newArrayListWithCapacity(5000); // Double needed for quantile computation
+		final SpillableLongValues responseTimes;
+		final QuantileSketch responseTimeSketch;
+		final PercentileBinManager percentileBins;
+		final SlowestRequests slowestRequests = new SlowestRequests(SLOWEST_REQUESTS);
 		MutableInt errorCount = new MutableInt();
+
+		/**
+		 * @param memoryBudget
+		 * 		the budget for collecting all response times, or {@code null} if they are to be
+		 * 		counted in a sketch
+		 */
+		UriMeasurings(final long startOfFirstBin, final MemoryBudget memoryBudget) {
+			responseTimes = memoryBudget != null ? new SpillableLongValues(memoryBudget) : null;
+			responseTimeSketch = memoryBudget != null ? null : new QuantileSketch();
+			percentileBins = new PercentileBinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS);
+		}
+
+		void addResponseTime(final long responseTime) throws IOException {
+			if (responseTimes != null) {
+				responseTimes.add(responseTime);
+			} else {
+				// sketches only take non-negative values, but failed requests have a response time of -1
+				responseTimeSketch.add(responseTime + 1L);
+			}
+		}
+
+		boolean isEmpty() {
+			return responseTimes != null ? responseTimes.isEmpty() : responseTimeSketch.isEmpty();
+		}
+
+		void merge(final UriMeasurings other) throws IOException {
+			other.responseDistributions.forEach((responseTime, count) -> responseDistributions
+					.computeIfAbsent(responseTime, key -> new MutableInt()).add(count.intValue()));
+			if (responseTimes != null) {
+				responseTimes.addAll(other.responseTimes);
+			} else {
+				responseTimeSketch.merge(other.responseTimeSketch);
+			}
+			percentileBins.merge(other.percentileBins);
+			slowestRequests.merge(other.slowestRequests);
+			errorCount.add(other.errorCount.intValue());
+		}
+	}
+
+	static class SlowRequestWithKey {
+		final String mappingKey;
+		final SlowRequest request;
+
+		SlowRequestWithKey(final String mappingKey, final SlowRequest request) {
+			this.mappingKey = mappingKey;
+			this.request = request;
+		}
 	}
 
 	static class ExecutionMeasurings implements Comparable<ExecutionMeasurings> {
 		long timestampMillis;
 		MutableLong sumResponseTimes;
 
+		void merge(final ExecutionMeasurings other) {
+			timestampMillis = Math.max(timestampMillis, other.timestampMillis);
+			sumResponseTimes.add(other.sumResponseTimes.longValue());
+		}
+
 		@Override
 		public int compareTo(final ExecutionMeasurings other) {
 			return Longs.compare(timestampMillis, other.timestampMillis);
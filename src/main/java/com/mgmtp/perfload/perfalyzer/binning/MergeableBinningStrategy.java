@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Scanner;
+
+import javax.annotation.Nullable;
+
+/**
+ * A binning strategy whose state can be built from several inputs independently and merged
+ * afterwards. Data may be accumulated in any order, so the inputs need not be sorted by time.
+ * Binning a single input is the same as accumulating it and writing the binned data right away.
+ *
+ * @param <T>
+ * 		the strategy type
+ * @author rnaegele
+ */
+public interface MergeableBinningStrategy<T extends MergeableBinningStrategy<T>> extends BinningStrategy {
+
+	/**
+	 * Adds the data received from the scanner to the strategy's state without writing anything.
+	 *
+	 * @param scanner
+	 * 		provides access to the unbinned data
+	 */
+	void accumulate(Scanner scanner) throws IOException;
+
+	/**
+	 * Merges the state of the specified strategy into this strategy's state.
+	 *
+	 * @param other
+	 * 		a strategy of the same type and configuration
+	 */
+	void merge(T other) throws IOException;
+
+	/**
+	 * Writes the binned data of the current state. Only called if {@link #needsBinning()} returns
+	 * {@code true}.
+	 *
+	 * @param destChannel
+	 * 		the channel to write the binned data to
+	 */
+	void writeBinnedData(WritableByteChannel destChannel) throws IOException;
+
+	@Override
+	default void binData(final Scanner scanner, @Nullable final WritableByteChannel destChannel) throws IOException {
+		accumulate(scanner);
+		if (destChannel != null) {
+			writeBinnedData(destChannel);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+
+import java.math.BigDecimal;
+import java.nio.channels.WritableByteChannel;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.text.StrBuilder;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Bins values by their domain value like {@link BinManager}, but keeps a {@link QuantileSketch}
+ * per bin instead of all values, so percentiles per bin can be computed with constant memory per
+ * bin. Bins without values do not allocate a sketch.
+ *
+ * @author rnaegele
+ */
+public class PercentileBinManager {
+
+	private final double domainStart;
+	private final List<QuantileSketch> bins = new ArrayList<>(50);
+	private final int binSize;
+	private final int indexOffset;
+
+	/**
+	 * @param domainStart
+	 * 		the domain value where binning starts
+	 * @param binSize
+	 * 		the bin size
+	 */
+	public PercentileBinManager(final double domainStart, final int binSize) {
+		this.domainStart = domainStart;
+		this.binSize = binSize;
+		this.indexOffset = (int) Math.ceil(domainStart / binSize);
+	}
+
+	/**
+	 * Adds a range value to the sketch of the bin the domain value fits in. The specified domain
+	 * value must be greater than or equal to the {@code domainStart} value specified in the
+	 * constructor.
+	 *
+	 * @param domainValue
+	 * 		the domain value
+	 * @param rangeValue
+	 * 		the range value, must not be negative
+	 */
+	public void addValue(final double domainValue, final long rangeValue) {
+		double offset = domainValue - domainStart;
+		checkState(offset >= 0, "Cannot add rangeValue to a bin [rangeValue (%s) < start of domain (%s)].", domainValue,
+				domainStart);
+
+		int binIndexInRange = (int) (offset / binSize);
+		while (bins.size() <= binIndexInRange) {
+			bins.add(null);
+		}
+
+		QuantileSketch sketch = bins.get(binIndexInRange);
+		if (sketch == null) {
+			sketch = new QuantileSketch();
+			bins.set(binIndexInRange, sketch);
+		}
+		sketch.add(rangeValue);
+	}
+
+	/**
+	 * Merges the sketches of the specified bin manager into this one. Domain start and bin size
+	 * must be the same.
+	 *
+	 * @param other
+	 * 		the bin manager to merge
+	 */
+	public void merge(final PercentileBinManager other) {
+		checkState(domainStart == other.domainStart && binSize == other.binSize,
+				"Cannot merge bins with different domain start or bin size [%s/%s != %s/%s].", other.domainStart, other.binSize,
+				domainStart, binSize);
+
+		while (bins.size() < other.bins.size()) {
+			bins.add(null);
+		}
+
+		for (int i = 0; i < other.bins.size(); ++i) {
+			QuantileSketch otherSketch = other.bins.get(i);
+			if (otherSketch != null) {
+				QuantileSketch sketch = bins.get(i);
+				if (sketch == null) {
+					sketch = new QuantileSketch();
+					bins.set(i, sketch);
+				}
+				sketch.merge(otherSketch);
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return bins.stream().allMatch(sketch -> sketch == null);
+	}
+
+	/**
+	 * Writes the specified percentiles of each bin as CSV to the specified channel. Columns are
+	 * named after the percentiles, e. g. {@code p99.9}. Bins without values are omitted.
+	 *
+	 * @param destChannel
+	 * 		the channel to write to
+	 * @param domainHeader
+	 * 		the domain header
+	 * @param numberFormat
+	 * 		the number format
+	 * @param percentiles
+	 * 		the percentiles to write, each in the range [0, 100]
+	 */
+	public void toCsv(final WritableByteChannel destChannel, final String domainHeader, final NumberFormat numberFormat,
+			final double... percentiles) {
+		StrBuilder sb = new StrBuilder(50);
+		appendEscapedAndQuoted(sb, DELIMITER, domainHeader);
+		for (double percentile : percentiles) {
+			appendEscapedAndQuoted(sb, DELIMITER, percentileHeader(percentile));
+		}
+		writeLineToChannel(destChannel, sb.toString(), Charsets.UTF_8);
+
+		for (int i = 0; i < bins.size(); ++i) {
+			QuantileSketch sketch = bins.get(i);
+			if (sketch == null) {
+				continue;
+			}
+
+			sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, numberFormat.format((i + indexOffset) * binSize / 1000));
+			for (double percentile : percentiles) {
+				appendEscapedAndQuoted(sb, DELIMITER, numberFormat.format(sketch.quantile(percentile / 100d)));
+			}
+			writeLineToChannel(destChannel, sb.toString(), Charsets.UTF_8);
+		}
+	}
+
+	/**
+	 * @param percentile
+	 * 		the percentile
+	 * @return the column header for the percentile, e. g. {@code p50} or {@code p99.9}
+	 */
+	public static String percentileHeader(final double percentile) {
+		return "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+	}
+}
@@ -16,9 +16,11 @@
 package com.mgmtp.perfload.perfalyzer.binning;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Doubles;
 import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
 import com.mgmtp.perfload.perfalyzer.util.ChannelManager;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 import com.mgmtp.perfload.perfalyzer.util.PerfMonTypeConfig;
 import org.apache.commons.lang3.text.StrBuilder;
@@ -38,22 +40,43 @@ import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
 import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
 
 /**
- * Binning implementation for perfMon logs.
+ * Binning implementation for perfMon logs. The data of markers is sliced from the bins of the
+ * whole test (see {@link BinManager#slice(double, double)}). Data may be accumulated repeatedly, e. g. for lines appended to a perfMon log
+ * in watch mode.
  *
  * @author rnaegele
  */
-public class PerfMonBinningStrategy extends AbstractBinningStrategy {
+public class PerfMonBinningStrategy extends AbstractBinningStrategy
+		implements SliceableBinningStrategy<PerfMonBinningStrategy>, MergeableBinningStrategy<PerfMonBinningStrategy> {
 
 	private final BinManager binManager;
 	private PerfMonTypeConfig typeConfig;
 
 	public PerfMonBinningStrategy(final long startOfFirstBin, final NumberFormat intNumberFormat, final NumberFormat floatNumberFormat) {
+		this(startOfFirstBin, intNumberFormat, floatNumberFormat, ImmutableList.of());
+	}
+
+	/**
+	 * @param markers
+	 * 		the markers whose data can be sliced from the strategy
+	 */
+	public PerfMonBinningStrategy(final long startOfFirstBin, final NumberFormat intNumberFormat, final NumberFormat floatNumberFormat,
+			final List<Marker> markers) {
+		this(startOfFirstBin, new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS), null,
+				intNumberFormat, floatNumberFormat);
+		markers.forEach(marker -> binManager.addSliceRange(marker.getLeftMillis(), marker.getRightMillis()));
+	}
+
+	private PerfMonBinningStrategy(final long startOfFirstBin, final BinManager binManager,
+			@Nullable final PerfMonTypeConfig typeConfig, final NumberFormat intNumberFormat,
+			final NumberFormat floatNumberFormat) {
 		super(startOfFirstBin, intNumberFormat, floatNumberFormat);
-		binManager = new BinManager(startOfFirstBin, PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS);
+		this.binManager = binManager;
+		this.typeConfig = typeConfig;
 	}
 
 	@Override
-	public void binData(final Scanner scanner, @Nullable final WritableByteChannel destChannel) throws IOException {
+	public void accumulate(final Scanner scanner) throws IOException {
 		while (scanner.hasNextLine()) {
 			String line = scanner.nextLine();
 			tokenizer.reset(line);
@@ -72,7 +95,26 @@ public class PerfMonBinningStrategy extends AbstractBinningStrategy {
 				log.error("Could not parse value {}. Line in perfMon file might be incomplete. Ignoring it.", ex);
 			}
 		}
+	}
 
+	@Override
+	public void merge(final PerfMonBinningStrategy other) {
+		binManager.merge(other.binManager);
+		if (typeConfig == null) {
+			typeConfig = other.typeConfig;
+		}
+	}
+
+	@Override
+	public PerfMonBinningStrategy slice(final long startMillis, final long endMillis) {
+		BinManager slice = binManager.slice(startMillis, endMillis);
+		return slice.isEmpty()
+				? null
+				: new PerfMonBinningStrategy(startMillis, slice, typeConfig, intNumberFormat, floatNumberFormat);
+	}
+
+	@Override
+	public void writeBinnedData(final WritableByteChannel destChannel) throws IOException {
 		binManager.toCsv(destChannel, "seconds", typeConfig.getHeader(), intNumberFormat, typeConfig.getAggregationType());
 	}
 
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Mergeable sketch for approximate quantiles of non-negative long values, e. g. response times.
+ * Values are counted in logarithmically sized buckets (cf. DDSketch, Masson et al., 2019), so a
+ * quantile is accurate within the configured relative error. Only the range of buckets between
+ * the smallest and the largest value is allocated, and the number of buckets is limited by
+ * collapsing the lowest ones, so memory stays small and bounded no matter how many values are
+ * added. Sketches with the same relative accuracy can be merged without loss of accuracy.
+ *
+ * @author rnaegele
+ */
+public class QuantileSketch {
+
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01d;
+
+	// covers 1 ms up to more than a day with the default accuracy
+	static final int MAX_BUCKET_COUNT = 1024;
+
+	private static final int GROWTH_SLACK = 8;
+
+	private final double relativeAccuracy;
+	private final double gamma;
+	private final double logGamma;
+
+	// counts[i] is the count of bucket (offset + i); bucket k holds values in (gamma^(k-1), gamma^k]
+	private int[] counts = new int[0];
+	private int offset;
+
+	private long zeroCount;
+	private long count;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	public QuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * @param relativeAccuracy
+	 * 		the maximum relative error of quantiles, must be in the range (0, 1)
+	 */
+	public QuantileSketch(final double relativeAccuracy) {
+		checkArgument(relativeAccuracy > 0d && relativeAccuracy < 1d, "Relative accuracy must be in the range (0, 1): %s",
+				relativeAccuracy);
+		this.relativeAccuracy = relativeAccuracy;
+		this.gamma = (1d + relativeAccuracy) / (1d - relativeAccuracy);
+		this.logGamma = Math.log(gamma);
+	}
+
+	/**
+	 * Adds a value to the sketch.
+	 *
+	 * @param value
+	 * 		the value, must not be negative
+	 */
+	public void add(final long value) {
+		checkArgument(value >= 0L, "Value must not be negative: %s", value);
+		if (value == 0L) {
+			zeroCount++;
+		} else {
+			int index = bucketIndex(value);
+			ensureRange(index, index);
+			counts[Math.max(index, offset) - offset]++;
+		}
+		count++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds the counts of the specified sketch to this one. Both sketches must have the same
+	 * relative accuracy.
+	 *
+	 * @param other
+	 * 		the sketch to merge
+	 */
+	public void merge(final QuantileSketch other) {
+		checkState(relativeAccuracy == other.relativeAccuracy,
+				"Cannot merge sketches with different relative accuracy [%s != %s].", other.relativeAccuracy, relativeAccuracy);
+		if (other.count == 0L) {
+			return;
+		}
+
+		int otherLength = other.counts.length;
+		if (otherLength > 0) {
+			ensureRange(other.offset, other.offset + otherLength - 1);
+			for (int i = 0; i < otherLength; ++i) {
+				counts[Math.max(other.offset + i, offset) - offset] += other.counts[i];
+			}
+		}
+		zeroCount += other.zeroCount;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Computes the specified quantile. The result is within the relative accuracy of the value
+	 * of rank {@code q * (count - 1)} of the sorted values and never outside the range of the
+	 * values added. Minimum and maximum are exact.
+	 *
+	 * @param q
+	 * 		the quantile, must be in the range [0, 1]
+	 * @return the quantile, or {@link Double#NaN} if the sketch is empty
+	 */
+	public double quantile(final double q) {
+		checkArgument(q >= 0d && q <= 1d, "Quantile must be in the range [0, 1]: %s", q);
+		if (count == 0L) {
+			return Double.NaN;
+		}
+		if (q == 0d) {
+			return min;
+		}
+		if (q == 1d) {
+			return max;
+		}
+
+		double rank = q * (count - 1);
+		long cumulated = zeroCount;
+		if (cumulated > rank) {
+			return 0d;
+		}
+
+		int i = 0;
+		for (; i < counts.length; ++i) {
+			cumulated += counts[i];
+			if (cumulated > rank) {
+				break;
+			}
+		}
+
+		// the estimate with the least relative error for all values of the bucket
+		double value = 2d * Math.pow(gamma, offset + i) / (gamma + 1d);
+		return Math.max(min, Math.min(max, value));
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0L;
+	}
+
+	public long min() {
+		checkState(count > 0L, "Sketch is empty.");
+		return min;
+	}
+
+	public long max() {
+		checkState(count > 0L, "Sketch is empty.");
+		return max;
+	}
+
+	/**
+	 * @return the number of allocated buckets, which determines the memory footprint
+	 */
+	int bucketCount() {
+		return counts.length;
+	}
+
+	private int bucketIndex(final long value) {
+		return (int) Math.ceil(Math.log(value) / logGamma);
+	}
+
+	/**
+	 * Makes sure buckets are allocated for the specified range of bucket indices. If the number
+	 * of buckets exceeded {@link #MAX_BUCKET_COUNT}, the lowest buckets are collapsed, i. e. the
+	 * offset is greater than {@code minIndex} afterwards, and indices below the offset must be
+	 * counted in the first bucket.
+	 */
+	private void ensureRange(final int minIndex, final int maxIndex) {
+		if (counts.length == 0) {
+			int newMin = Math.max(minIndex, maxIndex - MAX_BUCKET_COUNT + 1);
+			counts = new int[maxIndex - newMin + 1];
+			offset = newMin;
+			return;
+		}
+
+		int currentMax = offset + counts.length - 1;
+		if (minIndex >= offset && maxIndex <= currentMax) {
+			return;
+		}
+
+		int newMax = Math.max(currentMax, maxIndex);
+		int newMin = Math.min(offset, minIndex);
+		// leave some room for values close to the current range, in order to avoid frequent copying
+		if (newMax > currentMax) {
+			newMax += GROWTH_SLACK;
+		}
+		if (newMin < offset) {
+			newMin -= GROWTH_SLACK;
+		}
+		newMin = Math.max(newMin, newMax - MAX_BUCKET_COUNT + 1);
+
+		int[] newCounts = new int[newMax - newMin + 1];
+		for (int i = 0; i < counts.length; ++i) {
+			// collapses buckets below the new offset into the first one
+			newCounts[Math.max(offset + i, newMin) - newMin] += counts[i];
+		}
+		counts = newCounts;
+		offset = newMin;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+import javax.annotation.Nullable;
+
+/**
+ * A binning strategy whose output only depends on the counts and values per bin, e. g. requests
+ * per second or perfMon means. The data of time ranges passed to the strategy on creation, such
+ * as markers, is sliced from the bins of the whole test (see
+ * {@link BinManager#slice(double, double)}), so it need not be binned again. Bins cut by the
+ * borders of a range only include the data within the range. Strategies that aggregate over all
+ * values in a way that cannot be derived from the bins, e. g. quantiles of response times, must
+ * not implement this interface.
+ *
+ * @param <T>
+ * 		the strategy type
+ * @author rnaegele
+ */
+public interface SliceableBinningStrategy<T extends SliceableBinningStrategy<T>> extends BinningStrategy {
+
+	/**
+	 * Creates a strategy with the state of the bins of the specified time range (see
+	 * {@link BinManager#slice(double, double)}). The range must have been passed to the strategy
+	 * on creation.
+	 *
+	 * @param startMillis
+	 * 		the start of the range (inclusive)
+	 * @param endMillis
+	 * 		the end of the range (exclusive)
+	 * @return the strategy, or {@code null} if there is no data in the range
+	 */
+	@Nullable
+	T slice(long startMillis, long endMillis);
+
+	/**
+	 * Writes the binned data of the current state. Only called if {@link #needsBinning()} returns
+	 * {@code true}.
+	 *
+	 * @param destChannel
+	 * 		the channel to write the binned data to
+	 */
+	void writeBinnedData(WritableByteChannel destChannel) throws IOException;
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the slowest requests of a stream in a bounded min-heap, so memory is O(k) and adding a
+ * request costs O(log k). Requests that are not slower than the fastest one retained are
+ * rejected without allocating anything.
+ *
+ * @author rnaegele
+ */
+public class SlowestRequests {
+
+	static final Comparator<SlowRequest> BY_RESPONSE_TIME = Comparator.comparingLong(SlowRequest::getResponseTime)
+			.thenComparing(Comparator.comparingLong(SlowRequest::getTimestampMillis).reversed());
+
+	private final int capacity;
+	private final PriorityQueue<SlowRequest> heap;
+
+	/**
+	 * @param capacity
+	 * 		the number of requests to retain
+	 */
+	public SlowestRequests(final int capacity) {
+		checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+		this.capacity = capacity;
+		this.heap = new PriorityQueue<>(capacity, BY_RESPONSE_TIME);
+	}
+
+	/**
+	 * Adds a request if it is among the slowest ones.
+	 */
+	public void add(final long timestampMillis, final long responseTime, final String requestId, final String executionId,
+			final String errorMsg) {
+		if (heap.size() == capacity) {
+			if (responseTime <= heap.peek().responseTime) {
+				return;
+			}
+			heap.poll();
+		}
+		heap.add(new SlowRequest(timestampMillis, responseTime, requestId, executionId, errorMsg));
+	}
+
+	private void add(final SlowRequest request) {
+		if (heap.size() == capacity) {
+			if (BY_RESPONSE_TIME.compare(request, heap.peek()) <= 0) {
+				return;
+			}
+			heap.poll();
+		}
+		heap.add(request);
+	}
+
+	public void merge(final SlowestRequests other) {
+		other.heap.forEach(this::add);
+	}
+
+	public boolean isEmpty() {
+		return heap.isEmpty();
+	}
+
+	/**
+	 * @return the retained requests, slowest first
+	 */
+	public List<SlowRequest> slowestFirst() {
+		List<SlowRequest> result = new ArrayList<>(heap);
+		result.sort(BY_RESPONSE_TIME.reversed());
+		return result;
+	}
+
+	/**
+	 * A request with the values needed to find it in the logs.
+	 */
+	public static final class SlowRequest {
+		private final long timestampMillis;
+		private final long responseTime;
+		private final String requestId;
+		private final String executionId;
+		private final String errorMsg;
+
+		SlowRequest(final long timestampMillis, final long responseTime, final String requestId, final String executionId,
+				final String errorMsg) {
+			this.timestampMillis = timestampMillis;
+			this.responseTime = responseTime;
+			this.requestId = requestId;
+			this.executionId = executionId;
+			this.errorMsg = errorMsg;
+		}
+
+		public long getTimestampMillis() {
+			return timestampMillis;
+		}
+
+		public long getResponseTime() {
+			return responseTime;
+		}
+
+		public String getRequestId() {
+			return requestId;
+		}
+
+		public String getExecutionId() {
+			return executionId;
+		}
+
+		public String getErrorMsg() {
+			return errorMsg;
+		}
+	}
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparingLong;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
+
+/**
+ * Collects long values for the computation of exact quantiles within a {@link MemoryBudget}.
+ * Values are buffered in a primitive array. If the buffer cannot grow within the budget, it is
+ * sorted and spilled as a run to a file and reused. The buffer is granted a minimum size even if
+ * the budget is exhausted, so runs do not get arbitrarily small, and the smallest runs are merged
+ * into one if there are more than {@link #MAX_RUNS}. Quantiles are computed by a k-way merge of
+ * the sorted runs, which yields the same results as sorting all values in memory. Runs are read
+ * and written in small chunks, so neither the number of runs nor their size is limited by memory
+ * mappings. Instances must be {@link #close() closed} in order to delete spill files and release
+ * the reserved memory.
+ *
+ * @author rnaegele
+ */
+public class SpillableLongValues implements AutoCloseable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	/**
+	 * The capacity the buffer may grow to even if the budget is exhausted (512 KiB).
+	 */
+	static final int MIN_RUN_CAPACITY = 1 << 16;
+
+	/**
+	 * The maximum number of runs. The runs are read in parallel when quantiles are computed.
+	 */
+	static final int MAX_RUNS = 64;
+
+	// the number of values read or written at once per run
+	private static final int IO_CHUNK_SIZE = 8192;
+
+	private final MemoryBudget memoryBudget;
+	private final int minRunCapacity;
+	private final List<Run> runs = new ArrayList<>();
+
+	private long[] buffer = new long[0];
+	private int bufferCount;
+	private long reservedBytes;
+
+	private long size;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	public SpillableLongValues(final MemoryBudget memoryBudget) {
+		this(memoryBudget, MIN_RUN_CAPACITY);
+	}
+
+	SpillableLongValues(final MemoryBudget memoryBudget, final int minRunCapacity) {
+		this.memoryBudget = memoryBudget;
+		this.minRunCapacity = Math.min(minRunCapacity, MAX_CAPACITY);
+	}
+
+	public void add(final long value) throws IOException {
+		if (bufferCount == buffer.length) {
+			ensureCapacity();
+		}
+		buffer[bufferCount++] = value;
+		size++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds all values of the specified instance, which is closed afterwards. Spill files are taken
+	 * over without being read unless there are too many runs.
+	 */
+	public void addAll(final SpillableLongValues other) throws IOException {
+		runs.addAll(other.runs);
+		other.runs.clear();
+		size += other.size - other.bufferCount;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		for (int i = 0; i < other.bufferCount; ++i) {
+			add(other.buffer[i]);
+		}
+		other.close();
+		while (runs.size() > MAX_RUNS) {
+			mergeSmallestRuns();
+		}
+	}
+
+	private void ensureCapacity() throws IOException {
+		int newCapacity = buffer.length == 0 ? INITIAL_CAPACITY : Math.min(buffer.length * 2, MAX_CAPACITY);
+		long additionalBytes = bytes(newCapacity - buffer.length);
+		if (newCapacity > buffer.length && memoryBudget.tryReserve(additionalBytes)) {
+			grow(newCapacity, additionalBytes);
+		} else if (buffer.length < minRunCapacity) {
+			// runs must not get too small, otherwise they would have to be merged all the time
+			memoryBudget.reserve(additionalBytes);
+			grow(newCapacity, additionalBytes);
+		} else {
+			spill();
+		}
+	}
+
+	private void grow(final int newCapacity, final long additionalBytes) {
+		reservedBytes += additionalBytes;
+		buffer = Arrays.copyOf(buffer, newCapacity);
+	}
+
+	private void spill() throws IOException {
+		Arrays.sort(buffer, 0, bufferCount);
+		File file = memoryBudget.createSpillFile();
+		try (RunWriter writer = new RunWriter(file)) {
+			for (int i = 0; i < bufferCount; ++i) {
+				writer.write(buffer[i]);
+			}
+		}
+		runs.add(new Run(file, bufferCount));
+		bufferCount = 0;
+		if (runs.size() > MAX_RUNS) {
+			mergeSmallestRuns();
+		}
+	}
+
+	/**
+	 * Merges the smaller half of the runs into a single run. Merging runs of similar size means
+	 * that each value is only rewritten a few times.
+	 */
+	private void mergeSmallestRuns() throws IOException {
+		runs.sort(comparingLong(run -> run.count));
+		List<Run> smallestRuns = runs.subList(0, runs.size() / 2 + 1);
+
+		File file = memoryBudget.createSpillFile();
+		long count = 0L;
+		List<Cursor> cursors = new ArrayList<>(smallestRuns.size());
+		try (RunWriter writer = new RunWriter(file)) {
+			PriorityQueue<Cursor> queue = openCursors(smallestRuns, cursors);
+			while (!queue.isEmpty()) {
+				Cursor cursor = queue.poll();
+				writer.write(cursor.current);
+				count++;
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			file.delete();
+			throw ex;
+		} finally {
+			closeCursors(cursors);
+		}
+
+		smallestRuns.forEach(run -> run.file.delete());
+		smallestRuns.clear();
+		runs.add(new Run(file, count));
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0L;
+	}
+
+	public long min() {
+		checkState(size > 0L, "No values");
+		return min;
+	}
+
+	public long max() {
+		checkState(size > 0L, "No values");
+		return max;
+	}
+
+	/**
+	 * @return the number of spilled runs
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+
+	/**
+	 * Computes percentiles the way {@link org.apache.commons.math3.stat.descriptive.rank.Percentile}
+	 * does by default, interpolating between the values enclosing the position
+	 * {@code p * (n + 1) / 100}.
+	 *
+	 * @param percentiles
+	 * 		the percentiles, each in the range (0, 100]
+	 * @return the values for the percentiles in the same order
+	 */
+	public double[] percentiles(final double... percentiles) throws IOException {
+		checkState(size > 0L, "No values");
+
+		TreeSet<Long> ranks = new TreeSet<>();
+		for (double p : percentiles) {
+			double pos = p * (size + 1) / 100d;
+			if (pos < 1d) {
+				ranks.add(0L);
+			} else if (pos >= size) {
+				ranks.add(size - 1);
+			} else {
+				long floor = (long) pos;
+				ranks.add(floor - 1);
+				ranks.add(floor);
+			}
+		}
+
+		long[] rankArray = ranks.stream().mapToLong(Long::longValue).toArray();
+		long[] values = valuesAtRanks(rankArray);
+
+		double[] result = new double[percentiles.length];
+		for (int i = 0; i < percentiles.length; ++i) {
+			double pos = percentiles[i] * (size + 1) / 100d;
+			if (pos < 1d) {
+				result[i] = values[Arrays.binarySearch(rankArray, 0L)];
+			} else if (pos >= size) {
+				result[i] = values[Arrays.binarySearch(rankArray, size - 1)];
+			} else {
+				long floor = (long) pos;
+				double lower = values[Arrays.binarySearch(rankArray, floor - 1)];
+				double upper = values[Arrays.binarySearch(rankArray, floor)];
+				result[i] = lower + (pos - floor) * (upper - lower);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param ranks
+	 * 		zero-based ranks in ascending order
+	 * @return the values at the specified ranks in the sorted sequence of all values
+	 */
+	private long[] valuesAtRanks(final long[] ranks) throws IOException {
+		Arrays.sort(buffer, 0, bufferCount);
+		long[] result = new long[ranks.length];
+
+		if (runs.isEmpty()) {
+			for (int i = 0; i < ranks.length; ++i) {
+				result[i] = buffer[(int) ranks[i]];
+			}
+			return result;
+		}
+
+		List<Cursor> cursors = new ArrayList<>(runs.size());
+		try {
+			PriorityQueue<Cursor> queue = openCursors(runs, cursors);
+			if (bufferCount > 0) {
+				queue.add(new Cursor(LongBuffer.wrap(buffer, 0, bufferCount), null));
+			}
+
+			int rankIndex = 0;
+			for (long rank = 0L; rankIndex < ranks.length; ++rank) {
+				Cursor cursor = queue.poll();
+				if (rank == ranks[rankIndex]) {
+					result[rankIndex++] = cursor.current;
+				}
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+			return result;
+		} finally {
+			closeCursors(cursors);
+		}
+	}
+
+	/**
+	 * Opens a cursor per run. The cursors are added to the specified list, so they can be closed
+	 * even if opening fails.
+	 *
+	 * @return a queue of the cursors ordered by their current values
+	 */
+	private static PriorityQueue<Cursor> openCursors(final List<Run> runsToRead, final List<Cursor> cursors)
+			throws IOException {
+		PriorityQueue<Cursor> queue = new PriorityQueue<>(runsToRead.size() + 1);
+		for (Run run : runsToRead) {
+			FileChannel channel = FileChannel.open(run.file.toPath(), READ);
+			Cursor cursor = new Cursor(ByteBuffer.allocate(0).asLongBuffer(), channel);
+			cursors.add(cursor);
+			if (cursor.advance()) {
+				queue.add(cursor);
+			}
+		}
+		return queue;
+	}
+
+	private static void closeCursors(final List<Cursor> cursors) throws IOException {
+		for (Cursor cursor : cursors) {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Deletes spill files and releases the reserved memory.
+	 */
+	@Override
+	public void close() {
+		runs.forEach(run -> run.file.delete());
+		runs.clear();
+		memoryBudget.release(reservedBytes);
+		reservedBytes = 0L;
+		buffer = new long[0];
+		bufferCount = 0;
+	}
+
+	private static long bytes(final long count) {
+		return count * Long.BYTES;
+	}
+
+	private static class Run {
+		final File file;
+		final long count;
+
+		Run(final File file, final long count) {
+			this.file = file;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Writes the sorted values of a run in chunks.
+	 */
+	private static class RunWriter implements Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer chunk = ByteBuffer.allocate((int) bytes(IO_CHUNK_SIZE));
+
+		RunWriter(final File file) throws IOException {
+			channel = FileChannel.open(file.toPath(), WRITE, CREATE, TRUNCATE_EXISTING);
+		}
+
+		void write(final long value) throws IOException {
+			if (!chunk.hasRemaining()) {
+				flush();
+			}
+			chunk.putLong(value);
+		}
+
+		private void flush() throws IOException {
+			chunk.flip();
+			while (chunk.hasRemaining()) {
+				channel.write(chunk);
+			}
+			chunk.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the values of a run, reading them in chunks, or over the values of the buffer.
+	 */
+	private static class Cursor implements Comparable<Cursor>, Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer chunk;
+		private LongBuffer values;
+		long current;
+
+		/**
+		 * @param values
+		 * 		the values in memory, or an empty buffer if the values are read from the channel
+		 * @param channel
+		 * 		the channel of a run, or {@code null}
+		 */
+		Cursor(final LongBuffer values, final FileChannel channel) {
+			this.values = values;
+			this.channel = channel;
+			this.chunk = channel != null ? ByteBuffer.allocate((int) bytes(IO_CHUNK_SIZE)) : null;
+			if (values.hasRemaining()) {
+				current = values.get();
+			}
+		}
+
+		boolean advance() throws IOException {
+			if (!values.hasRemaining() && !readChunk()) {
+				return false;
+			}
+			current = values.get();
+			return true;
+		}
+
+		private boolean readChunk() throws IOException {
+			if (channel == null) {
+				return false;
+			}
+			chunk.clear();
+			// a chunk may take several reads
+			int read;
+			do {
+				read = channel.read(chunk);
+			} while (read >= 0 && chunk.hasRemaining());
+			chunk.flip();
+			values = chunk.asLongBuffer();
+			return values.hasRemaining();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+
+		@Override
+		public int compareTo(final Cursor other) {
+			return Long.compare(current, other.current);
+		}
+	}
+}
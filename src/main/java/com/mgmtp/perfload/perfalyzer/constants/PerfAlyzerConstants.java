@@ -43,6 +43,11 @@ public class PerfAlyzerConstants {
 	public static final int MEASURING_NORMALIZED_COL_RESULT = 7;
 	public static final int MEASURING_NORMALIZED_COL_ERROR_MSG = 8;
 	public static final int MEASURING_NORMALIZED_COL_EXECUTION_ID = 9;
+	public static final int MEASURING_NORMALIZED_COL_REQUEST_ID = 10;
+
+	// the most frequent error types listed per operation and for the whole test, and per bin
+	public static final int TOP_ERROR_TYPES = 20;
+	public static final int TOP_ERROR_TYPES_PER_BIN = 5;
 
 	private PerfAlyzerConstants() {
 	}
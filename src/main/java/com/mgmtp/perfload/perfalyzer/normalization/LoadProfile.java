@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.normalization;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.NumberFormat;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.text.StrBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+
+/**
+ * Result of a {@link LoadProfileProcessor} run. Holds the markers and the number of executions
+ * per minute for each operation. The normalized lines of each operation have already been written
+ * to a file in the processor's work directory. Normalized and binned files are thus written
+ * without reading the load profile again. Markers and counts are saved, so they can be loaded
+ * when the load profile is not normalized again (see {@link LoadProfileProcessor#load(File, File)}).
+ *
+ * @author rnaegele
+ */
+public class LoadProfile {
+
+	private static final String CHANNEL_BASE_NAME = "loadprofile";
+	private static final String MARKER = "marker";
+	private static final String OPERATION = "operation";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String dirPath;
+	private final List<Marker> markers;
+	private final Map<String, OperationData> operations;
+
+	LoadProfile(final String dirPath, final List<Marker> markers, final Map<String, OperationData> operations) {
+		this.dirPath = dirPath;
+		this.markers = ImmutableList.copyOf(markers);
+		this.operations = operations;
+	}
+
+	/**
+	 * @return the markers in the order they are defined in the load profile
+	 */
+	public List<Marker> getMarkers() {
+		return markers;
+	}
+
+	/**
+	 * @return the operations in natural order
+	 */
+	public Set<String> getOperations() {
+		return operations.keySet();
+	}
+
+	/**
+	 * Returns the number of executions of the specified operation per minute. The array index is
+	 * the index of the one-minute bin relative to the test start.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return a copy of the counts
+	 */
+	public long[] getExecutionsPerMinute(final String operation) {
+		OperationData data = operations.get(operation);
+		return data == null ? new long[0] : Arrays.copyOf(data.counts, data.binCount);
+	}
+
+	/**
+	 * Writes the normalized load profile, i. e. one file per operation containing the operation's
+	 * lines from the load profile. The files are moved from the processor's work directory, so
+	 * this method may only be called once.
+	 *
+	 * @param destDir
+	 *            the destination directory
+	 */
+	public void writeNormalizedFiles(final File destDir) throws IOException {
+		for (Entry<String, OperationData> entry : operations.entrySet()) {
+			OperationData data = entry.getValue();
+			checkState(data.linesFile != null,
+					"Normalized files have already been written or the load profile has been loaded from a saved state");
+
+			File destFile = createDestFile(destDir, entry.getKey());
+			Files.move(data.linesFile, destFile);
+			data.linesFile = null;
+		}
+	}
+
+	/**
+	 * Writes the number of executions per minute for each operation. The files have the same
+	 * format as binned files created with a {@link com.mgmtp.perfload.perfalyzer.binning.BinManager}.
+	 *
+	 * @param destDir
+	 *            the destination directory
+	 * @param intNumberFormat
+	 *            the number format for the binned values
+	 */
+	public void writeBinnedFiles(final File destDir, final NumberFormat intNumberFormat) throws IOException {
+		int binSizeSeconds = PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE / 1000;
+
+		for (Entry<String, OperationData> entry : operations.entrySet()) {
+			OperationData data = entry.getValue();
+
+			File destFile = createDestFile(destDir, entry.getKey());
+			try (FileOutputStream fos = new FileOutputStream(destFile)) {
+				FileChannel channel = fos.getChannel();
+
+				StrBuilder sb = new StrBuilder(50);
+				appendEscapedAndQuoted(sb, DELIMITER, "seconds");
+				appendEscapedAndQuoted(sb, DELIMITER, "count");
+				writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
+
+				for (int i = 0; i < data.binCount; ++i) {
+					sb.clear();
+					appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(i * binSizeSeconds));
+					appendEscapedAndQuoted(sb, DELIMITER, intNumberFormat.format(data.counts[i]));
+					writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Saves markers and executions per minute, i. e. everything but the lines of the operations.
+	 *
+	 * @param file
+	 *            the file to save to
+	 */
+	void save(final File file) throws IOException {
+		Joiner joiner = Joiner.on(DELIMITER);
+		List<String> lines = new ArrayList<>(markers.size() + operations.size());
+		for (Marker marker : markers) {
+			lines.add(joiner.join(MARKER, marker.getName(), marker.getLeftMillis(), marker.getRightMillis()));
+		}
+		for (Entry<String, OperationData> entry : operations.entrySet()) {
+			OperationData data = entry.getValue();
+			StringBuilder sb = new StringBuilder();
+			joiner.appendTo(sb, OPERATION, entry.getKey());
+			for (int i = 0; i < data.binCount; ++i) {
+				sb.append(DELIMITER).append(data.counts[i]);
+			}
+			lines.add(sb.toString());
+		}
+		Files.asCharSink(file, Charsets.UTF_8).writeLines(lines);
+	}
+
+	/**
+	 * Loads a load profile saved with {@link #save(File)}. Its normalized files cannot be
+	 * written.
+	 *
+	 * @param file
+	 *            the saved file
+	 * @param dirPath
+	 *            the path of the normalized and binned files relative to their base directories
+	 * @param testStart
+	 *            the test start used to compute the markers' date/time fields
+	 * @return the load profile
+	 */
+	static LoadProfile load(final File file, final String dirPath, final ZonedDateTime testStart) throws IOException {
+		List<Marker> markers = new ArrayList<>();
+		Map<String, OperationData> operations = new TreeMap<>();
+
+		Splitter splitter = Splitter.on(DELIMITER);
+		for (String line : Files.readLines(file, Charsets.UTF_8)) {
+			List<String> columns = splitter.splitToList(line);
+			switch (columns.get(0)) {
+				case MARKER: {
+					Marker marker = new Marker(columns.get(1));
+					marker.setLeftMillis(Long.parseLong(columns.get(2)));
+					marker.setRightMillis(Long.parseLong(columns.get(3)));
+					marker.calculateDateTimeFields(testStart);
+					markers.add(marker);
+					break;
+				}
+				case OPERATION: {
+					long[] counts = new long[columns.size() - 2];
+					for (int i = 0; i < counts.length; ++i) {
+						counts[i] = Long.parseLong(columns.get(i + 2));
+					}
+					operations.put(columns.get(1), new OperationData(counts));
+					break;
+				}
+				default:
+					throw new IllegalStateException("Invalid saved load profile line: " + line);
+			}
+		}
+		return new LoadProfile(dirPath, markers, operations);
+	}
+
+	private File createDestFile(final File destDir, final String operation) throws IOException {
+		File destFile = new File(destDir, new File(dirPath, fileName(operation)).getPath());
+		Files.createParentDirs(destFile);
+		return destFile;
+	}
+
+	static String fileName(final String operation) {
+		return String.format("[%s][%s].csv", CHANNEL_BASE_NAME, operation);
+	}
+
+	/**
+	 * Lines and per-minute execution counts of a single operation. Lines are written to a file as
+	 * they are added, so they are not held in memory.
+	 */
+	static class OperationData implements Closeable {
+		File linesFile;
+		private final WritableByteChannel linesChannel;
+		long[] counts = new long[16];
+		int binCount;
+
+		OperationData(final File linesFile) throws IOException {
+			this.linesFile = linesFile;
+			this.linesChannel = Channels.newChannel(new BufferedOutputStream(new FileOutputStream(linesFile), BUFFER_SIZE));
+		}
+
+		OperationData(final long[] counts) {
+			this.linesChannel = null;
+			this.counts = counts;
+			this.binCount = counts.length;
+		}
+
+		void add(final long timestampMillis, final String line) {
+			writeLineToChannel(linesChannel, line, Charsets.UTF_8);
+
+			int binIndex = (int) (timestampMillis / PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE);
+			if (binIndex >= counts.length) {
+				counts = Arrays.copyOf(counts, Math.max(binIndex + 1, counts.length * 2));
+			}
+			counts[binIndex]++;
+			if (binIndex >= binCount) {
+				binCount = binIndex + 1;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (linesChannel != null) {
+				linesChannel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.normalization;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.io.Files.newReader;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.forceMkdir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.base.Charsets;
+import com.mgmtp.perfload.perfalyzer.normalization.LoadProfile.OperationData;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+
+/**
+ * Processes a load profile in a single pass. Markers and the number of executions per operation
+ * and minute are collected, while the lines of each operation are written to a file in a work
+ * directory, so the load profile neither has to be parsed again for markers nor re-read for
+ * normalization and binning.
+ * <p>
+ * Lines are not tokenized. Only the timestamp and operation columns (and the marker columns for
+ * marker lines) are extracted. Counts are kept in primitive arrays.
+ * <p>
+ * Markers and counts are saved in the work directory, so they can be loaded instead of processing
+ * the load profile again if its lines are not needed, i. e. if the load profile is not normalized.
+ *
+ * @author rnaegele
+ */
+public class LoadProfileProcessor {
+
+	private static final String MARKER = "[[marker]]";
+	private static final String MARKER_LEFT = "left";
+	private static final String MARKER_RIGHT = "right";
+	private static final String STATE_FILE_NAME = "loadprofile.state";
+
+	private final ZonedDateTime testStart;
+	private final File workDir;
+
+	/**
+	 * @param testStart
+	 *            the test start used to compute the markers' date/time fields
+	 * @param workDir
+	 *            the directory the lines of each operation are written to until they are moved to
+	 *            the normalized files (see {@link LoadProfile#writeNormalizedFiles(File)})
+	 */
+	public LoadProfileProcessor(final ZonedDateTime testStart, final File workDir) {
+		this.testStart = testStart;
+		this.workDir = workDir;
+	}
+
+	/**
+	 * Processes the specified load profile.
+	 *
+	 * @param sourceDir
+	 *            the source directory
+	 * @param file
+	 *            the load profile, relative to the source directory
+	 * @return the processed load profile
+	 */
+	public LoadProfile process(final File sourceDir, final File file) throws IOException {
+		checkState(!file.isAbsolute(), "'file' must be relative");
+
+		Map<String, Marker> markers = new LinkedHashMap<>();
+		Map<String, OperationData> operations = new TreeMap<>();
+
+		int[] bounds = new int[2];
+
+		if (workDir.exists()) {
+			deleteDirectory(workDir);
+		}
+		forceMkdir(workDir);
+
+		try (BufferedReader br = newReader(new File(sourceDir, file.getPath()), Charsets.UTF_8)) {
+			for (String line; (line = br.readLine()) != null; ) {
+				if (line.startsWith("#") || line.trim().isEmpty()) {
+					continue;
+				}
+
+				int timestampEnd = line.indexOf(DELIMITER);
+				int operationEnd = line.indexOf(DELIMITER, timestampEnd + 1);
+				if (timestampEnd <= 0 || operationEnd < 0) {
+					throw new IllegalStateException("Invalid load profile line: " + line);
+				}
+
+				long timestampMillis = parseLong(line, 0, timestampEnd, bounds);
+
+				String operation = column(line, timestampEnd + 1, operationEnd, bounds);
+				if (MARKER.equals(operation)) {
+					int nameEnd = line.indexOf(DELIMITER, operationEnd + 1);
+					checkState(nameEnd > 0, "Invalid marker line: %s", line);
+					int typeEnd = line.indexOf(DELIMITER, nameEnd + 1);
+					if (typeEnd < 0) {
+						typeEnd = line.length();
+					}
+
+					// no whitespace allowed in marker in order to avoid issues in HTML
+					String markerName = column(line, operationEnd + 1, nameEnd, bounds).replaceAll("\\s+", "_");
+					String markerType = column(line, nameEnd + 1, typeEnd, bounds);
+					switch (markerType) {
+						case MARKER_LEFT: {
+							Marker marker = new Marker(markerName);
+							markers.put(markerName, marker);
+							marker.setLeftMillis(timestampMillis);
+							break;
+						}
+						case MARKER_RIGHT: {
+							Marker marker = markers.get(markerName);
+							checkState(marker != null, "Right marker without left marker: %s", markerName);
+							marker.setRightMillis(timestampMillis);
+							break;
+						}
+						default:
+							throw new IllegalStateException("Invalid marker type: " + markerType);
+					}
+				} else {
+					OperationData data = operations.get(operation);
+					if (data == null) {
+						data = new OperationData(new File(workDir, LoadProfile.fileName(operation)));
+						operations.put(operation, data);
+					}
+					data.add(timestampMillis, line);
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			operations.values().forEach(IOUtils::closeQuietly);
+			throw ex;
+		}
+		// flushes the lines of each operation
+		for (OperationData data : operations.values()) {
+			data.close();
+		}
+
+		List<Marker> markerList = new ArrayList<>(markers.size());
+		for (Marker marker : markers.values()) {
+			marker.calculateDateTimeFields(testStart);
+			markerList.add(marker);
+		}
+
+		LoadProfile loadProfile = new LoadProfile(Normalizer.normalizedDirPath(file), markerList, operations);
+		loadProfile.save(new File(workDir, STATE_FILE_NAME));
+		return loadProfile;
+	}
+
+	/**
+	 * Loads the markers and counts saved when the specified load profile was last processed. The
+	 * normalized files of the loaded load profile cannot be written.
+	 *
+	 * @param sourceDir
+	 *            the source directory
+	 * @param file
+	 *            the load profile, relative to the source directory
+	 * @return the loaded load profile, or {@code null} if the load profile has not been processed
+	 *         yet or has changed since
+	 */
+	public LoadProfile load(final File sourceDir, final File file) throws IOException {
+		checkState(!file.isAbsolute(), "'file' must be relative");
+
+		File stateFile = new File(workDir, STATE_FILE_NAME);
+		if (!stateFile.isFile() || stateFile.lastModified() < new File(sourceDir, file.getPath()).lastModified()) {
+			return null;
+		}
+		return LoadProfile.load(stateFile, Normalizer.normalizedDirPath(file), testStart);
+	}
+
+	/*
+	 * Returns the column value between the specified indices with whitespace and quotes trimmed.
+	 */
+	private static String column(final String line, final int start, final int end, final int[] bounds) {
+		trim(line, start, end, bounds);
+		return line.substring(bounds[0], bounds[1]);
+	}
+
+	private static long parseLong(final String line, final int start, final int end, final int[] bounds) {
+		trim(line, start, end, bounds);
+		if (bounds[0] == bounds[1]) {
+			throw new IllegalStateException("Missing timestamp: " + line);
+		}
+
+		long result = 0L;
+		for (int i = bounds[0]; i < bounds[1]; ++i) {
+			char c = line.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalStateException("Invalid timestamp: " + line);
+			}
+			result = result * 10L + (c - '0');
+		}
+		return result;
+	}
+
+	private static void trim(final String line, final int start, final int end, final int[] bounds) {
+		int from = start;
+		int to = end;
+		while (from < to && Character.isWhitespace(line.charAt(from))) {
+			++from;
+		}
+		while (to > from && Character.isWhitespace(line.charAt(to - 1))) {
+			--to;
+		}
+		if (to - from >= 2 && line.charAt(from) == '"' && line.charAt(to - 1) == '"') {
+			++from;
+			--to;
+		}
+		bounds[0] = from;
+		bounds[1] = to;
+	}
+}
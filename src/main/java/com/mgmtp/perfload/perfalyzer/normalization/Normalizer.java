@@ -18,6 +18,7 @@ package com.mgmtp.perfload.perfalyzer.normalization;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
 import static org.apache.commons.io.FilenameUtils.getPath;
 import static org.apache.commons.io.IOUtils.closeQuietly;
@@ -25,14 +26,18 @@ import static org.apache.commons.lang3.StringUtils.split;
 import static org.apache.commons.lang3.StringUtils.trimToNull;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -40,6 +45,8 @@ import org.apache.commons.lang3.text.StrBuilder;
 
 import com.google.common.base.Charsets;
 import com.mgmtp.perfload.perfalyzer.util.ChannelData;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.TaskMetrics;
 
 /**
  * Performs normalization tasks.
@@ -50,6 +57,7 @@ public class Normalizer {
 	private final File sourceDir;
 	private final File destDir;
 	private final NormalizingStrategy normalizingStrategy;
+	private final CompressionCodec compressionCodec;
 
 	/**
 	 * @param sourceDir
@@ -60,61 +68,153 @@ public class Normalizer {
 	 *            the strategy that contains the normalizing logic
 	 */
 	public Normalizer(final File sourceDir, final File destDir, final NormalizingStrategy normalizingStrategy) {
+		this(sourceDir, destDir, normalizingStrategy, CompressionCodec.NONE);
+	}
+
+	/**
+	 * @param sourceDir
+	 *            the source directory where normalized files are located
+	 * @param destDir
+	 *            the destination directory
+	 * @param normalizingStrategy
+	 *            the strategy that contains the normalizing logic
+	 * @param compressionCodec
+	 *            the codec normalized files are compressed with; source files are decompressed
+	 *            automatically
+	 */
+	public Normalizer(final File sourceDir, final File destDir, final NormalizingStrategy normalizingStrategy,
+			final CompressionCodec compressionCodec) {
 		this.sourceDir = sourceDir;
 		this.destDir = destDir;
 		this.normalizingStrategy = normalizingStrategy;
+		this.compressionCodec = compressionCodec;
 	}
 
 	public void normalize(final File file) throws IOException {
+		normalize(file, normalizedDirPath(file), null);
+	}
+
+	/**
+	 * Normalizes the specified file into the specified directory. If a file name part is given,
+	 * it is appended to the names of the normalized files, so several files can be normalized
+	 * independently into the same directory, e. g. {@code [measuring][login][part_1].csv}.
+	 *
+	 * @param file
+	 *            the file to normalize, relative to the source directory
+	 * @param dirPath
+	 *            the directory normalized files are written to, relative to the destination
+	 *            directory
+	 * @param fileNamePart
+	 *            an additional file name part, may be {@code null}
+	 */
+	public void normalize(final File file, final String dirPath, @Nullable final String fileNamePart) throws IOException {
 		checkState(!file.isAbsolute(), "'file' must be relative");
 
 		String filePath = file.getPath();
-		String[] pathElements = split(getPath(filePath), SystemUtils.FILE_SEPARATOR); // strip out dir
 
-		StrBuilder sb = new StrBuilder();
-		for (int i = 0; i < pathElements.length; ++i) {
-			if (i == 1) {
-				continue; // strip out dir, e. g. perfmon-logs, measuring-logs
+		Map<String, WritableByteChannel> channels = newHashMap();
+		List<OutputStream> outputStreams = newArrayList();
+		InputStream is = null;
+		try {
+			File sourceFile = new File(sourceDir, filePath); //relative to source dir
+			TaskMetrics.recordFile(filePath);
+			is = CompressionCodec.openInputStream(sourceFile);
+			Scanner scanner = new Scanner(is, Charsets.UTF_8.name());
+			long lineCount = 0L;
+			while (scanner.hasNext()) {
+				normalizeLine(scanner.nextLine(), dirPath, fileNamePart, channels, outputStreams, null, false);
+				lineCount++;
 			}
-			sb.appendSeparator(SystemUtils.FILE_SEPARATOR);
-			sb.append(pathElements[i]);
+			scanner.close();
+			TaskMetrics.recordRead(lineCount, sourceFile.length());
+		} finally {
+			outputStreams.forEach(IOUtils::closeQuietly);
+			closeQuietly(is);
 		}
-		String dirPath = sb.toString();
+	}
+
+	/**
+	 * Normalizes lines read from a file that is still growing. The results are appended to the
+	 * normalized files, so this method may be called repeatedly for the same file.
+	 *
+	 * @param file
+	 *            the file the lines were read from, relative to the source directory
+	 * @param lines
+	 *            the lines to normalize
+	 * @return the normalized files that have been written to, relative to the destination
+	 *         directory
+	 */
+	public Set<File> normalizeLines(final File file, final Iterable<String> lines) throws IOException {
+		checkState(!file.isAbsolute(), "'file' must be relative");
+
+		String dirPath = normalizedDirPath(file);
 
-		Map<String, FileChannel> channels = newHashMap();
+		Map<String, WritableByteChannel> channels = newHashMap();
 		List<OutputStream> outputStreams = newArrayList();
-		FileInputStream fis = null;
+		Set<File> destFiles = newHashSet();
 		try {
-			fis = new FileInputStream(new File(sourceDir, filePath)); //relative to source dir
-			Scanner scanner = new Scanner(fis, Charsets.UTF_8.name());
-			while (scanner.hasNext()) {
-				String line = scanner.nextLine();
-				if (trimToNull(line) == null || line.startsWith("#")) {
-					continue;
-				}
-				List<ChannelData> channelDataList = normalizingStrategy.normalizeLine(line);
-				for (ChannelData channelData : channelDataList) {
-
-					FileChannel channel = channels.get(channelData.getChannelKey());
-					if (channel == null) {
-						String baseName = channelData.getChannelBaseName();
-						String key = channelData.getChannelKey();
-						String fileName = new File(dirPath, String.format("[%s][%s].csv", baseName, key)).getPath();
-						File destFile = new File(destDir, fileName);
-						destFile.getParentFile().mkdirs();
-						FileOutputStream fos = new FileOutputStream(destFile);
-						outputStreams.add(fos);
-						channel = fos.getChannel();
-						channels.put(channelData.getChannelKey(), channel);
-					}
-
-					writeLineToChannel(channel, channelData.getValue(), Charsets.UTF_8);
-				}
+			for (String line : lines) {
+				normalizeLine(line, dirPath, null, channels, outputStreams, destFiles, true);
 			}
-			scanner.close();
 		} finally {
 			outputStreams.forEach(IOUtils::closeQuietly);
-			closeQuietly(fis);
 		}
+		return destFiles;
+	}
+
+	private void normalizeLine(final String line, final String dirPath, final String fileNamePart,
+			final Map<String, WritableByteChannel> channels, final List<OutputStream> outputStreams, final Set<File> destFiles,
+			final boolean append) throws IOException {
+		if (trimToNull(line) == null || line.startsWith("#")) {
+			return;
+		}
+		List<ChannelData> channelDataList = normalizingStrategy.normalizeLine(line);
+		for (ChannelData channelData : channelDataList) {
+
+			WritableByteChannel channel = channels.get(channelData.getChannelKey());
+			if (channel == null) {
+				String baseName = channelData.getChannelBaseName();
+				String key = channelData.getChannelKey();
+				String baseFileName = fileNamePart == null
+						? String.format("[%s][%s].csv", baseName, key)
+						: String.format("[%s][%s][%s].csv", baseName, key, fileNamePart);
+				String fileName = new File(dirPath, baseFileName).getPath();
+				File destFile = new File(destDir, fileName);
+				destFile.getParentFile().mkdirs();
+				// appending to a compressed file adds another gzip member or LZ4 frame
+				OutputStream os = compressionCodec.wrap(new FileOutputStream(destFile, append));
+				outputStreams.add(os);
+				channel = Channels.newChannel(os);
+				channels.put(channelData.getChannelKey(), channel);
+				if (destFiles != null) {
+					destFiles.add(new File(fileName));
+				}
+			}
+
+			writeLineToChannel(channel, channelData.getValue(), Charsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Computes the directory normalized files are written to, relative to the destination
+	 * directory. This is the directory of the specified file with the second path element being
+	 * stripped out, e. g. {@code console/console-logs/foo.perfload --> console}.
+	 *
+	 * @param file
+	 *            the file to normalize, relative to the source directory
+	 * @return the relative directory path
+	 */
+	static String normalizedDirPath(final File file) {
+		String[] pathElements = split(getPath(file.getPath()), SystemUtils.FILE_SEPARATOR); // strip out dir
+
+		StrBuilder sb = new StrBuilder();
+		for (int i = 0; i < pathElements.length; ++i) {
+			if (i == 1) {
+				continue; // strip out dir, e. g. perfmon-logs, measuring-logs
+			}
+			sb.appendSeparator(SystemUtils.FILE_SEPARATOR);
+			sb.append(pathElements[i]);
+		}
+		return sb.toString();
 	}
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reporting;
+
+import com.googlecode.jatl.HtmlWriter;
+
+/**
+ * Embeds the JSON data of an interactive chart, which is rendered by
+ * {@code assets/javascripts/perfalyzer-charts.js}.
+ *
+ * @author rnaegele
+ */
+public class Chart extends HtmlWriter {
+
+	private final String chartData;
+
+	/**
+	 * @param chartData
+	 * 		the chart data as written by the report preparation; must not contain {@code </}
+	 */
+	public Chart(final String chartData) {
+		this.chartData = chartData;
+	}
+
+	@Override
+	protected void build() {
+		//@formatter:off
+
+		div().classAttr("perf-chart");
+			script().type("application/json").raw(chartData).end();
+		end();
+
+		//@formatter:on
+	}
+}
@@ -30,14 +30,25 @@ public class ContentItem extends HtmlWriter {
 	private final TableData tableData;
 	private final String topLinkName;
 	private final String plotSrc;
+	private final String chartData;
 
 	public ContentItem(final String tab, final int itemIndex, final String itemTitle, final TableData tableData,
 			final String plotSrc, final String topLinkName) {
+		this(tab, itemIndex, itemTitle, tableData, plotSrc, null, topLinkName);
+	}
+
+	/**
+	 * @param chartData
+	 * 		the data of an interactive chart, which is shown instead of the plot image if non-null
+	 */
+	public ContentItem(final String tab, final int itemIndex, final String itemTitle, final TableData tableData,
+			final String plotSrc, final String chartData, final String topLinkName) {
 		this.tab = tab;
 		this.itemIndex = itemIndex;
 		this.itemTitle = itemTitle;
 		this.tableData = tableData;
 		this.plotSrc = plotSrc != null ? plotSrc.replace('\\', '/') : null;
+		this.chartData = chartData;
 		this.topLinkName = topLinkName;
 	}
 
@@ -78,7 +89,7 @@ public class ContentItem extends HtmlWriter {
 				if (tableData != null) {
 					div().classAttr("perf-row");
 						boolean imageInNewRow = tableData.isImageInNewRow();
-						div().classAttr(imageInNewRow || plotSrc == null ? "perf-span-all" : "perf-col-left");
+						div().classAttr(imageInNewRow || plotSrc == null && chartData == null ? "perf-span-all" : "perf-col-left");
 							table().classAttr("perf-data-table");
 								int valueColumnsCount = tableData.getValueColumnsCount();
 								int colCount = tableData.getHeaders().size();
@@ -119,10 +130,10 @@ public class ContentItem extends HtmlWriter {
 								end();
 							end();
 						end();
-						if (plotSrc != null) {
+						if (plotSrc != null || chartData != null) {
 							if (!imageInNewRow) {
 								div().classAttr("perf-col-right");
-									img().src(plotSrc).alt(plotSrc);
+									writePlot();
 								end();
 							}
 						}
@@ -131,7 +142,7 @@ public class ContentItem extends HtmlWriter {
 				if (tableData == null || tableData.isImageInNewRow()) {
 					div().classAttr("perf-row");
 						div().classAttr("perf-span-all");
-							img().src(plotSrc).alt(plotSrc);
+							writePlot();
 						end();
 					end();
 				}
@@ -141,6 +152,14 @@ public class ContentItem extends HtmlWriter {
 		//@formatter:on
 	}
 
+	private void writePlot() {
+		if (chartData != null) {
+			write(new Chart(chartData));
+		} else {
+			img().src(plotSrc).alt(plotSrc);
+		}
+	}
+
 	/**
 	 * @return the itemIndex
 	 */
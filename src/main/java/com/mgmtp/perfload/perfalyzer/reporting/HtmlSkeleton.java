@@ -65,6 +65,7 @@ public class HtmlSkeleton extends HtmlWriter {
 					end();
 				end();
 				script().src("assets/javascripts/perfalyzer.js").end();
+				script().src("assets/javascripts/perfalyzer-charts.js").end();
 			end();
 		end();
 
@@ -32,11 +32,23 @@ public class OverviewItem extends HtmlWriter {
 	private final TestMetadata testMetadata;
 	private final ResourceBundle resourceBundle;
 	private final DateTimeFormatter dateTimeFormatter;
+	private final String loadProfileChartData;
 
 	public OverviewItem(final TestMetadata testMetadata, final ResourceBundle resourceBundle, final Locale locale) {
+		this(testMetadata, resourceBundle, locale, null);
+	}
+
+	/**
+	 * @param loadProfileChartData
+	 * 		the data of the interactive load profile chart, which is shown instead of the load
+	 * 		profile image if non-null
+	 */
+	public OverviewItem(final TestMetadata testMetadata, final ResourceBundle resourceBundle, final Locale locale,
+			final String loadProfileChartData) {
 		this.testMetadata = testMetadata;
 		this.resourceBundle = resourceBundle;
 		this.dateTimeFormatter = DateTimeFormatter.ISO_OFFSET_DATE_TIME.withLocale(locale);
+		this.loadProfileChartData = loadProfileChartData;
 	}
 
 	@Override
@@ -98,7 +110,11 @@ public class OverviewItem extends HtmlWriter {
 				div().classAttr("perf-col-6");
 					String loadprofile = resourceBundle.getString("overview.loadprofile");
 					h3().classAttr("perf-overview-header").text(loadprofile).end();
-					img().src("console/[loadprofile].png").alt(loadprofile);
+					if (loadProfileChartData != null) {
+						write(new Chart(loadProfileChartData));
+					} else {
+						img().src("console/[loadprofile].png").alt(loadprofile);
+					}
 				end();
 			end();
 		end();
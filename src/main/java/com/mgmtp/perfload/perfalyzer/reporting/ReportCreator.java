@@ -20,11 +20,14 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
+import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import com.mgmtp.perfload.perfalyzer.annotations.ReportDir;
 import com.mgmtp.perfload.perfalyzer.annotations.ReportPreparationDir;
 import com.mgmtp.perfload.perfalyzer.annotations.ReportTabNames;
+import com.mgmtp.perfload.perfalyzer.util.FileStaging;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.util.PipelineMetrics;
 import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.commons.lang3.text.StrTokenizer;
@@ -56,12 +59,12 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.io.Files.createParentDirs;
 import static com.google.common.io.Files.newReader;
 import static com.google.common.io.Files.newWriter;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
 import static com.mgmtp.perfload.perfalyzer.util.PerfAlyzerUtils.extractFileNameParts;
 import static java.util.stream.Collectors.toList;
-import static org.apache.commons.io.FileUtils.copyFile;
 import static org.apache.commons.io.FilenameUtils.getExtension;
 import static org.apache.commons.io.FilenameUtils.removeExtension;
 import static org.apache.commons.lang3.StringUtils.split;
@@ -72,33 +75,61 @@ import static org.apache.commons.lang3.StringUtils.substringBefore;
  */
 public class ReportCreator {
 
+	/**
+	 * The tab showing perfAlyzer's own performance, if enabled.
+	 */
+	public static final String ANALYSIS_PERFORMANCE_TAB = "perfAlyzer";
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private final TestMetadata testMetadata;
 	private final File soureDir;
 	private final File destDir;
 	private final Map<String, List<Pattern>> reportContentsConfigMap;
+	private final ReportExclusions exclusions;
 	private final StrTokenizer tokenizer = StrTokenizer.getCSVInstance();
 	private final ResourceBundle resourceBundle;
 
 	private final Locale locale;
 	private final List<String> tabNames;
+	private final boolean copyPlots;
+	private final FileStaging fileStaging;
 
 	public ReportCreator(final TestMetadata testMetadata, @ReportPreparationDir final File soureDir,
 			@ReportDir final File destDir, final Map<String, List<Pattern>> reportContentsConfigMap,
 			final ResourceBundle resourceBundle, final Locale locale, @ReportTabNames final List<String> tabNames) {
+		this(testMetadata, soureDir, destDir, reportContentsConfigMap, resourceBundle, locale, tabNames, true, FileStaging.COPY);
+	}
+
+	/**
+	 * @param copyPlots
+	 * 		whether plots are copied to the report directory; if {@code false}, plots are expected to
+	 * 		be served by a {@link ReportServer}
+	 * @param fileStaging
+	 * 		the strategy for staging plots in the report directory
+	 */
+	public ReportCreator(final TestMetadata testMetadata, @ReportPreparationDir final File soureDir,
+			@ReportDir final File destDir, final Map<String, List<Pattern>> reportContentsConfigMap,
+			final ResourceBundle resourceBundle, final Locale locale, @ReportTabNames final List<String> tabNames,
+			final boolean copyPlots, final FileStaging fileStaging) {
 		this.testMetadata = testMetadata;
 		this.soureDir = soureDir;
 		this.destDir = destDir;
 		this.reportContentsConfigMap = reportContentsConfigMap;
+		this.exclusions = new ReportExclusions(reportContentsConfigMap.get("exclusions"));
 		this.resourceBundle = resourceBundle;
 		this.locale = locale;
 		this.tabNames = tabNames;
+		this.copyPlots = copyPlots;
+		this.fileStaging = fileStaging;
 		tokenizer.setDelimiterChar(DELIMITER);
 	}
 
 	public void createReport(final List<PerfAlyzerFile> files) throws IOException {
 		Function<PerfAlyzerFile, String> classifier = perfAlyzerFile -> {
+			if (perfAlyzerFile.getFile().getPath().startsWith(PipelineMetrics.ANALYSIS_PERFORMANCE_DIR)) {
+				return ANALYSIS_PERFORMANCE_TAB;
+			}
 			String marker = perfAlyzerFile.getMarker();
 			return marker == null ? "Overall" : marker;
 		};
@@ -117,24 +148,24 @@ public class ReportCreator {
 			for (PerfAlyzerFile perfAlyzerFile : entry.getValue()) {
 				File file = perfAlyzerFile.getFile();
 				String groupKey = removeExtension(file.getPath());
-				boolean excluded = false;
-				for (Pattern pattern : reportContentsConfigMap.get("exclusions")) {
-					Matcher matcher = pattern.matcher(groupKey);
-					if (matcher.matches()) {
-						excluded = true;
-						log.debug("Excluded from report: {}", groupKey);
-						break;
-					}
-				}
-				if (!excluded) {
+				boolean excluded = exclusions.isExcluded(groupKey);
+				if (excluded) {
+					log.debug("Excluded from report: {}", groupKey);
+				} else {
 					contentItemFilesByMarker.put(groupKey, perfAlyzerFile);
 				}
 			}
 		}
 
 		// explicitly copy it because it is otherwise filtered from the report in order to only show in the overview
-		String loadProfilePlot = new File("console", "[loadprofile].png").getPath();
-		copyFile(new File(soureDir, loadProfilePlot), new File(destDir, loadProfilePlot));
+		File loadProfileChartFile = new File(soureDir, new File("console", "[loadprofile].json").getPath());
+		String loadProfileChartData = null;
+		if (loadProfileChartFile.isFile()) {
+			loadProfileChartData = Files.toString(loadProfileChartFile, Charsets.UTF_8);
+		} else if (copyPlots) {
+			String loadProfilePlot = new File("console", "[loadprofile].png").getPath();
+			fileStaging.stage(new File(soureDir, loadProfilePlot), new File(destDir, loadProfilePlot));
+		}
 
 		Map<String, List<ContentItem>> tabItems = new LinkedHashMap<>();
 		Map<String, QuickJump> quickJumps = new HashMap<>();
@@ -155,10 +186,17 @@ public class ReportCreator {
 
 				TableData tableData = null;
 				String plotSrc = null;
+				String chartData = null;
 				for (PerfAlyzerFile file : itemFiles) {
-					if ("png".equals(getExtension(file.getFile().getName()))) {
+					String extension = getExtension(file.getFile().getName());
+					if ("png".equals(extension)) {
 						plotSrc = file.getFile().getPath();
-						copyFile(new File(soureDir, plotSrc), new File(destDir, plotSrc));
+						if (copyPlots) {
+							fileStaging.stage(new File(soureDir, plotSrc), new File(destDir, plotSrc));
+						}
+					} else if ("json".equals(extension)) {
+						// interactive charts are embedded into the report
+						chartData = Files.toString(new File(soureDir, file.getFile().getPath()), Charsets.UTF_8);
 					} else {
 						tableData = createTableData(file.getFile());
 					}
@@ -175,14 +213,21 @@ public class ReportCreator {
 				sb.append(resourceBundle.getString(titleParts[1]));
 
 				List<String> fileNameParts = extractFileNameParts(titleParts[1], true);
-				if (titleParts[1].contains("[distribution]")) {
+				if (titleParts[1].contains("[distribution]") || titleParts[1].contains("[percentiles")
+						|| titleParts[1].contains("[slowest")) {
 					String operation = fileNameParts.get(1);
 					sb.append(separator);
 					sb.append(operation);
-				} else if ("comparison".equals(titleParts[0])) {
+				} else if ("comparison".equals(titleParts[0]) || "trend".equals(titleParts[0])) {
 					String operation = fileNameParts.get(1);
 					sb.append(separator);
 					sb.append(operation);
+				} else if (titleParts[1].startsWith("[correlation][")) {
+					// scatter plot of a resource
+					sb.append(separator);
+					sb.append(fileNameParts.get(1));
+					sb.append(separator);
+					sb.append(fileNameParts.get(2));
 				} else if (titleParts[1].contains("[gclog]")) {
 					if (fileNameParts.size() > 1) {
 						sb.append(separator);
@@ -191,7 +236,7 @@ public class ReportCreator {
 				}
 
 				title = sb.toString();
-				ContentItem item = new ContentItem(tab, itemIndex, title, tableData, plotSrc,
+				ContentItem item = new ContentItem(tab, itemIndex, title, tableData, plotSrc, chartData,
 						resourceBundle.getString("report.topLink"));
 				contentItems.add(item);
 
@@ -202,7 +247,7 @@ public class ReportCreator {
 
 		NavBar navBar = new NavBar(tabNames, quickJumps);
 		String testName = removeExtension(testMetadata.getTestPlanFile());
-		OverviewItem overviewItem = new OverviewItem(testMetadata, resourceBundle, locale);
+		OverviewItem overviewItem = new OverviewItem(testMetadata, resourceBundle, locale, loadProfileChartData);
 		Content content = new Content(tabItems);
 
 		String perfAlyzerVersion;
@@ -220,7 +265,9 @@ public class ReportCreator {
 	}
 
 	private void writeReport(final HtmlSkeleton html) throws IOException {
-		try (Writer wr = newWriter(new File(destDir, "report.html"), Charsets.UTF_8)) {
+		File reportFile = new File(destDir, "report.html");
+		createParentDirs(reportFile);
+		try (Writer wr = newWriter(reportFile, Charsets.UTF_8)) {
 			html.write(wr);
 		}
 	}
@@ -239,7 +286,7 @@ public class ReportCreator {
 				if (headers == null) {
 					headers = Lists.transform(tokenList, resourceBundle::getString);
 					valueColumnsCount = tokenList.size() - 1;
-					if (fileName.contains("[distribution]")) {
+					if (fileName.contains("[distribution]") || fileName.startsWith("[correlation]")) {
 						valueColumnsCount -= 2;
 					} else if (file.getPath().startsWith("global") && !fileName.startsWith("[measuring][executions]")) {
 						valueColumnsCount--;
@@ -249,7 +296,8 @@ public class ReportCreator {
 				}
 			}
 
-			boolean imageInNewRow = fileName.contains("[distribution]") || fileName.contains("[executions]") || fileName.contains("[gclog]");
+			boolean imageInNewRow = fileName.contains("[distribution]") || fileName.contains("[executions]") || fileName.contains("[gclog]")
+					|| fileName.contains("[trend]");
 			return new TableData(headers, rows, valueColumnsCount, imageInNewRow);
 		}
 	}
@@ -260,6 +308,9 @@ public class ReportCreator {
 		List<Pattern> priorityPatterns;
 		int size;
 
+		// the same items are compared many times while sorting
+		private final Map<String, Integer> priorities = new HashMap<>();
+
 		public ItemComparator(final List<Pattern> priorityPatterns) {
 			this.priorityPatterns = priorityPatterns;
 			this.size = priorityPatterns.size();
@@ -267,8 +318,8 @@ public class ReportCreator {
 
 		@Override
 		public int compare(final String o1, final String o2) {
-			int priority1 = getPriority(o1);
-			int priority2 = getPriority(o2);
+			int priority1 = priorities.computeIfAbsent(o1, this::getPriority);
+			int priority2 = priorities.computeIfAbsent(o2, this::getPriority);
 
 			int result = priority1 - priority2;
 			if (result == 0) {
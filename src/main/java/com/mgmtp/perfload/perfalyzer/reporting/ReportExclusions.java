@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reporting;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether files are excluded from reports according to the {@code exclusions} patterns
+ * of the report contents configuration. Decisions are memoized, because the files of a report
+ * item (e. g. plot and CSV file) share the same key, and reports may be created repeatedly.
+ *
+ * @author rnaegele
+ */
+public class ReportExclusions {
+
+	private final List<Pattern> patterns;
+	private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+	public ReportExclusions(final List<Pattern> patterns) {
+		this.patterns = patterns;
+	}
+
+	/**
+	 * @param groupKey
+	 * 		the path of a file relative to the report preparation directory without extension
+	 * @return {@code true} if the file is excluded from reports
+	 */
+	public boolean isExcluded(final String groupKey) {
+		return decisions.computeIfAbsent(groupKey, key -> patterns.stream().anyMatch(pattern -> pattern.matcher(key).matches()));
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reporting;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.makeRelative;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FilenameUtils.getExtension;
+import static org.apache.commons.io.FilenameUtils.normalize;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.annotations.ReportDir;
+import com.mgmtp.perfload.perfalyzer.annotations.ReportPreparationDir;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the report via the JDK's embedded HTTP server. Plots are not rendered during report
+ * preparation but on first request using a {@link PlotCreator} with deferred rendering, which
+ * writes them to the report preparation directory and releases their data. Rendered images are
+ * kept in a cache limited by size, evicting the least recently used images first, which are then
+ * served from their files.
+ * <p>
+ * The server only listens on the loopback interface.
+ *
+ * @author rnaegele
+ */
+public class ReportServer {
+
+	private static final long MAX_CACHE_BYTES = 64L * 1024L * 1024L;
+
+	private static final Map<String, String> CONTENT_TYPES = ImmutableMap.<String, String>builder()
+			.put("html", "text/html; charset=UTF-8")
+			.put("css", "text/css; charset=UTF-8")
+			.put("js", "application/javascript; charset=UTF-8")
+			.put("json", "application/json; charset=UTF-8")
+			.put("png", "image/png")
+			.put("gif", "image/gif")
+			.put("jpg", "image/jpeg")
+			.put("svg", "image/svg+xml")
+			.put("ico", "image/x-icon")
+			.put("woff", "application/font-woff")
+			.put("woff2", "font/woff2")
+			.put("ttf", "application/x-font-ttf")
+			.put("eot", "application/vnd.ms-fontobject")
+			.build();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final File reportDir;
+	private final File reportPreparationDir;
+	private final PlotCreator plotCreator;
+	private final int port;
+	private final Cache<File, byte[]> plotCache;
+
+	private HttpServer server;
+	private ExecutorService executorService;
+
+	/**
+	 * @param reportDir
+	 * 		the directory with the report and its assets
+	 * @param reportPreparationDir
+	 * 		the directory plots are registered for
+	 * @param plotCreator
+	 * 		the plot creator with deferred rendering
+	 * @param port
+	 * 		the port to listen on
+	 */
+	public ReportServer(@ReportDir final File reportDir, @ReportPreparationDir final File reportPreparationDir,
+			final PlotCreator plotCreator, final int port) {
+		this.reportDir = reportDir;
+		this.reportPreparationDir = reportPreparationDir;
+		this.plotCreator = plotCreator;
+		this.port = port;
+		this.plotCache = CacheBuilder.newBuilder()
+				.maximumWeight(MAX_CACHE_BYTES)
+				.weigher((final File file, final byte[] bytes) -> bytes.length)
+				.build();
+	}
+
+	/**
+	 * @return the plots registered for deferred rendering, relative to the report preparation
+	 * directory, so they can be included in the report
+	 */
+	public List<PerfAlyzerFile> getDeferredPlotFiles() {
+		return plotCreator.getDeferredPlotFiles().stream()
+				.map(file -> PerfAlyzerFile.create(makeRelative(reportPreparationDir, file)))
+				.collect(toList());
+	}
+
+	/**
+	 * Starts the server. Request handling threads keep the JVM alive until {@link #stop()} is
+	 * called.
+	 */
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/", this::handle);
+		executorService = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		server.setExecutor(executorService);
+		server.start();
+		log.info("Report available at http://localhost:{}/", server.getAddress().getPort());
+	}
+
+	/**
+	 * @return the port the server listens on, e. g. if it was started with port 0
+	 */
+	int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executorService.shutdownNow();
+		}
+	}
+
+	private void handle(final HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			if (!"GET".equals(method) && !"HEAD".equals(method)) {
+				sendEmpty(exchange, 405);
+				return;
+			}
+
+			String path = exchange.getRequestURI().getPath();
+			// returns null for paths outside the root
+			String relativePath = normalize(path.equals("/") ? "report.html" : path.substring(1), true);
+			if (relativePath == null || relativePath.isEmpty()) {
+				sendEmpty(exchange, 404);
+				return;
+			}
+			log.debug("Request: {}", relativePath);
+
+			String contentType = CONTENT_TYPES.getOrDefault(getExtension(relativePath).toLowerCase(), "application/octet-stream");
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+
+			if ("png".equals(getExtension(relativePath))) {
+				byte[] plot = loadDeferredPlot(relativePath);
+				if (plot != null) {
+					send(exchange, plot);
+					return;
+				}
+			}
+
+			// plots from an earlier report preparation run are not copied to the report directory
+			File file = new File(reportDir, relativePath);
+			if (!file.isFile()) {
+				file = new File(reportPreparationDir, relativePath);
+			}
+			if (!file.isFile()) {
+				sendEmpty(exchange, 404);
+				return;
+			}
+			send(exchange, file);
+		} catch (Exception ex) {
+			log.error("Error handling request: " + exchange.getRequestURI(), ex);
+			if (exchange.getResponseCode() < 0) {
+				sendEmpty(exchange, 500);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private byte[] loadDeferredPlot(final String relativePath) throws IOException {
+		File file = new File(reportPreparationDir, relativePath).getAbsoluteFile();
+		try {
+			// concurrent requests for the same plot only render it once
+			return plotCache.get(file, () -> {
+				byte[] png = plotCreator.renderDeferredPlot(file);
+				if (png == null) {
+					throw new FileNotFoundException(file.getPath());
+				}
+				log.debug("Rendered plot {} ({} bytes)", relativePath, png.length);
+				return png;
+			});
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof FileNotFoundException) {
+				return null;
+			}
+			throw new IOException("Error rendering plot: " + relativePath, ex.getCause());
+		}
+	}
+
+	private static void send(final HttpExchange exchange, final byte[] content) throws IOException {
+		boolean head = "HEAD".equals(exchange.getRequestMethod());
+		exchange.sendResponseHeaders(200, head ? -1 : content.length);
+		if (!head) {
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(content);
+			}
+		}
+	}
+
+	private static void send(final HttpExchange exchange, final File file) throws IOException {
+		boolean head = "HEAD".equals(exchange.getRequestMethod());
+		exchange.sendResponseHeaders(200, head ? -1 : file.length());
+		if (!head) {
+			try (OutputStream os = exchange.getResponseBody()) {
+				Files.copy(file, os);
+			}
+		}
+	}
+
+	private static void sendEmpty(final HttpExchange exchange, final int status) throws IOException {
+		exchange.sendResponseHeaders(status, -1);
+	}
+}
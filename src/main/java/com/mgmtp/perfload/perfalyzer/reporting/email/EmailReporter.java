@@ -24,6 +24,7 @@ import com.mgmtp.perfload.perfalyzer.annotations.ReportPreparationDir;
 import com.mgmtp.perfload.perfalyzer.annotations.ReportsBaseUrl;
 import com.mgmtp.perfload.perfalyzer.annotations.SmtpProps;
 import com.mgmtp.perfload.perfalyzer.annotations.SubjectProps;
+import com.mgmtp.perfload.perfalyzer.reporting.ReportExclusions;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerUtils;
 import com.mgmtp.perfload.perfalyzer.util.PlaceholderUtils;
@@ -49,7 +50,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.google.common.base.Joiner.on;
@@ -84,7 +84,7 @@ public class EmailReporter {
 	private final File soureDir;
 	private final Authenticator authenticator;
 	private final int maxHistoryItems;
-	private final Map<String, List<Pattern>> reportContentsConfigMap;
+	private final ReportExclusions exclusions;
 
 	public EmailReporter(final TestMetadata testMetadata, @ReportPreparationDir final File soureDir, final ResourceBundle resourceBundle,
 			final Locale locale, @Nullable @ReportsBaseUrl final String reportsBaseUrl, @RelativeDestDir final File destDir,
@@ -103,7 +103,7 @@ public class EmailReporter {
 		this.subjectProps = subjectProps;
 		this.authenticator = authenticator;
 		this.maxHistoryItems = maxHistoryItems;
-		this.reportContentsConfigMap = reportContentsConfigMap;
+		this.exclusions = new ReportExclusions(reportContentsConfigMap.get("exclusions"));
 	}
 
 	public void createAndSendReportMail() throws IOException {
@@ -116,16 +116,10 @@ public class EmailReporter {
 			File[] files = new File(soureDir, "comparison").listFiles();
 			for (File file : files) {
 				String groupKey = removeExtension(file.getPath());
-				boolean excluded = false;
-				for (Pattern pattern : reportContentsConfigMap.get("exclusions")) {
-					Matcher matcher = pattern.matcher(groupKey);
-					if (matcher.matches()) {
-						excluded = true;
-						log.debug("Excluded from report: {}", groupKey);
-						break;
-					}
-				}
-				if (!excluded) {
+				boolean excluded = exclusions.isExcluded(groupKey);
+				if (excluded) {
+					log.debug("Excluded from report: {}", groupKey);
+				} else {
 					String operation = PerfAlyzerFile.create(file).getFileNameParts().get(1);
 					List<? extends List<String>> comparisonDataList = loadData(file);
 
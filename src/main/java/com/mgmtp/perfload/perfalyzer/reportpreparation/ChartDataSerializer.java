@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import java.util.List;
+
+import org.apache.commons.lang3.text.StrBuilder;
+
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+
+/**
+ * Serializes chart data to compact JSON, which is rendered in the browser by
+ * {@code assets/javascripts/perfalyzer-charts.js}. A chart has the following structure:
+ *
+ * <pre>
+ * {"renderer":"LINES","xLog":false,"yLog":false,"width":640,"height":400,"xLabel":"...","range":[0,600],
+ *  "markers":[{"name":"...","left":60,"right":120}],
+ *  "plots":[{"label":"...","series":[{"name":"...","dx":[0,10,10],"y":[1.5,2.25,3]}]}]}
+ * </pre>
+ *
+ * {@code range} and {@code markers} are optional. Each combined plot has its own y-axis. If all
+ * values of a series' x or y values are integral, they are delta-encoded as {@code dx} or
+ * {@code dy}, i. e. the first value is followed by the differences to the respective previous
+ * value. Missing values are written as {@code null}. In order to allow embedding into a
+ * {@code script} element, {@code <} is escaped in strings.
+ *
+ * @author rnaegele
+ */
+final class ChartDataSerializer {
+
+	private ChartDataSerializer() {
+	}
+
+	static String serialize(final AxisType xAxisType, final AxisType yAxisType, final RendererType rendererType,
+			final ChartDimensions dimensions, final String xLabel, final List<String> yLabels, final DataRange dataRange,
+			final List<Marker> markers, final NumberDataSet... dataSets) {
+		StrBuilder sb = new StrBuilder(4096);
+		sb.append("{\"renderer\":");
+		appendString(sb, rendererType.name());
+		sb.append(",\"xLog\":").append(xAxisType == AxisType.LOGARITHMIC);
+		sb.append(",\"yLog\":").append(yAxisType == AxisType.LOGARITHMIC);
+		sb.append(",\"width\":").append(dimensions.getWidth());
+		sb.append(",\"height\":").append(dimensions.getHeight());
+		sb.append(",\"xLabel\":");
+		appendString(sb, xLabel);
+
+		if (dataRange != null) {
+			sb.append(",\"range\":[").append(dataRange.getLowerSeconds()).append(',').append(dataRange.getUpperSeconds()).append(']');
+		}
+
+		if (!markers.isEmpty()) {
+			sb.append(",\"markers\":[");
+			for (int i = 0; i < markers.size(); ++i) {
+				Marker marker = markers.get(i);
+				sb.appendSeparator(',', i);
+				sb.append("{\"name\":");
+				appendString(sb, marker.getName());
+				sb.append(",\"left\":").append(marker.getLeftMillis() / 1000L);
+				sb.append(",\"right\":").append(marker.getRightMillis() / 1000L);
+				sb.append('}');
+			}
+			sb.append(']');
+		}
+
+		sb.append(",\"plots\":[");
+		for (int i = 0; i < dataSets.length; ++i) {
+			NumberDataSet dataSet = dataSets[i];
+			sb.appendSeparator(',', i);
+			sb.append("{\"label\":");
+			appendString(sb, yLabels.get(i));
+			sb.append(",\"series\":[");
+
+			for (int series = 0, seriesCount = dataSet.getSeriesCount(); series < seriesCount; ++series) {
+				int itemCount = dataSet.getItemCount(series);
+				double[] xValues = new double[itemCount];
+				double[] yValues = new double[itemCount];
+				for (int item = 0; item < itemCount; ++item) {
+					xValues[item] = dataSet.getXValue(series, item);
+					yValues[item] = dataSet.getYValue(series, item);
+				}
+
+				sb.appendSeparator(',', series);
+				sb.append("{\"name\":");
+				appendString(sb, dataSet.getSeriesKey(series).toString());
+				sb.append(',');
+				appendValues(sb, "x", xValues);
+				sb.append(',');
+				appendValues(sb, "y", yValues);
+				sb.append('}');
+			}
+			sb.append("]}");
+		}
+		sb.append("]}");
+
+		return sb.toString();
+	}
+
+	static void appendValues(final StrBuilder sb, final String name, final double[] values) {
+		boolean delta = values.length > 1 && allIntegral(values);
+		sb.append('"');
+		if (delta) {
+			sb.append('d');
+		}
+		sb.append(name).append("\":[");
+
+		long previous = 0L;
+		for (int i = 0; i < values.length; ++i) {
+			sb.appendSeparator(',', i);
+			if (delta) {
+				long value = (long) values[i];
+				sb.append(value - previous);
+				previous = value;
+			} else {
+				appendNumber(sb, values[i]);
+			}
+		}
+		sb.append(']');
+	}
+
+	private static boolean allIntegral(final double[] values) {
+		for (double value : values) {
+			// the limit makes sure values and differences are exactly representable in JavaScript
+			if (value != Math.rint(value) || Math.abs(value) > 1e15) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void appendNumber(final StrBuilder sb, final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			sb.append("null");
+		} else if (value == Math.rint(value) && Math.abs(value) <= 1e15) {
+			sb.append((long) value);
+		} else {
+			sb.append(Double.toString(value));
+		}
+	}
+
+	static void appendString(final StrBuilder sb, final String value) {
+		sb.append('"');
+		for (int i = 0, len = value.length(); i < len; ++i) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+				case '\\':
+					sb.append('\\').append(c);
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				case '<':
+					sb.append("\\u003c");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.reportpreparation.SeriesCorrelation.laggedCorrelations;
+import static com.mgmtp.perfload.perfalyzer.util.PerfAlyzerUtils.selectDisplayData;
+import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.perfAlyzerFilePartsMatchWildcards;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static org.apache.commons.io.FileUtils.writeLines;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.commons.lang3.text.StrBuilder;
+import org.apache.commons.lang3.text.StrTokenizer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.binning.PercentileBinManager;
+import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
+
+/**
+ * Correlates perfMon resources with the response times and the throughput of the measuring logs
+ * in order to point out likely bottlenecks. All series are aligned on the 30-second grid of the
+ * perfMon bins. The 99th percentiles of the response times are binned the same way, and requests
+ * per second are summed up per bin. For each resource, the correlation with the 99th percentile
+ * of each operation is computed for lags of up to two minutes, the response times lagging behind
+ * the resource. Resources are ranked by their highest coefficient, since saturated resources
+ * drive response times up, and the response times of the top resources are plotted against the
+ * resource values.
+ *
+ * @author rnaegele
+ */
+public class CorrelationReportPreparationStrategy extends AbstractReportPreparationStrategy {
+
+	static final String FILE_NAME_PART = "correlation";
+
+	private static final int BIN_SIZE_SECONDS = PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS / 1000;
+
+	/**
+	 * Response times may lag behind resources by up to this number of bins, e. g. while queues
+	 * fill up.
+	 */
+	private static final int MAX_LAG_BINS = 4;
+
+	/**
+	 * Series must overlap in at least this number of bins, i. e. five minutes, to be correlated.
+	 */
+	private static final int MIN_BINS = 10;
+
+	private static final int MAX_TABLE_ROWS = 25;
+	private static final int MAX_PLOTS = 5;
+
+	private static final Predicate<PerfAlyzerFile> RESOURCE = perfAlyzerFilePartsMatchWildcards("perfmon", "*");
+	private static final Predicate<PerfAlyzerFile> PERCENTILES = perfAlyzerFilePartsMatchWildcards("measuring", "*",
+			"percentiles");
+	private static final Predicate<PerfAlyzerFile> REQUESTS_PER_SECOND = perfAlyzerFilePartsMatchWildcards("measuring", "*",
+			"requests", String.valueOf(PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND));
+
+	public CorrelationReportPreparationStrategy(final NumberFormat intNumberFormat, final NumberFormat floatNumberFormat,
+			final List<DisplayData> displayDataList, final ResourceBundle resourceBundle, final PlotCreator plotCreator,
+			final TestMetadata testMetadata) {
+		super(intNumberFormat, floatNumberFormat, displayDataList, resourceBundle, plotCreator, testMetadata, null);
+	}
+
+	@Override
+	public void processFiles(final File sourceDir, final File destDir, final List<PerfAlyzerFile> files) throws IOException {
+		Map<PerfAlyzerFile, Map<Long, Double>> resourceBins = new TreeMap<>();
+		Map<String, Map<Long, Double>> responseTimeBins = new TreeMap<>();
+		Map<Long, Double> throughputBins = new HashMap<>();
+
+		for (PerfAlyzerFile f : files) {
+			File file = new File(sourceDir, f.getFile().getPath());
+			if (RESOURCE.test(f)) {
+				resourceBins.put(f, readBins(file, null));
+			} else if (PERCENTILES.test(f)) {
+				responseTimeBins.put(f.getFileNameParts().get(1), readBins(file, PercentileBinManager.percentileHeader(99d)));
+			} else if (REQUESTS_PER_SECOND.test(f)) {
+				readBins(file, null).forEach((bin, count) -> throughputBins.merge(bin, count, Double::sum));
+			}
+		}
+
+		if (resourceBins.isEmpty() || responseTimeBins.isEmpty()) {
+			log.info("No perfMon data and response times to correlate");
+			return;
+		}
+		log.info("Correlating {} perfMon series with the response times of {} operation(s)...", resourceBins.size(),
+				responseTimeBins.size());
+
+		List<Map<Long, Double>> allBins = new ArrayList<>(resourceBins.values());
+		allBins.addAll(responseTimeBins.values());
+		allBins.add(throughputBins);
+		long firstBin = allBins.stream().flatMap(bins -> bins.keySet().stream()).mapToLong(Long::longValue).min().getAsLong();
+		long lastBin = allBins.stream().flatMap(bins -> bins.keySet().stream()).mapToLong(Long::longValue).max().getAsLong();
+		int binCount = (int) (lastBin - firstBin + 1);
+
+		Map<String, double[]> responseTimes = new TreeMap<>();
+		responseTimeBins.forEach((operation, bins) -> responseTimes.put(operation, toGrid(bins, firstBin, binCount)));
+
+		// bins without requests are gaps in the response times, but no requests at all for the throughput
+		double[] throughput = toGrid(throughputBins, firstBin, binCount);
+		if (!throughputBins.isEmpty()) {
+			int first = (int) (throughputBins.keySet().stream().mapToLong(Long::longValue).min().getAsLong() - firstBin);
+			int last = (int) (throughputBins.keySet().stream().mapToLong(Long::longValue).max().getAsLong() - firstBin);
+			for (int i = first; i <= last; ++i) {
+				if (Double.isNaN(throughput[i])) {
+					throughput[i] = 0d;
+				}
+			}
+		}
+
+		List<ResourceCorrelation> correlations = new ArrayList<>(resourceBins.size());
+		for (Entry<PerfAlyzerFile, Map<Long, Double>> entry : resourceBins.entrySet()) {
+			double[] resource = toGrid(entry.getValue(), firstBin, binCount);
+
+			ResourceCorrelation best = null;
+			for (Entry<String, double[]> responseTimesEntry : responseTimes.entrySet()) {
+				double[] coefficients = laggedCorrelations(resource, responseTimesEntry.getValue(), MAX_LAG_BINS, MIN_BINS);
+				for (int lag = 0; lag < coefficients.length; ++lag) {
+					double r = coefficients[lag];
+					if (!Double.isNaN(r) && (best == null || r > best.responseTimeCorrelation)) {
+						best = new ResourceCorrelation(entry.getKey(), resource, responseTimesEntry.getKey(), lag, r);
+					}
+				}
+			}
+			if (best != null) {
+				best.throughputCorrelation = laggedCorrelations(resource, throughput, 0, MIN_BINS)[0];
+				correlations.add(best);
+			}
+		}
+
+		if (correlations.isEmpty()) {
+			log.info("Not enough overlapping data to correlate perfMon data and response times");
+			return;
+		}
+		correlations.sort(Comparator.comparingDouble((ResourceCorrelation c) -> c.responseTimeCorrelation).reversed());
+
+		writeCsvFile(destDir, correlations.subList(0, Math.min(MAX_TABLE_ROWS, correlations.size())));
+		for (ResourceCorrelation correlation : correlations.subList(0, Math.min(MAX_PLOTS, correlations.size()))) {
+			writePlotFile(destDir, correlation, responseTimes.get(correlation.operation));
+		}
+	}
+
+	/**
+	 * Reads a binned file into a map of 30-second bins. Values of the same bin are summed up.
+	 *
+	 * @param file
+	 * 		the file
+	 * @param columnHeader
+	 * 		the header of the value column, or {@code null} for the second column
+	 * @return the values by bin index
+	 */
+	private Map<Long, Double> readBins(final File file, final String columnHeader) throws IOException {
+		StrTokenizer tokenizer = StrTokenizer.getCSVInstance();
+		tokenizer.setDelimiterChar(DELIMITER);
+
+		Map<Long, Double> result = new HashMap<>();
+		try (BufferedReader br = Files.newReader(file, Charsets.UTF_8)) {
+			int column = -1;
+			for (String line; (line = br.readLine()) != null; ) {
+				tokenizer.reset(line);
+				String[] tokens = tokenizer.getTokenArray();
+				if (column < 0) {
+					column = columnHeader == null ? 1 : Arrays.asList(tokens).indexOf(columnHeader);
+					checkState(column > 0, "Column '%s' not found in file: %s", columnHeader, file);
+					continue;
+				}
+				try {
+					long seconds = intNumberFormat.parse(tokens[0]).longValue();
+					double value = intNumberFormat.parse(tokens[column]).doubleValue();
+					result.merge(Math.floorDiv(seconds, BIN_SIZE_SECONDS), value, Double::sum);
+				} catch (ParseException ex) {
+					throw new IOException("Error parsing number in file: " + file, ex);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static double[] toGrid(final Map<Long, Double> bins, final long firstBin, final int binCount) {
+		double[] result = new double[binCount];
+		Arrays.fill(result, Double.NaN);
+		bins.forEach((bin, value) -> result[(int) (bin - firstBin)] = value);
+		return result;
+	}
+
+	private void writeCsvFile(final File destDir, final List<ResourceCorrelation> correlations) throws IOException {
+		List<String> lines = new ArrayList<>(correlations.size() + 1);
+
+		StrBuilder sb = new StrBuilder();
+		appendEscapedAndQuoted(sb, DELIMITER, "host", "type", "operation", "lagSeconds", "responseTimeCorrelation",
+				"throughputCorrelation");
+		lines.add(sb.toString());
+
+		for (ResourceCorrelation correlation : correlations) {
+			sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, correlation.host, correlation.type, correlation.operation,
+					intNumberFormat.format(correlation.lag * BIN_SIZE_SECONDS),
+					floatNumberFormat.format(correlation.responseTimeCorrelation),
+					Double.isNaN(correlation.throughputCorrelation)
+							? "n/a"
+							: floatNumberFormat.format(correlation.throughputCorrelation));
+			lines.add(sb.toString());
+		}
+
+		File destFile = new File(destDir, "global" + SystemUtils.FILE_SEPARATOR + "[" + FILE_NAME_PART + "].csv");
+		writeLines(destFile, Charsets.UTF_8.name(), lines);
+	}
+
+	private void writePlotFile(final File destDir, final ResourceCorrelation correlation, final double[] responseTimes)
+			throws IOException {
+		NumberDataSet dataSet = new NumberDataSet();
+		double[] resource = correlation.values;
+		for (int i = 0; i + correlation.lag < resource.length; ++i) {
+			double responseTime = responseTimes[i + correlation.lag];
+			if (!Double.isNaN(resource[i]) && !Double.isNaN(responseTime)) {
+				dataSet.addSeriesPoint(correlation.operation, resource[i], responseTime);
+			}
+		}
+
+		// the unit of the resource, e. g. io_0_r --> io_r, becomes the unit of the x axis
+		String type = correlation.type.replaceAll("_\\d+", "");
+		DisplayData resourceDisplayData = selectDisplayData(new File("[perfmon][" + type + "].png"), displayDataList);
+		DisplayData displayData = new DisplayData(resourceDisplayData.getPattern(), resourceDisplayData.getUnitY(),
+				ImmutableList.of("axis.label.p99Millis"));
+
+		File destFile = new File(destDir, "global" + SystemUtils.FILE_SEPARATOR
+				+ String.format("[%s][%s][%s].png", FILE_NAME_PART, correlation.host, correlation.type));
+		plotCreator.writePlotFile(destFile, AxisType.LINEAR, AxisType.LINEAR, RendererType.SHAPES, displayData,
+				ChartDimensions.DEFAULT, dataRange, false, dataSet);
+	}
+
+	private static final class ResourceCorrelation {
+		private final String host;
+		private final String type;
+		private final double[] values;
+		private final String operation;
+		private final int lag;
+		private final double responseTimeCorrelation;
+		private double throughputCorrelation;
+
+		ResourceCorrelation(final PerfAlyzerFile resourceFile, final double[] values, final String operation, final int lag,
+				final double responseTimeCorrelation) {
+			this.host = resourceFile.getFile().getParent();
+			this.type = resourceFile.getFileNameParts().get(1);
+			this.values = values;
+			this.operation = operation;
+			this.lag = lag;
+			this.responseTimeCorrelation = responseTimeCorrelation;
+		}
+	}
+}
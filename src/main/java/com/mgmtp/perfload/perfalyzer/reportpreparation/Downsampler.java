@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reduces the number of points of line series for rendering.
+ *
+ * @author rnaegele
+ */
+final class Downsampler {
+
+	private Downsampler() {
+	}
+
+	/**
+	 * Selects points using the Largest-Triangle-Three-Buckets algorithm (Steinarsson, 2013). The
+	 * first and the last point are always kept. The remaining points are split into buckets, and
+	 * from each bucket the point forming the largest triangle with the previously selected point
+	 * and the average of the next bucket is selected.
+	 *
+	 * @param xValues
+	 * 		the x values in ascending order
+	 * @param yValues
+	 * 		the y values
+	 * @param length
+	 * 		the number of points
+	 * @param threshold
+	 * 		the number of points to select, at least 3
+	 * @return the ascending indices of the selected points
+	 */
+	static int[] largestTriangleThreeBuckets(final double[] xValues, final double[] yValues, final int length,
+			final int threshold) {
+		checkArgument(threshold >= 3, "Threshold must be at least 3: %s", threshold);
+		if (length <= threshold) {
+			int[] indices = new int[length];
+			for (int i = 0; i < length; ++i) {
+				indices[i] = i;
+			}
+			return indices;
+		}
+
+		int[] indices = new int[threshold];
+		int count = 0;
+		indices[count++] = 0;
+
+		// the first and the last point are not part of any bucket
+		double bucketSize = (double) (length - 2) / (threshold - 2);
+		int selected = 0;
+
+		for (int bucket = 0; bucket < threshold - 2; ++bucket) {
+			int start = (int) (bucket * bucketSize) + 1;
+			int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+			// average of the next bucket, which is just the last point for the last bucket
+			int nextStart = end;
+			int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, length);
+			if (bucket == threshold - 3) {
+				nextStart = length - 1;
+				nextEnd = length;
+			}
+			double avgX = 0d;
+			double avgY = 0d;
+			for (int i = nextStart; i < nextEnd; ++i) {
+				avgX += xValues[i];
+				avgY += yValues[i];
+			}
+			avgX /= nextEnd - nextStart;
+			avgY /= nextEnd - nextStart;
+
+			double selectedX = xValues[selected];
+			double selectedY = yValues[selected];
+			double maxArea = -1d;
+			int maxIndex = start;
+			for (int i = start; i < end; ++i) {
+				// twice the triangle's area, which does not matter for the comparison
+				double area = Math.abs((selectedX - avgX) * (yValues[i] - selectedY) - (selectedX - xValues[i]) * (avgY - selectedY));
+				if (area > maxArea) {
+					maxArea = area;
+					maxIndex = i;
+				}
+			}
+			indices[count++] = maxIndex;
+			selected = maxIndex;
+		}
+
+		indices[count] = length - 1;
+		return indices;
+	}
+}
@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+
+/**
+ * Streaming parser for GC logs. Supported are unified JVM logs (JDK 9 and later,
+ * {@code -Xlog:gc*}) and logs of older JVMs written with {@code -XX:+PrintGCDateStamps}. Unified
+ * logs with the {@code time} or {@code utctime} decorator carry date stamps; unified logs with
+ * only the default {@code uptime} decorator are placed in time by the start of the JVM (see
+ * {@link #estimateJvmStart(File)}). Each pause is passed on to an {@link EventHandler} as soon as
+ * it has been read, so memory does not grow with the size of the log. Concurrent phases are
+ * counted but not reported, and details of G1 that span several lines with
+ * {@code -XX:+PrintGCDetails} are missing from the events.
+ *
+ * @author rnaegele
+ */
+public class GcLogParser {
+
+	/**
+	 * The number of lines at the beginning of a log that must contain a line with a date stamp or
+	 * an uptime for the log to be supported.
+	 */
+	static final int DETECTION_LINE_COUNT = 100;
+
+	// events are not joined indefinitely if their end is missing
+	private static final int MAX_PENDING_EVENT_LENGTH = 10000;
+
+	private static final int DATE_STAMP_LENGTH = "2015-01-01T00:00:00.000+0000".length();
+
+	private static final String HEAP_REGEX =
+			"(\\d+(?:[.,]\\d+)?)([BKMG])->(\\d+(?:[.,]\\d+)?)([BKMG])\\((\\d+(?:[.,]\\d+)?)([BKMG])\\)";
+
+	// e. g. "GC(12) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 3.456ms"
+	private static final Pattern UNIFIED_PAUSE_PATTERN = Pattern.compile(
+			"GC\\((\\d+)\\) (Pause [A-Za-z ]*[A-Za-z])(.*?)\\s(\\d+(?:[.,]\\d+)?)ms\\s*$");
+
+	// e. g. "GC(14) Concurrent Cycle 45.678ms"
+	private static final Pattern UNIFIED_CONCURRENT_PATTERN = Pattern.compile(
+			"GC\\(\\d+\\) Concurrent [^:]*\\s\\d+(?:[.,]\\d+)?ms\\s*$");
+
+	// e. g. "GC(12) PSYoungGen: 65536K->10720K(76288K)"
+	private static final Pattern UNIFIED_GENERATION_PATTERN = Pattern.compile("GC\\((\\d+)\\) [A-Za-z][A-Za-z ]*:");
+
+	// e. g. "[GC pause (G1 Evacuation Pause) (young) 306M->24M(6144M), 0.0803651 secs]"
+	private static final Pattern LEGACY_EVENT_PATTERN = Pattern.compile("^(?:\\d+[.,]\\d+: )?\\[(Full GC|GC)\\b(.*)$");
+
+	private static final Pattern LEGACY_PAUSE_PATTERN = Pattern.compile("(\\d+[.,]\\d+) secs\\]");
+
+	private static final Pattern HEAP_PATTERN = Pattern.compile(HEAP_REGEX);
+
+	// e. g. "PSYoungGen: 65536K->10720K(76288K)" or "CMS Perm : 2999K->2999K(21248K)"
+	private static final Pattern GENERATION_PATTERN = Pattern.compile("([A-Za-z][A-Za-z ]*?) ?: " + HEAP_REGEX);
+
+	/**
+	 * The kind of time stamps of a log.
+	 */
+	public enum Format {
+		/** Each event has a date stamp. */
+		DATE_STAMPS,
+		/** Unified logging with the uptime of the JVM only. */
+		UPTIME,
+		/** The log cannot be streamed. */
+		UNSUPPORTED
+	}
+
+	private final EventHandler handler;
+	private final long jvmStartMillis;
+	private final Matcher heapMatcher = HEAP_PATTERN.matcher("");
+	private final Matcher generationMatcher = GENERATION_PATTERN.matcher("");
+
+	private String pendingLegacyEvent;
+	private long eventCount;
+
+	// sizes of the generations logged for the next pause
+	private long generationsGcId = -1L;
+	private long youngTotalKb = -1L;
+	private long tenuredTotalKb = -1L;
+	private long permTotalKb = -1L;
+
+	/**
+	 * Creates a parser for logs with date stamps. Lines with an uptime only are skipped.
+	 *
+	 * @param handler
+	 * 		the handler the events are passed on to
+	 */
+	public GcLogParser(final EventHandler handler) {
+		this(handler, -1L);
+	}
+
+	/**
+	 * @param handler
+	 * 		the handler the events are passed on to
+	 * @param jvmStartMillis
+	 * 		the epoch milliseconds the uptimes of lines without a date stamp are added to, or -1 if such
+	 * 		lines are to be skipped
+	 */
+	public GcLogParser(final EventHandler handler, final long jvmStartMillis) {
+		this.handler = handler;
+		this.jvmStartMillis = jvmStartMillis;
+	}
+
+	/**
+	 * Checks whether the specified log is supported, i. e. whether there is a line with a date
+	 * stamp or an uptime at its beginning. Compressed files are decompressed automatically.
+	 *
+	 * @param file
+	 * 		the GC log
+	 * @return {@code true} if the log can be parsed
+	 */
+	public static boolean isSupported(final File file) throws IOException {
+		return detectFormat(file) != Format.UNSUPPORTED;
+	}
+
+	/**
+	 * Detects the kind of time stamps of the specified log from the lines at its beginning.
+	 * Compressed files are decompressed automatically.
+	 *
+	 * @param file
+	 * 		the GC log
+	 * @return the format of the log
+	 */
+	public static Format detectFormat(final File file) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(CompressionCodec.openInputStream(file), UTF_8))) {
+			String line;
+			for (int i = 0; i < DETECTION_LINE_COUNT && (line = reader.readLine()) != null; ++i) {
+				if (isDateStamp(line, 0) || line.startsWith("[") && findUnifiedDateStamp(line) >= 0) {
+					return Format.DATE_STAMPS;
+				}
+				if (line.startsWith("[") && findUnifiedUptimeMillis(line) >= 0L) {
+					return Format.UPTIME;
+				}
+			}
+			return Format.UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * Estimates the start of the JVM that wrote a unified log with uptimes only. The JVM writes the
+	 * log until it exits, so the uptime of the last line is taken to be the modification time of the
+	 * file. Compressed files are decompressed automatically.
+	 *
+	 * @param file
+	 * 		the GC log
+	 * @return the epoch milliseconds of the start of the JVM, or -1 if the log has no uptimes
+	 */
+	public static long estimateJvmStart(final File file) throws IOException {
+		long lastUptimeMillis = -1L;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(CompressionCodec.openInputStream(file), UTF_8))) {
+			for (String line; (line = reader.readLine()) != null; ) {
+				if (line.startsWith("[")) {
+					long uptimeMillis = findUnifiedUptimeMillis(line);
+					if (uptimeMillis >= 0L) {
+						lastUptimeMillis = uptimeMillis;
+					}
+				}
+			}
+		}
+		long lastModified = file.lastModified();
+		return lastUptimeMillis < 0L || lastModified == 0L ? -1L : lastModified - lastUptimeMillis;
+	}
+
+	/**
+	 * Parses the specified log. Compressed files are decompressed automatically.
+	 *
+	 * @param file
+	 * 		the GC log
+	 */
+	public void parse(final File file) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(CompressionCodec.openInputStream(file), UTF_8))) {
+			for (String line; (line = reader.readLine()) != null; ) {
+				parseLine(line);
+			}
+		}
+	}
+
+	/**
+	 * Parses a single line of a log. Lines must be passed in the order of the log.
+	 *
+	 * @param line
+	 * 		the line
+	 */
+	public void parseLine(final String line) {
+		if (line.startsWith("[")) {
+			parseUnifiedLine(line);
+		} else if (isDateStamp(line, 0)) {
+			parseLegacyLine(line);
+		} else if (pendingLegacyEvent != null) {
+			// an event spanning several lines
+			pendingLegacyEvent += line;
+			if (line.contains(" secs]")) {
+				parseLegacyEvent(pendingLegacyEvent);
+				pendingLegacyEvent = null;
+			} else if (pendingLegacyEvent.length() > MAX_PENDING_EVENT_LENGTH) {
+				pendingLegacyEvent = null;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of events read so far, i. e. the pauses passed on to the handler and the
+	 * concurrent phases
+	 */
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	private void parseUnifiedLine(final String line) {
+		if (line.contains(" Pause ")) {
+			parseUnifiedPause(line);
+		} else if (line.contains(" Concurrent ")) {
+			if (UNIFIED_CONCURRENT_PATTERN.matcher(line).find()) {
+				eventCount++;
+			}
+		} else {
+			// sizes of generations are logged on lines of their own before the pause
+			Matcher matcher = UNIFIED_GENERATION_PATTERN.matcher(line);
+			if (matcher.find()) {
+				long gcId = Long.parseLong(matcher.group(1));
+				if (gcId != generationsGcId) {
+					resetGenerations();
+					generationsGcId = gcId;
+				}
+				parseGenerations(line, matcher.start());
+			}
+		}
+	}
+
+	private void parseUnifiedPause(final String line) {
+		Matcher matcher = UNIFIED_PAUSE_PATTERN.matcher(line);
+		if (!matcher.find()) {
+			return;
+		}
+
+		long timestampMillis;
+		int dateStampIndex = findUnifiedDateStamp(line);
+		if (dateStampIndex >= 0) {
+			timestampMillis = parseDateStamp(line, dateStampIndex);
+		} else {
+			long uptimeMillis = findUnifiedUptimeMillis(line);
+			if (uptimeMillis < 0L || jvmStartMillis < 0L) {
+				return;
+			}
+			timestampMillis = jvmStartMillis + uptimeMillis;
+		}
+
+		if (Long.parseLong(matcher.group(1)) != generationsGcId) {
+			resetGenerations();
+		}
+		String collector = matcher.group(2);
+		double pauseSeconds = parseDecimal(matcher.group(4)) / 1000d;
+		handleEvent(timestampMillis, pauseSeconds, matcher.group(3), collector, collector.startsWith("Pause Full"));
+		resetGenerations();
+	}
+
+	private void parseLegacyLine(final String line) {
+		if (pendingLegacyEvent != null) {
+			// a concurrent phase printed in the middle of an event, the rest of the event follows it
+			int end = line.indexOf(']', DATE_STAMP_LENGTH);
+			if (end > 0 && LEGACY_PAUSE_PATTERN.matcher(line).find(end)) {
+				parseLegacyEvent(pendingLegacyEvent + line.substring(end + 1));
+				pendingLegacyEvent = null;
+				return;
+			}
+		}
+
+		String event = line.substring(DATE_STAMP_LENGTH);
+		if (!event.startsWith(": ")) {
+			return;
+		}
+		Matcher matcher = LEGACY_EVENT_PATTERN.matcher(event.substring(2));
+		if (!matcher.matches()) {
+			return;
+		}
+		if (matcher.group(2).startsWith(" concurrent")) {
+			// an abort only ends the marking phase
+			if (!matcher.group(2).startsWith(" concurrent-mark-abort")) {
+				eventCount++;
+			}
+			return;
+		}
+		if (line.contains(" secs]")) {
+			parseLegacyEvent(line);
+		} else {
+			pendingLegacyEvent = line;
+		}
+	}
+
+	private void parseLegacyEvent(final String line) {
+		// the times of the operating system are not part of the event
+		int timesIndex = line.indexOf("[Times:");
+		String event = timesIndex > 0 ? line.substring(0, timesIndex) : line;
+
+		Matcher pauseMatcher = LEGACY_PAUSE_PATTERN.matcher(event);
+		String pause = null;
+		while (pauseMatcher.find()) {
+			// inner pauses of generations come first
+			pause = pauseMatcher.group(1);
+		}
+		if (pause == null) {
+			return;
+		}
+
+		resetGenerations();
+		parseGenerations(event, DATE_STAMP_LENGTH);
+		boolean fullGc = event.contains(": [Full GC");
+		handleEvent(parseDateStamp(event, 0), parseDecimal(pause), event, fullGc ? "Full GC" : "GC", fullGc);
+	}
+
+	/**
+	 * Passes an event on to the handler. The heap sizes of the whole heap are the last ones in the
+	 * event that are followed by a comma or a space, sizes of generations are enclosed in brackets.
+	 */
+	private void handleEvent(final long timestampMillis, final double pauseSeconds, final String details,
+			final String collector, final boolean fullGc) {
+		long heapBeforeKb = -1L;
+		long heapAfterKb = -1L;
+		long heapTotalKb = -1L;
+
+		heapMatcher.reset(details);
+		while (heapMatcher.find()) {
+			int end = heapMatcher.end();
+			if (end == details.length() || details.charAt(end) != ']') {
+				heapBeforeKb = toKb(heapMatcher.group(1), heapMatcher.group(2));
+				heapAfterKb = toKb(heapMatcher.group(3), heapMatcher.group(4));
+				heapTotalKb = toKb(heapMatcher.group(5), heapMatcher.group(6));
+			}
+		}
+
+		eventCount++;
+		if (youngTotalKb >= 0L || tenuredTotalKb >= 0L || permTotalKb >= 0L) {
+			handler.handleGenerationSizes(timestampMillis, youngTotalKb, tenuredTotalKb, permTotalKb);
+		}
+		handler.handleEvent(timestampMillis, pauseSeconds, heapBeforeKb, heapAfterKb, heapTotalKb, collector, fullGc);
+	}
+
+	/**
+	 * Reads the committed sizes of the generations, e. g. {@code [PSYoungGen: 1K->2K(3K)]}, from the
+	 * specified index on.
+	 */
+	private void parseGenerations(final String details, final int fromIndex) {
+		generationMatcher.reset(details);
+		for (int i = fromIndex; generationMatcher.find(i); i = generationMatcher.end()) {
+			long totalKb = toKb(generationMatcher.group(6), generationMatcher.group(7));
+			switch (generationMatcher.group(1)) {
+				case "DefNew":
+				case "ParNew":
+				case "ASParNew":
+				case "PSYoungGen":
+					youngTotalKb = totalKb;
+					break;
+				case "Tenured":
+				case "CMS":
+				case "ASCMS":
+				case "PSOldGen":
+				case "ParOldGen":
+					tenuredTotalKb = totalKb;
+					break;
+				case "Perm":
+				case "CMS Perm":
+				case "PSPermGen":
+				case "Metaspace":
+					permTotalKb = totalKb;
+					break;
+				default:
+					// e. g. the whole heap of CMS or the regions of G1
+			}
+		}
+	}
+
+	private void resetGenerations() {
+		generationsGcId = -1L;
+		youngTotalKb = -1L;
+		tenuredTotalKb = -1L;
+		permTotalKb = -1L;
+	}
+
+	private static int findUnifiedDateStamp(final String line) {
+		// decorations, e. g. "[2015-01-01T00:00:00.000+0100][0.123s][info][gc]"
+		for (int i = 0; i < line.length() && line.charAt(i) == '['; ) {
+			if (isDateStamp(line, i + 1)) {
+				return i + 1;
+			}
+			int end = line.indexOf(']', i);
+			if (end < 0) {
+				break;
+			}
+			i = end + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the uptime of the {@code uptime} ("1.234s") or {@code uptimemillis} ("1234ms")
+	 * decoration in milliseconds, or -1 if there is none
+	 */
+	private static long findUnifiedUptimeMillis(final String line) {
+		for (int i = 0; i < line.length() && line.charAt(i) == '['; ) {
+			int end = line.indexOf(']', i);
+			if (end < 0) {
+				break;
+			}
+			long uptimeMillis = parseUptimeMillis(line, i + 1, end);
+			if (uptimeMillis >= 0L) {
+				return uptimeMillis;
+			}
+			i = end + 1;
+		}
+		return -1L;
+	}
+
+	private static long parseUptimeMillis(final String line, final int start, final int end) {
+		boolean millis = line.startsWith("ms", end - 2);
+		int valueEnd = millis ? end - 2 : end - 1;
+		if (valueEnd <= start || line.charAt(end - 1) != 's'
+				|| !Character.isDigit(line.charAt(start)) || !Character.isDigit(line.charAt(valueEnd - 1))) {
+			return -1L;
+		}
+		for (int i = start; i < valueEnd; ++i) {
+			char c = line.charAt(i);
+			if (!Character.isDigit(c) && c != '.' && c != ',') {
+				return -1L;
+			}
+		}
+		double value = parseDecimal(line.substring(start, valueEnd));
+		return millis ? (long) value : Math.round(value * 1000d);
+	}
+
+	private static boolean isDateStamp(final String line, final int index) {
+		return line.length() >= index + DATE_STAMP_LENGTH
+				&& line.charAt(index + 4) == '-'
+				&& line.charAt(index + 10) == 'T'
+				&& line.charAt(index + 13) == ':'
+				&& (line.charAt(index + 23) == '+' || line.charAt(index + 23) == '-')
+				&& Character.isDigit(line.charAt(index))
+				&& Character.isDigit(line.charAt(index + 27));
+	}
+
+	/**
+	 * Parses a date stamp in the format {@code yyyy-MM-dd'T'HH:mm:ss.SSSZ} without creating
+	 * intermediate objects for every event.
+	 *
+	 * @return the epoch milliseconds
+	 */
+	static long parseDateStamp(final String line, final int index) {
+		int year = parseInt(line, index, 4);
+		int month = parseInt(line, index + 5, 2);
+		int day = parseInt(line, index + 8, 2);
+		int hour = parseInt(line, index + 11, 2);
+		int minute = parseInt(line, index + 14, 2);
+		int second = parseInt(line, index + 17, 2);
+		int millis = parseInt(line, index + 20, 3);
+		int offsetSeconds = parseInt(line, index + 24, 2) * 3600 + parseInt(line, index + 26, 2) * 60;
+		if (line.charAt(index + 23) == '-') {
+			offsetSeconds = -offsetSeconds;
+		}
+
+		long epochSeconds = LocalDate.of(year, month, day).toEpochDay() * 86400L + hour * 3600L + minute * 60L + second
+				- offsetSeconds;
+		return epochSeconds * 1000L + millis;
+	}
+
+	private static int parseInt(final String s, final int index, final int length) {
+		int result = 0;
+		for (int i = index; i < index + length; ++i) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid date stamp: " + s);
+			}
+			result = result * 10 + digit;
+		}
+		return result;
+	}
+
+	private static double parseDecimal(final String s) {
+		// the decimal separator depends on the locale of the JVM
+		return Double.parseDouble(s.replace(',', '.'));
+	}
+
+	private static long toKb(final String value, final String unit) {
+		double size = parseDecimal(value);
+		switch (unit) {
+			case "B":
+				return (long) (size / 1024d);
+			case "K":
+				return (long) size;
+			case "M":
+				return (long) (size * 1024d);
+			case "G":
+				return (long) (size * 1024d * 1024d);
+			default:
+				throw new IllegalArgumentException("Invalid unit: " + unit);
+		}
+	}
+
+	/**
+	 * Receives the pauses of a GC log.
+	 */
+	public interface EventHandler {
+
+		/**
+		 * @param timestampMillis
+		 * 		the epoch milliseconds of the pause
+		 * @param pauseSeconds
+		 * 		the duration of the pause
+		 * @param heapBeforeKb
+		 * 		the used heap before the pause in KiB, or -1 if not logged
+		 * @param heapAfterKb
+		 * 		the used heap after the pause in KiB, or -1 if not logged
+		 * @param heapTotalKb
+		 * 		the committed heap in KiB, or -1 if not logged
+		 * @param collector
+		 * 		the kind of collection, e. g. {@code Pause Young} or {@code Full GC}
+		 * @param fullGc
+		 * 		{@code true} if the whole heap was collected
+		 */
+		void handleEvent(long timestampMillis, double pauseSeconds, long heapBeforeKb, long heapAfterKb, long heapTotalKb,
+				String collector, boolean fullGc);
+
+		/**
+		 * Receives the committed sizes of the generations logged for the pause that is passed on to
+		 * {@link #handleEvent} next. Only called if at least one generation is logged.
+		 *
+		 * @param timestampMillis
+		 * 		the epoch milliseconds of the pause
+		 * @param youngTotalKb
+		 * 		the committed young generation in KiB, or -1 if not logged
+		 * @param tenuredTotalKb
+		 * 		the committed tenured generation in KiB, or -1 if not logged
+		 * @param permTotalKb
+		 * 		the committed perm generation or metaspace in KiB, or -1 if not logged
+		 */
+		default void handleGenerationSizes(final long timestampMillis, final long youngTotalKb, final long tenuredTotalKb,
+				final long permTotalKb) {
+			// not needed by all handlers
+		}
+	}
+}
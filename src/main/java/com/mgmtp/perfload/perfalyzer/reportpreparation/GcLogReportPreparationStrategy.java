@@ -20,6 +20,7 @@ import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.MemoryFormat;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
@@ -34,10 +35,11 @@ import com.tagtraum.perf.gcviewer.model.GcResourceFile;
 import org.apache.commons.lang3.text.StrBuilder;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +51,10 @@ import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAn
 import static org.apache.commons.io.FileUtils.writeLines;
 
 /**
+ * Creates plots and aggregated values of GC logs. Logs with date stamps in the unified or the
+ * legacy format and unified logs with uptimes are streamed by the {@link GcLogParser}, other
+ * formats are read by gcviewer.
+ *
  * @author ctchinda
  */
 public class GcLogReportPreparationStrategy extends AbstractReportPreparationStrategy {
@@ -73,78 +79,139 @@ public class GcLogReportPreparationStrategy extends AbstractReportPreparationStr
 		for (PerfAlyzerFile f : files) {
 			log.info("Processing file '{}'...", f);
 
-			GCModel origModel;
-			try (InputStream is = new FileInputStream(new File(sourceDir, f.getFile().getPath()))) {
-				GcResourceFile resource=new GcResourceFile(f.getFile());
-				DataReader dataReader = new DataReaderFactory().getDataReader(resource, is);
-				origModel = dataReader.read();
+			File file = new File(sourceDir, f.getFile().getPath());
+			GcLogParser.Format format;
+			try {
+				format = GcLogParser.detectFormat(file);
 			} catch (IOException ex) {
 				log.error("Error reading GC log file: " + f.getFile(), ex);
 				continue;
 			}
 
-			GCModel model = new GCModel();
-			model.setFormat(origModel.getFormat());
-			numberOfLinesParsed+=origModel.size();
-
-			for (Iterator<GCEvent> it = origModel.getGCEvents(); it.hasNext(); ) {
-				GCEvent event = it.next();
-				ZonedDateTime datestamp = event.getDatestamp();
-				if (datestamp == null) {
-					// we assume there are generally no datestamps if the first event does not have one
-					log.error(
-							"Unsupported GC log format. Please activate date stamp logging (-XX:+PrintGCDateStamps for Oracle JDK).");
-					break;
-				}
+			if (format != GcLogParser.Format.UNSUPPORTED) {
+				processFile(file, f, destDir, format);
+			} else {
+				// other formats are read completely into memory by gcviewer
+				processFileWithGcViewer(file, f, destDir);
+			}
+		}
+	}
 
-				if (timestampNormalizer.isInRange(datestamp)) {
-					if (marker == null || marker.isInRange(datestamp)) {
-						model.add(event);
-					}
+	private void processFile(final File file, final PerfAlyzerFile f, final File destDir, final GcLogParser.Format format)
+			throws IOException {
+		GcEventAggregator aggregator = new GcEventAggregator();
+		try {
+			long jvmStartMillis = -1L;
+			if (format == GcLogParser.Format.UPTIME) {
+				jvmStartMillis = GcLogParser.estimateJvmStart(file);
+				if (jvmStartMillis < 0L) {
+					log.error("Start of the JVM cannot be determined for GC log file: " + f.getFile());
+					return;
 				}
+				log.info("GC log '{}' has no date stamps, assuming the JVM started at {}", f,
+						Instant.ofEpochMilli(jvmStartMillis));
 			}
+			GcLogParser parser = new GcLogParser(aggregator, jvmStartMillis);
+			parser.parse(file);
+			numberOfLinesParsed += parser.getEventCount();
+		} catch (IOException ex) {
+			log.error("Error reading GC log file: " + f.getFile(), ex);
+			return;
+		}
 
-			if (model.size() > 0) {
-				NumberDataSet dataSetHeap = new NumberDataSet();
-				NumberDataSet dataSetGcTimes = new NumberDataSet();
+		if (aggregator.dataSetHeap.isEmpty() || aggregator.dataSetGcTimes.isEmpty()) {
+			return;
+		}
 
-				for (Iterator<GCEvent> it = model.getGCEvents(); it.hasNext(); ) {
-					GCEvent event = it.next();
-					ZonedDateTime timestamp = event.getDatestamp();
-					long seconds = timestampNormalizer.normalizeTimestamp(timestamp, 0L) / 1000;
+		writePlotFile(f, destDir, aggregator.dataSetHeap, aggregator.dataSetGcTimes);
 
-					dataSetHeap.addSeriesPoint("total", new SeriesPoint(seconds, event.getTotal() / 1024));
-					dataSetHeap.addSeriesPoint("used", new SeriesPoint(seconds, event.getPreUsed() / 1024));
-					dataSetHeap.addSeriesPoint("used", new SeriesPoint(seconds, event.getPostUsed() / 1024));
+		List<CharSequence> gcLines = newArrayListWithCapacity(2);
+		writeHeader(gcLines);
+		writeData(aggregator, gcLines);
+		writeCsvFile(f, destDir, gcLines);
+	}
 
-					dataSetGcTimes.addSeriesPoint("time", new SeriesPoint(seconds, event.getPause() * 1000));
-				}
+	private void processFileWithGcViewer(final File file, final PerfAlyzerFile f, final File destDir) throws IOException {
+		GCModel origModel;
+		try (InputStream is = CompressionCodec.openInputStream(file)) {
+			GcResourceFile resource=new GcResourceFile(f.getFile());
+			DataReader dataReader = new DataReaderFactory().getDataReader(resource, is);
+			origModel = dataReader.read();
+		} catch (IOException ex) {
+			log.error("Error reading GC log file: " + f.getFile(), ex);
+			return;
+		}
 
-				if (dataSetHeap.isEmpty() || dataSetGcTimes.isEmpty()) {
-					continue;
-				}
+		GCModel model = new GCModel();
+		model.setFormat(origModel.getFormat());
+		numberOfLinesParsed+=origModel.size();
 
-				PerfAlyzerFile perfAlyzerFile = f.copy().setExtension("png");
-				if (marker != null) {
-					perfAlyzerFile.setMarker(marker.getName());
+		for (Iterator<GCEvent> it = origModel.getGCEvents(); it.hasNext(); ) {
+			GCEvent event = it.next();
+			ZonedDateTime datestamp = event.getDatestamp();
+			if (datestamp == null) {
+				// we assume there are generally no datestamps if the first event does not have one
+				log.error(
+						"Unsupported GC log format. Please activate date stamp logging (-XX:+PrintGCDateStamps for Oracle JDK, "
+								+ "the 'time' decorator for unified logging, e. g. -Xlog:gc*:file=gc.log:time,uptime,level,tags).");
+				break;
+			}
+
+			if (timestampNormalizer.isInRange(datestamp)) {
+				if (marker == null || marker.isInRange(datestamp)) {
+					model.add(event);
 				}
-				File destFile = new File(destDir, perfAlyzerFile.getFile().getPath());
-				plotCreator.writePlotFile(destFile, AxisType.LINEAR, AxisType.LINEAR, RendererType.LINES, ChartDimensions.WIDE,
-						dataRange, false, dataSetHeap, dataSetGcTimes);
+			}
+		}
 
-				List<CharSequence> gcLines = newArrayListWithCapacity(2);
-				writeHeader(gcLines);
-				writeData(model, gcLines);
+		if (model.size() > 0) {
+			NumberDataSet dataSetHeap = new NumberDataSet();
+			NumberDataSet dataSetGcTimes = new NumberDataSet();
 
-				perfAlyzerFile = f.copy().setExtension("csv");
-				if (marker != null) {
-					perfAlyzerFile.setMarker(marker.getName());
-				}
-				writeLines(new File(destDir, perfAlyzerFile.getFile().getPath()), Charsets.UTF_8.name(), gcLines);
+			for (Iterator<GCEvent> it = model.getGCEvents(); it.hasNext(); ) {
+				GCEvent event = it.next();
+				ZonedDateTime timestamp = event.getDatestamp();
+				long seconds = timestampNormalizer.normalizeTimestamp(timestamp, 0L) / 1000;
+
+				dataSetHeap.addSeriesPoint("total", new SeriesPoint(seconds, event.getTotal() / 1024));
+				dataSetHeap.addSeriesPoint("used", new SeriesPoint(seconds, event.getPreUsed() / 1024));
+				dataSetHeap.addSeriesPoint("used", new SeriesPoint(seconds, event.getPostUsed() / 1024));
+
+				dataSetGcTimes.addSeriesPoint("time", new SeriesPoint(seconds, event.getPause() * 1000));
 			}
+
+			if (dataSetHeap.isEmpty() || dataSetGcTimes.isEmpty()) {
+				return;
+			}
+
+			writePlotFile(f, destDir, dataSetHeap, dataSetGcTimes);
+
+			List<CharSequence> gcLines = newArrayListWithCapacity(2);
+			writeHeader(gcLines);
+			writeData(model, gcLines);
+			writeCsvFile(f, destDir, gcLines);
 		}
 	}
 
+	private void writePlotFile(final PerfAlyzerFile f, final File destDir, final NumberDataSet dataSetHeap,
+			final NumberDataSet dataSetGcTimes) throws IOException {
+		PerfAlyzerFile perfAlyzerFile = f.copy().setExtension("png");
+		if (marker != null) {
+			perfAlyzerFile.setMarker(marker.getName());
+		}
+		File destFile = new File(destDir, perfAlyzerFile.getFile().getPath());
+		plotCreator.writePlotFile(destFile, AxisType.LINEAR, AxisType.LINEAR, RendererType.LINES, ChartDimensions.WIDE,
+				dataRange, false, dataSetHeap, dataSetGcTimes);
+	}
+
+	private void writeCsvFile(final PerfAlyzerFile f, final File destDir, final List<CharSequence> gcLines) throws IOException {
+		PerfAlyzerFile perfAlyzerFile = f.copy().setExtension("csv");
+		if (marker != null) {
+			perfAlyzerFile.setMarker(marker.getName());
+		}
+		writeLines(new File(destDir, perfAlyzerFile.getFile().getPath()), Charsets.UTF_8.name(), gcLines);
+	}
+
 	private void writeHeader(final List<CharSequence> gcLines) {
 		StrBuilder sb = new StrBuilder(500);
 		appendEscapedAndQuoted(sb, DELIMITER, "total");
@@ -194,7 +261,133 @@ public class GcLogReportPreparationStrategy extends AbstractReportPreparationStr
 		gcLines.add(sb);
 	}
 
+	private void writeData(final GcEventAggregator aggregator, final List<CharSequence> gcLines) {
+		double runningTime = aggregator.getRunningTime();
+		StrBuilder sb = new StrBuilder(500);
+		appendEscapedAndQuoted(sb, DELIMITER, aggregator.maxHeapTotalKb >= 0L ? memoryFormat.format(aggregator.maxHeapTotalKb) : "n/a");
+		appendEscapedAndQuoted(sb, DELIMITER, formatGcValue(aggregator.maxTenuredTotalKb));
+		appendEscapedAndQuoted(sb, DELIMITER, formatGcValue(aggregator.maxYoungTotalKb));
+		appendEscapedAndQuoted(sb, DELIMITER, formatGcValue(aggregator.maxPermTotalKb));
+		appendEscapedAndQuoted(sb, DELIMITER, memoryFormat.format(aggregator.freedByFullGcKb + aggregator.freedByGcKb));
+		appendEscapedAndQuoted(sb, DELIMITER, runningTime > 0d
+											  ? memoryFormat.format((aggregator.freedByFullGcKb + aggregator.freedByGcKb) / runningTime * 60.0)
+											  : "n/a");
+		appendEscapedAndQuoted(sb, DELIMITER, floatNumberFormat.format(aggregator.fullGcPauseSum + aggregator.gcPauseSum) + " s");
+		appendEscapedAndQuoted(sb, DELIMITER, aggregator.fullGcCount > 0
+											  ? intNumberFormat.format(aggregator.minFullGcPause) + " s / "
+													  + intNumberFormat.format(aggregator.maxFullGcPause) + " s"
+											  : "n/a");
+		appendEscapedAndQuoted(sb, DELIMITER, runningTime > 0d
+											  ? floatNumberFormat.format(100d * (runningTime - aggregator.fullGcPauseSum
+													  - aggregator.gcPauseSum) / runningTime) + " %"
+											  : "n/a");
+		appendEscapedAndQuoted(sb, DELIMITER, aggregator.fullGcCount > 0
+											  ? intNumberFormat.format(aggregator.fullGcCount)
+											  : "n/a");
+		appendEscapedAndQuoted(sb, DELIMITER, aggregator.fullGcCount > 0
+											  ? memoryFormat.format(aggregator.freedByFullGcKb / aggregator.fullGcPauseSum) + "/s"
+											  : "n/a");
+		appendEscapedAndQuoted(sb, DELIMITER, aggregator.gcCount > 0
+											  ? memoryFormat.format(aggregator.freedByGcKb / aggregator.gcPauseSum) + "/s"
+											  : "n/a");
+		gcLines.add(sb);
+	}
+
 	private String formatGcValue(final IntData data) {
 		return data.getN() > 0 ? memoryFormat.format(data.getMax()) : "n/a";
 	}
+
+	private String formatGcValue(final long maxKb) {
+		return maxKb >= 0L ? memoryFormat.format(maxKb) : "n/a";
+	}
+
+	/**
+	 * Collects the plot data and the aggregated values of the events in the time range of the
+	 * test or the marker.
+	 */
+	private class GcEventAggregator implements GcLogParser.EventHandler {
+
+		final NumberDataSet dataSetHeap = new NumberDataSet();
+		final NumberDataSet dataSetGcTimes = new NumberDataSet();
+
+		long firstTimestampMillis = -1L;
+		long lastTimestampMillis;
+		double lastPause;
+
+		long maxHeapTotalKb = -1L;
+		long maxTenuredTotalKb = -1L;
+		long maxYoungTotalKb = -1L;
+		long maxPermTotalKb = -1L;
+		double freedByFullGcKb;
+		double freedByGcKb;
+
+		int fullGcCount;
+		double fullGcPauseSum;
+		double minFullGcPause = Double.MAX_VALUE;
+		double maxFullGcPause;
+		int gcCount;
+		double gcPauseSum;
+
+		@Override
+		public void handleGenerationSizes(final long timestampMillis, final long youngTotalKb, final long tenuredTotalKb,
+				final long permTotalKb) {
+			if (isInRange(timestampMillis)) {
+				maxYoungTotalKb = Math.max(maxYoungTotalKb, youngTotalKb);
+				maxTenuredTotalKb = Math.max(maxTenuredTotalKb, tenuredTotalKb);
+				maxPermTotalKb = Math.max(maxPermTotalKb, permTotalKb);
+			}
+		}
+
+		@Override
+		public void handleEvent(final long timestampMillis, final double pauseSeconds, final long heapBeforeKb,
+				final long heapAfterKb, final long heapTotalKb, final String collector, final boolean fullGc) {
+			if (!isInRange(timestampMillis)) {
+				return;
+			}
+			ZonedDateTime timestamp = Instant.ofEpochMilli(timestampMillis).atZone(ZoneOffset.UTC);
+			long seconds = timestampNormalizer.normalizeTimestamp(timestamp, 0L) / 1000;
+
+			if (firstTimestampMillis < 0L) {
+				firstTimestampMillis = timestampMillis;
+			}
+			lastTimestampMillis = timestampMillis;
+			lastPause = pauseSeconds;
+
+			if (heapTotalKb >= 0L) {
+				dataSetHeap.addSeriesPoint("total", new SeriesPoint(seconds, heapTotalKb / 1024));
+				maxHeapTotalKb = Math.max(maxHeapTotalKb, heapTotalKb);
+			}
+			double freedKb = 0d;
+			if (heapBeforeKb >= 0L) {
+				dataSetHeap.addSeriesPoint("used", new SeriesPoint(seconds, heapBeforeKb / 1024));
+				dataSetHeap.addSeriesPoint("used", new SeriesPoint(seconds, heapAfterKb / 1024));
+				freedKb = heapBeforeKb - heapAfterKb;
+			}
+			dataSetGcTimes.addSeriesPoint("time", new SeriesPoint(seconds, pauseSeconds * 1000));
+
+			if (fullGc) {
+				fullGcCount++;
+				fullGcPauseSum += pauseSeconds;
+				minFullGcPause = Math.min(minFullGcPause, pauseSeconds);
+				maxFullGcPause = Math.max(maxFullGcPause, pauseSeconds);
+				freedByFullGcKb += freedKb;
+			} else {
+				gcCount++;
+				gcPauseSum += pauseSeconds;
+				freedByGcKb += freedKb;
+			}
+		}
+
+		private boolean isInRange(final long timestampMillis) {
+			ZonedDateTime timestamp = Instant.ofEpochMilli(timestampMillis).atZone(ZoneOffset.UTC);
+			return timestampNormalizer.isInRange(timestamp) && (marker == null || marker.isInRange(timestamp));
+		}
+
+		/**
+		 * @return the seconds from the start of the first pause to the end of the last one
+		 */
+		double getRunningTime() {
+			return firstTimestampMillis < 0L ? 0d : (lastTimestampMillis - firstTimestampMillis) / 1000d + lastPause;
+		}
+	}
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.io.Files.createParentDirs;
+import static com.google.common.io.Files.newReader;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import org.apache.commons.lang3.text.StrBuilder;
+import org.apache.commons.lang3.text.StrTokenizer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.mgmtp.perfload.perfalyzer.annotations.FloatFormat;
+import com.mgmtp.perfload.perfalyzer.annotations.HistoryWindowSize;
+import com.mgmtp.perfload.perfalyzer.annotations.IntFormat;
+import com.mgmtp.perfload.perfalyzer.annotations.MaxHistoryItems;
+import com.mgmtp.perfload.perfalyzer.annotations.RegressionThresholdPercent;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint;
+
+/**
+ * Analyzes the complete execution history of an operation. History files are written in
+ * chronological order by {@link MeasuringReportPreparationStrategy} and are never truncated. They
+ * are streamed line by line, i. e. only a window of the most recent values and the plot data is
+ * kept in memory.
+ * <p>
+ * For each run, the median execution time and the median requests per minute are compared to the
+ * rolling median of the preceding runs. Runs deviating by more than the configured threshold are
+ * flagged as regression or improvement. Increasing execution times and decreasing request rates
+ * are considered regressions.
+ *
+ * @author rnaegele
+ */
+public class HistoryTrendAnalyzer {
+
+	static final String COL_TIME = "time";
+	static final String COL_EXECUTION_TIME = "medianExecutionTime";
+	static final String COL_REQUEST_RATE = "medianReqPerMin";
+
+	static final String TREND_REGRESSION = "trend.regression";
+	static final String TREND_IMPROVEMENT = "trend.improvement";
+
+	private final NumberFormat intNumberFormat;
+	private final NumberFormat floatNumberFormat;
+	private final ResourceBundle resourceBundle;
+	private final int windowSize;
+	private final double thresholdPercent;
+	private final int maxTableRows;
+	private final int minBaselineSize;
+
+	/**
+	 * @param intNumberFormat
+	 * 		the format for parsing the history values
+	 * @param floatNumberFormat
+	 * 		the format for rolling medians and percentage changes
+	 * @param resourceBundle
+	 * 		the resource bundle for series names and trend flags
+	 * @param windowSize
+	 * 		the number of preceding runs the rolling median is computed over
+	 * @param thresholdPercent
+	 * 		the percentage change relative to the rolling median that triggers a trend flag
+	 * @param maxTableRows
+	 * 		the number of most recent runs written to the trend table; plots always show the
+	 * 		complete history
+	 */
+	public HistoryTrendAnalyzer(@IntFormat final NumberFormat intNumberFormat, @FloatFormat final NumberFormat floatNumberFormat,
+			final ResourceBundle resourceBundle, @HistoryWindowSize final int windowSize,
+			@RegressionThresholdPercent final double thresholdPercent, @MaxHistoryItems final int maxTableRows) {
+		checkArgument(windowSize > 0, "Window size must be positive: %s", windowSize);
+		checkArgument(maxTableRows > 0, "Max. table rows must be positive: %s", maxTableRows);
+		this.intNumberFormat = intNumberFormat;
+		this.floatNumberFormat = floatNumberFormat;
+		this.resourceBundle = resourceBundle;
+		this.windowSize = windowSize;
+		this.thresholdPercent = thresholdPercent;
+		this.maxTableRows = maxTableRows;
+		// don't flag anything as long as the baseline consists of only one or two runs
+		this.minBaselineSize = Math.min(3, windowSize);
+	}
+
+	/**
+	 * Streams the specified history file and writes the trend table for the most recent runs,
+	 * newest first.
+	 *
+	 * @param historyFile
+	 * 		the history file (oldest run first)
+	 * @param trendFile
+	 * 		the trend table to write
+	 * @return two data sets containing values and rolling medians of execution times and request
+	 * rates, respectively, for all runs in the history
+	 */
+	public List<NumberDataSet> analyze(final File historyFile, final File trendFile) throws IOException {
+		StrTokenizer tokenizer = StrTokenizer.getCSVInstance();
+		tokenizer.setDelimiterChar(DELIMITER);
+
+		RollingMedian executionTimeMedian = new RollingMedian(windowSize);
+		RollingMedian requestRateMedian = new RollingMedian(windowSize);
+
+		String executionTimeSeries = resourceBundle.getString(COL_EXECUTION_TIME);
+		String executionTimeMedianSeries = resourceBundle.getString("rollingMedianExecutionTime");
+		String requestRateSeries = resourceBundle.getString(COL_REQUEST_RATE);
+		String requestRateMedianSeries = resourceBundle.getString("rollingMedianReqPerMin");
+
+		NumberDataSet executionTimeDataSet = new NumberDataSet();
+		NumberDataSet requestRateDataSet = new NumberDataSet();
+
+		// bounded, newest row first
+		Deque<String> tableRows = new ArrayDeque<>(maxTableRows);
+
+		try (BufferedReader br = newReader(historyFile, Charsets.UTF_8)) {
+			String header = br.readLine();
+			checkState(header != null, "History file is empty: %s", historyFile);
+
+			tokenizer.reset(header);
+			List<String> headers = tokenizer.getTokenList();
+			int timeIndex = headers.indexOf(COL_TIME);
+			int executionTimeIndex = headers.indexOf(COL_EXECUTION_TIME);
+			int requestRateIndex = headers.indexOf(COL_REQUEST_RATE);
+			checkState(timeIndex >= 0 && executionTimeIndex >= 0 && requestRateIndex >= 0,
+					"History file does not contain the expected columns: %s", historyFile);
+
+			int run = 0;
+			for (String line; (line = br.readLine()) != null; ) {
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				tokenizer.reset(line);
+				String[] tokens = tokenizer.getTokenArray();
+				++run;
+
+				double executionTime = parse(tokens[executionTimeIndex], historyFile);
+				double requestRate = parse(tokens[requestRateIndex], historyFile);
+
+				boolean baselineAvailable = executionTimeMedian.size() >= minBaselineSize;
+				double executionTimeBaseline = executionTimeMedian.median();
+				double requestRateBaseline = requestRateMedian.median();
+				double executionTimeChange = percentChange(executionTime, executionTimeBaseline);
+				double requestRateChange = percentChange(requestRate, requestRateBaseline);
+
+				String trend = "";
+				if (baselineAvailable) {
+					if (executionTimeChange > thresholdPercent || requestRateChange < -thresholdPercent) {
+						trend = resourceBundle.getString(TREND_REGRESSION);
+					} else if (executionTimeChange < -thresholdPercent || requestRateChange > thresholdPercent) {
+						trend = resourceBundle.getString(TREND_IMPROVEMENT);
+					}
+				}
+
+				executionTimeDataSet.addSeriesPoint(executionTimeSeries, new SeriesPoint(run, executionTime));
+				requestRateDataSet.addSeriesPoint(requestRateSeries, new SeriesPoint(run, requestRate));
+				if (!Double.isNaN(executionTimeBaseline)) {
+					executionTimeDataSet.addSeriesPoint(executionTimeMedianSeries, new SeriesPoint(run, executionTimeBaseline));
+					requestRateDataSet.addSeriesPoint(requestRateMedianSeries, new SeriesPoint(run, requestRateBaseline));
+				}
+
+				StrBuilder sb = new StrBuilder(line.length() + 40);
+				appendEscapedAndQuoted(sb, DELIMITER, tokens[timeIndex], tokens[executionTimeIndex],
+						format(executionTimeBaseline), format(executionTimeChange), tokens[requestRateIndex],
+						format(requestRateBaseline), format(requestRateChange), trend);
+				if (tableRows.size() == maxTableRows) {
+					tableRows.removeLast();
+				}
+				tableRows.addFirst(sb.toString());
+
+				executionTimeMedian.add(executionTime);
+				requestRateMedian.add(requestRate);
+			}
+		}
+
+		createParentDirs(trendFile);
+		try (FileOutputStream fos = new FileOutputStream(trendFile)) {
+			FileChannel channel = fos.getChannel();
+
+			StrBuilder sb = new StrBuilder(150);
+			appendEscapedAndQuoted(sb, DELIMITER, COL_TIME, COL_EXECUTION_TIME, "rollingMedianExecutionTime",
+					"changeExecutionTime", COL_REQUEST_RATE, "rollingMedianReqPerMin", "changeReqPerMin", "trend");
+			writeLineToChannel(channel, sb.toString(), Charsets.UTF_8);
+
+			for (String row : tableRows) {
+				writeLineToChannel(channel, row, Charsets.UTF_8);
+			}
+		}
+
+		return ImmutableList.of(executionTimeDataSet, requestRateDataSet);
+	}
+
+	private double parse(final String value, final File file) throws IOException {
+		try {
+			return intNumberFormat.parse(value).doubleValue();
+		} catch (ParseException ex) {
+			throw new IOException("Error parsing number in file: " + file, ex);
+		}
+	}
+
+	private String format(final double value) {
+		return Double.isNaN(value) || Double.isInfinite(value) ? "" : floatNumberFormat.format(value);
+	}
+
+	static double percentChange(final double value, final double baseline) {
+		if (Double.isNaN(baseline)) {
+			return Double.NaN;
+		}
+		if (baseline == 0d) {
+			return value == 0d ? 0d : Double.NaN;
+		}
+		return (value - baseline) / baseline * 100d;
+	}
+
+	/**
+	 * Median over a fixed-size window of the most recently added values.
+	 */
+	static class RollingMedian {
+		private final double[] window;
+		private final double[] sorted;
+		private int size;
+		private int next;
+
+		RollingMedian(final int windowSize) {
+			this.window = new double[windowSize];
+			this.sorted = new double[windowSize];
+		}
+
+		void add(final double value) {
+			window[next] = value;
+			next = (next + 1) % window.length;
+			if (size < window.length) {
+				++size;
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * @return the median of the values in the window, or {@link Double#NaN} if the window is
+		 * empty
+		 */
+		double median() {
+			if (size == 0) {
+				return Double.NaN;
+			}
+			System.arraycopy(window, 0, sorted, 0, size);
+			Arrays.sort(sorted, 0, size);
+			int middle = size / 2;
+			return size % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2d;
+		}
+	}
+}
@@ -22,11 +22,18 @@ import static com.google.common.io.Files.createParentDirs;
 import static com.google.common.io.Files.newReader;
 import static com.google.common.io.Files.readLines;
 import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.TOP_ERROR_TYPES;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.TOP_ERROR_TYPES_PER_BIN;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.readLastLine;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.removeLastLine;
 import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.writeLineToChannel;
 import static com.mgmtp.perfload.perfalyzer.util.PerfAlyzerUtils.readDataFile;
 import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
 import static java.lang.Math.min;
-import static org.apache.commons.io.FileUtils.copyFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.io.FileUtils.writeLines;
 import static org.apache.commons.lang3.StringUtils.substringAfter;
 
@@ -37,10 +44,17 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.channels.FileChannel;
 import java.text.NumberFormat;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.commons.lang3.text.StrBuilder;
@@ -49,6 +63,7 @@ import org.apache.commons.lang3.text.StrTokenizer;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.io.Files;
 import com.google.common.io.LineReader;
@@ -57,6 +72,7 @@ import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+import com.mgmtp.perfload.perfalyzer.util.FileStaging;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
 
@@ -66,13 +82,32 @@ import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
 public class MeasuringReportPreparationStrategy extends AbstractReportPreparationStrategy {
 
 	private final int maxHistoryItems;
+	private final HistoryTrendAnalyzer historyTrendAnalyzer;
+	private final FileStaging fileStaging;
 
 	public MeasuringReportPreparationStrategy(final NumberFormat intNumberFormat,
 			final NumberFormat floatNumberFormat, final List<DisplayData> displayDataList,
 			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata,
 			final DataRange dataRange, final int maxHistoryItems) {
+		this(intNumberFormat, floatNumberFormat, displayDataList, resourceBundle, plotCreator, testMetadata, dataRange,
+				maxHistoryItems, null, FileStaging.COPY);
+	}
+
+	/**
+	 * @param historyTrendAnalyzer
+	 * 		if non-null, trend tables and plots are created from the complete test history
+	 * @param fileStaging
+	 * 		the strategy for staging files that are passed on unchanged
+	 */
+	public MeasuringReportPreparationStrategy(final NumberFormat intNumberFormat,
+			final NumberFormat floatNumberFormat, final List<DisplayData> displayDataList,
+			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata,
+			final DataRange dataRange, final int maxHistoryItems, @Nullable final HistoryTrendAnalyzer historyTrendAnalyzer,
+			final FileStaging fileStaging) {
 		super(intNumberFormat, floatNumberFormat, displayDataList, resourceBundle, plotCreator, testMetadata, dataRange);
 		this.maxHistoryItems = maxHistoryItems;
+		this.historyTrendAnalyzer = historyTrendAnalyzer;
+		this.fileStaging = fileStaging;
 	}
 
 	@Override
@@ -83,6 +118,7 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 				new ByOperationExecutionsPerTimeHandler(sourceDir, destDir, "execMin"),
 				new ByOperationExecutionsPerTimeHandler(sourceDir, destDir, "exec10Min"),
 				new DistributionHandler(sourceDir, destDir),
+				new PercentilesHandler(sourceDir, destDir),
 				new QuantilesHandler(sourceDir, destDir),
 				new RequestsPerPeriodByOperationHandler(sourceDir, destDir, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE),
 				new RequestsPerPeriodByOperationHandler(sourceDir, destDir, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND),
@@ -120,11 +156,14 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 	}
 
 	/**
-	 * Copies the quantiles files.
+	 * Stages the quantiles files and the tables of the slowest requests, whose URI keys refer to
+	 * the quantiles.
 	 * <p>
 	 * <pre>
-	 * Input:  [measuring][&lt;operation&gt;][quantiles].csv
-	 * Output: [measuring][&lt;operation&gt;][distribution].csv
+	 * Input:  [measuring][&lt;operation&gt;][quantiles].csv, [measuring][&lt;operation&gt;][slowest].csv,
+	 *         [measuring][&lt;operation&gt;][slowestByUri].csv
+	 * Output: [measuring][&lt;operation&gt;][distribution].csv, [measuring][&lt;operation&gt;][slowest].csv,
+	 *         [measuring][&lt;operation&gt;][slowestByUri].csv
 	 * </pre>
 	 */
 	class QuantilesHandler extends MeasuringHandler {
@@ -142,7 +181,9 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 			if (fileNameParts.size() == 3 && "quantiles".equals(fileNameParts.get(2))) {
 				// Simply copy the file renaming it in order to align it to the plot file
 				File destFile = new File(destDir, f.copy().removeFileNamePart("quantiles").addFileNamePart("distribution").getFile().getPath());
-				copyFile(new File(sourceDir, f.getFile().getPath()), destFile);
+				fileStaging.stage(new File(sourceDir, f.getFile().getPath()), destFile);
+			} else if (fileNameParts.size() == 3 && ("slowest".equals(fileNameParts.get(2)) || "slowestByUri".equals(fileNameParts.get(2)))) {
+				fileStaging.stage(new File(sourceDir, f.getFile().getPath()), new File(destDir, f.getFile().getPath()));
 			}
 		}
 
@@ -201,6 +242,81 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 		}
 	}
 
+	/**
+	 * Creates plots of response time percentiles over time. The operation's plot shows all
+	 * percentiles, the plot by URI shows the 99th percentile of each URI.
+	 * <p>
+	 * <pre>
+	 * Input:  [measuring][&lt;operation&gt;][percentiles].csv, [measuring][&lt;operation&gt;][percentiles_&lt;index&gt;].csv
+	 * Output: [measuring][&lt;operation&gt;][percentiles].png, [measuring][&lt;operation&gt;][percentilesByUri].png
+	 * </pre>
+	 */
+	class PercentilesHandler extends MeasuringHandler {
+
+		private final List<String> percentileColumns = ImmutableList.of("p50", "p90", "p99", "p99.9");
+		private final String byUriColumn = "p99";
+
+		ListMultimap<String, PerfAlyzerFile> byUriMultimap = ArrayListMultimap.create();
+
+		public PercentilesHandler(final File sourceDir, final File destDir) {
+			super(sourceDir, destDir);
+		}
+
+		@Override
+		void processFile(final PerfAlyzerFile f) throws IOException {
+			List<String> fileNameParts = f.getFileNameParts();
+			if (fileNameParts.size() != 3) {
+				return;
+			}
+			if ("percentiles".equals(fileNameParts.get(2))) {
+				File file = new File(sourceDir, f.getFile().getPath());
+				Map<String, List<SeriesPoint>> columns = readDataFile(file, Charsets.UTF_8, intNumberFormat,
+						ImmutableSet.copyOf(percentileColumns));
+
+				NumberDataSet dataSet = new NumberDataSet();
+				for (String column : percentileColumns) {
+					List<SeriesPoint> dataList = columns.get(column);
+					if (dataList != null) {
+						dataSet.addSeries(column, dataList);
+					}
+				}
+				if (!dataSet.isEmpty()) {
+					File destFile = new File(destDir, f.copy().setExtension("png").getFile().getPath());
+					plotCreator.writePlotFile(destFile, AxisType.LINEAR, AxisType.LINEAR, RendererType.LINES,
+							ChartDimensions.WIDE, dataRange, false, dataSet);
+				}
+			} else if (fileNameParts.get(2).startsWith("percentiles_")) {
+				// key is the plot file name, i. e. we group effectively by operation
+				String key = f.copy().removeFileNamePart("percentiles_*").addFileNamePart("percentilesByUri").setExtension("png")
+						.getFile().getPath();
+				byUriMultimap.put(key, f);
+			}
+		}
+
+		@Override
+		void finishProcessing() throws IOException {
+			for (String key : byUriMultimap.keySet()) {
+				NumberDataSet dataSet = new NumberDataSet();
+
+				for (PerfAlyzerFile f : byUriMultimap.get(key)) {
+					File file = new File(sourceDir, f.getFile().getPath());
+					List<SeriesPoint> dataList = readDataFile(file, Charsets.UTF_8, intNumberFormat,
+							ImmutableSet.of(byUriColumn)).get(byUriColumn);
+
+					// the three-digit mapping key refers to the URI in the distribution table
+					if (dataList != null) {
+						String mappingKey = substringAfter(f.getFileNameParts().get(2), "_");
+						dataSet.addSeries(mappingKey, dataList);
+					}
+				}
+				if (!dataSet.isEmpty()) {
+					plotCreator.writePlotFile(new File(destDir, key), AxisType.LINEAR, AxisType.LINEAR, RendererType.LINES,
+							ChartDimensions.WIDE, dataRange, false, dataSet);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Binned response times plots.
 	 * <p>
@@ -309,11 +425,13 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 
 	/**
 	 * Creates response time csv files. The contents are considered for comparison, thus comparison
-	 * files are updated as well.
+	 * files are updated as well. Comparison files are restricted to {@code maxHistoryItems}, whereas
+	 * history files keep all tests in chronological order. If a {@link HistoryTrendAnalyzer} is
+	 * configured, trend tables and plots are created from the history files.
 	 * <p>
 	 * <pre>
 	 * Input:  [measuring][&lt;operation&gt;][aggregated].csv
-	 * Output: [measuring][executions].csv
+	 * Output: [measuring][executions].csv, [measuring][&lt;operation&gt;][trend].csv, [measuring][&lt;operation&gt;][trend].png
 	 * </pre>
 	 */
 	class ByOperationAggregatedHandler extends MeasuringHandler {
@@ -360,11 +478,13 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 						tokenizer.setDelimiterChar(DELIMITER);
 
 						File globalComparisonFile;
+						File globalHistoryFile;
 						try (Reader r = newReader(new File(sourceDir, f.getFile().getPath()), Charsets.UTF_8)) {
 							createParentDirs(destFile);
 
 							String operation = f.getFileNameParts().get(1);
 							globalComparisonFile = createDestFile(destDir.getParentFile().getParentFile(), f, ".comparison", false);
+							globalHistoryFile = createDestFile(destDir.getParentFile().getParentFile(), f, ".history", false);
 
 							List<String> comparisonLines;
 
@@ -374,6 +494,7 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 									"medianReqPerSec", "maxReqPerSec", "minReqPerMin", "medianReqPerMin", "maxReqPerMin",
 									"minExecutionTime", "medianExecutionTime", "maxExecutionTime");
 							String comparisonHeader = sb.toString();
+							String testStart = testMetadata.getTestStart().toString();
 
 							if (!globalComparisonFile.exists()) {
 								createParentDirs(globalComparisonFile);
@@ -388,12 +509,14 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 								tokenizer.reset(line);
 
 								String timestamp = tokenizer.nextToken();
-								if (testMetadata.getTestStart().toString().equals(timestamp)) {
+								if (testStart.equals(timestamp)) {
 									// report already existed for this test, i. e. we remove the last entry to create it anew
 									comparisonLines.remove(1);
 								}
 							}
 
+							prepareHistoryFile(globalHistoryFile, comparisonHeader, comparisonLines, testStart, tokenizer);
+
 							boolean isHeaderLine = true;
 
 							// files contain only two lines
@@ -417,7 +540,11 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 									writeLineToChannel(overallChannel, sbAggregated.toString(), Charsets.UTF_8);
 
 									StrBuilder sbComparison = new StrBuilder(line.length() + 10);
-									appendEscapedAndQuoted(sbComparison, DELIMITER, testMetadata.getTestStart().toString(), tokens);
+									appendEscapedAndQuoted(sbComparison, DELIMITER, testStart, tokens);
+
+									try (FileOutputStream fosHistory = new FileOutputStream(globalHistoryFile, true)) {
+										writeLineToChannel(fosHistory.getChannel(), sbComparison.toString(), Charsets.UTF_8);
+									}
 
 									comparisonLines.add(1, sbComparison.toString());
 
@@ -425,18 +552,63 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 									comparisonLines = comparisonLines.subList(0,
 											min(maxHistoryItems + 1, comparisonLines.size()));
 
-									writeLines(globalComparisonFile, Charsets.UTF_8.name(), comparisonLines);
+									// replaced rather than overwritten, so comparison files staged for earlier tests are kept
+									File tmpFile = new File(globalComparisonFile.getPath() + ".tmp");
+									writeLines(tmpFile, Charsets.UTF_8.name(), comparisonLines);
+									move(tmpFile.toPath(), globalComparisonFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
 								}
 							}
 						}
 
 						File comparisonFile = new File(destDir, "comparison" + SystemUtils.FILE_SEPARATOR + globalComparisonFile.getName());
-						// copy global file to this test's result files
-						copyFile(globalComparisonFile, comparisonFile);
+						// stage global file to this test's result files
+						fileStaging.stageSnapshot(globalComparisonFile, comparisonFile);
+
+						if (historyTrendAnalyzer != null) {
+							createTrendFiles(f, globalHistoryFile);
+						}
+					}
+				}
+			}
+		}
+
+		/*
+		 * Makes sure the history file exists and does not yet contain an entry for the current test.
+		 * New history files are initialized with the existing comparison data.
+		 */
+		private void prepareHistoryFile(final File historyFile, final String header, final List<String> comparisonLines,
+				final String testStart, final StrTokenizer tokenizer) throws IOException {
+			if (!historyFile.exists()) {
+				createParentDirs(historyFile);
+				try (FileOutputStream fos = new FileOutputStream(historyFile)) {
+					FileChannel channel = fos.getChannel();
+					writeLineToChannel(channel, header, Charsets.UTF_8);
+					// comparison lines are sorted newest first, the first one being the header
+					for (int i = comparisonLines.size() - 1; i > 0; --i) {
+						writeLineToChannel(channel, comparisonLines.get(i), Charsets.UTF_8);
 					}
 				}
+			} else {
+				tokenizer.reset(readLastLine(historyFile, Charsets.UTF_8));
+				if (testStart.equals(tokenizer.nextToken())) {
+					// report already existed for this test, i. e. we remove the last entry to create it anew
+					removeLastLine(historyFile);
+				}
 			}
 		}
+
+		private void createTrendFiles(final PerfAlyzerFile f, final File historyFile) throws IOException {
+			PerfAlyzerFile trendFile = f.copy().removeFileNamePart(2).addFileNamePart("trend");
+			File trendDir = new File(destDir, "trend");
+
+			log.info("Analyzing history file '{}'...", historyFile);
+			List<NumberDataSet> dataSets = historyTrendAnalyzer.analyze(historyFile,
+					new File(trendDir, trendFile.getFile().getName()));
+
+			plotCreator.writePlotFile(new File(trendDir, trendFile.setExtension("png").getFile().getName()), AxisType.LINEAR,
+					AxisType.LINEAR, RendererType.LINES, ChartDimensions.WIDE, null, false,
+					dataSets.toArray(new NumberDataSet[dataSets.size()]));
+		}
 	}
 
 	/**
@@ -495,16 +667,22 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 	}
 
 	/**
-	 * Creates error files.
+	 * Creates error files. The most frequent error types overall and over time are summed up from
+	 * the most frequent ones per operation, so they are approximate if there are more error types
+	 * per operation than listed in the input files.
 	 * <p>
 	 * <pre>
-	 * Input:  [measuring][&lt;operation&gt;][errorCount].csv, [measuring][&lt;operation&gt;][errorsByType].csv
-	 * Output: [measuring][errors].png, [measuring][errors].csv
+	 * Input:  [measuring][&lt;operation&gt;][errorCount].csv, [measuring][&lt;operation&gt;][errorsByType].csv,
+	 *         [measuring][&lt;operation&gt;][errorsByTypeOverTime].csv
+	 * Output: [measuring][errors].png, [measuring][errors].csv, [measuring][topErrors].csv,
+	 *         [measuring][errorsOverTime].csv
 	 * </pre>
 	 */
 	class ErrorsHandler extends MeasuringHandler {
 		ListMultimap<String, PerfAlyzerFile> errorCountsByOperationMultimap = ArrayListMultimap.create();
 		List<PerfAlyzerFile> errorsByType = new ArrayList<>();
+		List<PerfAlyzerFile> errorsByTypeOverTime = new ArrayList<>();
+		StrTokenizer tokenizer = StrTokenizer.getCSVInstance();
 
 		public ErrorsHandler(final File sourceDir, final File destDir) {
 			super(sourceDir, destDir);
@@ -517,6 +695,8 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 				errorCountsByOperationMultimap.put(fileNameParts.get(1), f);
 			} else if (fileNameParts.size() == 3 && "errorsByType".equals(fileNameParts.get(2))) {
 				errorsByType.add(f);
+			} else if (fileNameParts.size() == 3 && "errorsByTypeOverTime".equals(fileNameParts.get(2))) {
+				errorsByTypeOverTime.add(f);
 			}
 		}
 
@@ -566,7 +746,81 @@ public class MeasuringReportPreparationStrategy extends AbstractReportPreparatio
 						}
 					}
 				}
+
+				writeTopErrors(destFile);
+				writeErrorsOverTime(destFile);
+			}
+		}
+
+		private void writeTopErrors(final PerfAlyzerFile destFile) throws IOException {
+			Map<String, Long> countsByType = new HashMap<>();
+			for (PerfAlyzerFile paf : errorsByType) {
+				for (String[] tokens : readErrorsFile(paf)) {
+					countsByType.merge(tokens[0], parseCount(tokens[1], paf), Long::sum);
+				}
+			}
+
+			List<String> lines = new ArrayList<>(TOP_ERROR_TYPES + 1);
+			lines.add(csvLine("error", "count"));
+			mostFrequent(countsByType, TOP_ERROR_TYPES)
+					.forEach(entry -> lines.add(csvLine(entry.getKey(), intNumberFormat.format(entry.getValue()))));
+
+			File targetFile = new File(destDir, destFile.copy().removeFileNamePart(1).addFileNamePart("topErrors")
+					.setExtension("csv").getFile().getPath());
+			writeLines(targetFile, Charsets.UTF_8.name(), lines);
+		}
+
+		private void writeErrorsOverTime(final PerfAlyzerFile destFile) throws IOException {
+			Map<Long, Map<String, Long>> countsByTypePerBin = new TreeMap<>();
+			for (PerfAlyzerFile paf : errorsByTypeOverTime) {
+				for (String[] tokens : readErrorsFile(paf)) {
+					countsByTypePerBin.computeIfAbsent(parseCount(tokens[0], paf), time -> new HashMap<>())
+							.merge(tokens[1], parseCount(tokens[2], paf), Long::sum);
+				}
+			}
+
+			List<String> lines = new ArrayList<>();
+			lines.add(csvLine("time", "error", "count"));
+			countsByTypePerBin.forEach((time, countsByType) -> mostFrequent(countsByType, TOP_ERROR_TYPES_PER_BIN)
+					.forEach(entry -> lines.add(csvLine(intNumberFormat.format(time), entry.getKey(),
+							intNumberFormat.format(entry.getValue())))));
+
+			File targetFile = new File(destDir, destFile.copy().removeFileNamePart(1).addFileNamePart("errorsOverTime")
+					.setExtension("csv").getFile().getPath());
+			writeLines(targetFile, Charsets.UTF_8.name(), lines);
+		}
+
+		private List<String[]> readErrorsFile(final PerfAlyzerFile paf) throws IOException {
+			tokenizer.setDelimiterChar(DELIMITER);
+			List<String> lines = readLines(new File(sourceDir, paf.getFile().getPath()), Charsets.UTF_8);
+			List<String[]> result = newArrayListWithCapacity(lines.size());
+			// skip header
+			for (String line : lines.subList(min(1, lines.size()), lines.size())) {
+				tokenizer.reset(line);
+				result.add(tokenizer.getTokenArray());
 			}
+			return result;
+		}
+
+		private long parseCount(final String value, final PerfAlyzerFile paf) throws IOException {
+			try {
+				return intNumberFormat.parse(value).longValue();
+			} catch (ParseException ex) {
+				throw new IOException("Error parsing number in file: " + paf, ex);
+			}
+		}
+
+		private List<Entry<String, Long>> mostFrequent(final Map<String, Long> countsByType, final int n) {
+			return countsByType.entrySet().stream()
+					.sorted(Entry.<String, Long>comparingByValue().reversed().thenComparing(Entry.comparingByKey()))
+					.limit(n)
+					.collect(toList());
+		}
+
+		private String csvLine(final String value, final String... moreValues) {
+			StrBuilder sb = new StrBuilder(300);
+			appendEscapedAndQuoted(sb, DELIMITER, value, moreValues);
+			return sb.toString();
 		}
 	}
 }
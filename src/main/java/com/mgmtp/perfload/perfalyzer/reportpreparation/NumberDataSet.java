@@ -16,9 +16,12 @@
 package com.mgmtp.perfload.perfalyzer.reportpreparation;
 
 import static com.google.common.collect.Lists.newArrayListWithExpectedSize;
+import static com.google.common.collect.Maps.newHashMap;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.jfree.data.DomainOrder;
 import org.jfree.data.general.AbstractSeriesDataset;
@@ -27,13 +30,16 @@ import org.jfree.data.xy.IntervalXYDelegate;
 import org.jfree.data.xy.XYDataset;
 
 /**
- * {@link XYDataset} implementation for lists of lists of Double objects.
+ * {@link XYDataset} implementation backed by primitive {@code double} arrays. Missing values are
+ * stored as {@link Double#NaN} and returned as {@code null} by {@link #getX(int, int)} and
+ * {@link #getY(int, int)}.
  *
  * @author rnaegele
  */
 public class NumberDataSet extends AbstractSeriesDataset implements IntervalXYDataset {
 
 	private final List<NameSeriesWrapper> seriesList = newArrayListWithExpectedSize(5);
+	private final Map<String, NameSeriesWrapper> seriesByName = newHashMap();
 	private final IntervalXYDelegate intervalDelegate = new IntervalXYDelegate(this);
 
 	/**
@@ -43,27 +49,38 @@ public class NumberDataSet extends AbstractSeriesDataset implements IntervalXYDa
 	 * @param series the seris data
 	 */
 	public void addSeries(final String name, final List<SeriesPoint> series) {
-		seriesList.add(new NameSeriesWrapper(name, series));
+		NameSeriesWrapper wrapper = new NameSeriesWrapper(name, series.size());
+		for (SeriesPoint point : series) {
+			wrapper.add(doubleValue(point.getX()), doubleValue(point.getY()));
+		}
+		seriesList.add(wrapper);
+		seriesByName.putIfAbsent(name, wrapper);
 	}
 
 	public void addSeriesPoint(final String name, final SeriesPoint point) {
-		for (NameSeriesWrapper wrapper : seriesList) {
-			if (wrapper.name.equals(name)) {
-				List<SeriesPoint> seriesPoints = wrapper.series;
-				seriesPoints.add(point);
-				return;
-			}
-		}
+		addSeriesPoint(name, doubleValue(point.getX()), doubleValue(point.getY()));
+	}
 
-		List<SeriesPoint> seriesPoints = newArrayListWithExpectedSize(100);
-		seriesPoints.add(point);
-		NameSeriesWrapper wrapper = new NameSeriesWrapper(name, seriesPoints);
-		seriesList.add(wrapper);
+	/**
+	 * Adds a point to the series with the specified name, which is created if necessary.
+	 *
+	 * @param name the series name
+	 * @param x    the x value
+	 * @param y    the y value, {@link Double#NaN} if missing
+	 */
+	public void addSeriesPoint(final String name, final double x, final double y) {
+		NameSeriesWrapper wrapper = seriesByName.get(name);
+		if (wrapper == null) {
+			wrapper = new NameSeriesWrapper(name, 100);
+			seriesList.add(wrapper);
+			seriesByName.put(name, wrapper);
+		}
+		wrapper.add(x, y);
 	}
 
 	public boolean isEmpty() {
 		for (NameSeriesWrapper wrapper : seriesList) {
-			if (!wrapper.series.isEmpty()) {
+			if (wrapper.size > 0) {
 				return false;
 			}
 		}
@@ -77,6 +94,45 @@ public class NumberDataSet extends AbstractSeriesDataset implements IntervalXYDa
 		Collections.sort(seriesList);
 	}
 
+	/**
+	 * Creates a copy of this dataset, in which series with more than the specified number of
+	 * items are reduced to that number using the Largest-Triangle-Three-Buckets algorithm. This
+	 * keeps the visual shape of a line, including its peaks, while the rendering time no longer
+	 * depends on the length of the series. Series whose x values are not ascending or which have
+	 * missing values are copied unchanged.
+	 *
+	 * @param maxItemCount the maximum number of items per series, at least 3
+	 * @return the downsampled dataset, or this dataset if no series exceeds the maximum
+	 */
+	public NumberDataSet downsample(final int maxItemCount) {
+		boolean exceeded = false;
+		for (NameSeriesWrapper wrapper : seriesList) {
+			exceeded |= wrapper.size > maxItemCount;
+		}
+		if (!exceeded) {
+			return this;
+		}
+
+		NumberDataSet result = new NumberDataSet();
+		for (NameSeriesWrapper wrapper : seriesList) {
+			NameSeriesWrapper copy;
+			if (wrapper.size > maxItemCount && wrapper.isDownsamplable()) {
+				int[] indices = Downsampler.largestTriangleThreeBuckets(wrapper.xValues, wrapper.yValues, wrapper.size,
+						maxItemCount);
+				copy = new NameSeriesWrapper(wrapper.name, indices.length);
+				for (int index : indices) {
+					copy.add(wrapper.xValues[index], wrapper.yValues[index]);
+				}
+			} else {
+				copy = new NameSeriesWrapper(wrapper.name, wrapper.size);
+				copy.addAll(wrapper);
+			}
+			result.seriesList.add(copy);
+			result.seriesByName.putIfAbsent(copy.name, copy);
+		}
+		return result;
+	}
+
 	@Override
 	public DomainOrder getDomainOrder() {
 		return DomainOrder.NONE;
@@ -84,27 +140,31 @@ public class NumberDataSet extends AbstractSeriesDataset implements IntervalXYDa
 
 	@Override
 	public int getItemCount(final int series) {
-		return seriesList.get(series).series.size();
+		return seriesList.get(series).size;
 	}
 
 	@Override
 	public Number getX(final int series, final int item) {
-		return seriesList.get(series).series.get(item).getX();
+		return numberValue(getXValue(series, item));
 	}
 
 	@Override
 	public double getXValue(final int series, final int item) {
-		return getX(series, item).doubleValue();
+		NameSeriesWrapper wrapper = seriesList.get(series);
+		checkItem(wrapper, item);
+		return wrapper.xValues[item];
 	}
 
 	@Override
 	public Number getY(final int series, final int item) {
-		return seriesList.get(series).series.get(item).getY();
+		return numberValue(getYValue(series, item));
 	}
 
 	@Override
 	public double getYValue(final int series, final int item) {
-		return getY(series, item).doubleValue();
+		NameSeriesWrapper wrapper = seriesList.get(series);
+		checkItem(wrapper, item);
+		return wrapper.yValues[item];
 	}
 
 	@Override
@@ -117,6 +177,20 @@ public class NumberDataSet extends AbstractSeriesDataset implements IntervalXYDa
 		return seriesList.get(series).name;
 	}
 
+	private static void checkItem(final NameSeriesWrapper wrapper, final int item) {
+		if (item >= wrapper.size) {
+			throw new IndexOutOfBoundsException("Index: " + item + ", Size: " + wrapper.size);
+		}
+	}
+
+	private static double doubleValue(final Number number) {
+		return number == null ? Double.NaN : number.doubleValue();
+	}
+
+	private static Double numberValue(final double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+
 	public static class SeriesPoint {
 		private final Number x;
 		private final Number y;
@@ -186,11 +260,40 @@ public class NumberDataSet extends AbstractSeriesDataset implements IntervalXYDa
 	 */
 	static class NameSeriesWrapper implements Comparable<NameSeriesWrapper> {
 		String name;
-		List<SeriesPoint> series;
+		double[] xValues;
+		double[] yValues;
+		int size;
 
-		public NameSeriesWrapper(final String name, final List<SeriesPoint> series) {
+		public NameSeriesWrapper(final String name, final int initialCapacity) {
 			this.name = name;
-			this.series = series;
+			this.xValues = new double[Math.max(initialCapacity, 10)];
+			this.yValues = new double[xValues.length];
+		}
+
+		void add(final double x, final double y) {
+			if (size == xValues.length) {
+				int capacity = size + (size >> 1);
+				xValues = Arrays.copyOf(xValues, capacity);
+				yValues = Arrays.copyOf(yValues, capacity);
+			}
+			xValues[size] = x;
+			yValues[size] = y;
+			size++;
+		}
+
+		void addAll(final NameSeriesWrapper other) {
+			for (int i = 0; i < other.size; ++i) {
+				add(other.xValues[i], other.yValues[i]);
+			}
+		}
+
+		boolean isDownsamplable() {
+			for (int i = 0; i < size; ++i) {
+				if (Double.isNaN(xValues[i]) || Double.isNaN(yValues[i]) || i > 0 && xValues[i] < xValues[i - 1]) {
+					return false;
+				}
+			}
+			return true;
 		}
 
 		@Override
@@ -15,6 +15,13 @@
  */
 package com.mgmtp.perfload.perfalyzer.reportpreparation;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import com.mgmtp.perfload.perfalyzer.annotations.IntFormat;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
 import org.jfree.chart.JFreeChart;
@@ -45,14 +52,21 @@ import java.awt.Stroke;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import static com.google.common.io.Files.createParentDirs;
 import static com.mgmtp.perfload.perfalyzer.util.PerfAlyzerUtils.selectDisplayData;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FilenameUtils.removeExtension;
 
 /**
  * @author rnaegele
@@ -61,6 +75,8 @@ public class PlotCreator {
 
 	private static final StandardChartTheme CHART_THEME = new StandardChartTheme("JFree");
 
+	private static final Font MARKER_LABEL_FONT = new Font("Sans Serif", Font.ITALIC | Font.BOLD, 14);
+
 	static {
 		CHART_THEME.setDrawingSupplier(new PerfAlyzerDrawingSupplier());
 	}
@@ -93,6 +109,21 @@ public class PlotCreator {
 		abstract XYItemRenderer createRenderer();
 	}
 
+	/**
+	 * Determines how plots are output.
+	 */
+	public static enum PlotOutput {
+		/** Plots are rendered to PNG files. */
+		PNG,
+		/**
+		 * Plots are only registered and rendered to PNG on demand using
+		 * {@link #renderDeferredPlot(File)}. A rendered plot is written to its file and unregistered.
+		 */
+		DEFERRED_PNG,
+		/** Plot data is written to JSON files instead of PNG files, see {@link ChartDataSerializer}. */
+		JSON
+	}
+
 	public static enum ChartDimensions {
 		DEFAULT(640, 400),
 		LARGE(1115, 800),
@@ -119,6 +150,14 @@ public class PlotCreator {
 		public int getHeight() {
 			return height;
 		}
+
+		/**
+		 * @return the maximum number of items per series worth rendering, two per pixel, so a
+		 *         line can still go up and down within a pixel column
+		 */
+		public int getMaxItemCount() {
+			return 2 * width;
+		}
 	}
 
 	private final NumberFormat numberFormat;
@@ -126,12 +165,49 @@ public class PlotCreator {
 	private final List<DisplayData> displayDataList;
 	private final List<Marker> markers;
 
+	// display data by file name, so file names are not matched against all patterns for each plot
+	private final Map<String, DisplayData> displayDataByFileName = new ConcurrentHashMap<>();
+
+	// fingerprints of the data plots were last written with, so unchanged plots are not rendered again;
+	// null if plots are written only once
+	private final Map<File, HashCode> plotFingerprints;
+
+	private final PlotOutput plotOutput;
+
+	// plots to be rendered on demand, keyed by absolute file, until they are rendered; null if rendering is not deferred
+	private final Map<File, Supplier<BufferedImage>> deferredPlots;
+
 	public PlotCreator(@IntFormat final NumberFormat numberFormat, final ResourceBundle resourceBundle,
 			final List<DisplayData> displayDataList, final List<Marker> markers) {
+		this(numberFormat, resourceBundle, displayDataList, markers, PlotOutput.PNG);
+	}
+
+	/**
+	 * @param plotOutput
+	 * 		determines how plots are output
+	 */
+	public PlotCreator(@IntFormat final NumberFormat numberFormat, final ResourceBundle resourceBundle,
+			final List<DisplayData> displayDataList, final List<Marker> markers, final PlotOutput plotOutput) {
+		this(numberFormat, resourceBundle, displayDataList, markers, plotOutput, false);
+	}
+
+	/**
+	 * @param plotOutput
+	 * 		determines how plots are output
+	 * @param skipUnchangedPlots
+	 * 		if {@code true}, PNG plots whose data has not changed since they were last written are not
+	 * 		rendered again, e. g. when the report is refreshed in watch mode
+	 */
+	public PlotCreator(@IntFormat final NumberFormat numberFormat, final ResourceBundle resourceBundle,
+			final List<DisplayData> displayDataList, final List<Marker> markers, final PlotOutput plotOutput,
+			final boolean skipUnchangedPlots) {
 		this.numberFormat = numberFormat;
 		this.resourceBundle = resourceBundle;
 		this.displayDataList = displayDataList;
 		this.markers = markers;
+		this.plotOutput = plotOutput;
+		this.deferredPlots = plotOutput == PlotOutput.DEFERRED_PNG ? new ConcurrentHashMap<>() : null;
+		this.plotFingerprints = skipUnchangedPlots ? new ConcurrentHashMap<>() : null;
 	}
 
 	public JFreeChart createPlot(final AxisType xAxisType, final AxisType yAxisType, final RendererType rendererType,
@@ -165,7 +241,7 @@ public class PlotCreator {
 			for (Marker marker : markers) {
 				IntervalMarker im = new IntervalMarker(marker.getLeftMillis() / 1000L, marker.getRightMillis() / 1000L);
 				im.setLabel(marker.getName());
-				im.setLabelFont(new Font("Sans Serif", Font.ITALIC | Font.BOLD, 14));
+				im.setLabelFont(MARKER_LABEL_FONT);
 				im.setLabelAnchor(RectangleAnchor.TOP);
 				im.setLabelOffset(new RectangleInsets(8d, 0d, 0d, 0d));
 				im.setLabelPaint(Color.BLACK);
@@ -205,19 +281,148 @@ public class PlotCreator {
 	public void writePlotFile(final File file, final AxisType xAxisType, final AxisType yAxisType,
 			final RendererType rendererType, final DisplayData displayData, final ChartDimensions dimensions,
 			final DataRange dataRange, boolean showMarkers, final NumberDataSet... dataSets) throws IOException {
-		createParentDirs(file);
 		for (NumberDataSet dataSet : dataSets) {
 			dataSet.sortSeries();
 		}
-		JFreeChart chart = createPlot(xAxisType, yAxisType, rendererType, displayData, dataRange, showMarkers, dataSets);
-		BufferedImage chartImage = chart.createBufferedImage(dimensions.getWidth(), dimensions.getHeight());
+
+		if (plotOutput == PlotOutput.JSON) {
+			// interactive charts can be zoomed, so all data is kept
+			writeChartDataFile(file, xAxisType, yAxisType, rendererType, displayData, dimensions, dataRange, showMarkers, dataSets);
+			return;
+		}
+
+		if (deferredPlots != null) {
+			NumberDataSet[] plotDataSets = downsample(rendererType, dimensions, dataSets);
+			deferredPlots.put(file.getAbsoluteFile(),
+					() -> renderPlot(xAxisType, yAxisType, rendererType, displayData, dimensions, dataRange, showMarkers,
+							plotDataSets));
+			return;
+		}
+
+		createParentDirs(file);
+
+		HashCode fingerprint = null;
+		if (plotFingerprints != null) {
+			fingerprint = fingerprint(xAxisType, yAxisType, rendererType, displayData, dimensions, dataRange, showMarkers,
+					dataSets);
+			if (file.exists() && fingerprint.equals(plotFingerprints.get(file))) {
+				return;
+			}
+		}
+
+		BufferedImage chartImage = renderPlot(xAxisType, yAxisType, rendererType, displayData, dimensions, dataRange, showMarkers,
+				downsample(rendererType, dimensions, dataSets));
 		ImageIO.write(chartImage, "png", file);
+		if (fingerprint != null) {
+			plotFingerprints.put(file, fingerprint);
+		}
+	}
+
+	private void writeChartDataFile(final File file, final AxisType xAxisType, final AxisType yAxisType,
+			final RendererType rendererType, final DisplayData displayData, final ChartDimensions dimensions,
+			final DataRange dataRange, final boolean showMarkers, final NumberDataSet... dataSets) throws IOException {
+		String xLabel = resourceBundle.getString(displayData.getUnitX());
+		List<String> yLabels = dataSets.length == 1
+				? ImmutableList.of(resourceBundle.getString(displayData.getUnitY()))
+				: displayData.getUnitYList().stream().map(resourceBundle::getString).collect(toList());
+		// like the PNG plot, the range is ignored for logarithmic axes
+		DataRange range = xAxisType == AxisType.LOGARITHMIC ? null : dataRange;
+
+		String json = ChartDataSerializer.serialize(xAxisType, yAxisType, rendererType, dimensions, xLabel, yLabels, range,
+				showMarkers ? markers : ImmutableList.of(), dataSets);
+
+		File jsonFile = new File(file.getParentFile(), removeExtension(file.getName()) + ".json");
+		createParentDirs(jsonFile);
+		Files.asCharSink(jsonFile, Charsets.UTF_8).write(json);
+	}
+
+	private BufferedImage renderPlot(final AxisType xAxisType, final AxisType yAxisType, final RendererType rendererType,
+			final DisplayData displayData, final ChartDimensions dimensions, final DataRange dataRange, final boolean showMarkers,
+			final NumberDataSet... dataSets) {
+		JFreeChart chart = createPlot(xAxisType, yAxisType, rendererType, displayData, dataRange, showMarkers, dataSets);
+		return chart.createBufferedImage(dimensions.getWidth(), dimensions.getHeight());
+	}
+
+	/**
+	 * Reduces line series to the number of items that can be distinguished in a chart of the
+	 * specified dimensions. Scatter plots are not downsampled because the density of their
+	 * points is meaningful.
+	 */
+	private static NumberDataSet[] downsample(final RendererType rendererType, final ChartDimensions dimensions,
+			final NumberDataSet... dataSets) {
+		if (rendererType == RendererType.SHAPES) {
+			return dataSets;
+		}
+		NumberDataSet[] result = new NumberDataSet[dataSets.length];
+		for (int i = 0; i < dataSets.length; ++i) {
+			result[i] = dataSets[i].downsample(dimensions.getMaxItemCount());
+		}
+		return result;
+	}
+
+	/**
+	 * @return the absolute files of the plots registered for deferred rendering
+	 */
+	public Set<File> getDeferredPlotFiles() {
+		return deferredPlots == null ? ImmutableSet.of() : ImmutableSet.copyOf(deferredPlots.keySet());
+	}
+
+	/**
+	 * Renders a plot registered for deferred rendering. The image is written to the plot's file and
+	 * the plot is unregistered, so its data is released and the file can be used afterwards.
+	 *
+	 * @param file
+	 * 		the file the plot would have been written to
+	 * @return the PNG image, or {@code null} if no plot is registered for the file
+	 */
+	public byte[] renderDeferredPlot(final File file) throws IOException {
+		File absoluteFile = file.getAbsoluteFile();
+		Supplier<BufferedImage> plot = deferredPlots == null ? null : deferredPlots.get(absoluteFile);
+		if (plot == null) {
+			return null;
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(32 * 1024);
+		ImageIO.write(plot.get(), "png", baos);
+		byte[] png = baos.toByteArray();
+
+		createParentDirs(absoluteFile);
+		Files.write(png, absoluteFile);
+		deferredPlots.remove(absoluteFile);
+		return png;
+	}
+
+	private static HashCode fingerprint(final AxisType xAxisType, final AxisType yAxisType, final RendererType rendererType,
+			final DisplayData displayData, final ChartDimensions dimensions, final DataRange dataRange, final boolean showMarkers,
+			final NumberDataSet... dataSets) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putInt(xAxisType.ordinal()).putInt(yAxisType.ordinal()).putInt(rendererType.ordinal())
+				.putInt(dimensions.ordinal()).putBoolean(showMarkers);
+		hasher.putString(displayData.getUnitX(), Charsets.UTF_8);
+		displayData.getUnitYList().forEach(unitY -> hasher.putString(unitY, Charsets.UTF_8));
+		if (dataRange != null) {
+			hasher.putLong(dataRange.getLowerMillis()).putLong(dataRange.getUpperMillis());
+		}
+		for (NumberDataSet dataSet : dataSets) {
+			int seriesCount = dataSet.getSeriesCount();
+			hasher.putInt(seriesCount);
+			for (int series = 0; series < seriesCount; ++series) {
+				hasher.putString(dataSet.getSeriesKey(series).toString(), Charsets.UTF_8);
+				int itemCount = dataSet.getItemCount(series);
+				hasher.putInt(itemCount);
+				for (int item = 0; item < itemCount; ++item) {
+					hasher.putDouble(dataSet.getXValue(series, item));
+					hasher.putDouble(dataSet.getYValue(series, item));
+				}
+			}
+		}
+		return hasher.hash();
 	}
 
 	public void writePlotFile(final File file, final AxisType xAxisType, final AxisType yAxisType,
 			final RendererType rendererType, final ChartDimensions dimensions, final DataRange dataRange, boolean showMarkers,
 			final NumberDataSet... dataSets) throws IOException {
-		DisplayData displayData = selectDisplayData(file, displayDataList);
+		DisplayData displayData = displayDataByFileName.computeIfAbsent(file.getName(),
+				fileName -> selectDisplayData(file, displayDataList));
 		writePlotFile(file, xAxisType, yAxisType, rendererType, displayData, dimensions, dataRange, showMarkers, dataSets);
 	}
 
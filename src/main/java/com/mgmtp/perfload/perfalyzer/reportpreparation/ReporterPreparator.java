@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.List;
 
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.util.TaskMetrics;
 
 /**
  * @author ctchinda
@@ -36,6 +37,13 @@ public class ReporterPreparator {
 	}
 
 	public void processFiles(final List<PerfAlyzerFile> files) throws IOException {
+		long byteCount = 0L;
+		for (PerfAlyzerFile file : files) {
+			TaskMetrics.recordFile(file.getFile().getPath());
+			byteCount += new File(sourceDir, file.getFile().getPath()).length();
+		}
 		reportingStrategy.processFiles(sourceDir, destDir, files);
+		// strategies read files in their own way, so lines are not counted
+		TaskMetrics.recordRead(0L, byteCount);
 	}
 }
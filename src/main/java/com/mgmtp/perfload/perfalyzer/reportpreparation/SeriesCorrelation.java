@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Correlates time series that are aligned on the same grid of bins. Missing bins are
+ * {@link Double#NaN}.
+ *
+ * @author rnaegele
+ */
+final class SeriesCorrelation {
+
+	private SeriesCorrelation() {
+	}
+
+	/**
+	 * Computes Pearson's correlation coefficient of {@code x} and {@code y} for each lag from 0 to
+	 * {@code maxLag}, where {@code y} lags behind {@code x}, i. e. {@code x[i]} is paired with
+	 * {@code y[i + lag]}. The sums for all lags are accumulated in a single pass over the series.
+	 * The series are centered on their means first, so the sums do not lose precision for large
+	 * values.
+	 *
+	 * @param x
+	 * 		the leading series
+	 * @param y
+	 * 		the lagging series, same length as {@code x}
+	 * @param maxLag
+	 * 		the maximum lag in bins
+	 * @param minPoints
+	 * 		the minimum number of pairs a coefficient is computed for
+	 * @return the coefficients indexed by lag; {@link Double#NaN} if there are fewer pairs than
+	 * {@code minPoints} or one of the series is constant
+	 */
+	static double[] laggedCorrelations(final double[] x, final double[] y, final int maxLag, final int minPoints) {
+		checkArgument(x.length == y.length, "Series must have the same length: %s != %s", x.length, y.length);
+		checkArgument(maxLag >= 0, "Lag must not be negative: %s", maxLag);
+
+		int lagCount = maxLag + 1;
+		double[] result = new double[lagCount];
+		double meanX = meanIfVarying(x);
+		double meanY = meanIfVarying(y);
+
+		int[] n = new int[lagCount];
+		double[] sumX = new double[lagCount];
+		double[] sumY = new double[lagCount];
+		double[] sumXX = new double[lagCount];
+		double[] sumYY = new double[lagCount];
+		double[] sumXY = new double[lagCount];
+
+		for (int i = 0; i < x.length; ++i) {
+			// NaN if the bin is missing or the series is constant
+			double dx = x[i] - meanX;
+			if (Double.isNaN(dx)) {
+				continue;
+			}
+			int lagLimit = Math.min(lagCount, y.length - i);
+			for (int lag = 0; lag < lagLimit; ++lag) {
+				double dy = y[i + lag] - meanY;
+				if (Double.isNaN(dy)) {
+					continue;
+				}
+				n[lag]++;
+				sumX[lag] += dx;
+				sumY[lag] += dy;
+				sumXX[lag] += dx * dx;
+				sumYY[lag] += dy * dy;
+				sumXY[lag] += dx * dy;
+			}
+		}
+
+		for (int lag = 0; lag < lagCount; ++lag) {
+			if (n[lag] < minPoints) {
+				result[lag] = Double.NaN;
+				continue;
+			}
+			double covariance = sumXY[lag] - sumX[lag] * sumY[lag] / n[lag];
+			double varianceX = sumXX[lag] - sumX[lag] * sumX[lag] / n[lag];
+			double varianceY = sumYY[lag] - sumY[lag] * sumY[lag] / n[lag];
+			if (varianceX <= 0d || varianceY <= 0d) {
+				result[lag] = Double.NaN;
+				continue;
+			}
+			// rounding errors must not push the coefficient out of range
+			double r = covariance / Math.sqrt(varianceX * varianceY);
+			result[lag] = Math.max(-1d, Math.min(1d, r));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the mean of the values that are not {@link Double#NaN}, or {@link Double#NaN} if
+	 * there are no two different values
+	 */
+	private static double meanIfVarying(final double[] values) {
+		double sum = 0d;
+		int count = 0;
+		double first = Double.NaN;
+		boolean varying = false;
+		for (double value : values) {
+			if (Double.isNaN(value)) {
+				continue;
+			}
+			if (count == 0) {
+				first = value;
+			} else if (value != first) {
+				varying = true;
+			}
+			sum += value;
+			count++;
+		}
+		return varying ? sum / count : Double.NaN;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerException;
+
+/**
+ * Compression formats for files written by perfAlyzer. Files are read with
+ * {@link #openInputStream(File)}, which detects the format by its magic number, so readers work
+ * regardless of whether and how a file was compressed. Appending to a compressed file adds
+ * another gzip member or LZ4 frame, which is read transparently as well.
+ *
+ * @author rnaegele
+ */
+public enum CompressionCodec {
+	NONE {
+		@Override
+		public OutputStream wrap(final OutputStream os) {
+			return os;
+		}
+	},
+	GZIP {
+		@Override
+		public OutputStream wrap(final OutputStream os) throws IOException {
+			return new GZIPOutputStream(os, BUFFER_SIZE) {
+				{
+					// favor speed, files are only intermediate results
+					def.setLevel(Deflater.BEST_SPEED);
+				}
+			};
+		}
+	},
+	LZ4 {
+		@Override
+		public OutputStream wrap(final OutputStream os) throws IOException {
+			return new Lz4FrameOutputStream(os);
+		}
+	};
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long SAMPLE_SIZE = 1024L * 1024L;
+
+	/**
+	 * Wraps the specified stream so that data written to it is compressed. Closing the returned
+	 * stream closes the underlying stream.
+	 *
+	 * @param os
+	 * 		the stream to wrap
+	 * @return the compressing stream
+	 */
+	public abstract OutputStream wrap(OutputStream os) throws IOException;
+
+	/**
+	 * @param name
+	 * 		the case-insensitive codec name, e. g. {@code gzip}
+	 * @return the codec
+	 */
+	public static CompressionCodec forName(final String name) {
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException ex) {
+			throw new PerfAlyzerException("Unsupported compression codec: " + name, ex);
+		}
+	}
+
+	/**
+	 * Opens a buffered stream for the specified file, which decompresses its content if the file
+	 * is gzip or LZ4 compressed.
+	 *
+	 * @param file
+	 * 		the file
+	 * @return the stream
+	 */
+	public static InputStream openInputStream(final File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			return decompressing(is);
+		} catch (IOException | RuntimeException ex) {
+			is.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Wraps the specified stream so that its content is decompressed if it starts with the magic
+	 * number of a gzip member or an LZ4 frame. Otherwise, it is returned as is.
+	 *
+	 * @param is
+	 * 		the stream to wrap
+	 * @return the buffered, possibly decompressing stream
+	 */
+	public static InputStream decompressing(final InputStream is) throws IOException {
+		BufferedInputStream bis = new BufferedInputStream(is, BUFFER_SIZE);
+		switch (detect(bis)) {
+			case GZIP:
+				return new BufferedInputStream(new GZIPInputStream(bis, BUFFER_SIZE), BUFFER_SIZE);
+			case LZ4:
+				return new BufferedInputStream(new Lz4FrameInputStream(bis), BUFFER_SIZE);
+			default:
+				return bis;
+		}
+	}
+
+	/**
+	 * Estimates the size of the content of the specified file. For a compressed file, the
+	 * compression ratio of its first megabyte is extrapolated to the whole file, which is exact for
+	 * files up to that size.
+	 *
+	 * @param file
+	 * 		the file
+	 * @return the estimated uncompressed size in bytes
+	 */
+	public static long estimateUncompressedLength(final File file) throws IOException {
+		long length = file.length();
+		if (length == 0L) {
+			return 0L;
+		}
+		try (CountingInputStream cis = new CountingInputStream(ByteStreams.limit(new FileInputStream(file), SAMPLE_SIZE))) {
+			BufferedInputStream bis = new BufferedInputStream(cis, BUFFER_SIZE);
+			if (detect(bis) == NONE) {
+				return length;
+			}
+
+			CountingInputStream uncompressed = new CountingInputStream(decompressing(bis));
+			try {
+				ByteStreams.copy(uncompressed, ByteStreams.nullOutputStream());
+			} catch (EOFException ex) {
+				// the sample ends within a gzip member or LZ4 frame
+			}
+			return uncompressed.getCount() > 0L
+					? (long) ((double) uncompressed.getCount() / cis.getCount() * length)
+					: length;
+		}
+	}
+
+	/**
+	 * Estimates the total size of the content of the specified files (see
+	 * {@link #estimateUncompressedLength(File)}).
+	 *
+	 * @param baseDir
+	 * 		the directory the files are relative to
+	 * @param files
+	 * 		the files
+	 * @return the estimated uncompressed size in bytes
+	 */
+	public static long estimateUncompressedLength(final File baseDir, final List<PerfAlyzerFile> files) {
+		return files.stream().mapToLong(file -> {
+			try {
+				return estimateUncompressedLength(new File(baseDir, file.getFile().getPath()));
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}).sum();
+	}
+
+	private static CompressionCodec detect(final BufferedInputStream bis) throws IOException {
+		bis.mark(4);
+		byte[] magic = new byte[4];
+		int n = 0;
+		for (int count; n < magic.length && (count = bis.read(magic, n, magic.length - n)) >= 0; ) {
+			n += count;
+		}
+		bis.reset();
+
+		if (n >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+			return GZIP;
+		}
+		if (n == 4 && Lz4.readIntLE(magic, 0) == Lz4.FRAME_MAGIC) {
+			return LZ4;
+		}
+		return NONE;
+	}
+}
@@ -29,7 +29,8 @@ import java.util.stream.Stream;
 
 /**
  * Recursively walks a directory adding files in the tree to a list. The files in the list will
- * be relative to the specified base directory.
+ * be relative to the specified base directory. If a {@link FileCatalog} is open for the
+ * directory, it is queried instead.
  *
  * @author rnaegele
  */
@@ -39,6 +40,10 @@ public class DirectoryLister {
 	}
 
 	public static List<File> listFiles(final File baseDir) {
+		FileCatalog catalog = FileCatalog.lookup(baseDir);
+		if (catalog != null) {
+			return catalog.getFiles();
+		}
 		try (Stream<Path> stream = walk(baseDir.toPath())) {
 			return stream.filter(Files::isRegularFile)
 					.filter(path -> path.toFile().length() > 0L)
@@ -53,6 +58,10 @@ public class DirectoryLister {
 	}
 
 	public static List<PerfAlyzerFile> listAllPerfAlyzerFiles(final File baseDir) {
+		FileCatalog catalog = FileCatalog.lookup(baseDir);
+		if (catalog != null) {
+			return catalog.getPerfAlyzerFiles();
+		}
 		try (Stream<Path> stream = walk(baseDir.toPath())) {
 			return stream.filter(Files::isRegularFile)
 					.filter(path -> path.toFile().length() > 0L)
@@ -64,6 +73,10 @@ public class DirectoryLister {
 	}
 
 	public static List<PerfAlyzerFile> listPerfAlyzerFiles(final File baseDir, final Marker marker) {
+		FileCatalog catalog = FileCatalog.lookup(baseDir);
+		if (catalog != null) {
+			return catalog.getPerfAlyzerFiles(marker);
+		}
 		try (Stream<Path> stream = walk(baseDir.toPath())) {
 			Stream<PerfAlyzerFile> fileStream = stream.filter(Files::isRegularFile)
 					.filter(path -> path.toFile().length() > 0L)
@@ -76,4 +89,22 @@ public class DirectoryLister {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Lists the files of the specified marker that have the specified file name part.
+	 *
+	 * @param marker
+	 * 		the marker, or {@code null} for files without a marker
+	 * @param fileNamePart
+	 * 		the file name part without brackets, e. g. {@code gclog}
+	 */
+	public static List<PerfAlyzerFile> listPerfAlyzerFiles(final File baseDir, final Marker marker, final String fileNamePart) {
+		FileCatalog catalog = FileCatalog.lookup(baseDir);
+		if (catalog != null) {
+			return catalog.getPerfAlyzerFiles(marker, fileNamePart);
+		}
+		return listPerfAlyzerFiles(baseDir, marker).stream()
+				.filter(perfAlyzerFile -> perfAlyzerFile.getFileNameParts().contains(fileNamePart))
+				.collect(toList());
+	}
 }
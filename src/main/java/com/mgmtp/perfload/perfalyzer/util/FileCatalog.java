@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.makeRelative;
+import static java.nio.file.Files.walk;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FilenameUtils.getExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * The non-empty files of a directory tree with their parsed {@link PerfAlyzerFile}s, indexed by
+ * marker, file name part, and extension. A catalog is built with a single walk of the directory
+ * and is then queried by all workflows, markers, and tasks of a phase instead of walking the
+ * directory again and parsing file names over and over.
+ * <p>
+ * Catalogs are registered per directory with {@link #open(File)}, and {@link DirectoryLister}
+ * queries the registered catalog if there is one. A catalog must only be open while the
+ * directory is not written to, i. e. it must be {@link #invalidate(File) invalidated} before a
+ * phase writes to the directory. Files that are known to be written afterwards can be
+ * {@link #add(File) added}. Queries return copies, as {@link PerfAlyzerFile} is mutable.
+ *
+ * @author rnaegele
+ */
+public final class FileCatalog {
+
+	private static final ConcurrentMap<Path, FileCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+	private static final String NO_MARKER = "";
+
+	private final File baseDir;
+
+	private final List<File> files = new ArrayList<>();
+	private final Set<File> fileSet = new HashSet<>();
+	private final List<PerfAlyzerFile> perfAlyzerFiles = new ArrayList<>();
+	private final Map<String, List<PerfAlyzerFile>> filesByMarker = new HashMap<>();
+	private final Map<String, List<PerfAlyzerFile>> filesByFileNamePart = new HashMap<>();
+	private final Map<String, List<PerfAlyzerFile>> filesByExtension = new HashMap<>();
+
+	private FileCatalog(final File baseDir) {
+		this.baseDir = baseDir;
+	}
+
+	/**
+	 * Builds a catalog of the specified directory without registering it.
+	 *
+	 * @param baseDir
+	 * 		the directory
+	 * @return the catalog, which is empty if the directory does not exist
+	 */
+	public static FileCatalog build(final File baseDir) {
+		FileCatalog catalog = new FileCatalog(baseDir);
+		if (baseDir.isDirectory()) {
+			try (Stream<Path> stream = walk(baseDir.toPath())) {
+				stream.filter(Files::isRegularFile)
+						.filter(path -> path.toFile().length() > 0L)
+						.forEach(path -> catalog.index(makeRelative(baseDir, path.toFile())));
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		return catalog;
+	}
+
+	/**
+	 * Returns the registered catalog of the specified directory, building and registering it if
+	 * necessary.
+	 *
+	 * @param baseDir
+	 * 		the directory
+	 * @return the catalog
+	 */
+	public static FileCatalog open(final File baseDir) {
+		return CATALOGS.computeIfAbsent(key(baseDir), key -> build(baseDir));
+	}
+
+	/**
+	 * Unregisters the catalog of the specified directory, if any, so that the directory is
+	 * walked again when listed. Must be called before the directory is written to.
+	 *
+	 * @param baseDir
+	 * 		the directory
+	 */
+	public static void invalidate(final File baseDir) {
+		CATALOGS.remove(key(baseDir));
+	}
+
+	/**
+	 * @param baseDir
+	 * 		the directory
+	 * @return the registered catalog of the specified directory, or {@code null}
+	 */
+	static FileCatalog lookup(final File baseDir) {
+		return CATALOGS.isEmpty() ? null : CATALOGS.get(key(baseDir));
+	}
+
+	private static Path key(final File baseDir) {
+		return baseDir.toPath().toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Adds a file that has been written to the directory after the catalog was built.
+	 *
+	 * @param file
+	 * 		the file, relative to the directory
+	 */
+	public synchronized void add(final File file) {
+		if (new File(baseDir, file.getPath()).length() > 0L && !fileSet.contains(file)) {
+			index(file);
+		}
+	}
+
+	private synchronized void index(final File file) {
+		files.add(file);
+		fileSet.add(file);
+
+		PerfAlyzerFile perfAlyzerFile = PerfAlyzerFile.create(file);
+		perfAlyzerFiles.add(perfAlyzerFile);
+
+		String marker = perfAlyzerFile.getMarker();
+		filesByMarker.computeIfAbsent(marker != null ? marker : NO_MARKER, key -> new ArrayList<>()).add(perfAlyzerFile);
+		perfAlyzerFile.getFileNameParts().stream().distinct()
+				.forEach(part -> filesByFileNamePart.computeIfAbsent(part, key -> new ArrayList<>()).add(perfAlyzerFile));
+		filesByExtension.computeIfAbsent(getExtension(file.getName()), key -> new ArrayList<>()).add(perfAlyzerFile);
+	}
+
+	/**
+	 * @return all files, relative to the directory
+	 */
+	public synchronized List<File> getFiles() {
+		return new ArrayList<>(files);
+	}
+
+	/**
+	 * @return all files
+	 */
+	public synchronized List<PerfAlyzerFile> getPerfAlyzerFiles() {
+		return copies(perfAlyzerFiles);
+	}
+
+	/**
+	 * @param marker
+	 * 		the marker, or {@code null} for files without a marker
+	 * @return the files of the specified marker
+	 */
+	public synchronized List<PerfAlyzerFile> getPerfAlyzerFiles(final Marker marker) {
+		return copies(filesByMarker.get(marker != null ? marker.getName() : NO_MARKER));
+	}
+
+	/**
+	 * @param marker
+	 * 		the marker, or {@code null} for files without a marker
+	 * @param fileNamePart
+	 * 		the file name part without brackets, e. g. {@code gclog}
+	 * @return the files of the specified marker having the specified file name part
+	 */
+	public synchronized List<PerfAlyzerFile> getPerfAlyzerFiles(final Marker marker, final String fileNamePart) {
+		String markerName = marker != null ? marker.getName() : null;
+		List<PerfAlyzerFile> candidates = filesByFileNamePart.getOrDefault(fileNamePart, Collections.emptyList());
+		return copies(candidates.stream()
+				.filter(perfAlyzerFile -> markerName == null
+						? perfAlyzerFile.getMarker() == null
+						: markerName.equals(perfAlyzerFile.getMarker()))
+				.collect(toList()));
+	}
+
+	/**
+	 * @param extension
+	 * 		the extension without dot, e. g. {@code png}
+	 * @return the files with the specified extension
+	 */
+	public synchronized List<PerfAlyzerFile> getPerfAlyzerFilesWithExtension(final String extension) {
+		return copies(filesByExtension.get(extension));
+	}
+
+	private static List<PerfAlyzerFile> copies(final List<PerfAlyzerFile> perfAlyzerFiles) {
+		if (perfAlyzerFiles == null) {
+			return new ArrayList<>(0);
+		}
+		List<PerfAlyzerFile> result = new ArrayList<>(perfAlyzerFiles.size());
+		perfAlyzerFiles.forEach(perfAlyzerFile -> result.add(perfAlyzerFile.copy()));
+		return result;
+	}
+}
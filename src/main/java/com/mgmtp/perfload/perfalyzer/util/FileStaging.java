@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerException;
+
+/**
+ * Strategies for staging files that are passed on unchanged to the next phase or the report, e. g.
+ * GC logs, plots, comparison files, and report assets. Instead of copying the data, files are
+ * linked where possible. If a link cannot be created, e. g. because source and destination are on
+ * different file systems, the file is copied with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel) transferTo}, which lets the operating system copy it
+ * without passing the data through the heap.
+ * <p>
+ * As a linked file shares its data with the source, staged files must not be modified in place
+ * afterwards. Sources that are updated later must be replaced instead, e. g. by moving a new file
+ * over them, so that the staged file keeps the old content.
+ *
+ * @author rnaegele
+ */
+public enum FileStaging {
+	/**
+	 * Creates hard links. This is the default, because hard links stay valid if the source is
+	 * deleted, so the report directory remains self-contained.
+	 */
+	HARD_LINK {
+		@Override
+		boolean link(final Path source, final Path dest) throws IOException {
+			Files.createLink(dest, source);
+			return true;
+		}
+	},
+	/**
+	 * Creates symbolic links with absolute targets. These work across file systems, but the staged
+	 * files become invalid if the sources are deleted or the directories are moved.
+	 */
+	SYMBOLIC_LINK {
+		@Override
+		boolean link(final Path source, final Path dest) throws IOException {
+			Files.createSymbolicLink(dest, source.toAbsolutePath());
+			return true;
+		}
+	},
+	/**
+	 * Always copies files.
+	 */
+	COPY {
+		@Override
+		boolean link(final Path source, final Path dest) {
+			return false;
+		}
+	};
+
+	private static final Logger LOG = LoggerFactory.getLogger(FileStaging.class);
+
+	/**
+	 * Links the destination to the source.
+	 *
+	 * @return {@code false} if the file must be copied instead
+	 */
+	abstract boolean link(Path source, Path dest) throws IOException;
+
+	/**
+	 * Stages a file. An existing destination file is replaced unless it already is the source
+	 * file, e. g. a hard link staged by a previous run.
+	 *
+	 * @param source
+	 * 		the source file
+	 * @param dest
+	 * 		the destination file; parent directories are created as necessary
+	 */
+	public void stage(final File source, final File dest) throws IOException {
+		Path sourcePath = source.toPath();
+		Path destPath = dest.toPath();
+		if (!Files.isRegularFile(sourcePath)) {
+			throw new NoSuchFileException(source.getPath());
+		}
+		if (Files.exists(destPath)) {
+			if (Files.isSameFile(sourcePath, destPath)) {
+				return;
+			}
+			Files.delete(destPath);
+		} else {
+			Files.deleteIfExists(destPath); // dangling symbolic link
+			Files.createDirectories(destPath.toAbsolutePath().getParent());
+		}
+
+		try {
+			if (link(sourcePath, destPath)) {
+				return;
+			}
+		} catch (IOException | UnsupportedOperationException ex) {
+			LOG.debug("Could not link '{}' to '{}', copying it instead: {}", dest, source, ex.toString());
+		}
+		transfer(sourcePath, destPath);
+	}
+
+	/**
+	 * Stages a file that serves as a snapshot of a source which is replaced later. Unlike a
+	 * symbolic link, a hard link keeps referring to the old content when the source is replaced,
+	 * so {@link #SYMBOLIC_LINK} stages a hard link here.
+	 *
+	 * @param source
+	 * 		the source file
+	 * @param dest
+	 * 		the destination file; parent directories are created as necessary
+	 */
+	public void stageSnapshot(final File source, final File dest) throws IOException {
+		(this == SYMBOLIC_LINK ? HARD_LINK : this).stage(source, dest);
+	}
+
+	/**
+	 * Stages a directory recursively into the specified directory, i. e. as a sub-directory of
+	 * it with the same name, in the manner of {@code FileUtils.copyDirectoryToDirectory}. Files
+	 * that are already up to date are skipped, so staging the same directory again is cheap.
+	 *
+	 * @param sourceDir
+	 * 		the source directory
+	 * @param destParentDir
+	 * 		the directory to stage the source directory into
+	 */
+	public void stageDirectoryToDirectory(final File sourceDir, final File destParentDir) throws IOException {
+		stageDirectory(sourceDir.toPath(), new File(destParentDir, sourceDir.getName()).toPath());
+	}
+
+	private void stageDirectory(final Path sourceDir, final Path destDir) throws IOException {
+		Files.createDirectories(destDir);
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(sourceDir)) {
+			for (Path source : stream) {
+				Path dest = destDir.resolve(source.getFileName().toString());
+				if (Files.isDirectory(source)) {
+					stageDirectory(source, dest);
+				} else if (!isUpToDate(source, dest)) {
+					stage(source.toFile(), dest.toFile());
+				}
+			}
+		}
+	}
+
+	private static boolean isUpToDate(final Path source, final Path dest) throws IOException {
+		if (!Files.exists(dest)) {
+			return false;
+		}
+		// copies get the modification time of their sources
+		return Files.isSameFile(source, dest) || Files.size(source) == Files.size(dest)
+				&& Files.getLastModifiedTime(source).equals(Files.getLastModifiedTime(dest));
+	}
+
+	private static void transfer(final Path source, final Path dest) throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(dest, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			long size = in.size();
+			long position = 0L;
+			// the source might be truncated concurrently, e. g. a log that is still being written
+			for (long count; position < size && (count = in.transferTo(position, size - position, out)) > 0L; ) {
+				position += count;
+			}
+		}
+		Files.setLastModifiedTime(dest, Files.getLastModifiedTime(source));
+	}
+
+	/**
+	 * @param name
+	 * 		the case-insensitive name, e. g. {@code hard_link}
+	 * @return the staging strategy
+	 */
+	public static FileStaging forName(final String name) {
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException ex) {
+			throw new PerfAlyzerException("Unsupported file staging: " + name, ex);
+		}
+	}
+}
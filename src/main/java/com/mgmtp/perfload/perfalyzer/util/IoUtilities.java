@@ -196,6 +196,7 @@ public class IoUtilities {
 			CharBuffer buffer = CharBuffer.wrap(tmpLine);
 			CharsetEncoder encoder = charset.newEncoder();
 			ByteBuffer bb = encoder.encode(buffer);
+			TaskMetrics.recordWritten(1L, bb.remaining());
 			writeToChannel(destChannel, bb);
 		} catch (IOException ex) {
 			throw new UncheckedIOException(ex);
@@ -248,6 +249,41 @@ public class IoUtilities {
 		}
 	}
 
+	/**
+	 * Removes the last line of the specified file by truncating it. Line breaks at the end of the
+	 * file are removed as well, so the file afterwards ends with the line break of the next to last
+	 * line.
+	 *
+	 * @param file
+	 * 		the file
+	 */
+	public static void removeLastLine(final File file) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long pos = raf.length() - 1;
+
+			// skip trailing line break
+			for (; pos >= 0; --pos) {
+				raf.seek(pos);
+				int readByte = raf.readByte();
+				if (readByte != 10 && readByte != 13) {
+					break;
+				}
+			}
+
+			// search for the line break before the last line
+			for (; pos >= 0; --pos) {
+				raf.seek(pos);
+				if (raf.readByte() == 10) {
+					break;
+				}
+			}
+
+			raf.setLength(pos + 1);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
 	/**
 	 * Normalizes the specified file using {@link FilenameUtils#normalize(String)}. If {@code file}
 	 * is a directory, the normalized result always ends with the file separator.
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes and line feeds read from the underlying stream.
+ *
+ * @author rnaegele
+ */
+public class LineCountingInputStream extends FilterInputStream {
+
+	private long byteCount;
+	private long lineCount;
+
+	public LineCountingInputStream(final InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			byteCount++;
+			if (b == '\n') {
+				lineCount++;
+			}
+		}
+		return b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		int count = super.read(b, off, len);
+		if (count > 0) {
+			byteCount += count;
+			for (int i = off, end = off + count; i < end; ++i) {
+				if (b[i] == '\n') {
+					lineCount++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+		long skipped = super.skip(n);
+		byteCount += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * @return the number of line feeds read
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+}
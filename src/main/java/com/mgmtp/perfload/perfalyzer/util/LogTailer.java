@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Reads lines appended to growing log files. The read position of each file is remembered, so
+ * each call only returns complete lines written since the last call. A trailing line that is
+ * not yet terminated is left for the next call.
+ * <p>
+ * The number of bytes read from a single file per call is limited, so a call takes bounded time
+ * even for a large backlog. Remaining data is returned by subsequent calls.
+ * <p>
+ * Different files may be read concurrently. A single file must not be read by multiple threads at
+ * the same time.
+ *
+ * @author rnaegele
+ */
+public class LogTailer {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Map<File, Long> offsets = new ConcurrentHashMap<>();
+	private final int maxBytesPerRead;
+
+	/**
+	 * @param maxBytesPerRead
+	 * 		the maximum number of bytes read from a single file per call
+	 */
+	public LogTailer(final int maxBytesPerRead) {
+		checkArgument(maxBytesPerRead > 0, "Max. bytes per read must be positive: %s", maxBytesPerRead);
+		this.maxBytesPerRead = maxBytesPerRead;
+	}
+
+	/**
+	 * Returns the complete lines appended to the specified file since the last call. If the file
+	 * has been truncated in the meantime, it is read from the start again.
+	 *
+	 * @param file
+	 * 		the file
+	 * @return the new lines, or an empty list if no complete line has been appended
+	 */
+	public List<String> readNewLines(final File file) throws IOException {
+		long offset = offsets.getOrDefault(file, 0L);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < offset) {
+				log.warn("File '{}' has been truncated. Reading it from the start.", file);
+				offset = 0L;
+			}
+
+			int length = (int) Math.min(size - offset, maxBytesPerRead);
+			if (length == 0) {
+				return Collections.emptyList();
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset + buffer.position()) < 0) {
+					break;
+				}
+			}
+
+			int end = buffer.position() - 1;
+			while (end >= 0 && buffer.get(end) != '\n') {
+				--end;
+			}
+			if (end < 0) {
+				checkState(length < maxBytesPerRead, "Line in file '%s' exceeds %s bytes", file, maxBytesPerRead);
+				// no complete line yet
+				return Collections.emptyList();
+			}
+
+			offsets.put(file, offset + end + 1);
+			return splitLines(new String(buffer.array(), 0, end + 1, Charsets.UTF_8));
+		}
+	}
+
+	private static List<String> splitLines(final String chunk) {
+		List<String> lines = newArrayList();
+		int start = 0;
+		for (int lf; (lf = chunk.indexOf('\n', start)) >= 0; start = lf + 1) {
+			int end = lf > start && chunk.charAt(lf - 1) == '\r' ? lf - 1 : lf;
+			lines.add(chunk.substring(start, end));
+		}
+		return lines;
+	}
+}
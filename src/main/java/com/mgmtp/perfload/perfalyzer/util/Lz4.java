@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LZ4 block compression and the xxHash32 checksum as used by the LZ4 frame format. Compression
+ * is a simple greedy variant, which is fast but does not achieve the best possible ratio.
+ *
+ * @author rnaegele
+ */
+final class Lz4 {
+
+	static final int FRAME_MAGIC = 0x184D2204;
+	static final int MAX_OFFSET = 65535;
+
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_FIND_LIMIT = 12;
+	private static final int HASH_LOG = 14;
+	static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+	private static final int PRIME32_1 = 0x9E3779B1;
+	private static final int PRIME32_2 = 0x85EBCA77;
+	private static final int PRIME32_3 = 0xC2B2AE3D;
+	private static final int PRIME32_4 = 0x27D4EB2F;
+	private static final int PRIME32_5 = 0x165667B1;
+
+	private Lz4() {
+	}
+
+	/**
+	 * @return the maximum compressed size of a block of the specified length
+	 */
+	static int maxCompressedLength(final int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compresses a block.
+	 *
+	 * @param src
+	 * 		the data to compress
+	 * @param srcLength
+	 * 		the length of the data
+	 * @param dest
+	 * 		the destination buffer of at least {@link #maxCompressedLength(int)} bytes
+	 * @param hashTable
+	 * 		a table of {@link #HASH_TABLE_SIZE} entries, which is overwritten
+	 * @return the compressed length
+	 */
+	static int compress(final byte[] src, final int srcLength, final byte[] dest, final int[] hashTable) {
+		int anchor = 0;
+		int destPos = 0;
+
+		if (srcLength > MATCH_FIND_LIMIT) {
+			Arrays.fill(hashTable, -1);
+			int matchLimit = srcLength - LAST_LITERALS;
+			int pos = 0;
+			while (pos < srcLength - MATCH_FIND_LIMIT) {
+				int sequence = readIntLE(src, pos);
+				int hash = hash(sequence);
+				int ref = hashTable[hash];
+				hashTable[hash] = pos;
+
+				if (ref >= 0 && pos - ref <= MAX_OFFSET && readIntLE(src, ref) == sequence) {
+					int matchLength = MIN_MATCH;
+					while (pos + matchLength < matchLimit && src[ref + matchLength] == src[pos + matchLength]) {
+						matchLength++;
+					}
+					destPos = writeSequence(src, anchor, pos - anchor, pos - ref, matchLength, dest, destPos);
+					pos += matchLength;
+					anchor = pos;
+				} else {
+					pos++;
+				}
+			}
+		}
+
+		return writeLastLiterals(src, anchor, srcLength - anchor, dest, destPos);
+	}
+
+	private static int writeSequence(final byte[] src, final int literalStart, final int literalLength, final int offset,
+			final int matchLength, final byte[] dest, final int destPos) {
+		int pos = destPos;
+		int tokenPos = pos++;
+		int matchLengthCode = matchLength - MIN_MATCH;
+		dest[tokenPos] = (byte) ((Math.min(literalLength, 15) << 4) | Math.min(matchLengthCode, 15));
+
+		pos = writeLength(literalLength, dest, pos);
+		System.arraycopy(src, literalStart, dest, pos, literalLength);
+		pos += literalLength;
+
+		dest[pos++] = (byte) offset;
+		dest[pos++] = (byte) (offset >>> 8);
+		return writeLength(matchLengthCode, dest, pos);
+	}
+
+	private static int writeLastLiterals(final byte[] src, final int literalStart, final int literalLength, final byte[] dest,
+			final int destPos) {
+		int pos = destPos;
+		dest[pos++] = (byte) (Math.min(literalLength, 15) << 4);
+		pos = writeLength(literalLength, dest, pos);
+		System.arraycopy(src, literalStart, dest, pos, literalLength);
+		return pos + literalLength;
+	}
+
+	private static int writeLength(final int length, final byte[] dest, final int destPos) {
+		int pos = destPos;
+		if (length >= 15) {
+			int remaining = length - 15;
+			while (remaining >= 255) {
+				dest[pos++] = (byte) 255;
+				remaining -= 255;
+			}
+			dest[pos++] = (byte) remaining;
+		}
+		return pos;
+	}
+
+	/**
+	 * Decompresses a block. Matches may refer to data before {@code destStart}, which is
+	 * required for linked blocks.
+	 *
+	 * @return the position in the destination buffer after the decompressed data
+	 */
+	static int decompress(final byte[] src, final int srcLength, final byte[] dest, final int destStart) throws IOException {
+		try {
+			int pos = 0;
+			int destPos = destStart;
+			while (true) {
+				int token = src[pos++] & 0xFF;
+
+				int literalLength = token >>> 4;
+				if (literalLength == 15) {
+					int b;
+					do {
+						b = src[pos++] & 0xFF;
+						literalLength += b;
+					} while (b == 255);
+				}
+				System.arraycopy(src, pos, dest, destPos, literalLength);
+				pos += literalLength;
+				destPos += literalLength;
+
+				if (pos >= srcLength) {
+					return destPos;
+				}
+
+				int offset = (src[pos] & 0xFF) | (src[pos + 1] & 0xFF) << 8;
+				pos += 2;
+				int ref = destPos - offset;
+				if (offset == 0 || ref < 0) {
+					throw new IOException("Malformed LZ4 block: invalid offset " + offset);
+				}
+
+				int matchLength = token & 0x0F;
+				if (matchLength == 15) {
+					int b;
+					do {
+						b = src[pos++] & 0xFF;
+						matchLength += b;
+					} while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				// matches may overlap, so bytes are copied one by one
+				for (int i = 0; i < matchLength; ++i) {
+					dest[destPos + i] = dest[ref + i];
+				}
+				destPos += matchLength;
+			}
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("Malformed LZ4 block", ex);
+		}
+	}
+
+	static int xxHash32(final byte[] data, final int offset, final int length, final int seed) {
+		int pos = offset;
+		int end = offset + length;
+		int hash;
+
+		if (length >= 16) {
+			int v1 = seed + PRIME32_1 + PRIME32_2;
+			int v2 = seed + PRIME32_2;
+			int v3 = seed;
+			int v4 = seed - PRIME32_1;
+			while (pos <= end - 16) {
+				v1 = round(v1, readIntLE(data, pos));
+				v2 = round(v2, readIntLE(data, pos + 4));
+				v3 = round(v3, readIntLE(data, pos + 8));
+				v4 = round(v4, readIntLE(data, pos + 12));
+				pos += 16;
+			}
+			hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12)
+					+ Integer.rotateLeft(v4, 18);
+		} else {
+			hash = seed + PRIME32_5;
+		}
+
+		hash += length;
+		while (pos <= end - 4) {
+			hash += readIntLE(data, pos) * PRIME32_3;
+			hash = Integer.rotateLeft(hash, 17) * PRIME32_4;
+			pos += 4;
+		}
+		while (pos < end) {
+			hash += (data[pos] & 0xFF) * PRIME32_5;
+			hash = Integer.rotateLeft(hash, 11) * PRIME32_1;
+			pos++;
+		}
+
+		hash ^= hash >>> 15;
+		hash *= PRIME32_2;
+		hash ^= hash >>> 13;
+		hash *= PRIME32_3;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+	private static int round(final int acc, final int input) {
+		return Integer.rotateLeft(acc + input * PRIME32_2, 13) * PRIME32_1;
+	}
+
+	private static int hash(final int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	static int readIntLE(final byte[] data, final int pos) {
+		return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8 | (data[pos + 2] & 0xFF) << 16 | (data[pos + 3] & 0xFF) << 24;
+	}
+
+	static void writeIntLE(final int value, final byte[] data, final int pos) {
+		data[pos] = (byte) value;
+		data[pos + 1] = (byte) (value >>> 8);
+		data[pos + 2] = (byte) (value >>> 16);
+		data[pos + 3] = (byte) (value >>> 24);
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Reads data in the LZ4 frame format. Concatenated frames, skippable frames, and linked blocks
+ * are supported. Checksums are skipped, not verified. Frames using a dictionary are rejected.
+ *
+ * @author rnaegele
+ */
+public class Lz4FrameInputStream extends FilterInputStream {
+
+	private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+	private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+
+	private final byte[] header = new byte[8];
+	private byte[] compressed = new byte[0];
+
+	// linked blocks may refer to up to 64 KiB of previously decompressed data
+	private byte[] buffer = new byte[0];
+	private int bufferPos;
+	private int bufferLimit;
+
+	private boolean frameOpen;
+	private boolean blockIndependence;
+	private boolean blockChecksum;
+	private boolean contentChecksum;
+	private int maxBlockSize;
+	private boolean eof;
+
+	public Lz4FrameInputStream(final InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer[bufferPos++] & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int count = Math.min(len, bufferLimit - bufferPos);
+		System.arraycopy(buffer, bufferPos, b, off, count);
+		bufferPos += count;
+		return count;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+		long skipped = 0L;
+		while (skipped < n && fill()) {
+			int count = (int) Math.min(n - skipped, bufferLimit - bufferPos);
+			bufferPos += count;
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return bufferLimit - bufferPos;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(final int readlimit) {
+		// not supported
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	private boolean fill() throws IOException {
+		while (bufferPos == bufferLimit) {
+			if (eof) {
+				return false;
+			}
+			if (!frameOpen) {
+				if (!readFrameHeader()) {
+					eof = true;
+					return false;
+				}
+			} else {
+				readBlock();
+			}
+		}
+		return true;
+	}
+
+	private boolean readFrameHeader() throws IOException {
+		int magic;
+		while (true) {
+			int n = ByteStreams.read(in, header, 0, 4);
+			if (n == 0) {
+				return false;
+			}
+			if (n < 4) {
+				throw new EOFException("Truncated LZ4 frame header");
+			}
+			magic = Lz4.readIntLE(header, 0);
+			if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+				ByteStreams.readFully(in, header, 0, 4);
+				ByteStreams.skipFully(in, Lz4.readIntLE(header, 0) & 0xFFFFFFFFL);
+			} else {
+				break;
+			}
+		}
+		if (magic != Lz4.FRAME_MAGIC) {
+			throw new IOException(String.format("Invalid LZ4 frame magic number: 0x%08X", magic));
+		}
+
+		ByteStreams.readFully(in, header, 0, 2);
+		int flags = header[0] & 0xFF;
+		int blockDescriptor = header[1] & 0xFF;
+		if (flags >>> 6 != 1) {
+			throw new IOException("Unsupported LZ4 frame version: " + (flags >>> 6));
+		}
+		if ((flags & 0x01) != 0) {
+			throw new IOException("LZ4 frames with dictionary are not supported");
+		}
+		blockIndependence = (flags & 0x20) != 0;
+		blockChecksum = (flags & 0x10) != 0;
+		contentChecksum = (flags & 0x04) != 0;
+
+		int blockSizeId = (blockDescriptor >>> 4) & 0x07;
+		if (blockSizeId < 4) {
+			throw new IOException("Invalid LZ4 block size id: " + blockSizeId);
+		}
+		maxBlockSize = 1 << (2 * blockSizeId + 8);
+
+		boolean contentSize = (flags & 0x08) != 0;
+		// content size (optional) and header checksum
+		ByteStreams.skipFully(in, contentSize ? 9L : 1L);
+
+		int window = blockIndependence ? 0 : Lz4.MAX_OFFSET;
+		if (buffer.length < window + maxBlockSize) {
+			buffer = new byte[window + maxBlockSize];
+		}
+		if (compressed.length < maxBlockSize) {
+			compressed = new byte[maxBlockSize];
+		}
+		bufferPos = 0;
+		bufferLimit = 0;
+		frameOpen = true;
+		return true;
+	}
+
+	private void readBlock() throws IOException {
+		ByteStreams.readFully(in, header, 0, 4);
+		int blockSize = Lz4.readIntLE(header, 0);
+		if (blockSize == 0) {
+			// end mark
+			if (contentChecksum) {
+				ByteStreams.skipFully(in, 4L);
+			}
+			frameOpen = false;
+			return;
+		}
+
+		boolean uncompressed = (blockSize & 0x80000000) != 0;
+		blockSize &= 0x7FFFFFFF;
+		if (blockSize > maxBlockSize) {
+			throw new IOException("LZ4 block exceeds maximum size: " + blockSize);
+		}
+
+		int start = blockIndependence ? 0 : retainWindow();
+		if (uncompressed) {
+			ByteStreams.readFully(in, buffer, start, blockSize);
+			bufferLimit = start + blockSize;
+		} else {
+			ByteStreams.readFully(in, compressed, 0, blockSize);
+			bufferLimit = Lz4.decompress(compressed, blockSize, buffer, start);
+		}
+		bufferPos = start;
+
+		if (blockChecksum) {
+			ByteStreams.skipFully(in, 4L);
+		}
+	}
+
+	/**
+	 * Moves the last 64 KiB of decompressed data to the beginning of the buffer, so matches of the
+	 * next linked block can refer to it.
+	 *
+	 * @return the number of retained bytes
+	 */
+	private int retainWindow() {
+		int retained = Math.min(bufferLimit, Lz4.MAX_OFFSET);
+		System.arraycopy(buffer, bufferLimit - retained, buffer, 0, retained);
+		return retained;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes data in the LZ4 frame format with independent blocks of 64 KiB and without checksums.
+ * The output can be read with {@link Lz4FrameInputStream} or the {@code lz4} command line tool.
+ * Appending a frame to an existing one yields a valid stream.
+ *
+ * @author rnaegele
+ */
+public class Lz4FrameOutputStream extends FilterOutputStream {
+
+	static final int BLOCK_SIZE = 64 * 1024;
+
+	// version 01, independent blocks, no checksums, no content size
+	private static final byte FLAGS = 0x60;
+	// maximum block size 64 KiB
+	private static final byte BLOCK_DESCRIPTOR = 0x40;
+
+	private final byte[] buffer = new byte[BLOCK_SIZE];
+	private final byte[] compressed = new byte[Lz4.maxCompressedLength(BLOCK_SIZE)];
+	private final byte[] blockHeader = new byte[4];
+	private final int[] hashTable = new int[Lz4.HASH_TABLE_SIZE];
+	private int bufferCount;
+	private boolean closed;
+
+	public Lz4FrameOutputStream(final OutputStream out) throws IOException {
+		super(out);
+
+		byte[] header = new byte[7];
+		Lz4.writeIntLE(Lz4.FRAME_MAGIC, header, 0);
+		header[4] = FLAGS;
+		header[5] = BLOCK_DESCRIPTOR;
+		header[6] = (byte) (Lz4.xxHash32(header, 4, 2, 0) >>> 8);
+		out.write(header);
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (bufferCount == BLOCK_SIZE) {
+			writeBlock();
+		}
+		buffer[bufferCount++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		int pos = off;
+		int end = off + len;
+		while (pos < end) {
+			if (bufferCount == BLOCK_SIZE) {
+				writeBlock();
+			}
+			int count = Math.min(end - pos, BLOCK_SIZE - bufferCount);
+			System.arraycopy(b, pos, buffer, bufferCount, count);
+			bufferCount += count;
+			pos += count;
+		}
+	}
+
+	/**
+	 * Writes buffered data as a block, which may be smaller than the maximum block size, and
+	 * flushes the underlying stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (bufferCount > 0) {
+			writeBlock();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				if (bufferCount > 0) {
+					writeBlock();
+				}
+				// end mark
+				out.write(new byte[4]);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		int compressedLength = Lz4.compress(buffer, bufferCount, compressed, hashTable);
+		if (compressedLength < bufferCount) {
+			Lz4.writeIntLE(compressedLength, blockHeader, 0);
+			out.write(blockHeader);
+			out.write(compressed, 0, compressedLength);
+		} else {
+			// incompressible data is stored as is, marked by the highest bit of the size
+			Lz4.writeIntLE(bufferCount | 0x80000000, blockHeader, 0);
+			out.write(blockHeader);
+			out.write(buffer, 0, bufferCount);
+		}
+		bufferCount = 0;
+	}
+}
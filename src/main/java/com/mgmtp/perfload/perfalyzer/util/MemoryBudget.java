@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the heap memory that may be used for buffering raw values, shared by all tasks that run
+ * concurrently. Memory is reserved before it is allocated. If a reservation fails, the caller is
+ * expected to spill its data to a file created by this budget instead.
+ *
+ * @author rnaegele
+ */
+public class MemoryBudget {
+
+	private final long maxBytes;
+	private final File spillDir;
+	private final AtomicLong reservedBytes;
+
+	/**
+	 * @param maxBytes
+	 * 		the maximum number of bytes that may be reserved at the same time
+	 * @param spillDir
+	 * 		the directory for spill files
+	 */
+	public MemoryBudget(final long maxBytes, final File spillDir) {
+		this(maxBytes, spillDir, new AtomicLong());
+		checkArgument(maxBytes > 0L, "Memory budget must be positive: %s", maxBytes);
+	}
+
+	private MemoryBudget(final long maxBytes, final File spillDir, final AtomicLong reservedBytes) {
+		this.maxBytes = maxBytes;
+		this.spillDir = spillDir;
+		this.reservedBytes = reservedBytes;
+	}
+
+	/**
+	 * Creates a budget that shares its reservations with this budget, but creates spill files in
+	 * the specified directory, e. g. for each of the tests analyzed concurrently in batch mode.
+	 *
+	 * @param spillDir
+	 * 		the directory for spill files
+	 * @return the budget
+	 */
+	public MemoryBudget withSpillDir(final File spillDir) {
+		return new MemoryBudget(maxBytes, spillDir, reservedBytes);
+	}
+
+	/**
+	 * @return a budget that never requires spilling
+	 */
+	public static MemoryBudget unlimited() {
+		return new MemoryBudget(Long.MAX_VALUE, new File(System.getProperty("java.io.tmpdir")));
+	}
+
+	/**
+	 * Reserves the specified number of bytes if they fit into the budget.
+	 *
+	 * @return {@code true} if the bytes were reserved
+	 */
+	public boolean tryReserve(final long bytes) {
+		long current;
+		do {
+			current = reservedBytes.get();
+			if (current + bytes > maxBytes) {
+				return false;
+			}
+		} while (!reservedBytes.compareAndSet(current, current + bytes));
+		return true;
+	}
+
+	/**
+	 * Reserves the specified number of bytes even if the budget is exceeded. Used for small
+	 * allocations without which no progress could be made.
+	 */
+	public void reserve(final long bytes) {
+		reservedBytes.addAndGet(bytes);
+	}
+
+	public void release(final long bytes) {
+		reservedBytes.addAndGet(-bytes);
+	}
+
+	/**
+	 * Creates a new empty spill file, which is deleted on exit unless it is deleted earlier.
+	 *
+	 * @return the file
+	 */
+	public File createSpillFile() throws IOException {
+		spillDir.mkdirs();
+		File file = File.createTempFile("perfalyzer-", ".spill", spillDir);
+		file.deleteOnExit();
+		return file;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getReservedBytes() {
+		return reservedBytes.get();
+	}
+}
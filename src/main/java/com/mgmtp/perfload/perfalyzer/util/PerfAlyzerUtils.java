@@ -188,7 +188,7 @@ public class PerfAlyzerUtils {
 						headers = tokens;
 						colCount = tokens.length;
 					} else {
-						Integer counter = Integer.valueOf(tokens[0]);
+						Number counter = numberFormat.parse(tokens[0]);
 						for (int i = 1; i < colCount; ++i) {
 							String header = headers[i];
 							if (columnNames.contains(header)) {
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.text.StrBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Collects metrics about perfAlyzer's own performance. For each phase, wall time, GC time and peak
+ * heap usage are recorded. For each workflow task, wall time, CPU time, allocated bytes, queue wait
+ * time as well as lines and bytes read and written are recorded (see {@link TaskMetrics}).
+ * <p>
+ * Phases are started and ended by the thread running the pipeline. Tasks may run concurrently.
+ *
+ * @author rnaegele
+ */
+public class PipelineMetrics {
+
+	/**
+	 * The directory, relative to the report preparation directory, report files are written to.
+	 */
+	public static final String ANALYSIS_PERFORMANCE_DIR = "perfalyzer";
+
+	private static final long MIB = 1024L * 1024L;
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private final com.sun.management.ThreadMXBean allocationMXBean;
+
+	private final List<PhaseMetrics> phases = new ArrayList<>();
+	private final Queue<TaskMetrics> tasks = new ConcurrentLinkedQueue<>();
+
+	private PhaseMetrics currentPhase;
+
+	public PipelineMetrics() {
+		// allocation tracking is a HotSpot extension
+		com.sun.management.ThreadMXBean bean = null;
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			bean = (com.sun.management.ThreadMXBean) threadMXBean;
+			if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+				bean = null;
+			}
+		}
+		this.allocationMXBean = bean;
+	}
+
+	/**
+	 * Discards all metrics recorded so far.
+	 */
+	public void reset() {
+		phases.clear();
+		tasks.clear();
+		currentPhase = null;
+	}
+
+	/**
+	 * Starts a phase. Peak heap usage is reset, so it only reflects this phase.
+	 *
+	 * @param name
+	 * 		the phase name
+	 */
+	public void startPhase(final String name) {
+		checkState(currentPhase == null, "Phase '%s' has not been ended", currentPhase != null ? currentPhase.name : null);
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+			}
+		}
+		currentPhase = new PhaseMetrics(name);
+		currentPhase.gcMillis = -totalGcMillis();
+		currentPhase.wallNanos = -System.nanoTime();
+	}
+
+	/**
+	 * Ends the current phase.
+	 *
+	 * @return the metrics of the phase
+	 */
+	public PhaseMetrics endPhase() {
+		checkState(currentPhase != null, "No phase has been started");
+		PhaseMetrics phase = currentPhase;
+		phase.wallNanos += System.nanoTime();
+		phase.gcMillis += totalGcMillis();
+		long peakHeapBytes = 0L;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				// pools peak at different times, so this is an upper bound
+				peakHeapBytes += pool.getPeakUsage().getUsed();
+			}
+		}
+		phase.peakHeapBytes = peakHeapBytes;
+		phases.add(phase);
+		currentPhase = null;
+		return phase;
+	}
+
+	private static long totalGcMillis() {
+		long result = 0L;
+		for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			result += Math.max(0L, gcBean.getCollectionTime());
+		}
+		return result;
+	}
+
+	/**
+	 * Wraps a task, so its metrics are recorded when it runs.
+	 *
+	 * @param phase
+	 * 		the phase the task belongs to
+	 * @param workflow
+	 * 		the workflow that created the task
+	 * @param name
+	 * 		the task name, unique within workflow and phase
+	 * @param task
+	 * 		the task
+	 * @return the instrumented task
+	 */
+	public Runnable instrument(final String phase, final String workflow, final String name, final Runnable task) {
+		TaskMetrics taskMetrics = new TaskMetrics(phase, workflow, name);
+		long submitNanos = System.nanoTime();
+		return () -> {
+			long startNanos = System.nanoTime();
+			taskMetrics.queueWaitNanos = startNanos - submitNanos;
+
+			long threadId = Thread.currentThread().getId();
+			long startCpuNanos = threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1L;
+			long startAllocatedBytes = allocationMXBean != null ? allocationMXBean.getThreadAllocatedBytes(threadId) : -1L;
+
+			TaskMetrics.bind(taskMetrics);
+			try {
+				task.run();
+			} finally {
+				TaskMetrics.unbind();
+				taskMetrics.wallNanos = System.nanoTime() - startNanos;
+				if (startCpuNanos >= 0L) {
+					taskMetrics.cpuNanos = threadMXBean.getCurrentThreadCpuTime() - startCpuNanos;
+				}
+				if (startAllocatedBytes >= 0L) {
+					taskMetrics.allocatedBytes = allocationMXBean.getThreadAllocatedBytes(threadId) - startAllocatedBytes;
+				}
+				tasks.add(taskMetrics);
+			}
+		};
+	}
+
+	/**
+	 * @return the metrics of all ended phases in order of execution
+	 */
+	public List<PhaseMetrics> getPhases() {
+		return Collections.unmodifiableList(phases);
+	}
+
+	/**
+	 * @return the metrics of all completed tasks in order of completion
+	 */
+	public List<TaskMetrics> getTasks() {
+		return new ArrayList<>(tasks);
+	}
+
+	/**
+	 * @return the metrics of all completed tasks of the specified phase
+	 */
+	public List<TaskMetrics> getTasks(final String phase) {
+		return tasks.stream().filter(task -> task.getPhase().equals(phase)).collect(toList());
+	}
+
+	/**
+	 * Writes all metrics as JSON. Times are in milliseconds, memory in bytes.
+	 *
+	 * @param file
+	 * 		the destination file
+	 */
+	public void writeJson(final File file) throws IOException {
+		StrBuilder sb = new StrBuilder(4096);
+		sb.append("{\"phases\":[");
+		for (int i = 0; i < phases.size(); ++i) {
+			PhaseMetrics phase = phases.get(i);
+			List<TaskMetrics> phaseTasks = getTasks(phase.name);
+			sb.appendSeparator(',', i);
+			sb.append("{\"name\":");
+			appendJsonString(sb, phase.name);
+			sb.append(",\"wallMillis\":").append(phase.getWallMillis());
+			sb.append(",\"gcMillis\":").append(phase.gcMillis);
+			sb.append(",\"peakHeapBytes\":").append(phase.peakHeapBytes);
+			sb.append(",\"taskCount\":").append(phaseTasks.size());
+			sb.append(",\"taskCpuMillis\":").append(toMillis(phaseTasks.stream().mapToLong(TaskMetrics::getCpuNanos).filter(nanos -> nanos > 0L).sum()));
+			sb.append('}');
+		}
+		sb.append("],\"tasks\":[");
+		List<TaskMetrics> allTasks = getTasks();
+		for (int i = 0; i < allTasks.size(); ++i) {
+			TaskMetrics task = allTasks.get(i);
+			sb.appendSeparator(',', i);
+			sb.append("{\"phase\":");
+			appendJsonString(sb, task.getPhase());
+			sb.append(",\"workflow\":");
+			appendJsonString(sb, task.getWorkflow());
+			sb.append(",\"name\":");
+			appendJsonString(sb, task.getName());
+			sb.append(",\"files\":[");
+			List<String> files = task.getFiles();
+			for (int j = 0; j < files.size(); ++j) {
+				sb.appendSeparator(',', j);
+				appendJsonString(sb, files.get(j));
+			}
+			sb.append("],\"wallMillis\":").append(toMillis(task.getWallNanos()));
+			sb.append(",\"cpuMillis\":").append(task.getCpuNanos() < 0L ? -1L : toMillis(task.getCpuNanos()));
+			sb.append(",\"queueWaitMillis\":").append(toMillis(task.getQueueWaitNanos()));
+			sb.append(",\"allocatedBytes\":").append(task.getAllocatedBytes());
+			sb.append(",\"linesRead\":").append(task.getLinesRead());
+			sb.append(",\"bytesRead\":").append(task.getBytesRead());
+			sb.append(",\"linesWritten\":").append(task.getLinesWritten());
+			sb.append(",\"bytesWritten\":").append(task.getBytesWritten());
+			sb.append('}');
+		}
+		sb.append("]}");
+
+		Files.createParentDirs(file);
+		Files.asCharSink(file, Charsets.UTF_8).write(sb);
+	}
+
+	/**
+	 * Writes CSV files for the report: one with all phases and one with the slowest tasks. Files
+	 * processed by the tasks are only included in the JSON output.
+	 *
+	 * @param destDir
+	 * 		the report preparation directory
+	 * @param maxTasks
+	 * 		the maximum number of tasks to include
+	 */
+	public void writeReportFiles(final File destDir, final int maxTasks) throws IOException {
+		List<String> lines = new ArrayList<>(phases.size() + 1);
+		lines.add(csvLine("phase", "wallMillis", "gcMillis", "peakHeapMiB", "taskCount", "taskCpuMillis"));
+		for (PhaseMetrics phase : phases) {
+			List<TaskMetrics> phaseTasks = getTasks(phase.name);
+			long taskCpuNanos = phaseTasks.stream().mapToLong(TaskMetrics::getCpuNanos).filter(nanos -> nanos > 0L).sum();
+			lines.add(csvLine(phase.name, phase.getWallMillis(), phase.gcMillis, phase.peakHeapBytes / MIB,
+					phaseTasks.size(), toMillis(taskCpuNanos)));
+		}
+		writeReportFile(destDir, "[analysisperformance][phases].csv", lines);
+
+		lines = new ArrayList<>(maxTasks + 1);
+		lines.add(csvLine("task", "wallMillis", "cpuMillis", "queueWaitMillis", "allocatedMiB", "linesRead",
+				"linesWritten", "bytesReadMiB", "bytesWrittenMiB"));
+		List<TaskMetrics> slowestTasks = tasks.stream()
+				.sorted(Comparator.comparingLong(TaskMetrics::getWallNanos).reversed())
+				.limit(maxTasks)
+				.collect(toList());
+		for (TaskMetrics task : slowestTasks) {
+			lines.add(csvLine(task.getPhase() + '/' + task.getWorkflow() + '/' + task.getName(),
+					toMillis(task.getWallNanos()), toMillis(task.getCpuNanos()), toMillis(task.getQueueWaitNanos()),
+					task.getAllocatedBytes() / MIB, task.getLinesRead(), task.getLinesWritten(),
+					task.getBytesRead() / MIB, task.getBytesWritten() / MIB));
+		}
+		writeReportFile(destDir, "[analysisperformance][tasks].csv", lines);
+	}
+
+	private static String csvLine(final Object... values) {
+		StrBuilder sb = new StrBuilder(100);
+		for (Object value : values) {
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(value));
+		}
+		return sb.toString();
+	}
+
+	private static void writeReportFile(final File destDir, final String fileName, final List<String> lines)
+			throws IOException {
+		File file = new File(new File(destDir, ANALYSIS_PERFORMANCE_DIR), fileName);
+		Files.createParentDirs(file);
+		Files.asCharSink(file, Charsets.UTF_8).writeLines(lines);
+	}
+
+	private static long toMillis(final long nanos) {
+		return nanos < 0L ? -1L : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static void appendJsonString(final StrBuilder sb, final String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Metrics of a pipeline phase.
+	 */
+	public static class PhaseMetrics {
+		private final String name;
+		long wallNanos;
+		long gcMillis;
+		long peakHeapBytes;
+
+		PhaseMetrics(final String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getWallMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(wallNanos);
+		}
+
+		/**
+		 * @return the accumulated collection time of all garbage collectors during the phase
+		 */
+		public long getGcMillis() {
+			return gcMillis;
+		}
+
+		/**
+		 * @return the sum of the peak usages of all heap memory pools during the phase
+		 */
+		public long getPeakHeapBytes() {
+			return peakHeapBytes;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metrics of a single workflow task. While a task instrumented by {@link PipelineMetrics} runs,
+ * its metrics are bound to the executing thread, so the code doing the actual work can report
+ * files, lines and bytes using the static {@code record} methods without having to pass the metrics
+ * around. These methods do nothing if the current thread does not execute an instrumented task.
+ *
+ * @author rnaegele
+ */
+public final class TaskMetrics {
+
+	private static final ThreadLocal<TaskMetrics> CURRENT = new ThreadLocal<>();
+
+	private final String phase;
+	private final String workflow;
+	private final String name;
+	private final List<String> files = new ArrayList<>(1);
+
+	long queueWaitNanos;
+	long wallNanos;
+	long cpuNanos = -1L;
+	long allocatedBytes = -1L;
+
+	private long linesRead;
+	private long bytesRead;
+	private long linesWritten;
+	private long bytesWritten;
+
+	TaskMetrics(final String phase, final String workflow, final String name) {
+		this.phase = phase;
+		this.workflow = workflow;
+		this.name = name;
+	}
+
+	static void bind(final TaskMetrics taskMetrics) {
+		CURRENT.set(taskMetrics);
+	}
+
+	static void unbind() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * Records a file processed by the current task.
+	 *
+	 * @param file
+	 * 		the file path, usually relative to the phase's input directory
+	 */
+	public static void recordFile(final String file) {
+		TaskMetrics current = CURRENT.get();
+		if (current != null) {
+			current.files.add(file);
+		}
+	}
+
+	/**
+	 * Adds to the lines and bytes read by the current task.
+	 */
+	public static void recordRead(final long lines, final long bytes) {
+		TaskMetrics current = CURRENT.get();
+		if (current != null) {
+			current.linesRead += lines;
+			current.bytesRead += bytes;
+		}
+	}
+
+	/**
+	 * Adds to the lines and bytes written by the current task.
+	 */
+	public static void recordWritten(final long lines, final long bytes) {
+		TaskMetrics current = CURRENT.get();
+		if (current != null) {
+			current.linesWritten += lines;
+			current.bytesWritten += bytes;
+		}
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+
+	public String getWorkflow() {
+		return workflow;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the files processed by the task in the order they were recorded
+	 */
+	public List<String> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * @return the time between submission and start of the task
+	 */
+	public long getQueueWaitNanos() {
+		return queueWaitNanos;
+	}
+
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * @return the CPU time of the executing thread, or {@code -1} if not supported by the JVM
+	 */
+	public long getCpuNanos() {
+		return cpuNanos;
+	}
+
+	/**
+	 * @return the bytes allocated by the executing thread, or {@code -1} if not supported by the
+	 * JVM
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public long getLinesRead() {
+		return linesRead;
+	}
+
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	public long getLinesWritten() {
+		return linesWritten;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+}
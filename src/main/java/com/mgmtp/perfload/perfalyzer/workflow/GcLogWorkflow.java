@@ -18,9 +18,7 @@ package com.mgmtp.perfload.perfalyzer.workflow;
 import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listFiles;
 import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listPerfAlyzerFiles;
 import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.fileNameStartsWith;
-import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.perfAlyzerFileNameContains;
 import static java.util.stream.Collectors.toList;
-import static org.apache.commons.io.FileUtils.copyFile;
 import static org.apache.commons.io.FilenameUtils.getBaseName;
 import static org.apache.commons.io.FilenameUtils.getExtension;
 import static org.apache.commons.io.FilenameUtils.getPath;
@@ -45,6 +43,7 @@ import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.GcLogReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReporterPreparator;
+import com.mgmtp.perfload.perfalyzer.util.FileStaging;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.MemoryFormatProvider;
 import com.mgmtp.perfload.perfalyzer.util.NumberFormatProvider;
@@ -58,13 +57,20 @@ import com.mgmtp.perfload.perfalyzer.util.TimestampNormalizer;
 public class GcLogWorkflow extends AbstractWorkflow {
 
 	private final MemoryFormatProvider memoryFormatProvider;
+	private final FileStaging fileStaging;
 
+	/**
+	 * @param fileStaging
+	 * 		the strategy for staging GC logs, which are passed on unchanged by normalization and
+	 * 		binning
+	 */
 	public GcLogWorkflow(final TimestampNormalizer timestampNormalizer, @IntFormat final NumberFormatProvider intProvider,
 			@FloatFormat final NumberFormatProvider floatNumberFormatProvider, final List<DisplayData> displayDataList,
 			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata,
-			final MemoryFormatProvider memoryFormatProvider) {
+			final MemoryFormatProvider memoryFormatProvider, final FileStaging fileStaging) {
 		super(timestampNormalizer, intProvider, floatNumberFormatProvider, displayDataList, resourceBundle, testMetadata, plotCreator);
 		this.memoryFormatProvider = memoryFormatProvider;
+		this.fileStaging = fileStaging;
 	}
 
 	@Override
@@ -91,9 +97,9 @@ public class GcLogWorkflow extends AbstractWorkflow {
 						+ getExtension(filePath));
 
 				try {
-					copyFile(new File(inputDir, file.getPath()), destFile);
+					fileStaging.stage(new File(inputDir, file.getPath()), destFile);
 				} catch (IOException ex) {
-					throw new PerfAlyzerException("Error copying file: " + file, ex);
+					throw new PerfAlyzerException("Error staging file: " + file, ex);
 				}
 			};
 			return task;
@@ -106,13 +112,13 @@ public class GcLogWorkflow extends AbstractWorkflow {
 			// markers need to be treated in report preparation task for GC logs
 			return Collections.emptyList();
 		}
-		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir);
-		return inputFiles.stream().filter(perfAlyzerFileNameContains("[gclog]")).map(file -> {
+		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir, null, "gclog");
+		return inputFiles.stream().map(file -> {
 			Runnable task = () -> {
 				try {
-					copyFile(new File(inputDir, file.getFile().getPath()), new File(outputDir, file.getFile().getPath()));
+					fileStaging.stage(new File(inputDir, file.getFile().getPath()), new File(outputDir, file.getFile().getPath()));
 				} catch (IOException ex) {
-					throw new PerfAlyzerException("Error copying file: " + file, ex);
+					throw new PerfAlyzerException("Error staging file: " + file, ex);
 				}
 			};
 			return task;
@@ -132,8 +138,7 @@ public class GcLogWorkflow extends AbstractWorkflow {
 				);
 				ReporterPreparator reporter = new ReporterPreparator(inputDir, outputDir, strategy);
 
-				List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir);
-				reporter.processFiles(inputFiles.stream().filter(perfAlyzerFileNameContains("[gclog]")).collect(toList()));
+				reporter.processFiles(listPerfAlyzerFiles(inputDir, null, "gclog"));
 			} catch (IOException ex) {
 				throw new PerfAlyzerException("Error creating perfMon report files", ex);
 			}
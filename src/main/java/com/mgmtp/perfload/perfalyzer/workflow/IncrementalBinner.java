@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.mgmtp.perfload.perfalyzer.binning.Binner;
+import com.mgmtp.perfload.perfalyzer.binning.MergeableBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * Keeps the states of binning strategies per normalized file across the runs of an
+ * {@link IncrementalWorkflow}, so each run only accumulates the data appended to a file since the
+ * previous run. Binned files are written from the accumulated states, i. e. as if the whole file
+ * had been binned. Different files may be binned concurrently, a single file must not.
+ *
+ * @author rnaegele
+ */
+class IncrementalBinner {
+
+	private final Map<File, FileState> fileStates = new ConcurrentHashMap<>();
+
+	/**
+	 * Accumulates the data appended to the specified file since the last call for the file and
+	 * writes the binned files.
+	 *
+	 * @param inputDir
+	 * 		the input base directory where normalized files are expected
+	 * @param outputDir
+	 * 		the output base directory where binned files are to be written to
+	 * @param file
+	 * 		the normalized file, relative to the input directory; data must only be appended to it
+	 * 		between calls
+	 * @param strategiesFactory
+	 * 		creates the strategies when the file is binned for the first time
+	 */
+	void binNewData(final File inputDir, final File outputDir, final PerfAlyzerFile file,
+			final Supplier<List<MergeableBinningStrategy<?>>> strategiesFactory) throws IOException {
+		FileState state = fileStates.computeIfAbsent(file.getFile(), key -> new FileState(strategiesFactory.get()));
+		long endOffset = new File(inputDir, file.getFile().getPath()).length();
+
+		try {
+			for (MergeableBinningStrategy<?> strategy : state.strategies) {
+				new Binner(inputDir, outputDir, strategy).accumulateFile(file, state.offset, endOffset);
+			}
+		} catch (IOException | RuntimeException ex) {
+			// the states are incomplete now, so the file is binned from the start next time
+			fileStates.remove(file.getFile());
+			state.strategies.stream()
+					.filter(strategy -> strategy instanceof Closeable)
+					.forEach(strategy -> closeQuietly((Closeable) strategy));
+			throw ex;
+		}
+		state.offset = endOffset;
+
+		for (MergeableBinningStrategy<?> strategy : state.strategies) {
+			new Binner(inputDir, outputDir, strategy).writeBinnedFiles(file);
+		}
+	}
+
+	static class FileState {
+		final List<MergeableBinningStrategy<?>> strategies;
+		long offset;
+
+		FileState(final List<MergeableBinningStrategy<?>> strategies) {
+			this.strategies = strategies;
+		}
+	}
+}
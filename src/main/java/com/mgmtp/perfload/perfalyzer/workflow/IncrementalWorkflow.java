@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import com.mgmtp.perfload.perfalyzer.util.LogTailer;
+
+/**
+ * A {@link Workflow} that can process logs while they are still being written, i. e. while a
+ * test is running. Markers are not considered.
+ *
+ * @author rnaegele
+ */
+public interface IncrementalWorkflow extends Workflow {
+
+	/**
+	 * Returns tasks that normalize the lines appended to the input files since the last call.
+	 * Normalized lines are appended to the existing normalized files.
+	 *
+	 * @param inputDir     the input base directory where files to be normalized are expected
+	 * @param outputDir    the output base directory where normalized files are to be written to
+	 * @param tailer       the tailer that remembers the read positions of the input files
+	 * @param changedFiles the tasks add the normalized files they have written to, relative to the
+	 *                     output directory; must be thread-safe
+	 * @return a list of tasks
+	 */
+	List<Runnable> getIncrementalNormalizationTasks(File inputDir, File outputDir, LogTailer tailer, Set<File> changedFiles);
+
+	/**
+	 * Returns tasks that bin the data appended to the specified normalized files since the last
+	 * call. Binning states are kept across calls, and binned files are replaced completely.
+	 *
+	 * @param inputDir     the input base directory where normalized files are expected
+	 * @param outputDir    the output base directory where binned files are to be written to
+	 * @param changedFiles the normalized files that have changed, relative to the input directory
+	 * @return a list of tasks
+	 */
+	List<Runnable> getIncrementalBinningTasks(File inputDir, File outputDir, Set<File> changedFiles);
+}
@@ -19,19 +19,14 @@ import com.google.common.collect.ImmutableList;
 import com.mgmtp.perfload.perfalyzer.util.NumberFormatProvider;
 import com.mgmtp.perfload.perfalyzer.PerfAlyzerException;
 import com.mgmtp.perfload.perfalyzer.annotations.IntFormat;
-import com.mgmtp.perfload.perfalyzer.binning.Binner;
-import com.mgmtp.perfload.perfalyzer.binning.BinningStrategy;
-import com.mgmtp.perfload.perfalyzer.binning.LoadProfileBinningStrategy;
-import com.mgmtp.perfload.perfalyzer.normalization.LoadProfileNormalizingStrategy;
-import com.mgmtp.perfload.perfalyzer.normalization.Normalizer;
-import com.mgmtp.perfload.perfalyzer.normalization.NormalizingStrategy;
+import com.mgmtp.perfload.perfalyzer.normalization.LoadProfile;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.LoadProfileReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReporterPreparator;
+import com.mgmtp.perfload.perfalyzer.util.LogTailer;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
-import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
 import org.slf4j.MDC;
 
@@ -40,43 +35,45 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listFiles;
 import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listPerfAlyzerFiles;
-import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.fileNameMatchesWildcard;
-import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.perfAlyzerFileNameContains;
-import static java.util.stream.Collectors.toList;
 
 /**
  * @author rnaegele
  */
-public class LoadProfileWorkflow extends AbstractWorkflow {
+public class LoadProfileWorkflow extends AbstractWorkflow implements IncrementalWorkflow {
+
+	private final LoadProfile loadProfile;
+
+	// the load profile is complete before the test starts, so it only needs to be written once
+	private final AtomicBoolean incrementallyNormalized = new AtomicBoolean();
+	private final AtomicBoolean incrementallyBinned = new AtomicBoolean();
 
 	public LoadProfileWorkflow(@IntFormat final NumberFormatProvider intProvider,
 			@IntFormat final NumberFormatProvider intProvider2, final List<DisplayData> displayDataList,
-			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata) {
+			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata,
+			final LoadProfile loadProfile) {
 		super(null, intProvider, intProvider2, displayDataList, resourceBundle, testMetadata, plotCreator);
+		this.loadProfile = loadProfile;
 	}
 
 	@Override
 	public List<Runnable> getNormalizationTasks(final File inputDir, final File outputDir) {
-		List<File> inputFiles = listFiles(inputDir);
-		return inputFiles.stream().filter(fileNameMatchesWildcard("*.perfload")).map(file -> {
-			Runnable task = () -> {
-				MDC.put("file", file.getPath());
-				try {
-					log.info("Normalizing '{}'", file);
-					NormalizingStrategy strategy = new LoadProfileNormalizingStrategy();
-					final Normalizer normalizer = new Normalizer(inputDir, outputDir, strategy);
-					normalizer.normalize(file);
-				} catch (Exception ex) {
-					throw new PerfAlyzerException("Error normalizing file: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			};
-			return task;
-		}).collect(toList());
+		// the load profile has already been processed in a single pass, lines are only written out here
+		Runnable task = () -> {
+			MDC.put("file", "loadprofile");
+			try {
+				log.info("Writing normalized load profile");
+				loadProfile.writeNormalizedFiles(outputDir);
+			} catch (IOException ex) {
+				throw new PerfAlyzerException("Error writing normalized load profile", ex);
+			} finally {
+				MDC.remove("file");
+			}
+		};
+		return ImmutableList.of(task);
 	}
 
 	@Override
@@ -85,24 +82,34 @@ public class LoadProfileWorkflow extends AbstractWorkflow {
 			// markers con't apply here
 			return Collections.emptyList();
 		}
-		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir);
-		return inputFiles.stream().filter(perfAlyzerFileNameContains("[loadprofile]")).map(file -> {
-			Runnable task = () -> {
-				MDC.put("file", file.getFile().getPath());
-				try {
-					log.info("Binning '{}'", file);
-					BinningStrategy strategy = new LoadProfileBinningStrategy(intNumberFormatProvider.get(),
-							floatNumberFormatProvider.get());
-					final Binner binner = new Binner(inputDir, outputDir, strategy);
-					binner.binFile(file);
-				} catch (IOException ex) {
-					throw new PerfAlyzerException("Error binning file: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			};
-			return task;
-		}).collect(toList());
+		// executions per minute have been counted while processing the load profile
+		Runnable task = () -> {
+			MDC.put("file", "loadprofile");
+			try {
+				log.info("Writing binned load profile");
+				loadProfile.writeBinnedFiles(outputDir, intNumberFormatProvider.get());
+			} catch (IOException ex) {
+				throw new PerfAlyzerException("Error writing binned load profile", ex);
+			} finally {
+				MDC.remove("file");
+			}
+		};
+		return ImmutableList.of(task);
+	}
+
+	@Override
+	public List<Runnable> getIncrementalNormalizationTasks(final File inputDir, final File outputDir, final LogTailer tailer,
+			final Set<File> changedFiles) {
+		return incrementallyNormalized.compareAndSet(false, true)
+				? getNormalizationTasks(inputDir, outputDir)
+				: Collections.emptyList();
+	}
+
+	@Override
+	public List<Runnable> getIncrementalBinningTasks(final File inputDir, final File outputDir, final Set<File> changedFiles) {
+		return incrementallyBinned.compareAndSet(false, true)
+				? getBinningTasks(inputDir, outputDir, null)
+				: Collections.emptyList();
 	}
 
 	@Override
@@ -119,8 +126,7 @@ public class LoadProfileWorkflow extends AbstractWorkflow {
 						floatNumberFormatProvider.get(), displayDataList, resourceBundle, plotCreator, testMetadata, rangeFromMarker(marker));
 				final ReporterPreparator reporter = new ReporterPreparator(inputDir, outputDir, strategy);
 
-				List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir, marker);
-				reporter.processFiles(inputFiles.stream().filter(perfAlyzerFileNameContains("[loadprofile]")).collect(toList()));
+				reporter.processFiles(listPerfAlyzerFiles(inputDir, marker, "loadprofile"));
 			} catch (IOException ex) {
 				throw new PerfAlyzerException("Error creating perfMon report files", ex);
 			}
@@ -16,46 +16,55 @@
 package com.mgmtp.perfload.perfalyzer.workflow;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listPerfAlyzerFiles;
-import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
-import static com.mgmtp.perfload.perfalyzer.util.PerfFunctions.makeAbsolute;
 import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.fileNameContains;
 import static com.mgmtp.perfload.perfalyzer.util.PerfPredicates.perfAlyzerFileNameContains;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
-import static org.apache.commons.io.FileUtils.deleteQuietly;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.slf4j.MDC;
 
 import com.google.common.collect.ImmutableList;
 import com.mgmtp.perfload.perfalyzer.PerfAlyzerException;
 import com.mgmtp.perfload.perfalyzer.annotations.FloatFormat;
+import com.mgmtp.perfload.perfalyzer.annotations.HistoryWindowSize;
 import com.mgmtp.perfload.perfalyzer.annotations.IntFormat;
 import com.mgmtp.perfload.perfalyzer.annotations.MaxHistoryItems;
+import com.mgmtp.perfload.perfalyzer.annotations.RegressionThresholdPercent;
 import com.mgmtp.perfload.perfalyzer.binning.Binner;
+import com.mgmtp.perfload.perfalyzer.binning.BinningStateMerger;
 import com.mgmtp.perfload.perfalyzer.binning.ErrorCountBinningStragegy;
 import com.mgmtp.perfload.perfalyzer.binning.MeasuringAggregatedRequestsBinningStrategy;
 import com.mgmtp.perfload.perfalyzer.binning.MeasuringRequestsBinningStrategy;
 import com.mgmtp.perfload.perfalyzer.binning.MeasuringResponseTimesBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.binning.MergeableBinningStrategy;
 import com.mgmtp.perfload.perfalyzer.binning.RequestFilesMerger;
+import com.mgmtp.perfload.perfalyzer.binning.SliceableBinningStrategy;
 import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
 import com.mgmtp.perfload.perfalyzer.normalization.MeasuringNormalizingStrategy;
 import com.mgmtp.perfload.perfalyzer.normalization.Normalizer;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.HistoryTrendAnalyzer;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.MeasuringReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReporterPreparator;
-import com.mgmtp.perfload.perfalyzer.util.CsvFileSortMerger;
-import com.mgmtp.perfload.perfalyzer.util.CsvTimestampColumnComparator;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
 import com.mgmtp.perfload.perfalyzer.util.DirectoryLister;
+import com.mgmtp.perfload.perfalyzer.util.FileStaging;
+import com.mgmtp.perfload.perfalyzer.util.LogTailer;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
 import com.mgmtp.perfload.perfalyzer.util.NumberFormatProvider;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
 import com.mgmtp.perfload.perfalyzer.util.TestMetadata;
@@ -64,40 +73,122 @@ import com.mgmtp.perfload.perfalyzer.util.TimestampNormalizer;
 /**
  * @author ctchinda
  */
-public class MeasuringWorkflow extends AbstractWorkflow {
+public class MeasuringWorkflow extends AbstractWorkflow implements IncrementalWorkflow {
 
-	private final int maxHistoryItems;
+	private static final String NORMALIZED_DIR = "global";
+	private static final String PART_PREFIX = "part_";
+
+	// per-URI and per-execution state, roughly estimated from normalized measuring lines
+	private static final double RESPONSE_TIMES_HEAP_PER_INPUT_BYTE = 1.5d;
 
+	private final int maxHistoryItems;
+	private final int historyWindowSize;
+	private final double regressionThresholdPercent;
+	private final MemoryBudget memoryBudget;
+	private final CompressionCodec compressionCodec;
+	private final FileStaging fileStaging;
+	private final List<Marker> markers;
+
+	// kept across incremental normalization runs
+	private MeasuringNormalizingStrategy incrementalNormalizingStrategy;
+
+	// binning strategies are kept as well, so only new data is binned
+	private final IncrementalBinner incrementalBinner = new IncrementalBinner();
+
+	/**
+	 * @param historyWindowSize
+	 * 		the number of preceding tests for the history trend analysis; the analysis is disabled if
+	 * 		not positive
+	 * @param regressionThresholdPercent
+	 * 		the percentage change that is flagged by the history trend analysis
+	 * @param memoryBudget
+	 * 		the budget for response times kept in memory during binning
+	 * @param compressionCodec
+	 * 		the codec normalized files are compressed with
+	 * @param fileStaging
+	 * 		the strategy for staging files that report preparation passes on unchanged
+	 * @param markers
+	 * 		the markers of the test; the data of sliceable strategies is written for the markers while
+	 * 		binning the whole test (see {@link SliceableBinningStrategy})
+	 */
 	public MeasuringWorkflow(final TimestampNormalizer timestampNormalizer, @IntFormat final NumberFormatProvider intProvider,
 			@FloatFormat final NumberFormatProvider floatNumberFormatProvider, final List<DisplayData> displayDataList,
 			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata,
-			@MaxHistoryItems final int maxHistoryItems) {
+			@MaxHistoryItems final int maxHistoryItems, @HistoryWindowSize final int historyWindowSize,
+			@RegressionThresholdPercent final double regressionThresholdPercent, final MemoryBudget memoryBudget,
+			final CompressionCodec compressionCodec, final FileStaging fileStaging, final List<Marker> markers) {
 		super(timestampNormalizer, intProvider, floatNumberFormatProvider, displayDataList, resourceBundle, testMetadata, plotCreator);
 		this.maxHistoryItems = maxHistoryItems;
+		this.historyWindowSize = historyWindowSize;
+		this.regressionThresholdPercent = regressionThresholdPercent;
+		this.memoryBudget = memoryBudget;
+		this.compressionCodec = compressionCodec;
+		this.fileStaging = fileStaging;
+		this.markers = markers;
 	}
 
+	/**
+	 * Creates a normalization task per measuring log, so logs of different drivers are normalized
+	 * in parallel. Each task writes its own part of each normalized file, e. g.
+	 * {@code global/[measuring][login][part_1].csv}. The parts are binned independently, and the
+	 * results are merged (see {@link MergeableBinningStrategy}), so logs need not be sort-merged.
+	 */
 	@Override
 	public List<Runnable> getNormalizationTasks(final File inputDir, final File outputDir) {
+		List<File> inputFiles = DirectoryLister.listFiles(inputDir).stream()
+				.filter(fileNameContains("measuring"))
+				.sorted()
+				.collect(toList());
+
+		List<Runnable> tasks = newArrayListWithCapacity(inputFiles.size());
+		for (int i = 0; i < inputFiles.size(); ++i) {
+			File file = inputFiles.get(i);
+			String part = PART_PREFIX + i;
+			tasks.add(() -> {
+				MDC.put("file", file.getPath());
+				try {
+					MeasuringNormalizingStrategy strat = new MeasuringNormalizingStrategy(timestampNormalizer);
+					Normalizer normalizer = new Normalizer(inputDir, outputDir, strat, compressionCodec);
+
+					log.info("Normalizing '{}'", file);
+					normalizer.normalize(file, NORMALIZED_DIR, part);
+				} catch (Exception ex) {
+					throw new PerfAlyzerException("Error normalizing file: " + file, ex);
+				} finally {
+					MDC.remove("file");
+				}
+			});
+		}
+		return ImmutableList.copyOf(tasks);
+	}
+
+	@Override
+	public List<Runnable> getIncrementalNormalizationTasks(final File inputDir, final File outputDir, final LogTailer tailer,
+			final Set<File> changedFiles) {
 		Runnable task = () -> {
-			List<File> inputFiles = DirectoryLister.listFiles(inputDir);
-			Set<File> fileSet = inputFiles.stream().filter(fileNameContains("measuring")).map(makeAbsolute(inputDir)).collect(Collectors.toSet());
-			final File sortMergeOutputDir = createTempDir();
 			File mergedMeasuringLog = new File("global/measuring-logs/measuring.csv");
 			try {
-				log.info("Merging measuring logs to '{}'", mergedMeasuringLog);
-				CsvFileSortMerger merger = new CsvFileSortMerger(fileSet, new File(sortMergeOutputDir, mergedMeasuringLog.getPath()),
-						new CsvTimestampColumnComparator(';', 3));
-				merger.mergeFiles();
+				List<String> lines = newArrayList();
+				for (File file : DirectoryLister.listFiles(inputDir)) {
+					if (fileNameContains("measuring").test(file)) {
+						lines.addAll(tailer.readNewLines(new File(inputDir, file.getPath())));
+					}
+				}
+				lines.removeIf(line -> line.trim().isEmpty() || line.startsWith("#"));
+				if (lines.isEmpty()) {
+					return;
+				}
 
-				MeasuringNormalizingStrategy strat = new MeasuringNormalizingStrategy(timestampNormalizer);
-				Normalizer normalizer = new Normalizer(sortMergeOutputDir, outputDir, strat);
+				if (incrementalNormalizingStrategy == null) {
+					incrementalNormalizingStrategy = new MeasuringNormalizingStrategy(timestampNormalizer);
+				}
+				Normalizer normalizer = new Normalizer(inputDir, outputDir, incrementalNormalizingStrategy,
+						compressionCodec);
 
-				log.info("Normalizing '{}'", mergedMeasuringLog);
-				normalizer.normalize(mergedMeasuringLog);
+				log.info("Normalizing {} new measuring lines", lines.size());
+				changedFiles.addAll(normalizer.normalizeLines(mergedMeasuringLog, lines));
 			} catch (Exception ex) {
-				throw new PerfAlyzerException("Error normalizing file: " + mergedMeasuringLog, ex);
-			} finally {
-				deleteQuietly(sortMergeOutputDir);
+				throw new PerfAlyzerException("Error normalizing measuring logs incrementally", ex);
 			}
 		};
 
@@ -106,120 +197,182 @@ public class MeasuringWorkflow extends AbstractWorkflow {
 
 	@Override
 	public List<Runnable> getBinningTasks(final File inputDir, final File outputDir, final Marker marker) {
-		List<Runnable> tasks = newArrayList();
-
-		final LatchProvider latchProvider = new LatchProvider();
-		final long startOfFirstBin = marker != null ? marker.getLeftMillis() : 0;
-
-		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir, marker);
-		inputFiles.stream().filter(perfAlyzerFileNameContains("measuring")).forEach(file -> {
-			tasks.add(() -> {
-				MDC.put("file", file.getFile().getPath());
-				try {
-					log.info("Binning response times: '{}'", file);
-
-					MeasuringResponseTimesBinningStrategy strategy = new MeasuringResponseTimesBinningStrategy(startOfFirstBin,
-							intNumberFormatProvider.get(), floatNumberFormatProvider.get());
-					final Binner binner = new Binner(inputDir, outputDir, strategy);
-					binner.binFile(file);
-
-					latchProvider.get().countDown();
-				} catch (Exception ex) {
-					throw new PerfAlyzerException("Error binning response times: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			});
-			tasks.add(() -> {
-				MDC.put("file", file.getFile().getPath());
-				try {
-					log.info("Binning requests: '{}'", file);
-
-					MeasuringRequestsBinningStrategy strategy = new MeasuringRequestsBinningStrategy(startOfFirstBin,
-							PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE, intNumberFormatProvider.get(),
-							floatNumberFormatProvider.get());
-					final Binner binner = new Binner(inputDir, outputDir, strategy);
-					binner.binFile(file);
-
-					latchProvider.get().countDown();
-				} catch (Exception ex) {
-					throw new PerfAlyzerException("Error binning requests: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			});
-			tasks.add(() -> {
-				MDC.put("file", file.getFile().getPath());
-				try {
-					log.info("Binning requests: '{}'", file);
+		return createBinningTasks(inputDir, outputDir, marker, marker == null ? markers : ImmutableList.of());
+	}
 
-					MeasuringRequestsBinningStrategy strategy = new MeasuringRequestsBinningStrategy(startOfFirstBin,
-							PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND, intNumberFormatProvider.get(),
-							floatNumberFormatProvider.get());
-					final Binner binner = new Binner(inputDir, outputDir, strategy);
-					binner.binFile(file);
+	@Override
+	public List<Runnable> getIncrementalBinningTasks(final File inputDir, final File outputDir, final Set<File> changedFiles) {
+		List<Runnable> tasks = newArrayList();
+		final CompletionCounter completionCounter = new CompletionCounter();
+
+		listPerfAlyzerFiles(inputDir).stream()
+				.filter(perfAlyzerFileNameContains("measuring").and(file -> changedFiles.contains(file.getFile())))
+				.forEach(file -> tasks.add(() -> {
+					boolean succeeded = false;
+					MDC.put("file", file.getFile().getPath());
+					try {
+						log.info("Binning new data of '{}'", file);
+						incrementalBinner.binNewData(inputDir, outputDir, file, () -> ImmutableList.of(
+								// memory would grow with the test if all response times were kept for exact quantiles
+								new MeasuringResponseTimesBinningStrategy(0L, intNumberFormatProvider.get(),
+										floatNumberFormatProvider.get(), memoryBudget, true),
+								new MeasuringRequestsBinningStrategy(0L, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE,
+										intNumberFormatProvider.get(), floatNumberFormatProvider.get()),
+								new MeasuringRequestsBinningStrategy(0L, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND,
+										intNumberFormatProvider.get(), floatNumberFormatProvider.get()),
+								new MeasuringAggregatedRequestsBinningStrategy(0L, intNumberFormatProvider.get(),
+										floatNumberFormatProvider.get()),
+								new ErrorCountBinningStragegy(0L, intNumberFormatProvider.get(),
+										floatNumberFormatProvider.get())));
+						succeeded = true;
+					} catch (Exception ex) {
+						throw new PerfAlyzerException("Error binning file incrementally: " + file, ex);
+					} finally {
+						MDC.remove("file");
+						completionCounter.countDown(succeeded);
+					}
+				}));
+
+		addMergeTask(tasks, outputDir, null, completionCounter);
+		return ImmutableList.copyOf(tasks);
+	}
 
-					latchProvider.get().countDown();
-				} catch (Exception ex) {
-					throw new PerfAlyzerException("Error binning requests: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			});
-			tasks.add(() -> {
-				MDC.put("file", file.getFile().getPath());
-				try {
-					log.info("Binning requests: '{}'", file);
-					MeasuringAggregatedRequestsBinningStrategy strategy = new MeasuringAggregatedRequestsBinningStrategy(
-							startOfFirstBin, intNumberFormatProvider.get(), floatNumberFormatProvider.get());
-					final Binner binner = new Binner(inputDir, outputDir, strategy);
-					binner.binFile(file);
+	/**
+	 * Creates the binning tasks for the whole test or a marker. Sliceable strategies are only run
+	 * for the whole test, writing the data of the specified markers as well, so marker files are
+	 * only binned by strategies that need all values of a marker, e. g. for quantiles.
+	 */
+	private List<Runnable> createBinningTasks(final File inputDir, final File outputDir, final Marker marker,
+			final List<Marker> sliceMarkers) {
+		List<Runnable> tasks = newArrayList();
 
-					latchProvider.get().countDown();
-				} catch (Exception ex) {
-					throw new PerfAlyzerException("Error binning requests: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			});
-			tasks.add(() -> {
-				MDC.put("file", file.getFile().getPath());
-				try {
-					log.info("Binning errors: '{}'", file);
-					ErrorCountBinningStragegy strategy = new ErrorCountBinningStragegy(startOfFirstBin,
-							intNumberFormatProvider.get(), floatNumberFormatProvider.get());
-					final Binner binner = new Binner(inputDir, outputDir, strategy);
-					binner.binFile(file);
+		final CompletionCounter completionCounter = new CompletionCounter();
+		final long startOfFirstBin = marker != null ? marker.getLeftMillis() : 0;
 
-					latchProvider.get().countDown();
-				} catch (Exception ex) {
-					throw new PerfAlyzerException("Error binning requests: " + file, ex);
-				} finally {
-					MDC.remove("file");
-				}
-			});
+		// parts of the same normalized file are binned independently and merged afterwards
+		Map<File, List<PerfAlyzerFile>> partsByFile = listPerfAlyzerFiles(inputDir, marker).stream()
+				.filter(perfAlyzerFileNameContains("measuring"))
+				.collect(groupingBy(MeasuringWorkflow::withoutPart, TreeMap::new, toList()));
+
+		partsByFile.forEach((file, parts) -> {
+			PerfAlyzerFile perfAlyzerFile = PerfAlyzerFile.create(file);
+			addBinningTasks(tasks, inputDir, outputDir, perfAlyzerFile, parts, completionCounter, "response times",
+					RESPONSE_TIMES_HEAP_PER_INPUT_BYTE,
+					() -> new MeasuringResponseTimesBinningStrategy(startOfFirstBin, intNumberFormatProvider.get(),
+							floatNumberFormatProvider.get(), memoryBudget));
+			if (marker == null) {
+				addBinningTasks(tasks, inputDir, outputDir, perfAlyzerFile, parts, completionCounter, "requests", 0d,
+						sliceMarkers, () -> new MeasuringRequestsBinningStrategy(startOfFirstBin,
+								PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE, intNumberFormatProvider.get(),
+								floatNumberFormatProvider.get(), sliceMarkers));
+				addBinningTasks(tasks, inputDir, outputDir, perfAlyzerFile, parts, completionCounter, "requests", 0d,
+						sliceMarkers, () -> new MeasuringRequestsBinningStrategy(startOfFirstBin,
+								PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND, intNumberFormatProvider.get(),
+								floatNumberFormatProvider.get(), sliceMarkers));
+			}
+			// not sliced, because its output is merged with the response times of the marker afterwards
+			addBinningTasks(tasks, inputDir, outputDir, perfAlyzerFile, parts, completionCounter, "requests", 0d,
+					() -> new MeasuringAggregatedRequestsBinningStrategy(startOfFirstBin, intNumberFormatProvider.get(),
+							floatNumberFormatProvider.get()));
+			addBinningTasks(tasks, inputDir, outputDir, perfAlyzerFile, parts, completionCounter, "errors", 0d,
+					() -> new ErrorCountBinningStragegy(startOfFirstBin, intNumberFormatProvider.get(),
+							floatNumberFormatProvider.get()));
 		});
 
-		// this makes sure that the next tasks has to wai until the already added ones have finished
-		latchProvider.latch = new CountDownLatch(tasks.size());
+		addMergeTask(tasks, outputDir, marker, completionCounter);
+		return ImmutableList.copyOf(tasks);
+	}
 
-		tasks.add(() -> {
+	/**
+	 * Makes the last of the specified binning tasks to finish merge the request files, so no task
+	 * needs to wait for others. If there are no binning tasks, a merge task is added.
+	 */
+	private void addMergeTask(final List<Runnable> tasks, final File outputDir, final Marker marker,
+			final CompletionCounter completionCounter) {
+		Runnable mergeTask = () -> {
 			try {
-				latchProvider.get().await();
 				RequestFilesMerger merger = new RequestFilesMerger(outputDir);
 				if (!outputDir.exists()) {
 					outputDir.mkdirs();
 				}
 				merger.mergeFiles(listPerfAlyzerFiles(outputDir, marker));
-			} catch (InterruptedException ex) {
-				Thread.currentThread().interrupt();
-				log.error(ex.getMessage(), ex);
 			} catch (Exception ex) {
 				throw new PerfAlyzerException("Error merging files", ex);
 			}
-		});
+		};
+		if (tasks.isEmpty()) {
+			tasks.add(mergeTask);
+		} else {
+			completionCounter.remaining.set(tasks.size());
+			completionCounter.onCompletion = mergeTask;
+		}
+	}
 
-		return ImmutableList.copyOf(tasks);
+	/**
+	 * @param file
+	 *            a normalized file
+	 * @return the file that the specified part file belongs to, or the file itself if it is not a
+	 *         part
+	 */
+	public static File withoutPart(final PerfAlyzerFile file) {
+		PerfAlyzerFile result = file.copy();
+		List<String> fileNameParts = result.getFileNameParts();
+		int lastIndex = fileNameParts.size() - 1;
+		if (fileNameParts.get(lastIndex).startsWith(PART_PREFIX)) {
+			result.removeFileNamePart(lastIndex);
+		}
+		return result.getFile();
+	}
+
+	private <T extends MergeableBinningStrategy<T>> void addBinningTasks(final List<Runnable> tasks, final File inputDir,
+			final File outputDir, final PerfAlyzerFile file, final List<PerfAlyzerFile> parts,
+			final CompletionCounter completionCounter, final String description, final double heapPerInputByte,
+			final Supplier<T> strategyFactory) {
+		addBinningTasks(tasks, inputDir, outputDir, file, parts, completionCounter, description, heapPerInputByte,
+				ImmutableList.of(), strategyFactory);
+	}
+
+	/**
+	 * Adds a task per part of the specified file. Each task accumulates its part with a new
+	 * strategy. The last task to finish writes the merged result and the slices for the specified
+	 * markers. If the strategy's heap grows with the input, the tasks share a
+	 * {@link SharedEstimate} for all parts, because the merged state is held until the last part
+	 * has been added.
+	 */
+	private <T extends MergeableBinningStrategy<T>> void addBinningTasks(final List<Runnable> tasks, final File inputDir,
+			final File outputDir, final PerfAlyzerFile file, final List<PerfAlyzerFile> parts,
+			final CompletionCounter completionCounter, final String description, final double heapPerInputByte,
+			final List<Marker> sliceMarkers, final Supplier<T> strategyFactory) {
+		BinningStateMerger<T> merger = new BinningStateMerger<>(inputDir, outputDir, file, parts.size(), sliceMarkers);
+		SharedEstimate sharedEstimate = heapPerInputByte > 0d
+				? new SharedEstimate((long) (CompressionCodec.estimateUncompressedLength(inputDir, parts) * heapPerInputByte), parts.size())
+				: null;
+		parts.forEach(part -> {
+			Runnable task = () -> {
+				boolean succeeded = false;
+				MDC.put("file", part.getFile().getPath());
+				try {
+					log.info("Binning {}: '{}'", description, part);
+
+					T strategy = strategyFactory.get();
+					try {
+						new Binner(inputDir, outputDir, strategy).accumulateFile(part);
+					} catch (Exception ex) {
+						merger.addFailedPart();
+						throw ex;
+					}
+					merger.addPart(strategy);
+					succeeded = true;
+				} catch (Exception ex) {
+					throw new PerfAlyzerException("Error binning " + description + ": " + part, ex);
+				} finally {
+					MDC.remove("file");
+					completionCounter.countDown(succeeded);
+				}
+			};
+
+			tasks.add(sharedEstimate != null ? MemoryEstimatingTask.of(sharedEstimate, task) : task);
+		});
 	}
 
 	@Override
@@ -228,9 +381,13 @@ public class MeasuringWorkflow extends AbstractWorkflow {
 			try {
 				log.info("Preparing report data...");
 
+				HistoryTrendAnalyzer historyTrendAnalyzer = historyWindowSize > 0
+						? new HistoryTrendAnalyzer(intNumberFormatProvider.get(), floatNumberFormatProvider.get(), resourceBundle,
+								historyWindowSize, regressionThresholdPercent, maxHistoryItems)
+						: null;
 				ReportPreparationStrategy strategy = new MeasuringReportPreparationStrategy(intNumberFormatProvider.get(),
 						floatNumberFormatProvider.get(), displayDataList, resourceBundle, plotCreator, testMetadata,
-						rangeFromMarker(marker), maxHistoryItems);
+						rangeFromMarker(marker), maxHistoryItems, historyTrendAnalyzer, fileStaging);
 				final ReporterPreparator reporter = new ReporterPreparator(inputDir, outputDir, strategy);
 
 				List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir, marker);
@@ -243,12 +400,36 @@ public class MeasuringWorkflow extends AbstractWorkflow {
 		return ImmutableList.of(task);
 	}
 
-	static class LatchProvider {
-
-		CountDownLatch latch;
-
-		public CountDownLatch get() {
-			return latch;
+	/**
+	 * Runs a task when all tasks it counts are finished, unless any of them has failed.
+	 */
+	static class CompletionCounter {
+
+		final AtomicInteger remaining = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		Runnable onCompletion;
+
+		/**
+		 * Counts a finished task. If it is the last task, it runs the completion task. If other
+		 * tasks have failed instead, the last task fails as well, so skipping the completion task
+		 * is reported even if the last task has succeeded; the failure of a failed task is
+		 * reported by the task itself.
+		 *
+		 * @param succeeded
+		 * 		whether the task has succeeded
+		 */
+		void countDown(final boolean succeeded) {
+			if (!succeeded) {
+				failed.incrementAndGet();
+			}
+			if (remaining.decrementAndGet() == 0) {
+				if (failed.get() == 0) {
+					onCompletion.run();
+				} else if (succeeded) {
+					throw new PerfAlyzerException(String.format("Files not merged, because %d binning task(s) failed",
+							failed.get()));
+				}
+			}
 		}
 	}
 }
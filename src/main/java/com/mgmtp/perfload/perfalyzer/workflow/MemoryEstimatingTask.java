@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+/**
+ * A workflow task that declares how much heap it approximately needs while running. The
+ * {@link WorkflowExecutor} only starts such tasks if their estimate fits into its memory budget.
+ * Tasks that are plain {@link Runnable}s are considered cheap and are always started.
+ *
+ * @author rnaegele
+ */
+public interface MemoryEstimatingTask extends Runnable {
+
+	/**
+	 * @return the estimated heap in bytes needed by this task
+	 */
+	long getEstimatedMemoryBytes();
+
+	/**
+	 * @return the estimate this task shares with other tasks, or {@code null} if the estimate is
+	 * needed only while this task is running
+	 */
+	default SharedEstimate getSharedEstimate() {
+		return null;
+	}
+
+	/**
+	 * Creates a task with the specified estimate.
+	 *
+	 * @param estimatedMemoryBytes
+	 * 		the estimated heap in bytes
+	 * @param task
+	 * 		the actual task
+	 * @return the task
+	 */
+	static MemoryEstimatingTask of(final long estimatedMemoryBytes, final Runnable task) {
+		return new MemoryEstimatingTask() {
+			@Override
+			public long getEstimatedMemoryBytes() {
+				return estimatedMemoryBytes;
+			}
+
+			@Override
+			public void run() {
+				task.run();
+			}
+		};
+	}
+
+	/**
+	 * Creates a task that shares the specified estimate with other tasks.
+	 *
+	 * @param sharedEstimate
+	 * 		the shared estimate
+	 * @param task
+	 * 		the actual task
+	 * @return the task
+	 */
+	static MemoryEstimatingTask of(final SharedEstimate sharedEstimate, final Runnable task) {
+		return new MemoryEstimatingTask() {
+			@Override
+			public long getEstimatedMemoryBytes() {
+				return sharedEstimate.getBytes();
+			}
+
+			@Override
+			public SharedEstimate getSharedEstimate() {
+				return sharedEstimate;
+			}
+
+			@Override
+			public void run() {
+				task.run();
+			}
+		};
+	}
+}
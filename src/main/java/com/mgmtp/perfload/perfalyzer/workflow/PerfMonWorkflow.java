@@ -24,7 +24,11 @@ import static java.util.stream.Collectors.toList;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import org.slf4j.MDC;
 
@@ -33,13 +37,17 @@ import com.mgmtp.perfload.perfalyzer.PerfAlyzerException;
 import com.mgmtp.perfload.perfalyzer.annotations.IntFormat;
 import com.mgmtp.perfload.perfalyzer.binning.Binner;
 import com.mgmtp.perfload.perfalyzer.binning.PerfMonBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.binning.SliceableBinningStrategy;
 import com.mgmtp.perfload.perfalyzer.normalization.Normalizer;
 import com.mgmtp.perfload.perfalyzer.normalization.PerfMonNormalizingStrategy;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.CorrelationReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PerfMonReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReportPreparationStrategy;
 import com.mgmtp.perfload.perfalyzer.reportpreparation.ReporterPreparator;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.LogTailer;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
 import com.mgmtp.perfload.perfalyzer.util.NumberFormatProvider;
 import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
@@ -49,24 +57,47 @@ import com.mgmtp.perfload.perfalyzer.util.TimestampNormalizer;
 /**
  * @author rnaegele
  */
-public class PerfMonWorkflow extends AbstractWorkflow {
+public class PerfMonWorkflow extends AbstractWorkflow implements IncrementalWorkflow {
 
+	// normalizing strategies are stateful and must be kept across incremental normalization runs
+	private final Map<File, PerfMonNormalizingStrategy> incrementalNormalizingStrategies = new ConcurrentHashMap<>();
+
+	// binning strategies are kept as well, so only new data is binned
+	private final IncrementalBinner incrementalBinner = new IncrementalBinner();
+
+	private final CompressionCodec compressionCodec;
+	private final List<Marker> markers;
+
+	/**
+	 * @param compressionCodec
+	 * 		the codec normalized files are compressed with
+	 * @param markers
+	 * 		the markers of the test; their data is sliced from the bins of the whole test (see
+	 * 		{@link SliceableBinningStrategy})
+	 */
 	public PerfMonWorkflow(final TimestampNormalizer timestampNormalizer, @IntFormat final NumberFormatProvider intProvider,
 			@IntFormat final NumberFormatProvider intProvider2, final List<DisplayData> displayDataList,
-			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata) {
+			final ResourceBundle resourceBundle, final PlotCreator plotCreator, final TestMetadata testMetadata,
+			final CompressionCodec compressionCodec, final List<Marker> markers) {
 		super(timestampNormalizer, intProvider, intProvider2, displayDataList, resourceBundle, testMetadata, plotCreator);
+		this.compressionCodec = compressionCodec;
+		this.markers = markers;
 	}
 
 	@Override
 	public List<Runnable> getNormalizationTasks(final File inputDir, final File outputDir) {
 		List<File> inputFiles = listFiles(inputDir);
-		return inputFiles.stream().filter(fileNameEquals("perfmon.out")).map(file -> {
+		// compressed logs are decompressed by the normalizer
+		Predicate<File> perfMonLog = fileNameEquals("perfmon.out")
+				.or(fileNameEquals("perfmon.out.gz"))
+				.or(fileNameEquals("perfmon.out.lz4"));
+		return inputFiles.stream().filter(perfMonLog).map(file -> {
 			Runnable task = () -> {
 				MDC.put("file", file.getPath());
 				try {
 					log.info("Normalizing '{}'", file);
 					PerfMonNormalizingStrategy strategy = new PerfMonNormalizingStrategy(timestampNormalizer);
-					final Normalizer normalizer = new Normalizer(inputDir, outputDir, strategy);
+					final Normalizer normalizer = new Normalizer(inputDir, outputDir, strategy, compressionCodec);
 					normalizer.normalize(file);
 				} catch (Exception ex) {
 					throw new PerfAlyzerException("Error normalizing file: " + file, ex);
@@ -78,20 +109,74 @@ public class PerfMonWorkflow extends AbstractWorkflow {
 		}).collect(toList());
 	}
 
+	@Override
+	public List<Runnable> getIncrementalNormalizationTasks(final File inputDir, final File outputDir, final LogTailer tailer,
+			final Set<File> changedFiles) {
+		List<File> inputFiles = listFiles(inputDir);
+		return inputFiles.stream().filter(fileNameEquals("perfmon.out")).map(file -> {
+			Runnable task = () -> {
+				MDC.put("file", file.getPath());
+				try {
+					List<String> lines = tailer.readNewLines(new File(inputDir, file.getPath()));
+					if (lines.isEmpty()) {
+						return;
+					}
+					log.info("Normalizing {} new lines of '{}'", lines.size(), file);
+					PerfMonNormalizingStrategy strategy = incrementalNormalizingStrategies.computeIfAbsent(file,
+							f -> new PerfMonNormalizingStrategy(timestampNormalizer));
+					final Normalizer normalizer = new Normalizer(inputDir, outputDir, strategy, compressionCodec);
+					changedFiles.addAll(normalizer.normalizeLines(file, lines));
+				} catch (Exception ex) {
+					throw new PerfAlyzerException("Error normalizing file incrementally: " + file, ex);
+				} finally {
+					MDC.remove("file");
+				}
+			};
+			return task;
+		}).collect(toList());
+	}
+
 	@Override
 	public List<Runnable> getBinningTasks(final File inputDir, final File outputDir, final Marker marker) {
+		if (marker != null) {
+			// the data of markers is written while binning the whole test
+			return ImmutableList.of();
+		}
 
-		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir, marker);
+		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir);
 		return inputFiles.stream().filter(perfAlyzerFileNameContains("perfmon")).map(file -> {
 			Runnable task = () -> {
 				MDC.put("file", file.getFile().getPath());
 				try {
 					log.info("Binning '{}'", file);
-					long startOfFirstBin = marker != null ? marker.getLeftMillis() : 0;
-					PerfMonBinningStrategy strategy = new PerfMonBinningStrategy(startOfFirstBin, intNumberFormatProvider.get(),
-							floatNumberFormatProvider.get());
+					PerfMonBinningStrategy strategy = new PerfMonBinningStrategy(0, intNumberFormatProvider.get(),
+							floatNumberFormatProvider.get(), markers);
 					final Binner binner = new Binner(inputDir, outputDir, strategy);
 					binner.binFile(file);
+					if (!markers.isEmpty()) {
+						binner.writeMarkerSlices(file, markers);
+					}
+				} catch (IOException ex) {
+					throw new PerfAlyzerException("Error binning file: " + file, ex);
+				} finally {
+					MDC.remove("file");
+				}
+			};
+			return task;
+		}).collect(toList());
+	}
+
+	@Override
+	public List<Runnable> getIncrementalBinningTasks(final File inputDir, final File outputDir, final Set<File> changedFiles) {
+		List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir);
+		Predicate<PerfAlyzerFile> changed = file -> changedFiles.contains(file.getFile());
+		return inputFiles.stream().filter(perfAlyzerFileNameContains("perfmon").and(changed)).map(file -> {
+			Runnable task = () -> {
+				MDC.put("file", file.getFile().getPath());
+				try {
+					log.info("Binning new data of '{}'", file);
+					incrementalBinner.binNewData(inputDir, outputDir, file, () -> ImmutableList.of(
+							new PerfMonBinningStrategy(0, intNumberFormatProvider.get(), floatNumberFormatProvider.get())));
 				} catch (IOException ex) {
 					throw new PerfAlyzerException("Error binning file: " + file, ex);
 				} finally {
@@ -119,6 +204,28 @@ public class PerfMonWorkflow extends AbstractWorkflow {
 			}
 		};
 
-		return ImmutableList.of(task);
+		if (marker != null) {
+			// response times of markers are binned from the start of the marker and thus not aligned with the perfMon bins
+			return ImmutableList.of(task);
+		}
+
+		Runnable correlationTask = () -> {
+			log.info("Correlating perfMon data with response times...");
+
+			try {
+				ReportPreparationStrategy strategy = new CorrelationReportPreparationStrategy(intNumberFormatProvider.get(),
+						floatNumberFormatProvider.get(), displayDataList, resourceBundle, plotCreator, testMetadata);
+				final ReporterPreparator reporter = new ReporterPreparator(inputDir, outputDir, strategy);
+
+				List<PerfAlyzerFile> inputFiles = listPerfAlyzerFiles(inputDir);
+				reporter.processFiles(inputFiles.stream()
+						.filter(perfAlyzerFileNameContains("perfmon").or(perfAlyzerFileNameContains("measuring")))
+						.collect(toList()));
+			} catch (IOException ex) {
+				throw new PerfAlyzerException("Error creating correlation report files", ex);
+			}
+		};
+
+		return ImmutableList.of(task, correlationTask);
 	}
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An estimate of heap shared by a fixed number of tasks, e. g. the tasks accumulating the parts of
+ * a file whose states are merged. The merged state grows with each part and is held until the
+ * last part has been added, so the heap is needed from the start of the first task until all tasks
+ * have finished. The {@link TaskAdmission} reserves the estimate when the first task is admitted,
+ * admits the other tasks without reserving it again, and releases it when the last task finishes.
+ *
+ * @author rnaegele
+ */
+public final class SharedEstimate {
+
+	private final long bytes;
+
+	// guarded by the task admission
+	private int remainingTasks;
+	private boolean reserved;
+
+	/**
+	 * @param bytes
+	 * 		the estimated heap in bytes needed by all tasks together
+	 * @param taskCount
+	 * 		the number of tasks sharing the estimate
+	 */
+	public SharedEstimate(final long bytes, final int taskCount) {
+		checkArgument(taskCount > 0, "Task count must be positive: %s", taskCount);
+		this.bytes = Math.max(bytes, 0L);
+		this.remainingTasks = taskCount;
+	}
+
+	long getBytes() {
+		return bytes;
+	}
+
+	boolean isReserved() {
+		return reserved;
+	}
+
+	void setReserved() {
+		reserved = true;
+	}
+
+	/**
+	 * @return {@code true} if this was the last task
+	 */
+	boolean taskFinished() {
+		return --remainingTasks == 0;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Submits tasks to an executor service as long as the sum of their estimated memory does not
+ * exceed a budget. Tasks that do not fit are held back in submission order and submitted when
+ * running tasks finish, while later tasks that do fit, e. g. cheap ones with an estimate of
+ * zero, are submitted right away. A task that exceeds the budget on its own is submitted when no
+ * other task with an estimate is running. Tasks with a {@link SharedEstimate} keep it reserved
+ * until the last of them has finished.
+ *
+ * <p>
+ * Tasks must not block waiting for other tasks, because held back tasks could otherwise never
+ * be submitted.
+ * </p>
+ *
+ * <p>
+ * An instance may be shared by several {@link WorkflowExecutor}s, e. g. for tests analyzed
+ * concurrently in batch mode, so their tasks are admitted against a common budget.
+ * </p>
+ *
+ * @author rnaegele
+ */
+public class TaskAdmission {
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ExecutorService execService;
+	private final long budgetBytes;
+
+	private final List<PendingTask> pendingTasks = new LinkedList<>();
+	private long admittedBytes;
+
+	/**
+	 * @param execService
+	 * 		the executor service admitted tasks are submitted to
+	 * @param budgetBytes
+	 * 		the memory budget in bytes
+	 */
+	public TaskAdmission(final ExecutorService execService, final long budgetBytes) {
+		this.execService = execService;
+		this.budgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Submits the specified task as soon as it fits into the budget.
+	 *
+	 * @param task
+	 * 		the task
+	 * @param estimatedMemoryBytes
+	 * 		the estimated heap the task needs
+	 * @return a future representing the task's completion
+	 */
+	Future<?> submit(final Runnable task, final long estimatedMemoryBytes) {
+		return submit(task, Math.max(estimatedMemoryBytes, 0L), null);
+	}
+
+	/**
+	 * Submits the specified task as soon as the shared estimate is reserved or fits into the
+	 * budget.
+	 *
+	 * @param task
+	 * 		the task
+	 * @param sharedEstimate
+	 * 		the estimate the task shares with other tasks
+	 * @return a future representing the task's completion
+	 */
+	Future<?> submit(final Runnable task, final SharedEstimate sharedEstimate) {
+		return submit(task, sharedEstimate.getBytes(), sharedEstimate);
+	}
+
+	private Future<?> submit(final Runnable task, final long bytes, final SharedEstimate sharedEstimate) {
+		// memory is released before the future completes
+		FutureTask<?> future = new FutureTask<>(() -> {
+			try {
+				task.run();
+			} finally {
+				release(bytes, sharedEstimate);
+			}
+		}, null);
+		synchronized (this) {
+			pendingTasks.add(new PendingTask(future, bytes, sharedEstimate));
+		}
+		dispatch();
+		return future;
+	}
+
+	ExecutorService getExecutorService() {
+		return execService;
+	}
+
+	synchronized long getAdmittedBytes() {
+		return admittedBytes;
+	}
+
+	private void dispatch() {
+		List<PendingTask> admittedTasks = new ArrayList<>();
+		synchronized (this) {
+			for (Iterator<PendingTask> it = pendingTasks.iterator(); it.hasNext(); ) {
+				PendingTask pendingTask = it.next();
+				SharedEstimate sharedEstimate = pendingTask.sharedEstimate;
+				if (sharedEstimate != null && sharedEstimate.isReserved()) {
+					admittedTasks.add(pendingTask);
+					it.remove();
+				} else if (admittedBytes == 0L || pendingTask.bytes <= budgetBytes - admittedBytes) {
+					admittedBytes += pendingTask.bytes;
+					if (sharedEstimate != null) {
+						sharedEstimate.setReserved();
+					}
+					admittedTasks.add(pendingTask);
+					it.remove();
+				}
+			}
+			if (!pendingTasks.isEmpty()) {
+				log.debug("{} task(s) held back, {} of {} bytes admitted", pendingTasks.size(), admittedBytes, budgetBytes);
+			}
+		}
+
+		admittedTasks.forEach(pendingTask -> execService.execute(pendingTask.future));
+	}
+
+	private void release(final long bytes, final SharedEstimate sharedEstimate) {
+		synchronized (this) {
+			if (sharedEstimate != null && !sharedEstimate.taskFinished()) {
+				// other tasks still need the memory
+				return;
+			}
+			admittedBytes -= bytes;
+		}
+		if (bytes > 0L) {
+			dispatch();
+		}
+	}
+
+	private static class PendingTask {
+		final FutureTask<?> future;
+		final long bytes;
+		final SharedEstimate sharedEstimate;
+
+		PendingTask(final FutureTask<?> future, final long bytes, final SharedEstimate sharedEstimate) {
+			this.future = future;
+			this.bytes = bytes;
+			this.sharedEstimate = sharedEstimate;
+		}
+	}
+}
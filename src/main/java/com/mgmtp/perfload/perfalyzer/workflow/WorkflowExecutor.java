@@ -20,6 +20,7 @@ import static com.google.common.collect.Lists.newArrayList;
 import java.io.File;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -29,9 +30,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mgmtp.perfload.perfalyzer.PerfAlyzerException;
+import com.mgmtp.perfload.perfalyzer.util.FileCatalog;
+import com.mgmtp.perfload.perfalyzer.util.LogTailer;
 import com.mgmtp.perfload.perfalyzer.util.Marker;
+import com.mgmtp.perfload.perfalyzer.util.PipelineMetrics;
 
 /**
+ * Executes the tasks of all workflows. Tasks declaring their memory needs (see
+ * {@link MemoryEstimatingTask}) are admitted against a memory budget, so that memory-intensive
+ * tasks do not run side by side if their estimates exceed the budget. Other tasks are started in
+ * the meantime.
+ * <p>
+ * The input directory of a phase is listed from a {@link FileCatalog}, which is built once and
+ * shared by all workflows, markers, and tasks. The catalog of the output directory is invalidated
+ * before the phase writes to it.
+ *
  * @author rnaegele
  */
 public class WorkflowExecutor {
@@ -40,19 +53,49 @@ public class WorkflowExecutor {
 	private final Set<Workflow> workflows;
 	private final ExecutorService execService;
 	private final List<Marker> markers;
+	private final PipelineMetrics pipelineMetrics;
+	private final TaskAdmission taskAdmission;
 
 	public WorkflowExecutor(final Set<Workflow> workflows, final ExecutorService execService, final List<Marker> markers) {
+		this(workflows, execService, markers, new PipelineMetrics());
+	}
+
+	public WorkflowExecutor(final Set<Workflow> workflows, final ExecutorService execService, final List<Marker> markers,
+			final PipelineMetrics pipelineMetrics) {
+		this(workflows, execService, markers, pipelineMetrics, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param memoryBudgetBytes
+	 * 		the heap in bytes that may be used by concurrently running tasks according to their
+	 * 		estimates
+	 */
+	public WorkflowExecutor(final Set<Workflow> workflows, final ExecutorService execService, final List<Marker> markers,
+			final PipelineMetrics pipelineMetrics, final long memoryBudgetBytes) {
+		this(workflows, new TaskAdmission(execService, memoryBudgetBytes), markers, pipelineMetrics);
+	}
+
+	/**
+	 * @param taskAdmission
+	 * 		the task admission, which may be shared with other executors in order to use a common
+	 * 		executor service and memory budget
+	 */
+	public WorkflowExecutor(final Set<Workflow> workflows, final TaskAdmission taskAdmission, final List<Marker> markers,
+			final PipelineMetrics pipelineMetrics) {
 		this.workflows = workflows;
-		this.execService = execService;
+		this.execService = taskAdmission.getExecutorService();
 		this.markers = markers;
+		this.pipelineMetrics = pipelineMetrics;
+		this.taskAdmission = taskAdmission;
 	}
 
 	public void executeNormalizationTasks(final File inputDir, final File outputDir) {
 		List<Future<?>> futures = newArrayList();
+		openCatalogs(inputDir, outputDir);
 
 		for (Workflow workflow : workflows) {
 			log.info("Executing normalization tasks: {}", workflow);
-			futures.addAll(executeTasks(workflow.getNormalizationTasks(inputDir, outputDir)));
+			futures.addAll(executeTasks("normalization", workflow, null, workflow.getNormalizationTasks(inputDir, outputDir)));
 		}
 
 		waitForTasks(futures);
@@ -60,11 +103,13 @@ public class WorkflowExecutor {
 
 	public void executeBinningTasks(final File inputDir, final File outputDir) {
 		List<Future<?>> futures = newArrayList();
+		openCatalogs(inputDir, outputDir);
 
 		for (Workflow workflow : workflows) {
 			log.info("Executing binning tasks: {}", workflow);
-			futures.addAll(executeTasks(workflow.getBinningTasks(inputDir, outputDir, null)));
-			markers.forEach(marker -> futures.addAll(executeTasks(workflow.getBinningTasks(inputDir, outputDir, marker))));
+			futures.addAll(executeTasks("binning", workflow, null, workflow.getBinningTasks(inputDir, outputDir, null)));
+			markers.forEach(marker -> futures.addAll(executeTasks("binning", workflow, marker,
+					workflow.getBinningTasks(inputDir, outputDir, marker))));
 		}
 
 		waitForTasks(futures);
@@ -72,14 +117,93 @@ public class WorkflowExecutor {
 
 	public void executeReportPreparationTasks(final File inputDir, final File outputDir) {
 		List<Future<?>> futures = newArrayList();
+		openCatalogs(inputDir, outputDir);
 
 		for (Workflow workflow : workflows) {
 			log.info("Executing report preparation tasks: {}", workflow);
-			futures.addAll(executeTasks(workflow.getReportPreparationTasks(inputDir, outputDir, null)));
-			markers.forEach(marker -> futures.addAll(executeTasks(workflow.getReportPreparationTasks(inputDir, outputDir, marker))));
+			futures.addAll(executeTasks("reportPreparation", workflow, null,
+					workflow.getReportPreparationTasks(inputDir, outputDir, null)));
+			markers.forEach(marker -> futures.addAll(executeTasks("reportPreparation", workflow, marker,
+					workflow.getReportPreparationTasks(inputDir, outputDir, marker))));
+		}
+
+		waitForTasks(futures);
+	}
+
+	/**
+	 * Executes incremental normalization tasks of all {@link IncrementalWorkflow}s. Other
+	 * workflows are skipped.
+	 *
+	 * @return the normalized files that have changed, relative to the output directory
+	 */
+	public Set<File> executeIncrementalNormalizationTasks(final File inputDir, final File outputDir, final LogTailer tailer) {
+		List<Future<?>> futures = newArrayList();
+		Set<File> changedFiles = ConcurrentHashMap.newKeySet();
+		// the input directory is still being written to, so it is not cataloged
+		FileCatalog.invalidate(outputDir);
+
+		for (Workflow workflow : workflows) {
+			if (workflow instanceof IncrementalWorkflow) {
+				log.debug("Executing incremental normalization tasks: {}", workflow);
+				futures.addAll(executeTasks(((IncrementalWorkflow) workflow).getIncrementalNormalizationTasks(inputDir,
+						outputDir, tailer, changedFiles)));
+			}
 		}
 
 		waitForTasks(futures);
+		return changedFiles;
+	}
+
+	/**
+	 * Executes incremental binning tasks of all {@link IncrementalWorkflow}s for the specified
+	 * normalized files. Other workflows are skipped.
+	 */
+	public void executeIncrementalBinningTasks(final File inputDir, final File outputDir, final Set<File> changedFiles) {
+		List<Future<?>> futures = newArrayList();
+		FileCatalog.invalidate(inputDir);
+		FileCatalog.invalidate(outputDir);
+
+		for (Workflow workflow : workflows) {
+			if (workflow instanceof IncrementalWorkflow) {
+				log.debug("Executing incremental binning tasks: {}", workflow);
+				futures.addAll(executeTasks(((IncrementalWorkflow) workflow).getIncrementalBinningTasks(inputDir, outputDir,
+						changedFiles)));
+			}
+		}
+
+		waitForTasks(futures);
+	}
+
+	private void openCatalogs(final File inputDir, final File outputDir) {
+		FileCatalog.invalidate(outputDir);
+		FileCatalog.open(inputDir);
+	}
+
+	/**
+	 * Executes tasks, recording their metrics. The time a task is held back by the memory budget
+	 * counts as queue wait. Incremental tasks are not instrumented.
+	 */
+	private List<Future<?>> executeTasks(final String phase, final Workflow workflow, final Marker marker,
+			final List<Runnable> tasks) {
+		String workflowName = workflow.getClass().getSimpleName();
+		List<Future<?>> futures = newArrayList();
+		for (int i = 0; i < tasks.size(); ++i) {
+			String taskName = marker == null ? "#" + i : marker.getName() + " #" + i;
+			Runnable task = tasks.get(i);
+			Runnable instrumentedTask = pipelineMetrics.instrument(phase, workflowName, taskName, task);
+			SharedEstimate sharedEstimate = task instanceof MemoryEstimatingTask
+					? ((MemoryEstimatingTask) task).getSharedEstimate()
+					: null;
+			if (sharedEstimate != null) {
+				futures.add(taskAdmission.submit(instrumentedTask, sharedEstimate));
+			} else {
+				long estimatedMemoryBytes = task instanceof MemoryEstimatingTask
+						? ((MemoryEstimatingTask) task).getEstimatedMemoryBytes()
+						: 0L;
+				futures.add(taskAdmission.submit(instrumentedTask, estimatedMemoryBytes));
+			}
+		}
+		return futures;
 	}
 
 	private List<Future<?>> executeTasks(final List<Runnable> tasks) {
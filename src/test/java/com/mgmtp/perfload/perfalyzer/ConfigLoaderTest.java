@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ * @author rnaegele
+ */
+public class ConfigLoaderTest {
+
+	private static final String CONFIG = "threadCount = 4\n"
+			+ "email {\n"
+			+ "	smtp {\n"
+			+ "		host = 'localhost'\n"
+			+ "		port = 25\n"
+			+ "	}\n"
+			+ "}\n"
+			+ "reportContents {\n"
+			+ "	exclusions = [~/global[\\\\\\\\/]\\[perfmon\\].*/]\n"
+			+ "}\n";
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		File configFile = new File(tempDir, "PerfAlyzerConfig.groovy");
+		writeStringToFile(configFile, CONFIG, Charsets.UTF_8);
+
+		Map<String, Object> config = ConfigLoader.load(configFile);
+		assertThat(ConfigLoader.snapshotFile(configFile).isFile(), is(true));
+
+		Map<String, Object> snapshotConfig = ConfigLoader.load(configFile);
+		assertThat(snapshotConfig.toString(), is(equalTo(config.toString())));
+		assertThat(snapshotConfig, hasEntry("threadCount", (Object) 4));
+
+		@SuppressWarnings("unchecked")
+		Map<String, List<Pattern>> reportContents = (Map<String, List<Pattern>>) snapshotConfig.get("reportContents");
+		Pattern pattern = reportContents.get("exclusions").get(0);
+		assertThat(pattern.matcher("global/[perfmon][java]").matches(), is(true));
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> email = (Map<String, Object>) snapshotConfig.get("email");
+		assertThat(email.get("smtp"), is(instanceOf(Map.class)));
+	}
+
+	@Test
+	public void testChangedConfigIsEvaluated() throws IOException {
+		File configFile = new File(tempDir, "PerfAlyzerConfig.groovy");
+		writeStringToFile(configFile, CONFIG, Charsets.UTF_8);
+		ConfigLoader.load(configFile);
+
+		writeStringToFile(configFile, CONFIG + "threadCount = 2\n", Charsets.UTF_8);
+		assertThat(ConfigLoader.load(configFile), hasEntry("threadCount", (Object) 2));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testToProperties() throws IOException {
+		File configFile = new File(tempDir, "PerfAlyzerConfig.groovy");
+		writeStringToFile(configFile, CONFIG, Charsets.UTF_8);
+
+		Map<String, Object> email = (Map<String, Object>) ConfigLoader.load(configFile).get("email");
+		Properties props = ConfigLoader.toProperties(email, "mail");
+
+		assertThat(props.size(), is(equalTo(2)));
+		assertThat(props.getProperty("mail.smtp.host"), is(equalTo("localhost")));
+		assertThat(props.getProperty("mail.smtp.port"), is(equalTo("25")));
+	}
+}
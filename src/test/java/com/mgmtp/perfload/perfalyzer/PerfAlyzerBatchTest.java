@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.readLines;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerBatch.TestResult;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerFactory.SharedResources;
+
+/**
+ * @author rnaegele
+ */
+public class PerfAlyzerBatchTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testResolveInputDirs() throws IOException {
+		File nightly2 = createDir("20150102-0100_nightly");
+		File nightly1 = createDir("20150101-0100_nightly");
+		File other = createDir("20150101-1200_other");
+		Files.touch(new File(tempDir, "20150103-0100_nightly"));
+
+		List<File> inputDirs = PerfAlyzerBatch.resolveInputDirs(ImmutableList.of(
+				new File(tempDir, "*_nightly").getPath(), other.getPath(), nightly1.getPath()));
+
+		// files are not considered, explicitly specified directories are not duplicated
+		assertThat(inputDirs, contains(nightly1, nightly2, other));
+	}
+
+	@Test
+	public void testGroupByTestName() {
+		File nightly1 = new File(tempDir, "20150101-0100_nightly");
+		File nightly2 = new File(tempDir, "20150102-0100_nightly");
+		File other = new File(tempDir, "20150101-1200_other");
+		File invalid = new File(tempDir, "invalid");
+
+		List<List<File>> groups = new ArrayList<>(PerfAlyzerBatch.groupByTestName(ImmutableList.of(nightly2, other, invalid,
+				nightly1)));
+
+		assertThat(groups, is(equalTo(ImmutableList.of(
+				ImmutableList.of(invalid),
+				ImmutableList.of(nightly1, nightly2),
+				ImmutableList.of(other)))));
+	}
+
+	@Test
+	public void testRunIsolatesFailures() throws IOException {
+		File nightly1 = createDir("20150101-0100_nightly");
+		File nightly2 = createDir("20150102-0100_nightly");
+		File other = createDir("20150101-1200_other");
+
+		PerfAlyzerBatch batch = new PerfAlyzerBatch(createArgs(3), inputDir -> {
+			if (inputDir.equals(nightly1)) {
+				throw new IllegalStateException("Broken archive");
+			}
+		});
+		List<TestResult> results = batch.run(ImmutableList.of(other, nightly2, nightly1));
+
+		// in the order of the input directories, the second nightly test is analyzed nonetheless
+		assertThat(results.stream().map(TestResult::getInputDir).collect(toList()), contains(other, nightly2, nightly1));
+		assertThat(results.stream().map(TestResult::isSuccessful).collect(toList()), contains(true, true, false));
+		assertThat(results.get(2).getError(), is(equalTo("Broken archive")));
+		assertThat(PerfAlyzerBatch.exitStatus(results), is(equalTo(1)));
+
+		List<String> lines = readLines(new File(tempDir, PerfAlyzerBatch.RESULTS_FILE_NAME), Charsets.UTF_8);
+		assertThat(lines.size(), is(equalTo(4)));
+		assertThat(lines.get(1), startsWith("\"" + other.getPath() + "\";\"OK\""));
+		assertThat(lines.get(3), allOf(startsWith("\"" + nightly1.getPath() + "\";\"FAILED\""), endsWith("\"Broken archive\"")));
+	}
+
+	@Test
+	public void testRunAnalyzesSameTestSequentially() throws IOException {
+		File nightly1 = createDir("20150101-0100_nightly");
+		File nightly2 = createDir("20150102-0100_nightly");
+		File nightly3 = createDir("20150103-0100_nightly");
+		File other = createDir("20150101-1200_other");
+
+		List<File> analyzedNightlies = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger runningNightlies = new AtomicInteger();
+		AtomicInteger maxRunningNightlies = new AtomicInteger();
+		PerfAlyzerBatch batch = new PerfAlyzerBatch(createArgs(4), inputDir -> {
+			if (PerfAlyzerBatch.testName(inputDir).equals("nightly")) {
+				maxRunningNightlies.accumulateAndGet(runningNightlies.incrementAndGet(), Math::max);
+				Thread.sleep(20L);
+				analyzedNightlies.add(inputDir);
+				runningNightlies.decrementAndGet();
+			}
+		});
+		List<TestResult> results = batch.run(ImmutableList.of(nightly3, other, nightly1, nightly2));
+
+		assertThat(PerfAlyzerBatch.exitStatus(results), is(equalTo(0)));
+		assertThat(maxRunningNightlies.get(), is(equalTo(1)));
+		assertThat(analyzedNightlies, contains(nightly1, nightly2, nightly3));
+	}
+
+	@Test
+	public void testRunWithInvalidInputDir() throws IOException {
+		// fails before the config file is needed
+		File invalid = createDir("invalid");
+		List<TestResult> results = new PerfAlyzerBatch(createArgs(1), (SharedResources) null).run(ImmutableList.of(invalid));
+
+		assertThat(results.get(0).isSuccessful(), is(false));
+		assertThat(results.get(0).getError(), containsString("did not match pattern"));
+	}
+
+	@Test
+	public void testExitStatus() {
+		File dir = new File(tempDir, "20150101-0100_nightly");
+		assertThat(PerfAlyzerBatch.exitStatus(ImmutableList.of()), is(equalTo(0)));
+		assertThat(PerfAlyzerBatch.exitStatus(ImmutableList.of(new TestResult(dir, null, 1L))), is(equalTo(0)));
+		assertThat(PerfAlyzerBatch.exitStatus(ImmutableList.of(new TestResult(dir, null, 1L), new TestResult(dir, "error", 1L))),
+				is(equalTo(1)));
+	}
+
+	private PerfAlyzerBatchArgs createArgs(final int parallelTests) {
+		PerfAlyzerBatchArgs args = new PerfAlyzerBatchArgs();
+		args.outputDir = tempDir;
+		args.unzip = false;
+		args.parallelTests = parallelTests;
+		return args;
+	}
+
+	private File createDir(final String name) {
+		File dir = new File(tempDir, name);
+		dir.mkdir();
+		return dir;
+	}
+}
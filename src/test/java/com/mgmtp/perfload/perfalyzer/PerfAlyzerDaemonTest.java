@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.PropertiesUtils.loadProperties;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.mgmtp.perfload.perfalyzer.PerfAlyzerBatch.TestAnalyzer;
+
+/**
+ * @author rnaegele
+ */
+public class PerfAlyzerDaemonTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testListJobFiles() throws IOException {
+		File second = createJobFile("b.job", 2000L);
+		File first = createJobFile("c.job", 1000L);
+		File third = createJobFile("a.job", 2000L);
+		createJobFile("d.job.tmp", 1000L);
+		new File(tempDir, "e.job").mkdir();
+
+		assertThat(PerfAlyzerDaemon.listJobFiles(tempDir), contains(first, third, second));
+	}
+
+	@Test
+	public void testReadJobFile() throws IOException {
+		File jobFile = new File(tempDir, "test.job");
+		writeStringToFile(jobFile, "\n# nightly test\n  /results/20150101-0100_nightly  \nignored\n", Charsets.UTF_8);
+
+		assertThat(PerfAlyzerDaemon.readJobFile(jobFile), is(equalTo(new File("/results/20150101-0100_nightly"))));
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testReadEmptyJobFile() throws IOException {
+		File jobFile = new File(tempDir, "test.job");
+		writeStringToFile(jobFile, "# nothing to do\n", Charsets.UTF_8);
+
+		PerfAlyzerDaemon.readJobFile(jobFile);
+	}
+
+	@Test(timeOut = 30000L)
+	public void testJobsForSameTestDoNotBlockThreads() throws Exception {
+		File nightly1 = new File(tempDir, "20150101-0100_nightly");
+		File nightly2 = new File(tempDir, "20150102-0100_nightly");
+		File other = new File(tempDir, "20150101-1200_other");
+		createJobFile("nightly1.job", nightly1, 1000L);
+		createJobFile("nightly2.job", nightly2, 2000L);
+		createJobFile("other.job", other, 3000L);
+
+		CountDownLatch otherAnalyzed = new CountDownLatch(1);
+		CountDownLatch nightly1Released = new CountDownLatch(1);
+		AtomicInteger runningNightlies = new AtomicInteger();
+		AtomicInteger maxRunningNightlies = new AtomicInteger();
+		List<File> analyzed = new CopyOnWriteArrayList<>();
+
+		PerfAlyzerDaemon daemon = new PerfAlyzerDaemon(createArgs(2), inputDir -> {
+			analyzed.add(inputDir);
+			if (inputDir.equals(other)) {
+				otherAnalyzed.countDown();
+				return;
+			}
+			maxRunningNightlies.accumulateAndGet(runningNightlies.incrementAndGet(), Math::max);
+			try {
+				if (inputDir.equals(nightly1)) {
+					// with both threads busy, the other test could only be analyzed afterwards
+					nightly1Released.await();
+				}
+			} finally {
+				runningNightlies.decrementAndGet();
+			}
+		});
+		Thread daemonThread = start(daemon);
+
+		// the job waiting for the first nightly test must not occupy the second thread
+		assertThat(otherAnalyzed.await(10L, TimeUnit.SECONDS), is(true));
+		assertThat(daemon.getRunningTests(), hasItem("nightly"));
+		nightly1Released.countDown();
+
+		awaitJobs(new File(tempDir, "done"), 3);
+		daemon.stop();
+		daemonThread.join();
+
+		assertThat(analyzed, contains(nightly1, other, nightly2));
+		assertThat(maxRunningNightlies.get(), is(equalTo(1)));
+		// no tests are retained once their jobs are finished
+		assertThat(daemon.getRunningTests().isEmpty(), is(true));
+	}
+
+	@Test(timeOut = 30000L)
+	public void testJobResults() throws Exception {
+		File nightly = new File(tempDir, "20150101-0100_nightly");
+		File broken = new File(tempDir, "20150101-1200_broken");
+		createJobFile("nightly.job", nightly, 1000L);
+		createJobFile("broken.job", broken, 2000L);
+		File invalidJobFile = new File(tempDir, "invalid.job");
+		writeStringToFile(invalidJobFile, "# nothing to do\n", Charsets.UTF_8);
+
+		TestAnalyzer testAnalyzer = inputDir -> {
+			if (inputDir.equals(broken)) {
+				throw new IllegalStateException("Broken archive");
+			}
+		};
+		Thread daemonThread = start(new PerfAlyzerDaemon(createArgs(1), testAnalyzer));
+
+		awaitJobs(new File(tempDir, "done"), 1);
+		awaitJobs(new File(tempDir, "failed"), 2);
+		writeStringToFile(new File(tempDir, PerfAlyzerDaemon.STOP_FILE_NAME), "", Charsets.UTF_8);
+		daemonThread.join();
+
+		Properties status = readStatus("nightly");
+		assertThat(status.getProperty("state"), is(equalTo(PerfAlyzerDaemon.JobState.SUCCEEDED.name())));
+		assertThat(status.getProperty("inputDir"), is(equalTo(nightly.getPath())));
+		assertThat(status.getProperty("error"), is(nullValue()));
+
+		status = readStatus("broken");
+		assertThat(status.getProperty("state"), is(equalTo(PerfAlyzerDaemon.JobState.FAILED.name())));
+		assertThat(status.getProperty("error"), is(equalTo("Broken archive")));
+
+		status = readStatus("invalid");
+		assertThat(status.getProperty("state"), is(equalTo(PerfAlyzerDaemon.JobState.FAILED.name())));
+		assertThat(PerfAlyzerDaemon.listJobFiles(tempDir).isEmpty(), is(true));
+		assertThat(new File(tempDir, PerfAlyzerDaemon.STOP_FILE_NAME).exists(), is(false));
+	}
+
+	private PerfAlyzerDaemonArgs createArgs(final int parallelJobs) {
+		PerfAlyzerDaemonArgs args = new PerfAlyzerDaemonArgs();
+		args.spoolDir = tempDir;
+		args.outputDir = new File(tempDir, "output");
+		args.unzip = false;
+		args.parallelJobs = parallelJobs;
+		args.pollIntervalSeconds = 1;
+		return args;
+	}
+
+	private static Thread start(final PerfAlyzerDaemon daemon) {
+		Thread thread = new Thread(() -> {
+			try {
+				daemon.run();
+			} catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private static void awaitJobs(final File dir, final int count) throws InterruptedException {
+		while (dir.list() == null || dir.list().length < count) {
+			Thread.sleep(50L);
+		}
+	}
+
+	private Properties readStatus(final String jobName) throws IOException {
+		return loadProperties(new File(tempDir, "status/" + jobName + '.' + PerfAlyzerDaemon.STATUS_FILE_EXTENSION));
+	}
+
+	private File createJobFile(final String name, final File inputDir, final long lastModified) throws IOException {
+		File file = new File(tempDir, name);
+		writeStringToFile(file, inputDir.getPath(), Charsets.UTF_8);
+		file.setLastModified(lastModified);
+		return file;
+	}
+
+	private File createJobFile(final String name, final long lastModified) throws IOException {
+		File file = new File(tempDir, name);
+		writeStringToFile(file, "/results/" + name, Charsets.UTF_8);
+		file.setLastModified(lastModified);
+		return file;
+	}
+}
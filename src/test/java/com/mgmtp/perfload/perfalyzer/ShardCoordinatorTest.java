@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer;
+
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.text.StrBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+import com.mgmtp.perfload.perfalyzer.workflow.WorkflowExecutor;
+
+/**
+ * @author rnaegele
+ */
+public class ShardCoordinatorTest {
+
+	private static final File BASE_DIR = new File("target/shardCoordinator");
+
+	private File tempDir;
+	private ExecutorService executorService;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+		executorService = Executors.newSingleThreadExecutor();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		executorService.shutdownNow();
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testWorkersBinShards() throws IOException {
+		File normalizedDir = new File(tempDir, "normalized");
+		File binnedDir = new File(tempDir, "binned");
+		writeMeasuringFile(normalizedDir, "login", "100");
+		writeMeasuringFile(normalizedDir, "search", "100");
+
+		createCoordinator().executeBinningTasks(normalizedDir, binnedDir);
+
+		Set<String> binnedFiles = relativeFiles(binnedDir);
+		assertThat(binnedFiles, hasItem("global/[measuring][login][executions].csv"));
+		assertThat(binnedFiles, hasItem("global/[measuring][search][executions].csv"));
+		assertThat(new File(tempDir, "binned_shards").exists(), is(false));
+	}
+
+	@Test(expectedExceptions = PerfAlyzerException.class)
+	public void testFailingWorker() throws IOException {
+		File normalizedDir = new File(tempDir, "normalized");
+		writeMeasuringFile(normalizedDir, "login", "100");
+		writeMeasuringFile(normalizedDir, "search", "not a timestamp");
+
+		createCoordinator().executeBinningTasks(normalizedDir, new File(tempDir, "binned"));
+	}
+
+	@Test
+	public void testPartitionKeepsPartsTogether() {
+		PerfAlyzerFile part0 = PerfAlyzerFile.create(new File("global/[measuring][login][part_0].csv"));
+		PerfAlyzerFile part1 = PerfAlyzerFile.create(new File("global/[measuring][login][part_1].csv"));
+		PerfAlyzerFile search = PerfAlyzerFile.create(new File("global/[measuring][search][part_0].csv"));
+		PerfAlyzerFile cpu = PerfAlyzerFile.create(new File("host1/[perfmon][cpu].csv"));
+
+		List<List<PerfAlyzerFile>> shards = ShardCoordinator.partition(BASE_DIR, ImmutableList.of(part0, search, part1, cpu), 2);
+
+		assertThat(shards, hasSize(2));
+		List<PerfAlyzerFile> loginShard = shards.get(0).contains(part0) ? shards.get(0) : shards.get(1);
+		assertThat(loginShard.contains(part1), is(true));
+	}
+
+	@Test
+	public void testPartitionOmitsEmptyShards() {
+		PerfAlyzerFile cpu = PerfAlyzerFile.create(new File("host1/[perfmon][cpu].csv"));
+
+		List<List<PerfAlyzerFile>> shards = ShardCoordinator.partition(BASE_DIR, ImmutableList.of(cpu), 4);
+
+		assertThat(shards, hasSize(1));
+		assertThat(shards.get(0), containsInAnyOrder(cpu));
+	}
+
+	@Test
+	public void testIsShardable() {
+		assertThat(ShardCoordinator.isShardable(PerfAlyzerFile.create(new File("global/[measuring][login].csv"))), is(true));
+		assertThat(ShardCoordinator.isShardable(PerfAlyzerFile.create(new File("host1/[perfmon][cpu].csv"))), is(true));
+		assertThat(ShardCoordinator.isShardable(PerfAlyzerFile.create(new File("host1/[gclog].csv"))), is(false));
+	}
+
+	private ShardCoordinator createCoordinator() {
+		WorkflowExecutor workflowExecutor = new WorkflowExecutor(ImmutableSet.of(), executorService, ImmutableList.of());
+		return new ShardCoordinator(workflowExecutor, 2, "64m",
+				ShardWorker.createConfig(Locale.US, CompressionCodec.NONE, 2, null, null, ImmutableList.of()));
+	}
+
+	private static void writeMeasuringFile(final File normalizedDir, final String operation, final String timestamp)
+			throws IOException {
+		File file = new File(normalizedDir, "global/[measuring][" + operation + "][part_0].csv");
+		Files.createParentDirs(file);
+		StrBuilder sb = new StrBuilder();
+		appendEscapedAndQuoted(sb, DELIMITER, timestamp);
+		appendEscapedAndQuoted(sb, DELIMITER, "10");
+		appendEscapedAndQuoted(sb, DELIMITER, "50");
+		appendEscapedAndQuoted(sb, DELIMITER, operation);
+		appendEscapedAndQuoted(sb, DELIMITER, "GET");
+		appendEscapedAndQuoted(sb, DELIMITER, "/" + operation);
+		appendEscapedAndQuoted(sb, DELIMITER, operation);
+		appendEscapedAndQuoted(sb, DELIMITER, "SUCCESS");
+		appendEscapedAndQuoted(sb, DELIMITER, "");
+		appendEscapedAndQuoted(sb, DELIMITER, "1");
+		appendEscapedAndQuoted(sb, DELIMITER, "1");
+		Files.write(sb.append('\n').toString(), file, Charsets.UTF_8);
+	}
+
+	private static Set<String> relativeFiles(final File dir) {
+		Set<String> result = new TreeSet<>();
+		for (File file : FileUtils.listFiles(dir, null, true)) {
+			result.add(dir.toURI().relativize(file.toURI()).getPath());
+		}
+		return result;
+	}
+}
@@ -115,6 +115,94 @@ public class BinManagerTest {
 		);
 	}
 
+	@Test
+	public void testMerge() {
+		BinManager binManager = new BinManager(0, 1000);
+		BinManager otherBinManager = new BinManager(0, 1000);
+		for (int i = 0; i < TEST_DATA.length; ++i) {
+			// unordered and distributed over two bin managers
+			(i % 2 == 0 ? binManager : otherBinManager).addValue(TEST_DATA[TEST_DATA.length - 1 - i]);
+		}
+		binManager.merge(otherBinManager);
+
+		assertThat(binManager.countStream().toArray(), equalTo(expectedCounts));
+	}
+
+	@Test
+	public void testSlice() {
+		BinManager binManager = new BinManager(0, 1000);
+		binManager.addSliceRange(1500, 4200);
+		Arrays.stream(TEST_DATA).forEach(binManager::addValue);
+
+		// bins cut by the borders of the range only count the values within the range
+		BinManager slice = binManager.slice(1500, 4200);
+
+		DecimalFormatSymbols dfs = new DecimalFormatSymbols(Locale.US);
+		NumberFormat nf = new DecimalFormat("0", dfs);
+
+		TestChannel channel = new TestChannel();
+		slice.toCsv(channel, "bin", "count", nf);
+
+		assertThat(channel.lines,
+				contains(
+						"\"bin\";\"count\"",
+						"\"1\";\"1\"",
+						"\"2\";\"3\"",
+						"\"3\";\"0\"",
+						"\"4\";\"1\""
+				)
+		);
+		assertThat(binManager.countStream().toArray(), equalTo(expectedCounts));
+		assertThat(slice.isEmpty(), equalTo(false));
+		// ranges aligned with the bins need not be registered
+		assertThat(binManager.slice(5000, 10000).countStream().count(), equalTo(0L));
+		assertThat(binManager.slice(13000, 20000).countStream().count(), equalTo(0L));
+
+		// the slice is a copy
+		slice.addValue(1500);
+		assertThat(binManager.slice(1500, 4200).countStream().toArray(), equalTo(new long[] { 1, 3, 0, 1 }));
+	}
+
+	@Test
+	public void testSliceValues() {
+		BinManager binManager = new BinManager(0, 1000);
+		binManager.addSliceRange(1500, 2500);
+		binManager.addValue(1200, 1d);
+		binManager.addValue(1600, 3d);
+		binManager.addValue(2100, 5d);
+		binManager.addValue(2600, 7d);
+
+		BinManager slice = binManager.slice(1500, 2500);
+		assertThat(slice.countStream().toArray(), equalTo(new long[] { 1, 1 }));
+		assertThat(slice.flatValuesStream().toArray(), equalTo(new double[] { 3d, 5d }));
+	}
+
+	@Test
+	public void testMergeSliceRanges() {
+		BinManager binManager = new BinManager(0, 1000);
+		BinManager otherBinManager = new BinManager(0, 1000);
+		binManager.addSliceRange(1500, 4200);
+		otherBinManager.addSliceRange(1500, 4200);
+		for (int i = 0; i < TEST_DATA.length; ++i) {
+			(i % 2 == 0 ? binManager : otherBinManager).addValue(TEST_DATA[i]);
+		}
+		binManager.merge(otherBinManager);
+
+		assertThat(binManager.slice(1500, 4200).countStream().toArray(), equalTo(new long[] { 1, 3, 0, 1 }));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testSliceUnregisteredRange() {
+		BinManager binManager = new BinManager(0, 1000);
+		Arrays.stream(TEST_DATA).forEach(binManager::addValue);
+		binManager.slice(1500, 4200);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testMergeWithDifferentBinSize() {
+		new BinManager(0, 1000).merge(new BinManager(0, 60000));
+	}
+
 	static class TestChannel implements WritableByteChannel {
 		List<String> lines = new LinkedList<>();
 
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.text.StrBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * @author rnaegele
+ */
+public class BinningStateMergerTest {
+
+	private static final String FILE = "global/[measuring][login].csv";
+	private static final int PART_COUNT = 3;
+
+	private static final NumberFormat INT_NUMBER_FORMAT = NumberFormat.getIntegerInstance(Locale.US);
+	private static final NumberFormat FLOAT_NUMBER_FORMAT = NumberFormat.getNumberInstance(Locale.US);
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testResponseTimes() throws IOException {
+		assertMergedPartsEqualWholeFile(() -> new MeasuringResponseTimesBinningStrategy(0L, INT_NUMBER_FORMAT,
+				FLOAT_NUMBER_FORMAT, MemoryBudget.unlimited()));
+	}
+
+	@Test
+	public void testRequestsPerSecond() throws IOException {
+		assertMergedPartsEqualWholeFile(() -> new MeasuringRequestsBinningStrategy(0L,
+				PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND, INT_NUMBER_FORMAT, FLOAT_NUMBER_FORMAT));
+	}
+
+	@Test
+	public void testRequestsPerMinute() throws IOException {
+		assertMergedPartsEqualWholeFile(() -> new MeasuringRequestsBinningStrategy(0L,
+				PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE, INT_NUMBER_FORMAT, FLOAT_NUMBER_FORMAT));
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		assertMergedPartsEqualWholeFile(() -> new ErrorCountBinningStragegy(0L, INT_NUMBER_FORMAT, FLOAT_NUMBER_FORMAT));
+	}
+
+	@Test
+	public void testFailedPart() throws IOException {
+		File inputDir = new File(tempDir, "normalized");
+		File mergedDir = new File(tempDir, "merged");
+		write(new File(inputDir, FILE), createMeasuringLines(100));
+
+		PerfAlyzerFile file = PerfAlyzerFile.create(new File(FILE));
+		BinningStateMerger<ErrorCountBinningStragegy> merger = new BinningStateMerger<>(inputDir, mergedDir, file, 2);
+		merger.addFailedPart();
+
+		ErrorCountBinningStragegy strategy = new ErrorCountBinningStragegy(0L, INT_NUMBER_FORMAT, FLOAT_NUMBER_FORMAT);
+		new Binner(inputDir, mergedDir, strategy).accumulateFile(file);
+		try {
+			merger.addPart(strategy);
+			fail("Adding the last part must fail if another part has failed.");
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+		assertThat(mergedDir.exists() && !relativeFiles(mergedDir).isEmpty(), is(false));
+	}
+
+	private <T extends MergeableBinningStrategy<T>> void assertMergedPartsEqualWholeFile(final Supplier<T> strategyFactory)
+			throws IOException {
+		File inputDir = new File(tempDir, "normalized");
+		File mergedDir = new File(tempDir, "merged");
+		File wholeDir = new File(tempDir, "whole");
+
+		// lines are distributed randomly, so every part covers the whole time range
+		List<String> lines = createMeasuringLines(5000);
+		List<List<String>> partLines = new ArrayList<>();
+		for (int i = 0; i < PART_COUNT; ++i) {
+			partLines.add(new ArrayList<>());
+		}
+		Random random = new Random(7L);
+		lines.forEach(line -> partLines.get(random.nextInt(PART_COUNT)).add(line));
+
+		PerfAlyzerFile file = PerfAlyzerFile.create(new File(FILE));
+		write(new File(inputDir, FILE), lines);
+
+		BinningStateMerger<T> merger = new BinningStateMerger<>(inputDir, mergedDir, file, PART_COUNT);
+		// added in reverse order, like parts finishing in any order
+		for (int i = PART_COUNT - 1; i >= 0; --i) {
+			PerfAlyzerFile part = PerfAlyzerFile.create(new File("global/[measuring][login][part_" + i + "].csv"));
+			write(new File(inputDir, part.getFile().getPath()), partLines.get(i));
+
+			T strategy = strategyFactory.get();
+			new Binner(inputDir, mergedDir, strategy).accumulateFile(part);
+			merger.addPart(strategy);
+		}
+
+		new Binner(inputDir, wholeDir, strategyFactory.get()).binFile(file);
+
+		Set<String> binnedFiles = relativeFiles(wholeDir);
+		assertThat(binnedFiles.isEmpty(), is(not(true)));
+		assertThat(relativeFiles(mergedDir), is(equalTo(binnedFiles)));
+		for (String binnedFile : binnedFiles) {
+			String expected = Files.toString(new File(wholeDir, binnedFile), Charsets.UTF_8);
+			assertThat(binnedFile, Files.toString(new File(mergedDir, binnedFile), Charsets.UTF_8), is(equalTo(expected)));
+		}
+	}
+
+	private static List<String> createMeasuringLines(final int count) {
+		Random random = new Random(42L);
+		List<String> lines = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			boolean error = random.nextInt(20) == 0;
+			String uriAlias = "uri" + random.nextInt(5);
+			StrBuilder sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(i * 37L));
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(random.nextInt(50)));
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "-1" : String.valueOf(50 + random.nextInt(2000)));
+			appendEscapedAndQuoted(sb, DELIMITER, "login");
+			appendEscapedAndQuoted(sb, DELIMITER, random.nextInt(50) == 0 ? "AGENT" : "GET");
+			appendEscapedAndQuoted(sb, DELIMITER, "/" + uriAlias);
+			appendEscapedAndQuoted(sb, DELIMITER, uriAlias);
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "ERROR" : "SUCCESS");
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "Connection reset " + random.nextInt(3) : "");
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(i / 4));
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(i));
+			lines.add(sb.toString());
+		}
+		return lines;
+	}
+
+	private static void write(final File file, final List<String> lines) throws IOException {
+		Files.createParentDirs(file);
+		Files.write(Joiner.on('\n').join(lines) + '\n', file, Charsets.UTF_8);
+	}
+
+	private static Set<String> relativeFiles(final File dir) {
+		Set<String> result = new TreeSet<>();
+		for (File file : FileUtils.listFiles(dir, null, true)) {
+			result.add(dir.toURI().relativize(file.toURI()).getPath());
+		}
+		return result;
+	}
+}
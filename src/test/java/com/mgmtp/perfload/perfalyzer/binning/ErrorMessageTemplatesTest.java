@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author rnaegele
+ */
+public class ErrorMessageTemplatesTest {
+
+	@Test
+	public void testPlaceholders() {
+		assertThat(ErrorMessageTemplates.toTemplate("Connection refused"), is(equalTo("Connection refused")));
+		assertThat(ErrorMessageTemplates.toTemplate("HTTP 500 for order 1234567 at 2015-01-01T10:00:00.123+01:00"),
+				is(equalTo("HTTP 500 for order <n> at <timestamp>")));
+		assertThat(ErrorMessageTemplates.toTemplate("Session 3f2a9c1e-1b2c-4d5e-8f90-123456789abc expired"),
+				is(equalTo("Session <uuid> expired")));
+		assertThat(ErrorMessageTemplates.toTemplate("Timeout connecting to 10.0.0.12:8080 after 30.5 s"),
+				is(equalTo("Timeout connecting to <ip> after <n> s")));
+		assertThat(ErrorMessageTemplates.toTemplate("Invalid token deadbeef42 for user jdoe@example.com"),
+				is(equalTo("Invalid token <hex> for user <email>")));
+	}
+
+	@Test
+	public void testIds() {
+		assertThat(ErrorMessageTemplates.toTemplate("Session sess_3f2a9c1e7b4d8e2f expired"),
+				is(equalTo("Session <id> expired")));
+		assertThat(ErrorMessageTemplates.toTemplate("Unknown ticket TGT7f3e9a2b4c1d8e6f"),
+				is(equalTo("Unknown ticket <id>")));
+	}
+
+	@Test
+	public void testClassNamesAreRetained() {
+		assertThat(ErrorMessageTemplates.toTemplate("Error in org.apache.coyote.http11.Http11NioProcessor"),
+				is(equalTo("Error in org.apache.coyote.http11.Http11NioProcessor")));
+		assertThat(ErrorMessageTemplates.toTemplate("Error in AbstractHttp11Protocol2Handler"),
+				is(equalTo("Error in AbstractHttp11Protocol2Handler")));
+	}
+}
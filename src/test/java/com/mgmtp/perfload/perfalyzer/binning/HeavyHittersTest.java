@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mgmtp.perfload.perfalyzer.binning.HeavyHitters.HeavyHitter;
+
+/**
+ * @author rnaegele
+ */
+public class HeavyHittersTest {
+
+	@Test
+	public void testExactCountsWithinCapacity() {
+		HeavyHitters heavyHitters = new HeavyHitters(10);
+		for (int i = 0; i < 5; ++i) {
+			for (int j = 0; j <= i; ++j) {
+				heavyHitters.add("key" + i);
+			}
+		}
+
+		List<HeavyHitter> top = heavyHitters.top(3);
+		assertThat(keys(top), contains("key4", "key3", "key2"));
+		assertThat(top.get(0).getCount(), is(equalTo(5L)));
+		assertThat(top.get(0).getError(), is(equalTo(0L)));
+		assertThat(heavyHitters.totalCount(), is(equalTo(15L)));
+	}
+
+	@Test
+	public void testFrequentKeysSurviveManyRareKeys() {
+		Random random = new Random(42L);
+		HeavyHitters heavyHitters = new HeavyHitters(50);
+		Map<String, Long> frequencies = new HashMap<>();
+		for (int i = 0; i < 100000; ++i) {
+			int r = random.nextInt(100);
+			// 30 % "timeout", 10 % "refused", the rest unique
+			String key = r < 30 ? "timeout" : r < 40 ? "refused" : "unique" + i;
+			heavyHitters.add(key);
+			frequencies.merge(key, 1L, Long::sum);
+		}
+
+		List<HeavyHitter> top = heavyHitters.top(2);
+		assertThat(keys(top), contains("timeout", "refused"));
+		for (HeavyHitter hitter : top) {
+			// the count is never underestimated and overestimated by at most the error, which is bounded by total / capacity
+			long frequency = frequencies.get(hitter.getKey());
+			assertThat(hitter.getCount(), is(greaterThanOrEqualTo(frequency)));
+			assertThat(hitter.getCount() - hitter.getError(), is(lessThanOrEqualTo(frequency)));
+			assertThat(hitter.getError(), is(lessThanOrEqualTo(100000L / 50L)));
+		}
+		assertThat(heavyHitters.top(100).size(), is(equalTo(50)));
+		assertThat(heavyHitters.totalCount(), is(equalTo(100000L)));
+	}
+
+	@Test
+	public void testMerge() {
+		HeavyHitters first = new HeavyHitters(3);
+		HeavyHitters second = new HeavyHitters(3);
+		for (int i = 0; i < 10; ++i) {
+			first.add("a");
+			second.add("a");
+			second.add("b");
+		}
+		first.add("c");
+		second.add("d");
+		second.add("e");
+
+		first.merge(second);
+
+		List<HeavyHitter> top = first.top(2);
+		assertThat(keys(top), contains("a", "b"));
+		assertThat(top.get(0).getCount(), is(equalTo(20L)));
+		assertThat(top.get(1).getCount(), is(equalTo(10L)));
+		assertThat(first.totalCount(), is(equalTo(33L)));
+	}
+
+	private static List<String> keys(final List<HeavyHitter> heavyHitters) {
+		return heavyHitters.stream().map(HeavyHitter::getKey).collect(toList());
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.text.StrBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * Checks that the data of markers sliced from the strategies of the whole test is the same as
+ * binning the marker files of the normalized data in the bins of the whole test.
+ *
+ * @author rnaegele
+ */
+public class MarkerSliceTest {
+
+	private final NumberFormat intNumberFormat = NumberFormat.getIntegerInstance(Locale.US);
+	private final NumberFormat floatNumberFormat = NumberFormat.getNumberInstance(Locale.US);
+
+	private final List<Marker> markers = ImmutableList.of(
+			createMarker("warmup", 0L, 61000L),
+			// borders not aligned with the bins of the whole test
+			createMarker("peak", 62345L, 187777L),
+			createMarker("end", 290500L, 400000L));
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testRequestsPerSecond() throws IOException {
+		assertSlicesEqualMarkerBinning(createMeasuringLines(), "global/[measuring][login].csv",
+				PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND,
+				start -> new MeasuringRequestsBinningStrategy(start, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND,
+						intNumberFormat, floatNumberFormat, start == 0L ? markers : ImmutableList.of()));
+	}
+
+	@Test
+	public void testRequestsPerMinute() throws IOException {
+		assertSlicesEqualMarkerBinning(createMeasuringLines(), "global/[measuring][login].csv",
+				PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE,
+				start -> new MeasuringRequestsBinningStrategy(start, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_MINUTE,
+						intNumberFormat, floatNumberFormat, start == 0L ? markers : ImmutableList.of()));
+	}
+
+	@Test
+	public void testPerfMon() throws IOException {
+		assertSlicesEqualMarkerBinning(createPerfMonLines(), "perfmon/[perfmon][cpu_X].csv",
+				PerfAlyzerConstants.BIN_SIZE_MILLIS_30_SECONDS,
+				start -> new PerfMonBinningStrategy(start, intNumberFormat, floatNumberFormat,
+						start == 0L ? markers : ImmutableList.of()));
+	}
+
+	/**
+	 * @param binSize
+	 * 		the bin size of the strategies
+	 * @param strategyFactory
+	 * 		creates a strategy for the specified start of the first bin; with markers for the whole
+	 * 		test (start 0), without markers for a marker
+	 */
+	private void assertSlicesEqualMarkerBinning(final List<String> lines, final String path, final int binSize,
+			final Function<Long, SliceableBinningStrategy<?>> strategyFactory) throws IOException {
+		File inputDir = new File(tempDir, "normalized");
+		File slicedDir = new File(tempDir, "sliced");
+		File markerDir = new File(tempDir, "marker");
+
+		PerfAlyzerFile file = PerfAlyzerFile.create(new File(path));
+		write(new File(inputDir, path), lines);
+
+		Binner binner = new Binner(inputDir, slicedDir, strategyFactory.apply(0L));
+		binner.binFile(file);
+		binner.writeMarkerSlices(file, markers);
+
+		// like the marker files written by the normalization and binned separately before
+		for (Marker marker : markers) {
+			PerfAlyzerFile markerFile = file.copy();
+			markerFile.setMarker(marker.getName());
+			write(new File(inputDir, markerFile.getFile().getPath()), lines.stream().filter(line -> {
+				long timestamp = Long.parseLong(line.substring(1, line.indexOf('"', 1)));
+				return marker.getLeftMillis() <= timestamp && timestamp < marker.getRightMillis();
+			}).collect(toList()));
+			// starting with the bin of the whole test the marker starts in
+			long startOfFirstBin = Math.floorDiv(marker.getLeftMillis(), binSize) * binSize;
+			new Binner(inputDir, markerDir, strategyFactory.apply(startOfFirstBin)).binFile(markerFile);
+		}
+
+		Set<String> markerFiles = relativeFiles(markerDir);
+		assertThat(markerFiles.isEmpty(), is(not(true)));
+		Set<String> slicedMarkerFiles = new TreeSet<>();
+		relativeFiles(slicedDir).stream().filter(f -> f.contains("{")).forEach(slicedMarkerFiles::add);
+		assertThat(slicedMarkerFiles, is(equalTo(markerFiles)));
+		for (String markerFile : markerFiles) {
+			String expected = Files.toString(new File(markerDir, markerFile), Charsets.UTF_8);
+			assertThat(markerFile, Files.toString(new File(slicedDir, markerFile), Charsets.UTF_8), is(equalTo(expected)));
+		}
+	}
+
+	private static List<String> createMeasuringLines() {
+		Random random = new Random(42L);
+		ImmutableList.Builder<String> lines = ImmutableList.builder();
+		for (long timestamp = 0L; timestamp < 300000L; timestamp += 1 + random.nextInt(700)) {
+			StrBuilder sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(timestamp));
+			appendEscapedAndQuoted(sb, DELIMITER, "10");
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(50 + random.nextInt(2000)));
+			appendEscapedAndQuoted(sb, DELIMITER, "login");
+			appendEscapedAndQuoted(sb, DELIMITER, random.nextInt(10) == 0 ? "AGENT" : "GET");
+			appendEscapedAndQuoted(sb, DELIMITER, "/login");
+			appendEscapedAndQuoted(sb, DELIMITER, "login");
+			appendEscapedAndQuoted(sb, DELIMITER, "SUCCESS");
+			appendEscapedAndQuoted(sb, DELIMITER, "");
+			appendEscapedAndQuoted(sb, DELIMITER, "1");
+			appendEscapedAndQuoted(sb, DELIMITER, "1");
+			lines.add(sb.toString());
+		}
+		return lines.build();
+	}
+
+	private static List<String> createPerfMonLines() {
+		Random random = new Random(42L);
+		ImmutableList.Builder<String> lines = ImmutableList.builder();
+		for (long timestamp = 0L; timestamp < 300000L; timestamp += 1000 + random.nextInt(5000)) {
+			StrBuilder sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(timestamp));
+			appendEscapedAndQuoted(sb, DELIMITER, "cpu_X");
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(random.nextInt(100)));
+			lines.add(sb.toString());
+		}
+		return lines.build();
+	}
+
+	private static Marker createMarker(final String name, final long leftMillis, final long rightMillis) {
+		Marker marker = new Marker(name);
+		marker.setLeftMillis(leftMillis);
+		marker.setRightMillis(rightMillis);
+		return marker;
+	}
+
+	private static void write(final File file, final List<String> lines) throws IOException {
+		Files.createParentDirs(file);
+		Files.write(Joiner.on('\n').join(lines) + '\n', file, Charsets.UTF_8);
+	}
+
+	private static Set<String> relativeFiles(final File dir) {
+		Set<String> result = new TreeSet<>();
+		for (File file : FileUtils.listFiles(dir, null, true)) {
+			result.add(dir.toURI().relativize(file.toURI()).getPath());
+		}
+		return result;
+	}
+}
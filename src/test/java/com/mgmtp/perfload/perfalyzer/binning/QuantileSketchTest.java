@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mgmtp.perfload.perfalyzer.binning.BinManagerTest.TestChannel;
+
+/**
+ * @author rnaegele
+ */
+public class QuantileSketchTest {
+
+	private static final double[] QUANTILES = { 0d, 0.1d, 0.5d, 0.9d, 0.99d, 0.999d, 1d };
+
+	@Test
+	public void testRelativeAccuracy() {
+		Random random = new Random(42L);
+		long[] values = new long[100000];
+		QuantileSketch sketch = new QuantileSketch();
+		for (int i = 0; i < values.length; ++i) {
+			// long-tailed like response times
+			values[i] = (long) Math.exp(3d + 2d * random.nextGaussian());
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertThat(sketch.count(), is(equalTo(100000L)));
+		for (double q : QUANTILES) {
+			double expected = values[(int) (q * (values.length - 1))];
+			assertThat(sketch.quantile(q), is(closeTo(expected, expected * QuantileSketch.DEFAULT_RELATIVE_ACCURACY)));
+		}
+		assertThat(sketch.quantile(0d), is(equalTo((double) values[0])));
+		assertThat(sketch.quantile(1d), is(equalTo((double) values[values.length - 1])));
+	}
+
+	@Test
+	public void testMergeEqualsSingleSketch() {
+		Random random = new Random(4711L);
+		QuantileSketch all = new QuantileSketch();
+		QuantileSketch first = new QuantileSketch();
+		QuantileSketch second = new QuantileSketch();
+		for (int i = 0; i < 10000; ++i) {
+			long value = i % 2 == 0 ? random.nextInt(100) : 1000 + random.nextInt(100000);
+			all.add(value);
+			(i % 3 == 0 ? first : second).add(value);
+		}
+		first.merge(second);
+
+		assertThat(first.count(), is(equalTo(all.count())));
+		for (double q : QUANTILES) {
+			assertThat(first.quantile(q), is(equalTo(all.quantile(q))));
+		}
+	}
+
+	@Test
+	public void testSmallValuesAndZero() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.add(0L);
+		sketch.add(1L);
+		sketch.add(2L);
+		sketch.add(3L);
+		sketch.add(42L);
+
+		assertThat(sketch.quantile(0d), is(equalTo(0d)));
+		assertThat(Math.round(sketch.quantile(0.25d)), is(equalTo(1L)));
+		assertThat(Math.round(sketch.quantile(0.5d)), is(equalTo(2L)));
+		assertThat(Math.round(sketch.quantile(0.75d)), is(equalTo(3L)));
+		assertThat(sketch.quantile(1d), is(equalTo(42d)));
+		assertThat(Double.isNaN(new QuantileSketch().quantile(0.5d)), is(true));
+	}
+
+	@Test
+	public void testBucketCountIsBounded() {
+		QuantileSketch sketch = new QuantileSketch();
+		for (long value = 1L; value > 0L && value < Long.MAX_VALUE / 2; value *= 2L) {
+			sketch.add(value);
+		}
+		sketch.add(Long.MAX_VALUE);
+
+		assertThat(sketch.bucketCount(), is(lessThanOrEqualTo(QuantileSketch.MAX_BUCKET_COUNT)));
+		// high quantiles are still accurate
+		assertThat(sketch.quantile(1d), is(equalTo((double) Long.MAX_VALUE)));
+		double expected = Math.pow(2d, 60d);
+		assertThat(sketch.quantile(60.5d / 62d), is(closeTo(expected, expected * QuantileSketch.DEFAULT_RELATIVE_ACCURACY)));
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testMergeWithDifferentAccuracy() {
+		new QuantileSketch(0.01d).merge(new QuantileSketch(0.02d));
+	}
+
+	@Test
+	public void testPercentileBins() {
+		PercentileBinManager binManager = new PercentileBinManager(0, 1000);
+		PercentileBinManager otherBinManager = new PercentileBinManager(0, 1000);
+		for (int i = 1; i <= 100; ++i) {
+			(i % 2 == 0 ? binManager : otherBinManager).addValue(500, i);
+			binManager.addValue(2500, 10 * i);
+		}
+		binManager.merge(otherBinManager);
+
+		DecimalFormatSymbols dfs = new DecimalFormatSymbols(Locale.US);
+		NumberFormat nf = new DecimalFormat("0", dfs);
+		nf.setRoundingMode(RoundingMode.HALF_UP);
+
+		TestChannel channel = new TestChannel();
+		binManager.toCsv(channel, "time", nf, 50d, 99.9d);
+
+		// exact values would be 50/99 and 500/990
+		assertThat(channel.lines,
+				contains(
+						"\"time\";\"p50\";\"p99.9\"",
+						"\"0\";\"50\";\"99\"",
+						"\"2\";\"498\";\"983\""
+				)
+		);
+	}
+}
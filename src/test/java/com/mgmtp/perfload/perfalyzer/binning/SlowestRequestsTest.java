@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mgmtp.perfload.perfalyzer.binning.SlowestRequests.SlowRequest;
+
+/**
+ * @author rnaegele
+ */
+public class SlowestRequestsTest {
+
+	@Test
+	public void testKeepsSlowestRequests() {
+		Random random = new Random(42L);
+		SlowestRequests slowest = new SlowestRequests(3);
+		for (int i = 0; i < 10000; ++i) {
+			slowest.add(i, random.nextInt(1000), "req" + i, "exec" + i, "");
+		}
+		slowest.add(10000L, 5000L, "slow1", "exec1", "");
+		slowest.add(10001L, 4000L, "slow2", "exec2", "timeout");
+		slowest.add(10002L, 3000L, "slow3", "exec3", "");
+
+		List<SlowRequest> requests = slowest.slowestFirst();
+		assertThat(requests.stream().map(SlowRequest::getRequestId).collect(toList()), contains("slow1", "slow2", "slow3"));
+		assertThat(requests.get(1).getResponseTime(), is(equalTo(4000L)));
+		assertThat(requests.get(1).getErrorMsg(), is(equalTo("timeout")));
+	}
+
+	@Test
+	public void testMergeEqualsSingleInstance() {
+		Random random = new Random(4711L);
+		SlowestRequests all = new SlowestRequests(10);
+		SlowestRequests first = new SlowestRequests(10);
+		SlowestRequests second = new SlowestRequests(10);
+		for (int i = 0; i < 10000; ++i) {
+			long responseTime = random.nextInt(100000);
+			all.add(i, responseTime, "req" + i, "", "");
+			(i % 3 == 0 ? first : second).add(i, responseTime, "req" + i, "", "");
+		}
+		first.merge(second);
+
+		assertThat(first.slowestFirst().stream().map(SlowRequest::getRequestId).collect(toList()),
+				is(equalTo(all.slowestFirst().stream().map(SlowRequest::getRequestId).collect(toList()))));
+	}
+
+	@Test
+	public void testEqualResponseTimesKeepEarlierRequests() {
+		SlowestRequests slowest = new SlowestRequests(2);
+		slowest.add(1L, 100L, "first", "", "");
+		slowest.add(2L, 100L, "second", "", "");
+		slowest.add(3L, 100L, "third", "", "");
+
+		assertThat(slowest.slowestFirst().stream().map(SlowRequest::getRequestId).collect(toList()), contains("first", "second"));
+		assertThat(new SlowestRequests(1).isEmpty(), is(true));
+	}
+}
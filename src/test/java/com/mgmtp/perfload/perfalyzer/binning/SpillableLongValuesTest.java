@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.binning;
+
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.testng.annotations.Test;
+
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
+
+/**
+ * @author rnaegele
+ */
+public class SpillableLongValuesTest {
+
+	private static final File SPILL_DIR = new File("target/spill");
+
+	@Test
+	public void testPercentilesInMemory() throws IOException {
+		testPercentiles(MemoryBudget.unlimited(), 50000, 0);
+	}
+
+	@Test
+	public void testPercentilesWithSpilling() throws IOException {
+		// enough for two small buffers only
+		testPercentiles(new MemoryBudget(3 * 1024 * 8, SPILL_DIR), 50000, 1);
+	}
+
+	@Test
+	public void testPercentilesWithManyRuns() throws IOException {
+		// without merging, the exhausted budget would cause a run per 1024 values
+		File spillDir = new File(SPILL_DIR, "many-runs");
+		deleteQuietly(spillDir);
+		MemoryBudget memoryBudget = new MemoryBudget(8, spillDir);
+
+		int valueCount = 1024 * SpillableLongValues.MAX_RUNS * 5;
+		testPercentiles(memoryBudget, valueCount, SpillableLongValues.MAX_RUNS / 2);
+		assertThat(spillDir.list(), is(emptyArray()));
+	}
+
+	@Test
+	public void testMinimumRunSize() throws IOException {
+		try (SpillableLongValues values = new SpillableLongValues(new MemoryBudget(8, SPILL_DIR))) {
+			for (int i = 0; i < SpillableLongValues.MIN_RUN_CAPACITY; ++i) {
+				values.add(i);
+			}
+			assertThat(values.getRunCount(), is(equalTo(0)));
+
+			values.add(-1L);
+			assertThat(values.getRunCount(), is(equalTo(1)));
+			assertThat(values.min(), is(equalTo(-1L)));
+		}
+	}
+
+	private void testPercentiles(final MemoryBudget memoryBudget, final int valueCount, final int minRuns) throws IOException {
+		Random random = new Random(42L);
+		double[] allValues = new double[valueCount];
+
+		try (SpillableLongValues values = new SpillableLongValues(memoryBudget, 1024);
+				SpillableLongValues otherValues = new SpillableLongValues(memoryBudget, 1024)) {
+			for (int i = 0; i < allValues.length; ++i) {
+				long value = random.nextInt(10000);
+				allValues[i] = value;
+				(i % 3 == 0 ? otherValues : values).add(value);
+			}
+			values.addAll(otherValues);
+
+			assertThat(values.getRunCount(), is(both(greaterThan(minRuns - 1)).and(lessThanOrEqualTo(SpillableLongValues.MAX_RUNS))));
+			assertThat(values.size(), is(equalTo((long) allValues.length)));
+
+			Percentile percentile = new Percentile();
+			percentile.setData(allValues);
+			double[] result = values.percentiles(10d, 50d, 90d, 100d);
+			assertThat(result[0], is(equalTo(percentile.evaluate(10d))));
+			assertThat(result[1], is(equalTo(percentile.evaluate(50d))));
+			assertThat(result[2], is(equalTo(percentile.evaluate(90d))));
+			assertThat(result[3], is(equalTo((double) values.max())));
+		}
+		assertThat(memoryBudget.getReservedBytes(), is(equalTo(0L)));
+	}
+
+	@Test
+	public void testSingleValue() throws IOException {
+		try (SpillableLongValues values = new SpillableLongValues(MemoryBudget.unlimited())) {
+			values.add(42L);
+			assertThat(values.percentiles(10d, 50d, 90d), is(equalTo(new double[] { 42d, 42d, 42d })));
+		}
+	}
+}
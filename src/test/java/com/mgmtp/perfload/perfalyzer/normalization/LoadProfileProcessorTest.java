@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.normalization;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Locale;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.util.Marker;
+
+/**
+ * @author rnaegele
+ */
+public class LoadProfileProcessorTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testMarkers() throws IOException {
+		LoadProfile loadProfile = process();
+
+		List<Marker> markers = loadProfile.getMarkers();
+		assertThat(markers, hasSize(4));
+
+		assertMarker(markers.get(0), "Marker_1", 600000L, 900000L);
+		assertMarker(markers.get(1), "Marker_2", 700000L, 1000000L);
+		assertMarker(markers.get(2), "Marker_4", 370000L, 1700000L);
+		assertMarker(markers.get(3), "Marker_3", 1300000L, 1400000L);
+	}
+
+	@Test
+	public void testExecutionsPerMinute() throws IOException {
+		LoadProfile loadProfile = process();
+
+		assertThat(loadProfile.getOperations(), contains("kapesta", "lstb", "register", "ustva", "ustveu"));
+
+		long[] counts = loadProfile.getExecutionsPerMinute("register");
+		assertThat(counts.length, is(equalTo(67)));
+		assertThat(counts[1], is(equalTo(1L)));
+		assertThat(counts[32], is(equalTo(2L)));
+		assertThat(counts[46], is(equalTo(3L)));
+		assertThat(counts[47], is(equalTo(0L)));
+	}
+
+	@Test
+	public void testWriteFiles() throws IOException {
+		LoadProfile loadProfile = process();
+
+		// lines are written while processing
+		File workFile = new File(tempDir, "work/[loadprofile][kapesta].csv");
+		assertThat(workFile.isFile(), is(true));
+
+		File normalizedDir = new File(tempDir, "normalized");
+		loadProfile.writeNormalizedFiles(normalizedDir);
+		File normalizedFile = new File(normalizedDir, "markers/[loadprofile][kapesta].csv");
+		assertThat(Files.readLines(normalizedFile, Charsets.UTF_8),
+				contains("14697;kapesta;appserver01;1;1", "355800;kapesta;appserver01;8;3"));
+		assertThat(workFile.exists(), is(false));
+
+		NumberFormat intFormat = NumberFormat.getIntegerInstance(Locale.US);
+		intFormat.setGroupingUsed(false);
+
+		File binnedDir = new File(tempDir, "binned");
+		loadProfile.writeBinnedFiles(binnedDir, intFormat);
+		File binnedFile = new File(binnedDir, "markers/[loadprofile][ustveu].csv");
+		assertThat(Files.readLines(binnedFile, Charsets.UTF_8), contains("\"seconds\";\"count\"",
+				"\"0\";\"0\"", "\"60\";\"0\"", "\"120\";\"0\"", "\"180\";\"0\"", "\"240\";\"0\"", "\"300\";\"1\""));
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		File sourceDir = new File(tempDir, "source");
+		File file = new File("markers/test.perfload");
+		Files.createParentDirs(new File(sourceDir, file.getPath()));
+		Files.copy(new File("src/test/resources", file.getPath()), new File(sourceDir, file.getPath()));
+
+		LoadProfileProcessor processor = new LoadProfileProcessor(ZonedDateTime.now(), new File(tempDir, "work"));
+		assertThat(processor.load(sourceDir, file), is(nullValue()));
+
+		LoadProfile processed = processor.process(sourceDir, file);
+		LoadProfile loaded = processor.load(sourceDir, file);
+		assertThat(loaded.getMarkers(), is(equalTo(processed.getMarkers())));
+		assertThat(loaded.getOperations(), is(equalTo(processed.getOperations())));
+		for (String operation : processed.getOperations()) {
+			assertThat(loaded.getExecutionsPerMinute(operation), is(equalTo(processed.getExecutionsPerMinute(operation))));
+		}
+
+		NumberFormat intFormat = NumberFormat.getIntegerInstance(Locale.US);
+		File processedDir = new File(tempDir, "processed");
+		processed.writeBinnedFiles(processedDir, intFormat);
+		File loadedDir = new File(tempDir, "loaded");
+		loaded.writeBinnedFiles(loadedDir, intFormat);
+		File binnedFile = new File("markers/[loadprofile][register].csv");
+		assertThat(Files.readLines(new File(loadedDir, binnedFile.getPath()), Charsets.UTF_8),
+				is(equalTo(Files.readLines(new File(processedDir, binnedFile.getPath()), Charsets.UTF_8))));
+
+		// the load profile has changed since it was processed
+		File stateFile = new File(tempDir, "work/loadprofile.state");
+		assertThat(stateFile.setLastModified(new File(sourceDir, file.getPath()).lastModified() - 2000L), is(true));
+		assertThat(processor.load(sourceDir, file), is(nullValue()));
+	}
+
+	private LoadProfile process() throws IOException {
+		LoadProfileProcessor processor = new LoadProfileProcessor(ZonedDateTime.now(), new File(tempDir, "work"));
+		return processor.process(new File("src/test/resources"), new File("markers/test.perfload"));
+	}
+
+	private static void assertMarker(final Marker marker, final String name, final long left, final long right) {
+		assertThat(marker.getName(), is(equalTo(name)));
+		assertThat(marker.getLeftMillis(), is(equalTo(left)));
+		assertThat(marker.getRightMillis(), is(equalTo(right)));
+	}
+}
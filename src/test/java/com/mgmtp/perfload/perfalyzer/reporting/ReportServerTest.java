@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reporting;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.NumberFormat;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.DisplayData;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.PlotOutput;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * @author rnaegele
+ */
+public class ReportServerTest {
+
+	private static final String PLOT = "global/[measuring][login][requests].png";
+
+	private File tempDir;
+	private ReportServer reportServer;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		if (reportServer != null) {
+			reportServer.stop();
+		}
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testDeferredPlotIsRenderedOnDemand() throws IOException {
+		File reportDir = new File(tempDir, "report");
+		File reportPreparationDir = new File(tempDir, "reportpreparation");
+		reportDir.mkdirs();
+		reportPreparationDir.mkdirs();
+
+		ListResourceBundle resourceBundle = new ListResourceBundle() {
+			@Override
+			protected Object[][] getContents() {
+				return new Object[][] { { "time", "Time" }, { "count", "Count" } };
+			}
+		};
+		DisplayData displayData = new DisplayData(Pattern.compile(".*"), "time", ImmutableList.of("count"));
+		PlotCreator plotCreator = new PlotCreator(NumberFormat.getIntegerInstance(Locale.US), resourceBundle,
+				ImmutableList.of(displayData), ImmutableList.of(), PlotOutput.DEFERRED_PNG);
+
+		NumberDataSet dataSet = new NumberDataSet();
+		for (int i = 0; i < 10; ++i) {
+			dataSet.addSeriesPoint("login", new SeriesPoint(i * 60, i % 3));
+		}
+		File plotFile = new File(reportPreparationDir, PLOT);
+		plotCreator.writePlotFile(plotFile, AxisType.LINEAR, AxisType.LINEAR, RendererType.LINES, displayData,
+				ChartDimensions.DEFAULT, null, false, dataSet);
+
+		reportServer = new ReportServer(reportDir, reportPreparationDir, plotCreator, 0);
+		assertThat(plotFile.exists(), is(false));
+		assertThat(reportServer.getDeferredPlotFiles().stream().map(PerfAlyzerFile::getFile).collect(toList()),
+				contains(new File(PLOT)));
+
+		reportServer.start();
+		byte[] png = get(PLOT);
+		// PNG signature
+		assertThat(png[1] == 'P' && png[2] == 'N' && png[3] == 'G', is(true));
+
+		// rendered plots are written to their files and their data is released
+		assertThat(Files.toByteArray(plotFile), is(equalTo(png)));
+		assertThat(plotCreator.getDeferredPlotFiles().isEmpty(), is(true));
+		assertThat(plotCreator.renderDeferredPlot(plotFile), is((byte[]) null));
+		assertThat(get(PLOT), is(equalTo(png)));
+
+		assertThat(responseCode("global/[measuring][unknown].png"), is(404));
+	}
+
+	private byte[] get(final String path) throws IOException {
+		HttpURLConnection connection = openConnection(path);
+		try (InputStream is = connection.getInputStream()) {
+			assertThat(connection.getResponseCode(), is(200));
+			assertThat(connection.getContentType(), is(equalTo("image/png")));
+			return ByteStreams.toByteArray(is);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private int responseCode(final String path) throws IOException {
+		HttpURLConnection connection = openConnection(path);
+		try {
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private HttpURLConnection openConnection(final String path) throws IOException {
+		String encodedPath = path.replace("[", "%5B").replace("]", "%5D");
+		return (HttpURLConnection) new URL("http://localhost:" + reportServer.getPort() + "/" + encodedPath).openConnection();
+	}
+}
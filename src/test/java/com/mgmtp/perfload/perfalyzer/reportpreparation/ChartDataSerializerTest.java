@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Collections;
+
+import org.apache.commons.lang3.text.StrBuilder;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.AxisType;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.ChartDimensions;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.RendererType;
+
+/**
+ * @author rnaegele
+ */
+public class ChartDataSerializerTest {
+
+	@Test
+	public void testDeltaEncoding() {
+		StrBuilder sb = new StrBuilder();
+		ChartDataSerializer.appendValues(sb, "x", new double[] { 60d, 120d, 180d, 170d });
+		assertThat(sb.toString(), is(equalTo("\"dx\":[60,60,60,-10]")));
+
+		sb.clear();
+		ChartDataSerializer.appendValues(sb, "y", new double[] { 1.5d, 2d, Double.NaN });
+		assertThat(sb.toString(), is(equalTo("\"y\":[1.5,2,null]")));
+	}
+
+	@Test
+	public void testEscaping() {
+		StrBuilder sb = new StrBuilder();
+		ChartDataSerializer.appendString(sb, "a\"b\\c</script>\n");
+		assertThat(sb.toString(), is(equalTo("\"a\\\"b\\\\c\\u003c/script>\\n\"")));
+	}
+
+	@Test
+	public void testSerialize() {
+		NumberDataSet dataSet = new NumberDataSet();
+		dataSet.addSeriesPoint("op", new SeriesPoint(0, 1));
+		dataSet.addSeriesPoint("op", new SeriesPoint(60, 3));
+		dataSet.addSeriesPoint("op", new SeriesPoint(120, 2));
+
+		String json = ChartDataSerializer.serialize(AxisType.LINEAR, AxisType.LOGARITHMIC, RendererType.SHAPES,
+				ChartDimensions.DEFAULT, "Time", ImmutableList.of("Count"), new DataRange(0L, 180000L), Collections.emptyList(),
+				dataSet);
+
+		assertThat(json, is(equalTo("{\"renderer\":\"SHAPES\",\"xLog\":false,\"yLog\":true,\"width\":640,\"height\":400,"
+				+ "\"xLabel\":\"Time\",\"range\":[0,180],"
+				+ "\"plots\":[{\"label\":\"Count\",\"series\":[{\"name\":\"op\",\"dx\":[0,60,60],\"dy\":[1,2,-1]}]}]}")));
+	}
+}
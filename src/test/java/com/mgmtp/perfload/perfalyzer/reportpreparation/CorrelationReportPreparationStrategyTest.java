@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static com.mgmtp.perfload.perfalyzer.util.DirectoryLister.listPerfAlyzerFiles;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.reportpreparation.PlotCreator.PlotOutput;
+
+/**
+ * Correlates the binned files in {@code reportpreparation/correlation/binned} and compares the
+ * table and the plot data with the files in {@code reportpreparation/correlation/expected}:
+ * <ul>
+ * <li>{@code host1/cpu_X} is followed by the 99th percentile of {@code login} one bin later; the
+ * percentiles start one bin after the perfMon data and miss a bin</li>
+ * <li>{@code host2/mem} is correlated less</li>
+ * <li>{@code host2/io_0_r} overlaps with the response times in too few bins</li>
+ * <li>the aggregated perfMon file and the 50th percentiles are ignored</li>
+ * <li>requests per second of {@code login} and {@code search} are summed up per bin; a bin
+ * without requests within the test counts as zero throughput</li>
+ * </ul>
+ *
+ * @author rnaegele
+ */
+public class CorrelationReportPreparationStrategyTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testProcessFiles() throws Exception {
+		File sourceDir = resource("binned");
+		File expectedDir = resource("expected");
+
+		ListResourceBundle resourceBundle = new ListResourceBundle() {
+			@Override
+			protected Object[][] getContents() {
+				return new Object[][] {
+						{ "axis.label.time", "Time" },
+						{ "axis.label.cpu", "CPU [%]" },
+						{ "axis.label.mem", "Memory [MB]" },
+						{ "axis.label.io", "IO [KB/s]" },
+						{ "axis.label.p99Millis", "p99 [ms]" } };
+			}
+		};
+		List<DisplayData> displayDataList = ImmutableList.of(
+				new DisplayData(Pattern.compile("\\[perfmon\\]\\[cpu_X\\]\\.png"), "axis.label.time", ImmutableList.of("axis.label.cpu")),
+				new DisplayData(Pattern.compile("\\[perfmon\\]\\[mem\\]\\.png"), "axis.label.time", ImmutableList.of("axis.label.mem")),
+				new DisplayData(Pattern.compile("\\[perfmon\\]\\[io_r\\]\\.png"), "axis.label.time", ImmutableList.of("axis.label.io")));
+
+		NumberFormat intNumberFormat = NumberFormat.getIntegerInstance(Locale.US);
+		NumberFormat floatNumberFormat = NumberFormat.getNumberInstance(Locale.US);
+		PlotCreator plotCreator = new PlotCreator(intNumberFormat, resourceBundle, displayDataList, ImmutableList.of(),
+				PlotOutput.JSON);
+
+		CorrelationReportPreparationStrategy strategy = new CorrelationReportPreparationStrategy(intNumberFormat,
+				floatNumberFormat, displayDataList, resourceBundle, plotCreator, null);
+		strategy.processFiles(sourceDir, tempDir, listPerfAlyzerFiles(sourceDir));
+
+		Set<String> expectedFiles = relativeFiles(expectedDir);
+		assertThat(relativeFiles(tempDir), is(equalTo(expectedFiles)));
+		for (String expectedFile : expectedFiles) {
+			String expected = Files.toString(new File(expectedDir, expectedFile), Charsets.UTF_8);
+			assertThat(expectedFile, Files.toString(new File(tempDir, expectedFile), Charsets.UTF_8), is(equalTo(expected)));
+		}
+	}
+
+	@Test
+	public void testNothingToCorrelate() throws Exception {
+		File sourceDir = resource("binned");
+
+		CorrelationReportPreparationStrategy strategy = new CorrelationReportPreparationStrategy(
+				NumberFormat.getIntegerInstance(Locale.US), NumberFormat.getNumberInstance(Locale.US), ImmutableList.of(), null,
+				null, null);
+		// perfMon data only
+		strategy.processFiles(sourceDir, tempDir, listPerfAlyzerFiles(sourceDir).stream()
+				.filter(f -> "host2".equals(f.getFile().getParent()))
+				.collect(toList()));
+
+		assertThat(relativeFiles(tempDir).isEmpty(), is(true));
+	}
+
+	private File resource(final String path) throws URISyntaxException {
+		return new File(getClass().getClassLoader().getResource("reportpreparation/correlation/" + path).toURI());
+	}
+
+	private static Set<String> relativeFiles(final File dir) {
+		Set<String> result = new TreeSet<>();
+		for (File file : FileUtils.listFiles(dir, null, true)) {
+			result.add(dir.toURI().relativize(file.toURI()).getPath());
+		}
+		return result;
+	}
+}
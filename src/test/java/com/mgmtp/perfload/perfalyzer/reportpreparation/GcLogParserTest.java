@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.apache.commons.io.FileUtils.writeLines;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author rnaegele
+ */
+public class GcLogParserTest {
+
+	private static final long JVM_START_MILLIS = OffsetDateTime.parse("2024-01-15T09:00:00Z").toInstant().toEpochMilli();
+
+	private List<String> events;
+	private List<String> generations;
+	private GcLogParser parser;
+
+	@BeforeMethod
+	public void setUp() {
+		events = new ArrayList<>();
+		generations = new ArrayList<>();
+		parser = createParser(-1L);
+	}
+
+	private GcLogParser createParser(final long jvmStartMillis) {
+		return new GcLogParser(new GcLogParser.EventHandler() {
+			@Override
+			public void handleEvent(final long timestampMillis, final double pauseSeconds, final long heapBeforeKb,
+					final long heapAfterKb, final long heapTotalKb, final String collector, final boolean fullGc) {
+				events.add(String.format(Locale.US, "%d %.4f %d %d %d %s %s", timestampMillis, pauseSeconds,
+						heapBeforeKb, heapAfterKb, heapTotalKb, collector, fullGc));
+			}
+
+			@Override
+			public void handleGenerationSizes(final long timestampMillis, final long youngTotalKb, final long tenuredTotalKb,
+					final long permTotalKb) {
+				generations.add(timestampMillis + " " + youngTotalKb + " " + tenuredTotalKb + " " + permTotalKb);
+			}
+		}, jvmStartMillis);
+	}
+
+	@Test
+	public void testUnifiedLogging() {
+		parser.parseLine("[2024-01-15T10:15:30.000+0100][info][gc,start    ] GC(12) Pause Young (Normal) (G1 Evacuation Pause)");
+		parser.parseLine("[2024-01-15T10:15:30.000+0100][info][gc,heap     ] GC(12) Eden regions: 12->0(9)");
+		parser.parseLine(
+				"[2024-01-15T10:15:30.123+0100][1.234s][info][gc          ] GC(12) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 3.500ms");
+		parser.parseLine("[2024-01-15T09:15:31.000+0000][info][gc] GC(13) Pause Full (System.gc()) 100M->50M(1G) 45,000ms");
+		parser.parseLine("[2024-01-15T10:15:32.000+0100][info][gc] GC(14) Pause Init Mark 0.500ms");
+		parser.parseLine("[2024-01-15T10:15:32.100+0100][info][gc] GC(14) Concurrent Cycle 45.678ms");
+		// no wall clock time and no start of the JVM
+		parser.parseLine("[0.123s][info][gc] GC(15) Pause Young (Normal) 24M->4M(256M) 3.456ms");
+
+		long millis = OffsetDateTime.parse("2024-01-15T09:15:30.123Z").toInstant().toEpochMilli();
+		assertThat(events, contains(
+				millis + " 0.0035 24576 4096 262144 Pause Young false",
+				(millis + 877L) + " 0.0450 102400 51200 1048576 Pause Full true",
+				(millis + 1877L) + " 0.0005 -1 -1 -1 Pause Init Mark false"));
+		assertThat(generations, is(empty()));
+		// the concurrent cycle is counted, but not passed on
+		assertThat(parser.getEventCount(), is(equalTo(4L)));
+	}
+
+	@Test
+	public void testUnifiedLoggingWithUptime() {
+		parser = createParser(JVM_START_MILLIS);
+		parser.parseLine("[12.345s][info][gc,start    ] GC(3) Pause Young (Allocation Failure)");
+		parser.parseLine("[12.345s][info][gc,heap     ] GC(3) PSYoungGen: 65536K->10720K(76288K)");
+		parser.parseLine("[12.345s][info][gc,heap     ] GC(3) ParOldGen: 8K->16K(175104K)");
+		parser.parseLine("[12.345s][info][gc,metaspace] GC(3) Metaspace: 2999K->2999K(1056768K)");
+		parser.parseLine("[12.345s][info][gc          ] GC(3) Pause Young (Allocation Failure) 64M->10M(245M) 12.500ms");
+		parser.parseLine("[13500ms][info][gc          ] GC(4) Pause Full (Ergonomics) 10M->9M(245M) 45.000ms");
+
+		assertThat(events, contains(
+				(JVM_START_MILLIS + 12345L) + " 0.0125 65536 10240 250880 Pause Young false",
+				(JVM_START_MILLIS + 13500L) + " 0.0450 10240 9216 250880 Pause Full true"));
+		assertThat(generations, contains((JVM_START_MILLIS + 12345L) + " 76288 175104 1056768"));
+	}
+
+	@Test
+	public void testLegacyDateStamps() {
+		parser.parseLine("Java HotSpot(TM) 64-Bit Server VM (25.162-b12) for linux-amd64 JRE (1.8.0_162-b12)");
+		parser.parseLine("2015-03-12T10:15:30.123+0100: 12.345: [GC (Allocation Failure) [PSYoungGen: 65536K->10720K(76288K)] "
+				+ "65536K->10728K(251392K), 0.0123456 secs] [Times: user=0.03 sys=0.00, real=0.01 secs]");
+		parser.parseLine("2015-03-12T10:15:31.123+0100: 13.345: [Full GC (Ergonomics) [PSYoungGen: 10720K->0K(76288K)] "
+				+ "[ParOldGen: 8K->10000K(175104K)] 10728K->10000K(251392K), [Metaspace: 2999K->2999K(1056768K)], 0.0456 secs]");
+		parser.parseLine("2015-03-12T10:15:32.123+0100: 14.345: [GC concurrent-mark-start]");
+		parser.parseLine("2015-03-12T10:15:33.123+0100: 15.345: [GC remark, 0.0020 secs]");
+		// interrupted by a concurrent phase
+		parser.parseLine("2015-03-12T10:15:34.123+0100: 16.345: [Full GC (Metadata GC Threshold) ");
+		parser.parseLine("2015-03-12T10:15:34.200+0100: 16.422: [GC concurrent-mark-start] 5M->3M(6G), 1.5000 secs]");
+
+		long millis = OffsetDateTime.parse("2015-03-12T09:15:30.123Z").toInstant().toEpochMilli();
+		assertThat(events, contains(
+				millis + " 0.0123 65536 10728 251392 GC false",
+				(millis + 1000L) + " 0.0456 10728 10000 251392 Full GC true",
+				(millis + 3000L) + " 0.0020 -1 -1 -1 GC false",
+				(millis + 4000L) + " 1.5000 5120 3072 6291456 Full GC true"));
+		assertThat(generations, contains(
+				millis + " 76288 -1 -1",
+				(millis + 1000L) + " 76288 175104 1056768"));
+		// the concurrent phase that is not part of the full GC is counted
+		assertThat(parser.getEventCount(), is(equalTo(5L)));
+	}
+
+	@Test
+	public void testIsSupported() throws Exception {
+		File gcLog = new File(getClass().getClassLoader().getResource("reportpreparation/gclogs/[gclog_old].log").toURI());
+		assertThat(GcLogParser.isSupported(gcLog), is(true));
+
+		File perfLoadMeta = new File(gcLog.getParentFile(), "perfload.meta.utf8.props");
+		assertThat(GcLogParser.isSupported(perfLoadMeta), is(false));
+		assertThat(GcLogParser.detectFormat(gcLog), is(GcLogParser.Format.DATE_STAMPS));
+	}
+
+	@Test
+	public void testUptimeFormat() throws Exception {
+		File gcLog = File.createTempFile("gclog", ".log");
+		try {
+			writeLines(gcLog, "UTF-8", asList(
+					"[0.005s][info][gc] Using G1",
+					"[1.500s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 3.456ms",
+					"[2.500s][info][gc] GC(1) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 3.456ms"));
+			long lastModified = gcLog.lastModified();
+
+			assertThat(GcLogParser.detectFormat(gcLog), is(GcLogParser.Format.UPTIME));
+			assertThat(GcLogParser.estimateJvmStart(gcLog), is(equalTo(lastModified - 2500L)));
+		} finally {
+			deleteQuietly(gcLog);
+		}
+	}
+}
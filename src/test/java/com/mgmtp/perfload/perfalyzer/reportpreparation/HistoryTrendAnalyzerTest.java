@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.removeLastLine;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+/**
+ * @author rnaegele
+ */
+public class HistoryTrendAnalyzerTest {
+
+	private static final String HEADER = "\"time\";\"numRequests\";\"numErrors\";\"minReqPerSec\";\"medianReqPerSec\";"
+			+ "\"maxReqPerSec\";\"minReqPerMin\";\"medianReqPerMin\";\"maxReqPerMin\";\"minExecutionTime\";"
+			+ "\"medianExecutionTime\";\"maxExecutionTime\"";
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testTrendTable() throws IOException {
+		File historyFile = new File(tempDir, "history.csv");
+		Files.asCharSink(historyFile, Charsets.UTF_8).writeLines(ImmutableList.of(
+				HEADER,
+				line("run1", 100, 10),
+				line("run2", 100, 10),
+				line("run3", 100, 10),
+				line("run4", 100, 10),
+				line("run5", 100, 15),
+				line("run6", 50, 10)
+		));
+
+		File trendFile = new File(tempDir, "trend.csv");
+		List<NumberDataSet> dataSets = createAnalyzer(3, 3).analyze(historyFile, trendFile);
+
+		assertThat(Files.readLines(trendFile, Charsets.UTF_8), contains(
+				"\"time\";\"medianExecutionTime\";\"rollingMedianExecutionTime\";\"changeExecutionTime\";"
+						+ "\"medianReqPerMin\";\"rollingMedianReqPerMin\";\"changeReqPerMin\";\"trend\"",
+				"\"run6\";\"10\";\"10.00\";\"0.00\";\"50\";\"100.00\";\"-50.00\";\"regression\"",
+				"\"run5\";\"15\";\"10.00\";\"50.00\";\"100\";\"100.00\";\"0.00\";\"regression\"",
+				"\"run4\";\"10\";\"10.00\";\"0.00\";\"100\";\"100.00\";\"0.00\";\"\""
+		));
+
+		// values and rolling medians for all six runs
+		assertThat(dataSets, hasSize(2));
+		assertThat(dataSets.get(0).getSeriesCount(), equalTo(2));
+		assertThat(dataSets.get(0).getItemCount(0), equalTo(6));
+	}
+
+	@Test
+	public void testNoTrendWithoutBaseline() throws IOException {
+		File historyFile = new File(tempDir, "history.csv");
+		Files.asCharSink(historyFile, Charsets.UTF_8).writeLines(ImmutableList.of(
+				HEADER,
+				line("run1", 100, 10),
+				line("run2", 200, 50)
+		));
+
+		File trendFile = new File(tempDir, "trend.csv");
+		createAnalyzer(10, 20).analyze(historyFile, trendFile);
+
+		List<String> lines = Files.readLines(trendFile, Charsets.UTF_8);
+		assertThat(lines, hasSize(3));
+		assertThat(lines.get(1), equalTo("\"run2\";\"50\";\"10.00\";\"400.00\";\"200\";\"100.00\";\"100.00\";\"\""));
+		assertThat(lines.get(2), equalTo("\"run1\";\"10\";\"\";\"\";\"100\";\"\";\"\";\"\""));
+	}
+
+	@Test
+	public void testRemoveLastLine() throws IOException {
+		File historyFile = new File(tempDir, "history.csv");
+		Files.asCharSink(historyFile, Charsets.UTF_8).writeLines(ImmutableList.of(HEADER, line("run1", 100, 10)));
+
+		removeLastLine(historyFile);
+
+		assertThat(Files.readLines(historyFile, Charsets.UTF_8), contains(HEADER));
+	}
+
+	private static String line(final String time, final int medianReqPerMin, final int medianExecutionTime) {
+		return String.format("\"%s\";\"1000\";\"0\";\"0\";\"1\";\"2\";\"0\";\"%d\";\"200\";\"1\";\"%d\";\"100\"", time,
+				medianReqPerMin, medianExecutionTime);
+	}
+
+	private static HistoryTrendAnalyzer createAnalyzer(final int windowSize, final int maxTableRows) throws IOException {
+		NumberFormat intFormat = NumberFormat.getIntegerInstance(Locale.US);
+		intFormat.setGroupingUsed(false);
+		intFormat.setRoundingMode(RoundingMode.HALF_UP);
+
+		NumberFormat floatFormat = new DecimalFormat("0.00", new DecimalFormatSymbols(Locale.US));
+		floatFormat.setGroupingUsed(false);
+		floatFormat.setRoundingMode(RoundingMode.HALF_UP);
+
+		ResourceBundle resourceBundle = new PropertyResourceBundle(new StringReader(
+				"medianExecutionTime = medianExecutionTime\n"
+						+ "rollingMedianExecutionTime = rollingMedianExecutionTime\n"
+						+ "medianReqPerMin = medianReqPerMin\n"
+						+ "rollingMedianReqPerMin = rollingMedianReqPerMin\n"
+						+ "trend.regression = regression\n"
+						+ "trend.improvement = improvement\n"));
+
+		return new HistoryTrendAnalyzer(intFormat, floatFormat, resourceBundle, windowSize, 10d, maxTableRows);
+	}
+}
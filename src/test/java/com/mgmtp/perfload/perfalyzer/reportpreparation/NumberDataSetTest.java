@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.mgmtp.perfload.perfalyzer.reportpreparation.NumberDataSet.SeriesPoint;
+
+/**
+ * @author rnaegele
+ */
+public class NumberDataSetTest {
+
+	@Test
+	public void testSeriesPoints() {
+		NumberDataSet dataSet = new NumberDataSet();
+		dataSet.addSeries("b", Arrays.asList(new SeriesPoint(1, 10), new SeriesPoint(2L, null)));
+		dataSet.addSeriesPoint("a", new SeriesPoint(1.5d, 3));
+		dataSet.addSeriesPoint("a", 2.5d, 4d);
+		dataSet.sortSeries();
+
+		assertThat(dataSet.getSeriesCount(), is(equalTo(2)));
+		assertThat(dataSet.getSeriesKey(0).toString(), is(equalTo("a")));
+		assertThat(dataSet.getItemCount(0), is(equalTo(2)));
+		assertThat(dataSet.getXValue(0, 1), is(equalTo(2.5d)));
+		assertThat(dataSet.getYValue(1, 0), is(equalTo(10d)));
+		assertThat(dataSet.getY(1, 1), is(nullValue()));
+		assertThat(Double.isNaN(dataSet.getYValue(1, 1)), is(true));
+	}
+
+	@Test
+	public void testDownsampleKeepsPeaks() {
+		NumberDataSet dataSet = new NumberDataSet();
+		for (int i = 0; i < 100000; ++i) {
+			dataSet.addSeriesPoint("cpu", i, i == 54321 ? 1000d : i % 10);
+		}
+		dataSet.addSeriesPoint("short", 0d, 1d);
+
+		NumberDataSet downsampled = dataSet.downsample(1000);
+
+		assertThat(downsampled.getItemCount(0), is(equalTo(1000)));
+		assertThat(downsampled.getXValue(0, 0), is(equalTo(0d)));
+		assertThat(downsampled.getXValue(0, 999), is(equalTo(99999d)));
+		double max = 0d;
+		for (int item = 0; item < 1000; ++item) {
+			max = Math.max(max, downsampled.getYValue(0, item));
+		}
+		assertThat(max, is(equalTo(1000d)));
+		assertThat(downsampled.getItemCount(1), is(equalTo(1)));
+		assertThat(dataSet.getItemCount(0), is(equalTo(100000)));
+	}
+
+	@Test
+	public void testDownsampleSkipsUnorderedSeries() {
+		NumberDataSet dataSet = new NumberDataSet();
+		for (int i = 0; i < 100; ++i) {
+			dataSet.addSeriesPoint("scatter", 100 - i, i);
+		}
+		assertThat(dataSet.downsample(10).getItemCount(0), is(equalTo(100)));
+	}
+
+	@Test
+	public void testNoDownsamplingNecessary() {
+		NumberDataSet dataSet = new NumberDataSet();
+		dataSet.addSeriesPoint("op", 0d, 1d);
+		assertThat(dataSet.downsample(10), is(sameInstance(dataSet)));
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.reportpreparation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author rnaegele
+ */
+public class SeriesCorrelationTest {
+
+	private static final double NaN = Double.NaN;
+
+	@Test
+	public void testLaggedCorrelations() {
+		// y follows x two bins later, large offsets must not affect precision
+		double[] x = { 1e9 + 1, 1e9 + 5, 1e9 + 2, 1e9 + 8, 1e9 + 3, 1e9 + 7, 1e9 + 4, 1e9 + 6, 1e9 + 1, 1e9 + 9, NaN, NaN };
+		double[] y = { NaN, NaN, 10, 50, 20, 80, 30, 70, 40, 60, 10, 90 };
+
+		double[] coefficients = SeriesCorrelation.laggedCorrelations(x, y, 3, 5);
+		assertThat(coefficients.length, is(4));
+		assertThat(coefficients[2], is(closeTo(1d, 1e-9)));
+		assertThat(coefficients[1], is(closeTo(-0.7455751826215627, 1e-9)));
+
+		// only 10 pairs with a lag of 2
+		coefficients = SeriesCorrelation.laggedCorrelations(x, y, 2, 11);
+		assertThat(Double.isNaN(coefficients[2]), is(true));
+	}
+
+	@Test
+	public void testConstantSeries() {
+		double[] x = { 0.1, 0.1, 0.1, 0.1, 0.1, 0.1 };
+		double[] y = { 1, 2, 3, 4, 5, 6 };
+
+		double[] coefficients = SeriesCorrelation.laggedCorrelations(x, y, 1, 2);
+		assertThat(Double.isNaN(coefficients[0]), is(true));
+		assertThat(Double.isNaN(coefficients[1]), is(true));
+
+		coefficients = SeriesCorrelation.laggedCorrelations(y, y, 0, 2);
+		assertThat(coefficients[0], is(closeTo(1d, 1e-12)));
+	}
+}
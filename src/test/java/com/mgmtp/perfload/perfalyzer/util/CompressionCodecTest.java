@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * @author rnaegele
+ */
+public class CompressionCodecTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@DataProvider
+	public Object[][] codecs() {
+		return new Object[][] { { CompressionCodec.NONE }, { CompressionCodec.GZIP }, { CompressionCodec.LZ4 } };
+	}
+
+	@Test(dataProvider = "codecs")
+	public void testRoundTrip(final CompressionCodec codec) throws IOException {
+		byte[] data = createCsvData(200000);
+		byte[] compressed = compress(codec, data);
+		if (codec != CompressionCodec.NONE) {
+			assertThat(compressed.length, is(lessThan(data.length / 3)));
+		}
+		assertThat(decompress(compressed), is(equalTo(data)));
+	}
+
+	@Test(dataProvider = "codecs")
+	public void testAppendedFile(final CompressionCodec codec) throws IOException {
+		File file = new File(tempDir, "[measuring][login].csv");
+		byte[] first = createCsvData(1000);
+		byte[] second = createCsvData(3000);
+		try (OutputStream os = codec.wrap(new FileOutputStream(file))) {
+			os.write(first);
+		}
+		try (OutputStream os = codec.wrap(new FileOutputStream(file, true))) {
+			os.write(second);
+		}
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(first);
+		expected.write(second);
+		try (InputStream is = CompressionCodec.openInputStream(file)) {
+			assertThat(ByteStreams.toByteArray(is), is(equalTo(expected.toByteArray())));
+		}
+	}
+
+	@Test(dataProvider = "codecs")
+	public void testEstimateUncompressedLength(final CompressionCodec codec) throws IOException {
+		byte[] small = createCsvData(1000);
+		File file = new File(tempDir, "small.csv");
+		Files.write(compress(codec, small), file);
+		assertThat(CompressionCodec.estimateUncompressedLength(file), is(equalTo((long) small.length)));
+
+		// larger than the sample, so the ratio is extrapolated
+		byte[] large = createCsvData(300000);
+		file = new File(tempDir, "large.csv");
+		Files.write(compress(codec, large), file);
+		assertThat((double) CompressionCodec.estimateUncompressedLength(file), is(closeTo(large.length, large.length * 0.1d)));
+	}
+
+	@Test
+	public void testLz4IncompressibleData() throws IOException {
+		byte[] data = new byte[150000];
+		new Random(42L).nextBytes(data);
+		assertThat(decompress(compress(CompressionCodec.LZ4, data)), is(equalTo(data)));
+	}
+
+	@Test
+	public void testLz4FlushedBlocks() throws IOException {
+		byte[] data = createCsvData(5000);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream os = CompressionCodec.LZ4.wrap(baos)) {
+			for (int i = 0; i < data.length; i += 777) {
+				os.write(data, i, Math.min(777, data.length - i));
+				os.flush();
+			}
+		}
+		assertThat(decompress(baos.toByteArray()), is(equalTo(data)));
+	}
+
+	@Test
+	public void testLz4HeaderChecksum() throws IOException {
+		byte[] compressed = compress(CompressionCodec.LZ4, new byte[0]);
+		// magic number, FLG, BD, HC, end mark
+		assertThat(compressed.length, is(equalTo(11)));
+		assertThat(compressed[6] & 0xFF, is(equalTo(0x82)));
+	}
+
+	@Test
+	public void testShortUncompressedData() throws IOException {
+		byte[] data = "x".getBytes(Charsets.UTF_8);
+		assertThat(decompress(data), is(equalTo(data)));
+		assertThat(decompress(new byte[0]), is(equalTo(new byte[0])));
+	}
+
+	@Test
+	public void testForName() {
+		assertThat(CompressionCodec.forName(" Lz4"), is(equalTo(CompressionCodec.LZ4)));
+		assertThat(CompressionCodec.forName("gzip"), is(equalTo(CompressionCodec.GZIP)));
+	}
+
+	private static byte[] createCsvData(final int lineCount) {
+		Random random = new Random(lineCount);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lineCount; ++i) {
+			sb.append(1400000000000L + i * 13L).append(";").append(random.nextInt(5000)).append(";")
+					.append("\"GET\";\"/app/page").append(random.nextInt(20)).append("\";\"SUCCESS\"\n");
+		}
+		return sb.toString().getBytes(Charsets.UTF_8);
+	}
+
+	private static byte[] compress(final CompressionCodec codec, final byte[] data) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream os = codec.wrap(baos)) {
+			os.write(data);
+		}
+		return baos.toByteArray();
+	}
+
+	private static byte[] decompress(final byte[] data) throws IOException {
+		try (InputStream is = CompressionCodec.decompressing(new ByteArrayInputStream(data))) {
+			return ByteStreams.toByteArray(is);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * @author rnaegele
+ */
+public class FileCatalogTest {
+
+	private static final Marker MARKER = new Marker("login");
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		tempDir = createTempDir();
+		write("global/[measuring][login].csv");
+		write("global/[measuring][login]{login}.csv");
+		write("gclog/[gclog].log");
+		write("perfmon/[perfmon][cpu_X].csv");
+		Files.touch(new File(tempDir, "perfmon/[perfmon][empty].csv"));
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileCatalog.invalidate(tempDir);
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testQueries() {
+		FileCatalog catalog = FileCatalog.build(tempDir);
+
+		assertThat(catalog.getFiles(), containsInAnyOrder(new File("global/[measuring][login].csv"),
+				new File("global/[measuring][login]{login}.csv"), new File("gclog/[gclog].log"),
+				new File("perfmon/[perfmon][cpu_X].csv")));
+		assertThat(paths(catalog.getPerfAlyzerFiles(MARKER)), contains("global/[measuring][login]{login}.csv"));
+		assertThat(paths(catalog.getPerfAlyzerFiles(null, "measuring")), contains("global/[measuring][login].csv"));
+		assertThat(paths(catalog.getPerfAlyzerFiles(null, "gclog")), contains("gclog/[gclog].log"));
+		assertThat(paths(catalog.getPerfAlyzerFilesWithExtension("log")), contains("gclog/[gclog].log"));
+		assertThat(catalog.getPerfAlyzerFiles(MARKER, "gclog"), is(empty()));
+	}
+
+	@Test
+	public void testQueriesReturnCopies() {
+		FileCatalog catalog = FileCatalog.build(tempDir);
+
+		catalog.getPerfAlyzerFiles(null, "gclog").get(0).setMarker("login");
+
+		assertThat(paths(catalog.getPerfAlyzerFiles(null, "gclog")), contains("gclog/[gclog].log"));
+	}
+
+	@Test
+	public void testDirectoryListerUsesOpenCatalog() throws IOException {
+		FileCatalog catalog = FileCatalog.open(tempDir);
+
+		// not listed until added, because the directory is not walked again
+		write("global/[measuring][logout].csv");
+		assertThat(paths(DirectoryLister.listPerfAlyzerFiles(tempDir, null, "logout")), is(empty()));
+
+		catalog.add(new File("global/[measuring][logout].csv"));
+		assertThat(paths(DirectoryLister.listPerfAlyzerFiles(tempDir, null, "logout")),
+				contains("global/[measuring][logout].csv"));
+
+		FileCatalog.invalidate(tempDir);
+		write("global/[measuring][search].csv");
+		assertThat(paths(DirectoryLister.listPerfAlyzerFiles(tempDir, null, "search")),
+				contains("global/[measuring][search].csv"));
+	}
+
+	private void write(final String path) throws IOException {
+		File file = new File(tempDir, path);
+		Files.createParentDirs(file);
+		Files.write("content", file, Charsets.UTF_8);
+	}
+
+	private static List<String> paths(final List<PerfAlyzerFile> files) {
+		return files.stream().map(perfAlyzerFile -> perfAlyzerFile.getFile().getPath()).collect(toList());
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * @author rnaegele
+ */
+public class FileStagingTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@DataProvider
+	public Object[][] stagings() {
+		FileStaging[] values = FileStaging.values();
+		Object[][] result = new Object[values.length][];
+		for (int i = 0; i < values.length; ++i) {
+			result[i] = new Object[] { values[i] };
+		}
+		return result;
+	}
+
+	@Test(dataProvider = "stagings")
+	public void testStage(final FileStaging staging) throws IOException {
+		File source = new File(tempDir, "source/gclog.log");
+		Files.createParentDirs(source);
+		Files.write("content", source, Charsets.UTF_8);
+		File dest = new File(tempDir, "dest/sub/[gclog].log");
+
+		staging.stage(source, dest);
+		assertThat(Files.toString(dest, Charsets.UTF_8), is(equalTo("content")));
+
+		// an existing file is replaced
+		Files.write("new content", source, Charsets.UTF_8);
+		staging.stage(source, dest);
+		assertThat(Files.toString(dest, Charsets.UTF_8), is(equalTo("new content")));
+	}
+
+	@Test(dataProvider = "stagings")
+	public void testStageSnapshot(final FileStaging staging) throws IOException {
+		File source = new File(tempDir, "comparison.csv");
+		Files.write("old", source, Charsets.UTF_8);
+		File dest = new File(tempDir, "report/comparison.csv");
+
+		staging.stageSnapshot(source, dest);
+
+		File tmpFile = new File(tempDir, "comparison.csv.tmp");
+		Files.write("new", tmpFile, Charsets.UTF_8);
+		move(tmpFile.toPath(), source.toPath(), REPLACE_EXISTING);
+
+		assertThat(Files.toString(dest, Charsets.UTF_8), is(equalTo("old")));
+	}
+
+	@Test(dataProvider = "stagings")
+	public void testStageDirectoryToDirectory(final FileStaging staging) throws IOException {
+		File assetsDir = new File(tempDir, "assets");
+		File css = new File(assetsDir, "css/report.css");
+		Files.createParentDirs(css);
+		Files.write("body {}", css, Charsets.UTF_8);
+		File reportDir = new File(tempDir, "report");
+
+		staging.stageDirectoryToDirectory(assetsDir, reportDir);
+		staging.stageDirectoryToDirectory(assetsDir, reportDir);
+
+		assertThat(Files.toString(new File(reportDir, "assets/css/report.css"), Charsets.UTF_8), is(equalTo("body {}")));
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.FileWriteMode;
+import com.google.common.io.Files;
+
+/**
+ * @author rnaegele
+ */
+public class LogTailerTest {
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@Test
+	public void testNewLinesOnly() throws IOException {
+		File file = new File(tempDir, "measuring.out");
+		LogTailer tailer = new LogTailer(1024);
+
+		Files.asCharSink(file, Charsets.UTF_8).write("line1\nline2\nli");
+		assertThat(tailer.readNewLines(file), contains("line1", "line2"));
+		assertThat(tailer.readNewLines(file), empty());
+
+		Files.asCharSink(file, Charsets.UTF_8, FileWriteMode.APPEND).write("ne3\r\nline4\n");
+		assertThat(tailer.readNewLines(file), contains("line3", "line4"));
+	}
+
+	@Test
+	public void testTruncatedFile() throws IOException {
+		File file = new File(tempDir, "measuring.out");
+		LogTailer tailer = new LogTailer(1024);
+
+		Files.asCharSink(file, Charsets.UTF_8).write("line1\nline2\n");
+		assertThat(tailer.readNewLines(file), contains("line1", "line2"));
+
+		Files.asCharSink(file, Charsets.UTF_8).write("new\n");
+		assertThat(tailer.readNewLines(file), contains("new"));
+	}
+
+	@Test
+	public void testBoundedRead() throws IOException {
+		File file = new File(tempDir, "measuring.out");
+		LogTailer tailer = new LogTailer(8);
+
+		Files.asCharSink(file, Charsets.UTF_8).write("line1\nline2\nline3\n");
+		assertThat(tailer.readNewLines(file), contains("line1"));
+		assertThat(tailer.readNewLines(file), contains("line2"));
+		assertThat(tailer.readNewLines(file), contains("line3"));
+		assertThat(tailer.readNewLines(file), empty());
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * @author rnaegele
+ */
+public class PipelineMetricsTest {
+
+	@Test
+	public void testTaskMetrics() {
+		PipelineMetrics pipelineMetrics = new PipelineMetrics();
+		pipelineMetrics.startPhase("binning");
+		pipelineMetrics.instrument("binning", "TestWorkflow", "#0", () -> {
+			TaskMetrics.recordFile("foo.csv");
+			TaskMetrics.recordRead(10L, 1000L);
+			TaskMetrics.recordWritten(2L, 200L);
+		}).run();
+		pipelineMetrics.endPhase();
+
+		// nothing recorded outside of an instrumented task
+		TaskMetrics.recordRead(10L, 1000L);
+
+		List<TaskMetrics> tasks = pipelineMetrics.getTasks("binning");
+		assertThat(tasks, hasSize(1));
+		TaskMetrics task = tasks.get(0);
+		assertThat(task.getFiles(), contains("foo.csv"));
+		assertThat(task.getLinesRead(), is(equalTo(10L)));
+		assertThat(task.getBytesRead(), is(equalTo(1000L)));
+		assertThat(task.getLinesWritten(), is(equalTo(2L)));
+		assertThat(task.getBytesWritten(), is(equalTo(200L)));
+		assertThat(task.getWallNanos(), is(greaterThanOrEqualTo(0L)));
+		assertThat(pipelineMetrics.getPhases(), hasSize(1));
+	}
+
+	@Test
+	public void testWriteJson() throws IOException {
+		PipelineMetrics pipelineMetrics = new PipelineMetrics();
+		pipelineMetrics.startPhase("normalization");
+		pipelineMetrics.instrument("normalization", "TestWorkflow", "#0", () -> TaskMetrics.recordFile("a\"b.log")).run();
+		pipelineMetrics.endPhase();
+
+		File file = new File("target/pipelineMetrics/analysis-performance.json");
+		pipelineMetrics.writeJson(file);
+		String json = Files.toString(file, Charsets.UTF_8);
+		assertThat(json, containsString("{\"name\":\"normalization\""));
+		assertThat(json, containsString("\"files\":[\"a\\\"b.log\"]"));
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testEndPhaseWithoutStart() {
+		new PipelineMetrics().endPhase();
+	}
+}
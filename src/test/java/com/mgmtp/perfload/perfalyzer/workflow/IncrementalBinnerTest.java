@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+import static com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants.DELIMITER;
+import static com.mgmtp.perfload.perfalyzer.util.IoUtilities.createTempDir;
+import static com.mgmtp.perfload.perfalyzer.util.StrBuilderUtils.appendEscapedAndQuoted;
+import static org.apache.commons.io.FileUtils.deleteQuietly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.text.StrBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.mgmtp.perfload.perfalyzer.binning.Binner;
+import com.mgmtp.perfload.perfalyzer.binning.ErrorCountBinningStragegy;
+import com.mgmtp.perfload.perfalyzer.binning.MeasuringRequestsBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.binning.MeasuringResponseTimesBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.binning.MergeableBinningStrategy;
+import com.mgmtp.perfload.perfalyzer.constants.PerfAlyzerConstants;
+import com.mgmtp.perfload.perfalyzer.util.CompressionCodec;
+import com.mgmtp.perfload.perfalyzer.util.MemoryBudget;
+import com.mgmtp.perfload.perfalyzer.util.PerfAlyzerFile;
+
+/**
+ * @author rnaegele
+ */
+public class IncrementalBinnerTest {
+
+	private static final PerfAlyzerFile FILE = PerfAlyzerFile.create(new File("global/[measuring][login].csv"));
+
+	private final NumberFormat intNumberFormat = NumberFormat.getIntegerInstance(Locale.US);
+	private final NumberFormat floatNumberFormat = NumberFormat.getNumberInstance(Locale.US);
+
+	private File tempDir;
+
+	@BeforeMethod
+	public void setUp() {
+		tempDir = createTempDir();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteQuietly(tempDir);
+	}
+
+	@DataProvider
+	public Object[][] codecs() {
+		return new Object[][] { { CompressionCodec.NONE }, { CompressionCodec.GZIP }, { CompressionCodec.LZ4 } };
+	}
+
+	@Test(dataProvider = "codecs")
+	public void testNewDataIsBinnedLikeWholeFile(final CompressionCodec codec) throws IOException {
+		File inputDir = new File(tempDir, "normalized");
+		File incrementalDir = new File(tempDir, "incremental");
+		File wholeDir = new File(tempDir, "whole");
+
+		List<String> lines = createMeasuringLines(3000);
+		File normalizedFile = new File(inputDir, FILE.getFile().getPath());
+		Files.createParentDirs(normalizedFile);
+
+		IncrementalBinner incrementalBinner = new IncrementalBinner();
+		for (List<String> chunk : ImmutableList.of(lines.subList(0, 1000), lines.subList(1000, 1001), lines.subList(1001, 3000))) {
+			// like the normalizer, appending to a compressed file adds another gzip member or LZ4 frame
+			try (OutputStream os = codec.wrap(new FileOutputStream(normalizedFile, true))) {
+				for (String line : chunk) {
+					os.write((line + '\n').getBytes(Charsets.UTF_8));
+				}
+			}
+			incrementalBinner.binNewData(inputDir, incrementalDir, FILE, () -> createStrategies(true));
+		}
+
+		for (MergeableBinningStrategy<?> strategy : createStrategies(true)) {
+			new Binner(inputDir, wholeDir, strategy).binFile(FILE);
+		}
+
+		Set<String> binnedFiles = relativeFiles(wholeDir);
+		assertThat(binnedFiles.isEmpty(), is(not(true)));
+		assertThat(relativeFiles(incrementalDir), is(equalTo(binnedFiles)));
+		for (String binnedFile : binnedFiles) {
+			String expected = Files.toString(new File(wholeDir, binnedFile), Charsets.UTF_8);
+			assertThat(binnedFile, Files.toString(new File(incrementalDir, binnedFile), Charsets.UTF_8), is(equalTo(expected)));
+		}
+	}
+
+	@Test
+	public void testSketchedQuantilesApproximateExactQuantiles() throws IOException, ParseException {
+		File inputDir = new File(tempDir, "normalized");
+		File sketchedDir = new File(tempDir, "sketched");
+		File exactDir = new File(tempDir, "exact");
+
+		File normalizedFile = new File(inputDir, FILE.getFile().getPath());
+		Files.createParentDirs(normalizedFile);
+		Files.asCharSink(normalizedFile, Charsets.UTF_8).writeLines(createMeasuringLines(3000));
+
+		new Binner(inputDir, sketchedDir, createStrategies(true).get(0)).binFile(FILE);
+		new Binner(inputDir, exactDir, createStrategies(false).get(0)).binFile(FILE);
+
+		String quantilesFile = "global/[measuring][login][quantiles].csv";
+		List<String> sketchedLines = Files.readLines(new File(sketchedDir, quantilesFile), Charsets.UTF_8);
+		List<String> exactLines = Files.readLines(new File(exactDir, quantilesFile), Charsets.UTF_8);
+		assertThat(sketchedLines.size(), is(equalTo(exactLines.size())));
+		for (int i = 1; i < exactLines.size(); ++i) {
+			List<String> sketched = Splitter.on(DELIMITER).splitToList(sketchedLines.get(i).replace("\"", ""));
+			List<String> exact = Splitter.on(DELIMITER).splitToList(exactLines.get(i).replace("\"", ""));
+			// key, type, uri, requests, errors, min and max are exact
+			for (int col : new int[] { 0, 1, 2, 3, 4, 5, 9 }) {
+				assertThat(sketched.get(col), is(equalTo(exact.get(col))));
+			}
+			for (int col = 6; col <= 8; ++col) {
+				double expected = intNumberFormat.parse(exact.get(col)).doubleValue();
+				// relative accuracy of the sketch plus the different interpolation of exact percentiles
+				assertThat(intNumberFormat.parse(sketched.get(col)).doubleValue(), is(closeTo(expected, expected * 0.02d + 5d)));
+			}
+		}
+	}
+
+	private List<MergeableBinningStrategy<?>> createStrategies(final boolean sketchQuantiles) {
+		return ImmutableList.of(
+				new MeasuringResponseTimesBinningStrategy(0L, intNumberFormat, floatNumberFormat, MemoryBudget.unlimited(),
+						sketchQuantiles),
+				new MeasuringRequestsBinningStrategy(0L, PerfAlyzerConstants.BIN_SIZE_MILLIS_1_SECOND, intNumberFormat,
+						floatNumberFormat),
+				new ErrorCountBinningStragegy(0L, intNumberFormat, floatNumberFormat));
+	}
+
+	private static List<String> createMeasuringLines(final int count) {
+		Random random = new Random(42L);
+		ImmutableList.Builder<String> lines = ImmutableList.builder();
+		for (int i = 0; i < count; ++i) {
+			boolean error = random.nextInt(20) == 0;
+			String uriAlias = "uri" + random.nextInt(5);
+			StrBuilder sb = new StrBuilder();
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(i * 100L));
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(random.nextInt(50)));
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "-1" : String.valueOf(50 + random.nextInt(2000)));
+			appendEscapedAndQuoted(sb, DELIMITER, "login");
+			appendEscapedAndQuoted(sb, DELIMITER, "GET");
+			appendEscapedAndQuoted(sb, DELIMITER, "/" + uriAlias);
+			appendEscapedAndQuoted(sb, DELIMITER, uriAlias);
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "ERROR" : "SUCCESS");
+			appendEscapedAndQuoted(sb, DELIMITER, error ? "Connection reset" : "");
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(i / 4));
+			appendEscapedAndQuoted(sb, DELIMITER, String.valueOf(i));
+			lines.add(sb.toString());
+		}
+		return lines.build();
+	}
+
+	private static Set<String> relativeFiles(final File dir) {
+		Set<String> result = new TreeSet<>();
+		for (File file : FileUtils.listFiles(dir, null, true)) {
+			result.add(dir.toURI().relativize(file.toURI()).getPath());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2015 mgm technology partners GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mgmtp.perfload.perfalyzer.workflow;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author rnaegele
+ */
+public class TaskAdmissionTest {
+
+	private ExecutorService execService;
+
+	@BeforeMethod
+	public void setUp() {
+		execService = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		execService.shutdownNow();
+	}
+
+	@Test
+	public void testExpensiveTasksDoNotExceedBudget() throws Exception {
+		TaskAdmission taskAdmission = new TaskAdmission(execService, 100L);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; ++i) {
+			futures.add(taskAdmission.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				sleep(20L);
+				running.decrementAndGet();
+			}, 60L));
+		}
+		for (Future<?> future : futures) {
+			future.get(10L, TimeUnit.SECONDS);
+		}
+
+		assertThat(maxRunning.get(), is(equalTo(1)));
+		assertThat(taskAdmission.getAdmittedBytes(), is(equalTo(0L)));
+	}
+
+	@Test
+	public void testCheapTasksRunWhileExpensiveTaskIsHeldBack() throws Exception {
+		TaskAdmission taskAdmission = new TaskAdmission(execService, 100L);
+		CountDownLatch cheapTaskDone = new CountDownLatch(1);
+
+		Future<?> first = taskAdmission.submit(() -> await(cheapTaskDone), 80L);
+		Future<?> second = taskAdmission.submit(() -> { }, 80L);
+		Future<?> cheap = taskAdmission.submit(cheapTaskDone::countDown, 0L);
+
+		cheap.get(10L, TimeUnit.SECONDS);
+		first.get(10L, TimeUnit.SECONDS);
+		second.get(10L, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testTaskExceedingBudgetRunsAlone() throws Exception {
+		TaskAdmission taskAdmission = new TaskAdmission(execService, 100L);
+		taskAdmission.submit(() -> { }, 1000L).get(10L, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testSharedEstimateIsKeptUntilLastTaskFinished() throws Exception {
+		TaskAdmission taskAdmission = new TaskAdmission(execService, 100L);
+		SharedEstimate sharedEstimate = new SharedEstimate(80L, 2);
+
+		taskAdmission.submit(() -> { }, sharedEstimate).get(10L, TimeUnit.SECONDS);
+		assertThat(taskAdmission.getAdmittedBytes(), is(equalTo(80L)));
+
+		// held back, because the merged state of the first task is still in memory
+		Future<?> expensive = taskAdmission.submit(() -> { }, 60L);
+		sleep(50L);
+		assertThat(expensive.isDone(), is(false));
+
+		// admitted without reserving the estimate again
+		taskAdmission.submit(() -> { }, sharedEstimate).get(10L, TimeUnit.SECONDS);
+		expensive.get(10L, TimeUnit.SECONDS);
+		assertThat(taskAdmission.getAdmittedBytes(), is(equalTo(0L)));
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}